@@ -0,0 +1,148 @@
+package pepse;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+import pepse.util.AllocationProbe;
+import pepse.util.GameClock;
+import pepse.util.JobScheduler;
+import pepse.world.Terrain;
+import pepse.world.daynight.DayNightCycle;
+import pepse.world.daynight.Sun;
+import pepse.world.daynight.SunHalo;
+import pepse.world.trees.FallingLeaves;
+import pepse.world.trees.Flora;
+import pepse.world.trees.FoliageLod;
+import pepse.world.trees.Tree;
+
+import java.util.Locale;
+
+/**
+ * An allocation regression test of the per-frame hot paths, without a window.
+ * It generates a world the way the game does, then runs frames of the systems that are meant
+ * to allocate (almost) nothing once the world exists: the sun and its halo, the foliage level
+ * of detail, the falling leaves and the job scheduler. The avatar walks back and forth across
+ * the world, so trees switch between leaves and canopy and leaves are shed, land and fade.
+ * The bytes each frame allocates are measured with an AllocationProbe, and the check fails,
+ * with a non-zero exit status, when the mean is over a fixed limit. Unlike the limit of a
+ * replayed session, which is given on the command line, this limit is part of the code, so
+ * the check needs no recording and can run in every build.
+ */
+public class AllocationCheck {
+    /**
+     * constants that are used through the class
+     */
+    // The most bytes a frame may allocate on average. The sun and its halo allocate a Vector2
+    // each in the frames they move, every frame here; everything else should allocate nothing.
+    public static final long MAX_BYTES_PER_FRAME = 256;
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1200, 800); // Size of the view.
+    private static final int SEED = 0; // Seed of the checked world.
+    private static final float WORLD_WIDTH = 19200; // Width of the checked world, in pixels.
+    private static final float FRAME_TIME = 1 / 60f; // Length of a frame, in seconds.
+    private static final int FRAMES = 3000; // Frames run, including the probe's warm-up.
+    private static final float DAY_LENGTH = 30; // Length of a day, short so the sun moves every frame.
+    private static final float AVATAR_SPEED = 300; // How fast the avatar walks, in pixels per second.
+    private static final float JOB_BUDGET_MILLIS = 1; // Time a frame may spend running jobs.
+    private static final int JOBS_PER_FRAME = 3; // Jobs falling due in each frame.
+
+    private final DayNightCycle cycle = new DayNightCycle(DAY_LENGTH); // Moves the sun.
+    private final GameClock clock = new GameClock(); // Time of the job scheduler.
+    private final JobScheduler jobScheduler = new JobScheduler(clock, JOB_BUDGET_MILLIS); // Deferred jobs.
+    private final Runnable job = this::runJob; // The work of every job, created once.
+    private GameObject sun; // The sun, moved by its component.
+    private GameObject sunHalo; // The sun's halo, which follows the sun.
+    private FoliageLod foliageLod; // Shows leaves near the avatar and canopies further away.
+    private FallingLeaves fallingLeaves; // Leaves shed by the canopies in view.
+    private Vector2[] viewCorners; // The view's top-left corner in each frame of a walk.
+    private long jobsRun; // The number of jobs that ran.
+
+    /**
+     * Runs the check, and exits with status 1 if frames allocate more than the limit.
+     *
+     * @param args Command line arguments, unused.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        AllocationCheck check = new AllocationCheck();
+        check.createWorld();
+        AllocationProbe probe = check.run();
+        System.out.print(probe);
+        System.out.printf(Locale.ROOT, "jobs run: %d, falling leaves: %d%n",
+                check.jobsRun, check.fallingLeaves.getCount());
+        if (!probe.isSupported()) {
+            return;
+        }
+        if (probe.getMeanBytesPerFrame() > MAX_BYTES_PER_FRAME) {
+            System.out.printf("Allocation regression: more than the limit of %d bytes/frame%n",
+                    MAX_BYTES_PER_FRAME);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generates a world centered on the view the way the game does, and everything the
+     * frames need, so the measured frames create nothing but what they are meant to.
+     */
+    private void createWorld() {
+        sun = Sun.create(WINDOW_DIMENSIONS, cycle);
+        sunHalo = SunHalo.create(sun);
+        int minX = (int) (WINDOW_DIMENSIONS.x() - WORLD_WIDTH) / 2;
+        int maxX = minX + (int) WORLD_WIDTH - 1;
+        Terrain terrain = new Terrain(WINDOW_DIMENSIONS, SEED);
+        terrain.createInRange(minX, maxX);
+        // Foliage is shown and hidden without a game, so only the level of detail is measured.
+        foliageLod = new FoliageLod((object, layer) -> { }, (object, layer) -> { });
+        fallingLeaves = new FallingLeaves(terrain, FallingLeaves.DEFAULT_CAPACITY, SEED);
+        Flora flora = new Flora(null, terrain, null, SEED);
+        for (GameObject object : flora.createInRange(minX, maxX)) {
+            Tree tree = (Tree) object;
+            foliageLod.add(tree);
+            GameObject canopy = tree.getCanopy();
+            fallingLeaves.addEmitter(canopy.getTopLeftCorner(), canopy.getDimensions());
+        }
+        // The avatar walks from the world's left edge to its right edge and back; the view's
+        // corners are created up front, as the camera's would be by the game.
+        int walkFrames = (int) ((maxX - minX - WINDOW_DIMENSIONS.x()) / (AVATAR_SPEED * FRAME_TIME));
+        viewCorners = new Vector2[2 * walkFrames];
+        for (int frame = 0; frame < viewCorners.length; frame++) {
+            int step = frame < walkFrames ? frame : viewCorners.length - frame;
+            viewCorners[frame] = new Vector2(minX + step * AVATAR_SPEED * FRAME_TIME, 0);
+        }
+        // Jobs fall due throughout the run; queuing them allocates, so it is done before it.
+        JobScheduler.Priority[] priorities = JobScheduler.Priority.values();
+        for (int i = 0; i < FRAMES * JOBS_PER_FRAME; i++) {
+            jobScheduler.schedule(priorities[i % priorities.length], (float) i / JOBS_PER_FRAME * FRAME_TIME, job);
+        }
+    }
+
+    /**
+     * Runs the frames of the check and measures what each allocates.
+     *
+     * @return The probe, with the measured frames.
+     */
+    private AllocationProbe run() {
+        AllocationProbe probe = new AllocationProbe();
+        Vector2 viewDimensions = WINDOW_DIMENSIONS;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            Vector2 viewCorner = viewCorners[frame % viewCorners.length];
+            probe.beginFrame();
+            clock.advance(FRAME_TIME);
+            cycle.advance(FRAME_TIME);
+            // Updating an object runs its components, which move the sun and its halo.
+            sun.update(FRAME_TIME);
+            sunHalo.update(FRAME_TIME);
+            jobScheduler.runFrame();
+            foliageLod.update(viewCorner.x() + viewDimensions.x() / 2);
+            fallingLeaves.setView(viewCorner, viewDimensions);
+            fallingLeaves.tick(FRAME_TIME);
+            probe.endFrame(true);
+        }
+        return probe;
+    }
+
+    /**
+     * The work of a job, which only counts that it ran.
+     */
+    private void runJob() {
+        jobsRun++;
+    }
+}
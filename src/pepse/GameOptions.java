@@ -0,0 +1,235 @@
+package pepse;
+
+import pepse.world.ChunkCache;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The options a game is started with, parsed from the command line.
+ */
+public class GameOptions {
+    /**
+     * constants that are used through the class
+     */
+    public static final int DEFAULT_TARGET_FRAMERATE = 60; // The render rate when none is given.
+    public static final float DEFAULT_FRAME_BUDGET = 4; // Milliseconds a frame spends on deferred work.
+    private static final Path DEFAULT_SAVE_FILE = Paths.get("pepse.sav"); // Where games are saved.
+
+    private Path recordFile; // Where to save the input recording, or null to not record.
+    private Path replayFile; // The input recording to replay, or null to play live.
+    private Path baselineFile; // Frame-time baseline to compare a replay against, or null.
+    private int targetFramerate = DEFAULT_TARGET_FRAMERATE; // The rate frames are rendered at.
+    private int scalingReportFrames; // Region updates measured per pool size, or 0 to skip.
+    private Path saveFile = DEFAULT_SAVE_FILE; // Where the game is saved.
+    private Path loadFile; // A saved game to resume, or null to start a new game.
+    private float worldWidth; // The width of the world, or 0 for the width of the window.
+    private float frameBudget = DEFAULT_FRAME_BUDGET; // Milliseconds a frame spends on deferred work.
+    private int serverPort = -1; // The port to serve a shared world on, or -1 to play.
+    private String connectHost; // The host of a server to play on, or null to play alone.
+    private int connectPort; // The port of that server.
+    private long chunkCacheBytes = ChunkCache.DEFAULT_BUDGET_BYTES; // The memory budget of generated chunk data.
+    private long maxFrameAllocation = -1; // The most bytes a replayed frame may allocate, or -1.
+
+    /**
+     * Parses the options from command line arguments:
+     * "--record FILE" to record the session's input, "--replay FILE" to replay a recorded
+     * session, "--baseline FILE" to compare a replay's frame times against a stored baseline,
+     * "--fps RATE" to set the render rate, "--region-scaling FRAMES" to report how region
+     * updates scale from 1 to N cores, "--save FILE" to set where the game is saved, and
+     * "--load FILE" to resume a saved game, "--world-width PIXELS" to set the width of the world,
+     * "--frame-budget MS" to set the time a frame may spend on deferred work, such as
+     * creating the world, "--server PORT" to serve a shared world without a window,
+     * "--connect HOST:PORT" to play in the world a server shares, "--chunk-cache KB" to
+     * set the memory budget of the generated chunk data kept for reloading chunks, and
+     * "--max-frame-allocation BYTES" to fail a replay whose steady frames allocate more on
+     * average.
+     *
+     * @param args The command line arguments.
+     * @return The parsed options.
+     */
+    public static GameOptions parse(String[] args) {
+        GameOptions options = new GameOptions();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--record":
+                    options.recordFile = Paths.get(args[i + 1]);
+                    break;
+                case "--replay":
+                    options.replayFile = Paths.get(args[i + 1]);
+                    break;
+                case "--baseline":
+                    options.baselineFile = Paths.get(args[i + 1]);
+                    break;
+                case "--fps":
+                    options.targetFramerate = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--region-scaling":
+                    options.scalingReportFrames = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--save":
+                    options.saveFile = Paths.get(args[i + 1]);
+                    break;
+                case "--load":
+                    options.loadFile = Paths.get(args[i + 1]);
+                    break;
+                case "--world-width":
+                    options.worldWidth = Float.parseFloat(args[i + 1]);
+                    break;
+                case "--frame-budget":
+                    options.frameBudget = Float.parseFloat(args[i + 1]);
+                    break;
+                case "--server":
+                    options.serverPort = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--connect":
+                    int separator = args[i + 1].lastIndexOf(':');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Expected HOST:PORT: " + args[i + 1]);
+                    }
+                    options.connectHost = args[i + 1].substring(0, separator);
+                    options.connectPort = Integer.parseInt(args[i + 1].substring(separator + 1));
+                    break;
+                case "--chunk-cache":
+                    options.chunkCacheBytes = Long.parseLong(args[i + 1]) * 1024;
+                    break;
+                case "--max-frame-allocation":
+                    options.maxFrameAllocation = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Gets where to save the input recording.
+     *
+     * @return The recording file, or null to not record.
+     */
+    public Path getRecordFile() {
+        return recordFile;
+    }
+
+    /**
+     * Gets the input recording to replay.
+     *
+     * @return The recording file, or null to play live.
+     */
+    public Path getReplayFile() {
+        return replayFile;
+    }
+
+    /**
+     * Gets the frame-time baseline a replay is compared against. It is created if it does not
+     * exist yet.
+     *
+     * @return The baseline file, or null to only print the frame times.
+     */
+    public Path getBaselineFile() {
+        return baselineFile;
+    }
+
+    /**
+     * Gets the rate frames are rendered at, independent of the tick rate.
+     *
+     * @return The target framerate.
+     */
+    public int getTargetFramerate() {
+        return targetFramerate;
+    }
+
+    /**
+     * Gets the number of region updates to measure for each number of cores once the world is
+     * created, to report how region updates scale.
+     *
+     * @return The number of updates, or 0 to skip the report.
+     */
+    public int getScalingReportFrames() {
+        return scalingReportFrames;
+    }
+
+    /**
+     * Gets where the game is saved.
+     *
+     * @return The save file.
+     */
+    public Path getSaveFile() {
+        return saveFile;
+    }
+
+    /**
+     * Gets the saved game to resume.
+     *
+     * @return The save file to load, or null to start a new game.
+     */
+    public Path getLoadFile() {
+        return loadFile;
+    }
+
+    /**
+     * Gets the width of the world, centered on the initial view.
+     *
+     * @return The width in pixels, or 0 for the width of the window.
+     */
+    public float getWorldWidth() {
+        return worldWidth;
+    }
+
+    /**
+     * Gets the time a frame may spend on deferred work, such as creating the parts of the world
+     * that were not created before the first frame.
+     *
+     * @return The budget, in milliseconds.
+     */
+    public float getFrameBudget() {
+        return frameBudget;
+    }
+
+    /**
+     * Gets the port to serve a shared world on. A server runs without a window.
+     *
+     * @return The port, 0 for any free port, or -1 to play instead of serving.
+     */
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * Gets the host of the server to play on.
+     *
+     * @return The host, or null to play alone.
+     */
+    public String getConnectHost() {
+        return connectHost;
+    }
+
+    /**
+     * Gets the port of the server to play on.
+     *
+     * @return The port, meaningful only if getConnectHost is not null.
+     */
+    public int getConnectPort() {
+        return connectPort;
+    }
+
+    /**
+     * Gets the memory budget of the generated chunk data kept for reloading chunks.
+     *
+     * @return The budget, in bytes.
+     */
+    public long getChunkCacheBytes() {
+        return chunkCacheBytes;
+    }
+
+    /**
+     * Gets the most bytes a replayed frame may allocate on average once the world is created.
+     * A replay over the limit reports a regression and exits with a failure status.
+     *
+     * @return The limit, in bytes, or -1 to not measure allocation.
+     */
+    public long getMaxFrameAllocation() {
+        return maxFrameAllocation;
+    }
+}
@@ -0,0 +1,220 @@
+package pepse;
+
+import danogl.GameObject;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.util.MutableVector2;
+import pepse.world.Block;
+import pepse.world.BlockStore;
+import pepse.world.ChunkCache;
+import pepse.world.ChunkData;
+import pepse.world.Terrain;
+import pepse.world.trees.TreeLayout;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A map of the world around the avatar, shown in a corner of the screen: the terrain's profile,
+ * its lakes and trees, and the avatar, over a much wider area than the window.
+ * The map is an image with a pixel column per block column of the world's upper rows, where
+ * the surface is, drawn unscaled; its columns are a ring buffer: the world column
+ * c is kept in the image column c modulo the map's width, so when the avatar moves, only the
+ * newly revealed columns are drawn, over the ones that left the map, and nothing is shifted.
+ * The image is drawn in two parts, split at the ring's start. A frame's cost follows how far
+ * the avatar moved, not how wide the map is.
+ * Columns are drawn from the chunk cache's generated heights and tree layouts, or from the
+ * block store where the chunk was generated, so edits show; an edited column is drawn again.
+ * A chunk that only holds the edge column of a generated neighbor is drawn from the cache.
+ */
+public class Minimap extends GameObject {
+    /**
+     * constants that are used through the class
+     */
+    private static final int SKY_ARGB = new Color(20, 30, 50, 110).getRGB(); // The map's background.
+    private static final int WATER_ARGB = new Color(40, 100, 200).getRGB(); // Lakes below the sea level.
+    private static final int TREE_ARGB = new Color(50, 120, 40).getRGB(); // Trees, from trunk to canopy.
+    private static final Color AVATAR_COLOR = Color.RED; // The mark of the avatar.
+    private static final Color BORDER_COLOR = Color.WHITE; // The frame around the map.
+    private static final int TREE_PIXELS = 4; // How many pixels a tree rises above its ground.
+    private static final int AVATAR_PIXELS = 3; // The size of the avatar's mark, in pixels.
+
+    private final GameObject avatar; // The avatar the map is centered on.
+    private final BlockStore blockStore; // The cells of the loaded chunks.
+    private final ChunkCache chunkCache; // The generated heights and trees of every chunk.
+    private final int columns; // The number of columns the map covers, one pixel each.
+    private final int rows; // The number of rows the map covers, from the top.
+    private final int rowPixels; // The pixels of each row, which stretch the relief.
+    private final int height; // The image's height, in pixels.
+    private final int seaLevelRow; // The row lakes fill up to.
+    private final BufferedImage image; // The ring of columns.
+    private final int[] pixels; // The image's pixels, written directly.
+    private int firstColumn; // The world column at the map's left edge.
+    private boolean isEmpty = true; // Whether no column was drawn yet.
+
+    /**
+     * Constructor for a Minimap. The map starts empty, and is drawn in full on its first update.
+     * It is columns pixels wide, and rows * rowPixels pixels high.
+     *
+     * @param topLeftCorner The top-left corner of the map on the screen.
+     * @param columns The number of terrain columns the map covers.
+     * @param rows The number of terrain rows the map covers, from the top of the world; deeper
+     *             rows are left out.
+     * @param rowPixels The height of a row on the map, in pixels.
+     * @param avatar The avatar the map is centered on.
+     * @param terrain The terrain.
+     * @param chunkCache The cache of the chunks' generated data.
+     */
+    public Minimap(Vector2 topLeftCorner, int columns, int rows, int rowPixels, GameObject avatar,
+                   Terrain terrain, ChunkCache chunkCache) {
+        super(topLeftCorner, new Vector2(columns, Math.min(rows, terrain.getBlockStore().getRows()) * rowPixels),
+                null);
+        this.avatar = avatar;
+        this.blockStore = terrain.getBlockStore();
+        this.chunkCache = chunkCache;
+        this.columns = columns;
+        this.rows = Math.min(rows, blockStore.getRows());
+        this.rowPixels = rowPixels;
+        this.height = this.rows * rowPixels;
+        this.seaLevelRow = BlockStore.rowAt(terrain.getSeaLevel());
+        image = new BufferedImage(columns, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        setTag("minimap");
+        renderer().setRenderable(new MapRenderable());
+    }
+
+    /**
+     * Moves the map with the avatar, drawing only the columns it reveals. A move across more
+     * than the whole map, such as the first update, draws every column.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    @Override
+    public void update(float deltaTime) {
+        super.update(deltaTime);
+        int newFirstColumn = BlockStore.columnAt(MutableVector2.centerX(avatar)) - columns / 2;
+        int shift = newFirstColumn - firstColumn;
+        if (isEmpty || Math.abs(shift) >= columns) {
+            firstColumn = newFirstColumn;
+            isEmpty = false;
+            drawColumns(firstColumn, firstColumn + columns);
+        } else if (shift > 0) {
+            firstColumn = newFirstColumn;
+            drawColumns(firstColumn + columns - shift, firstColumn + columns);
+        } else if (shift < 0) {
+            firstColumn = newFirstColumn;
+            drawColumns(firstColumn, firstColumn - shift);
+        }
+    }
+
+    /**
+     * Draws a column again after one of its cells changed, if it is on the map.
+     *
+     * @param column The column of the changed cell.
+     * @param row The row of the changed cell.
+     */
+    public void onBlockChanged(int column, int row) {
+        if (!isEmpty && column >= firstColumn && column < firstColumn + columns) {
+            drawColumns(column, column + 1);
+        }
+    }
+
+    /**
+     * Draws the columns of a chunk again when it is created, so the edits applied to it show.
+     *
+     * @param chunk The chunk index.
+     */
+    public void onChunkLoaded(int chunk) {
+        int first = Math.max(chunk * BlockStore.CHUNK_COLUMNS, firstColumn);
+        int last = Math.min((chunk + 1) * BlockStore.CHUNK_COLUMNS, firstColumn + columns);
+        if (!isEmpty && first < last) {
+            drawColumns(first, last);
+        }
+    }
+
+    /**
+     * Draws a range of world columns into their image columns: the sky, the water of a lake,
+     * the ground in its biome's color, and the trees of the range.
+     *
+     * @param from The first world column.
+     * @param to The world column after the last one.
+     */
+    private void drawColumns(int from, int to) {
+        ChunkData data = null;
+        for (int column = from; column < to; column++) {
+            int chunk = BlockStore.chunkOf(column);
+            if (data == null || data.getIndex() != chunk) {
+                data = chunkCache.get(chunk);
+            }
+            int surfaceRow = blockStore.isGenerated(chunk) ? blockStore.surfaceRow(column)
+                    : BlockStore.rowAt(data.getGroundHeight(column));
+            surfaceRow = Math.min(Math.max(surfaceRow, 0), rows);
+            int x = Math.floorMod(column, columns);
+            int waterRow = Math.max(Math.min(seaLevelRow, surfaceRow), 0);
+            fillColumn(x, 0, waterRow, SKY_ARGB);
+            fillColumn(x, waterRow, surfaceRow, WATER_ARGB);
+            fillColumn(x, surfaceRow, rows, data.getBiome(column).getGroundColor().getRGB());
+            drawTrees(data.getTrees(), column, surfaceRow, x);
+        }
+    }
+
+    /**
+     * Draws the trees that grow in a column over the column's sky.
+     *
+     * @param trees The layout of the column's chunk.
+     * @param column The world column.
+     * @param surfaceRow The column's surface row.
+     * @param x The image column.
+     */
+    private void drawTrees(TreeLayout trees, int column, int surfaceRow, int x) {
+        for (int tree = 0; tree < trees.getTreeCount(); tree++) {
+            if (BlockStore.columnAt(trees.getTreeX(tree)) == column) {
+                fillColumn(x, Math.max(surfaceRow - TREE_PIXELS, 0), surfaceRow, TREE_ARGB);
+            }
+        }
+    }
+
+    /**
+     * Fills a run of pixels of an image column.
+     *
+     * @param x The image column.
+     * @param fromRow The first row.
+     * @param toRow The row after the last one.
+     * @param argb The color.
+     */
+    private void fillColumn(int x, int fromRow, int toRow, int argb) {
+        for (int y = fromRow * rowPixels; y < toRow * rowPixels; y++) {
+            pixels[y * columns + x] = argb;
+        }
+    }
+
+    /**
+     * Draws the ring in two parts, from its start to the image's right edge and then from the
+     * image's left edge, and marks the avatar over it. Neither part is scaled, which keeps
+     * drawing the image on Java2D's fast path.
+     */
+    private class MapRenderable implements Renderable {
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            int left = (int) topLeftCorner.x();
+            int top = (int) topLeftCorner.y();
+            int start = Math.floorMod(firstColumn, columns);
+            int split = left + columns - start;
+            g.drawImage(image, left, top, split, top + height, start, 0, columns, height, null);
+            g.drawImage(image, split, top, left + columns, top + height, 0, 0, start, height, null);
+            float avatarColumn = MutableVector2.centerX(avatar) / Block.SIZE - firstColumn;
+            float avatarRow = MutableVector2.centerY(avatar) / Block.SIZE;
+            g.setColor(AVATAR_COLOR);
+            g.fillRect(left + (int) avatarColumn - AVATAR_PIXELS / 2,
+                    top + (int) (avatarRow * rowPixels) - AVATAR_PIXELS / 2, AVATAR_PIXELS, AVATAR_PIXELS);
+            g.setColor(BORDER_COLOR);
+            g.drawRect(left, top, columns - 1, height - 1);
+        }
+    }
+}
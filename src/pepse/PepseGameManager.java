@@ -3,25 +3,59 @@ package pepse;
 import danogl.GameManager;
 import danogl.GameObject;
 import danogl.collisions.Layer;
-import danogl.components.Component;
+import danogl.components.CoordinateSpace;
 import danogl.gui.ImageReader;
 import danogl.gui.SoundReader;
 import danogl.gui.UserInputListener;
 import danogl.gui.WindowController;
+import danogl.gui.rendering.Camera;
 import danogl.gui.rendering.ImageRenderable;
 import danogl.gui.rendering.Renderable;
 import danogl.gui.rendering.TextRenderable;
 import danogl.util.Vector2;
+import pepse.net.PepseClient;
+import pepse.net.PepseServer;
+import pepse.net.ServerWorld;
+import pepse.util.AllocationProbe;
+import pepse.util.FixedStepScheduler;
+import pepse.util.FrameTimeStats;
+import pepse.util.GameClock;
+import pepse.util.GameSnapshot;
+import pepse.util.InputRecording;
+import pepse.util.JobScheduler;
+import pepse.util.MutableVector2;
+import pepse.util.ReplayInputListener;
+import pepse.util.SnapshotWriter;
 import pepse.world.Avatar;
 import pepse.world.Block;
+import pepse.world.ChunkCache;
+import pepse.world.ChunkData;
+import pepse.world.CloudLayers;
+import pepse.world.GroundFill;
 import pepse.world.Sky;
 import pepse.world.Terrain;
+import pepse.world.TerrainEditor;
+import pepse.world.WorldRegions;
+import pepse.world.WorldStreamer;
+import pepse.world.daynight.DayNightCycle;
+import pepse.world.daynight.LightMap;
 import pepse.world.daynight.Night;
 import pepse.world.daynight.Sun;
 import pepse.world.daynight.SunHalo;
+import pepse.world.nav.NavGraph;
 import pepse.world.trees.*;
+import pepse.world.water.WaterSimulation;
 
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Extends GameManager to create a custom game initialization and setup for the PEPSE game.
@@ -29,13 +63,122 @@ import java.util.List;
  * the avatar, and interactive objects like trees, leaves, and fruits.
  */
 public class PepseGameManager extends GameManager {
+    private static final int DEFAULT_SEED = 0; // Seed of a new world.
+    private static final int TICKS_PER_SECOND = 60; // The rate gameplay rules run at.
+    private static final int MAX_TICKS_PER_FRAME = 5; // The most ticks run in one frame to catch up.
+    private static final int FRUIT_LIGHT = 10; // The light a fruit gives at night.
+    private static final float DAY_NIGHT_CYCLE_LENGTH = 60; // The length of a day, in seconds.
+    private static final Vector2 SERVER_VIEW_DIMENSIONS = new Vector2(1200, 800); // A server's terrain layout.
+    private static final float SERVER_REPORT_INTERVAL = 10; // Seconds between a server's reports.
+    private static final float RECONCILE_TOLERANCE = 2; // Drift from the server's avatar left alone, in pixels.
+    private static final float RECONCILE_SNAP_DISTANCE = 2 * Block.SIZE; // Drift corrected at once.
+    private static final float RECONCILE_RATE = 0.3f; // Fraction of a smaller drift corrected per snapshot.
+    private static final int SAVE_KEY = KeyEvent.VK_F5; // The key that saves the game.
+    private static final int MINIMAP_COLUMNS = 400; // The terrain columns the minimap covers.
+    private static final int MINIMAP_ROWS = 32; // The upper terrain rows, where the surface is, on the minimap.
+    private static final int MINIMAP_ROW_PIXELS = 2; // The height of a row on the minimap, to show the relief.
+    private static final float MINIMAP_MARGIN = 10; // The minimap's distance from the window's corner.
+    // How far past the view's edge trees show their leaves, more than a canopy reaches from its trunk.
+    private static final float FOLIAGE_MARGIN = 3 * Block.SIZE;
+
+    private final GameOptions options; // The options the game was started with.
+    private final WorldRegions worldRegions = // Updates leaves and fruits in parallel, per region.
+            new WorldRegions(Runtime.getRuntime().availableProcessors());
+    private final FixedStepScheduler tickScheduler = // Runs gameplay rules at a fixed tick rate.
+            new FixedStepScheduler(TICKS_PER_SECOND, MAX_TICKS_PER_FRAME);
+    private final GameClock gameClock = new GameClock(); // The time simulated since the world was created.
+    private final DayNightCycle dayNightCycle = // The time of day the sun and night follow.
+            new DayNightCycle(DAY_NIGHT_CYCLE_LENGTH);
+    private JobScheduler jobScheduler; // Spreads deferred work over frames, within a budget.
+    private final SnapshotWriter snapshotWriter = new SnapshotWriter(); // Saves games in the background.
+    private final Map<Long, Fruit> fruitsById = new LinkedHashMap<>(); // Every fruit, by its stable id.
+    private final Map<Long, Integer> savedFruits = new HashMap<>(); // Snapshot index of each saved fruit.
+    private GameSnapshot loadedSnapshot; // The saved game being resumed, or null.
+    private int seed = DEFAULT_SEED; // The seed of the world.
+    private InputRecording recording; // The recording being written, when recording.
+    private ReplayInputListener replayListener; // The stand-in listener, when replaying.
+    private final FrameTimeStats frameTimeStats = new FrameTimeStats(); // Frame times of a replay.
+    private AllocationProbe allocationProbe; // Bytes a replayed frame allocates, when measured.
+    private boolean hasFailedCheck; // Whether a replay exceeded a limit it was checked against.
+    private long lastFrameNanos; // Time of the previous frame, for measuring frame times.
+    private WindowController windowController; // Kept for closing the window after a replay.
+    private Avatar avatar; // The player's avatar.
+    private FoliageLod foliageLod; // Switches trees between leaves and canopy sprites by distance.
+    private LightMap lightMap; // Lights the terrain at night.
+    private GroundFill groundFill; // Draws the buried ground behind the terrain's blocks.
+    private NavGraph navGraph; // Where agents can walk and jump, for finding paths over the terrain.
+    private WaterSimulation water; // The water in the terrain's valleys.
+    private TerrainEditor terrainEditor; // Digs and places blocks, and keeps the terrain's blocks.
+    private Minimap minimap; // The map of the terrain around the avatar.
+    private UserInputListener liveInputListener; // The keyboard listener, sampled when recording.
+    private boolean wasSaveKeyPressed; // Whether the save key was held in the previous frame.
+    private Terrain terrain; // The terrain, created chunk by chunk.
+    private Flora flora; // Places the trees, chunk by chunk.
+    private ChunkCache chunkCache; // The generated data of recent chunks, for creating them again.
+    private WorldStreamer worldStreamer; // Creates the world over the first frames.
+    private long startNanos; // Time the game started initializing, for the time to the first frame.
+    private boolean hasDrawnFirstFrame; // Whether the first frame was drawn.
+    private boolean isStreaming = true; // Whether the world is still being created.
+    private FallingLeaves fallingLeaves; // Leaves falling from the canopies in view.
+    private CloudLayers cloudLayers; // The parallax clouds in front of the sky.
+    private FruitRegrowth fruitRegrowth; // Grows eaten fruits back when they are in view.
+    private WorldStats worldStats; // Live statistics of the world, published over JMX.
+    private float lastUpdateMillis; // The time the last frame's update took, in milliseconds.
+    private PepseClient client; // The connection to the server of a shared world, or null.
+    private Renderable remoteAvatarImage; // How the other players' avatars look.
+    private final Map<Integer, GameObject> remoteAvatars = new HashMap<>(); // Other players' avatars, by id.
+
+    /**
+     * Constructor for a new game played live, with the default options.
+     */
+    public PepseGameManager() {
+        this(GameOptions.parse(new String[0]));
+    }
+
+    /**
+     * Constructor for a game started with the given options, which may record its input,
+     * replay a previous recording or resume a saved game.
+     *
+     * @param options The options of the game.
+     */
+    public PepseGameManager(GameOptions options) {
+        this.options = options;
+    }
+
     /**
      * Main method to start the game.
      *
-     * @param args Command line arguments (not used).
+     * @param args Command line arguments, as described in GameOptions.parse.
      */
     public static void main(String[] args) {
-        new PepseGameManager().run();
+        GameOptions options = GameOptions.parse(args);
+        if (options.getServerPort() >= 0) {
+            runServer(options.getServerPort(), options.getChunkCacheBytes());
+            return;
+        }
+        PepseGameManager game = new PepseGameManager(options);
+        game.run();
+        if (game.hasFailedCheck) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Serves a shared world without a window, until the process is stopped, and reports what
+     * the connected clients cost from time to time.
+     *
+     * @param port The port to serve on, or 0 for any free port.
+     * @param chunkCacheBytes The memory budget of the generated chunk data kept for reloading.
+     */
+    private static void runServer(int port, long chunkCacheBytes) {
+        ServerWorld world = new ServerWorld(DEFAULT_SEED, SERVER_VIEW_DIMENSIONS, DAY_NIGHT_CYCLE_LENGTH,
+                chunkCacheBytes);
+        try (PepseServer server = new PepseServer(port, world, TICKS_PER_SECOND, SERVER_VIEW_DIMENSIONS.y())) {
+            System.out.println("Serving on port " + server.getPort());
+            server.run(SERVER_REPORT_INTERVAL);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -49,74 +192,563 @@ public class PepseGameManager extends GameManager {
     @Override
     public void initializeGame(ImageReader imageReader, SoundReader soundReader,
                                UserInputListener inputListener, WindowController windowController) {
+        startNanos = System.nanoTime();
         super.initializeGame(imageReader, soundReader, inputListener, windowController);
+        this.windowController = windowController;
+        this.liveInputListener = inputListener;
+        windowController.setTargetFramerate(options.getTargetFramerate());
+        jobScheduler = new JobScheduler(gameClock, options.getFrameBudget());
+        // The game time advances with the ticks, before any other rule of a tick runs, so
+        // regrowth and eating times do not depend on the frame rate.
+        tickScheduler.addTickCallback(() -> gameClock.advance(tickScheduler.getTickLength()));
+        if (options.getLoadFile() != null) {
+            // Resume the saved game on the world it was saved on.
+            loadSnapshot();
+        }
+        if (options.getReplayFile() != null) {
+            // Replay the recorded keys on the same world they were recorded on.
+            try {
+                InputRecording replayed = InputRecording.load(options.getReplayFile());
+                seed = replayed.getSeed();
+                replayListener = new ReplayInputListener(replayed, inputListener);
+                inputListener = replayListener;
+                if (options.getMaxFrameAllocation() >= 0) {
+                    allocationProbe = new AllocationProbe();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (options.getRecordFile() != null) {
+            recording = new InputRecording(seed);
+            // Save the recording when the game window is closed.
+            Runtime.getRuntime().addShutdownHook(new Thread(this::saveRecording));
+        }
+        // The terrain is laid out for the window, or for the view a shared world is laid out for.
+        Vector2 terrainDimensions = windowController.getWindowDimensions();
+        if (options.getConnectHost() != null) {
+            // Play in the shared world, which grows from the server's seed.
+            try {
+                client = new PepseClient(options.getConnectHost(), options.getConnectPort());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            seed = client.getSeed();
+            terrainDimensions = new Vector2(terrainDimensions.x(), client.getViewHeight());
+            remoteAvatarImage = imageReader.readImage(Avatar.AVATAR_IMAGE_PATH, true);
+        }
         // Create the sky and add it to the background layer.
         GameObject sky = Sky.create(windowController.getWindowDimensions());
         gameObjects().addGameObject(sky, Layer.BACKGROUND);
-        // Generate the terrain and populate it with blocks.
-        Terrain terrain = new Terrain(windowController.getWindowDimensions(), 0);
-        List<Block> blocks = terrain.createInRange(0, (int) Math.floor(
-                windowController.getWindowDimensions().x()));
-        for (Block block : blocks) {
-            gameObjects().addGameObject(block, Layer.STATIC_OBJECTS);
+        // Create the cloud layers in front of the sky, far to near.
+        cloudLayers = new CloudLayers(windowController.getWindowDimensions(), seed);
+        for (GameObject layer : cloudLayers.getLayers()) {
+            gameObjects().addGameObject(layer, Layer.BACKGROUND);
+        }
+        // Generate the terrain; its blocks are created chunk by chunk by the world streamer.
+        terrain = new Terrain(terrainDimensions, seed);
+        if (loadedSnapshot != null) {
+            // The saved edits are recorded before any chunk is created, which applies them.
+            for (int i = 0; i < loadedSnapshot.getEditedChunkCount(); i++) {
+                terrain.getEdits().recordLog(loadedSnapshot.getEditedChunk(i), loadedSnapshot.getEditLog(i));
+            }
         }
+        groundFill = new GroundFill(terrain, gameObjects());
         // Create the night overlay and add it to the background.
-        GameObject night = Night.create(windowController.getWindowDimensions(), 30);
+        GameObject night = Night.create(windowController.getWindowDimensions(), dayNightCycle);
 
         gameObjects().addGameObject(night, Layer.BACKGROUND);
+        // Light the terrain, blending its darkness with the night overlay's.
+        lightMap = new LightMap(terrain.getBlockStore(), gameObjects(),
+                () -> Night.opacityAt(dayNightCycle.getPhase()) / Night.MIDNIGHT_OPACITY);
+        // The navigation graph is built chunk by chunk, when paths are first searched there.
+        navGraph = new NavGraph(terrain.getBlockStore());
+        // Water fills the valleys below the sea level, and only moving water is simulated.
+        water = new WaterSimulation(terrain.getBlockStore(), gameObjects(), terrain.getSeaLevel());
+        tickScheduler.addTickCallback(water::tick);
         // Create the sun and its halo, then align the halo to the sun's position
-        GameObject sun = Sun.create(windowController.getWindowDimensions(), 60);
+        GameObject sun = Sun.create(windowController.getWindowDimensions(), dayNightCycle);
         gameObjects().addGameObject(sun, Layer.BACKGROUND);
         GameObject sunHalo = SunHalo.create(sun);
-
-        sunHalo.addComponent(new Component() {
-            @Override
-            public void update(float deltaTime) {
-                sunHalo.setCenter(sun.getCenter());
-            }
-        });
         gameObjects().addGameObject(sunHalo, Layer.BACKGROUND);
 
 
         // Initialize the avatar's position and create the avatar object.
-        Vector2 initialPosition = new Vector2(0, terrain.groundHeightAt(0) - 30);
+        Vector2 spawnPosition = new Vector2(0, terrain.groundHeightAt(0) - 30);
+        Vector2 initialPosition = loadedSnapshot == null ? spawnPosition
+                : new Vector2(loadedSnapshot.getAvatarX(), loadedSnapshot.getAvatarY());
 
         GameObject energyDisplay = new EnergyDisplay(Vector2.ZERO, new Vector2(40, 40), 100);
+        energyDisplay.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
         gameObjects().addGameObject(energyDisplay);
-        GameObject avatar = new Avatar(initialPosition, inputListener, imageReader, newEnergy ->
+        avatar = new Avatar(initialPosition, inputListener, imageReader, newEnergy ->
                 ((EnergyDisplay) energyDisplay).updateEnergy(newEnergy), gameObjects());
         gameObjects().addGameObject(avatar, Layer.DEFAULT);
+        avatar.setGameClock(gameClock);
+        avatar.setJobScheduler(jobScheduler);
+        fruitRegrowth = new FruitRegrowth(gameObjects(), gameClock);
+        avatar.setFruitRegrowth(fruitRegrowth);
+        if (loadedSnapshot != null) {
+            avatar.setVelocity(new Vector2(loadedSnapshot.getAvatarVelocityX(),
+                    loadedSnapshot.getAvatarVelocityY()));
+            avatar.setEnergy(loadedSnapshot.getEnergy());
+        }
+        tickScheduler.addTickCallback(avatar::tick);
+        // Pickups are applied in the regions' merge phase, after the regions update in parallel.
+        avatar.setInteractionQueue(worldRegions::post);
+        if (client != null) {
+            // In a shared world, the server decides which fruits are eaten, from its copy of the
+            // avatar, which reconciliation keeps where the player sees the avatar.
+            avatar.setInteractionQueue((x, interaction) -> { });
+            tickScheduler.addTickCallback(this::sendNetworkInput);
+        }
+        if (recording != null) {
+            tickScheduler.addTickCallback(() -> recording.recordTick(liveInputListener));
+        }
+        if (replayListener != null) {
+            tickScheduler.addTickCallback(replayListener::advanceTick);
+        }
+        // Follow the avatar, keeping the view of a new game where the spawn point shows it.
+        Vector2 windowDimensions = windowController.getWindowDimensions();
+        setCamera(new Camera(avatar, windowDimensions.mult(0.5f).subtract(spawnPosition),
+                windowDimensions, windowDimensions));
 
         // Create flora (trees) and set interactions with the avatar.
-        Flora flora = new Flora(windowController, terrain, gameObjects());
-        List<GameObject> trees = flora.createInRange(0, (int) windowController.getWindowDimensions().x());
+        flora = new Flora(windowController, terrain, gameObjects(), seed);
+        // Chunks are created from generated data, which is kept for creating them again.
+        chunkCache = new ChunkCache(options.getChunkCacheBytes(), terrain, flora);
+        foliageLod = new FoliageLod(gameObjects());
+        // The camera follows the avatar, so every tree in view is within half the view's width.
+        foliageLod.setNearRadius(windowDimensions.x() / 2 + FOLIAGE_MARGIN);
+        // Leaves fall from the canopies in view, updated once per tick.
+        fallingLeaves = new FallingLeaves(terrain, FallingLeaves.DEFAULT_CAPACITY, seed);
+        gameObjects().addGameObject(fallingLeaves, Layer.FOREGROUND);
+        tickScheduler.addTickCallback(() -> fallingLeaves.tick(tickScheduler.getTickLength()));
+        // Edits update the blocks they expose or bury, and everything cached about the cells.
+        terrainEditor = new TerrainEditor(terrain, gameObjects());
+        terrainEditor.addListener(groundFill::onBlockChanged);
+        terrainEditor.addListener(lightMap::onBlockChanged);
+        terrainEditor.addListener(navGraph::onBlockChanged);
+        terrainEditor.addListener(water::onBlockChanged);
+        terrainEditor.addListener(fallingLeaves::onBlockChanged);
+        if (client == null) {
+            avatar.setTerrainEditor(terrainEditor);
+        }
+        // Show a map of the terrain around the avatar in the window's top-right corner, drawn
+        // as the avatar reveals new columns.
+        minimap = new Minimap(new Vector2(windowDimensions.x() - MINIMAP_COLUMNS - MINIMAP_MARGIN,
+                MINIMAP_MARGIN), MINIMAP_COLUMNS, MINIMAP_ROWS, MINIMAP_ROW_PIXELS, avatar, terrain,
+                chunkCache);
+        gameObjects().addGameObject(minimap, Layer.UI);
+        terrainEditor.addListener(minimap::onBlockChanged);
+        // Publish live statistics of the world over JMX.
+        worldStats = new WorldStats(gameObjects(), avatar, fruitRegrowth, jobScheduler, worldRegions,
+                terrain.getBlockStore(), lightMap, foliageLod, chunkCache, water);
+        worldStats.register();
+        // Create the region in view before the first frame, and the rest of the world over the
+        // following frames, nearest to the avatar first.
+        worldStreamer = new WorldStreamer(this::createChunk, jobScheduler);
+        float viewMinX = avatar.getTopLeftCorner().x() - spawnPosition.x();
+        worldStreamer.createRange(viewMinX, viewMinX + windowDimensions.x());
+        // The world is centered on the view of a new game, wherever a saved game resumes.
+        float worldWidth = Math.max(options.getWorldWidth(), windowDimensions.x());
+        float worldCenterX = windowDimensions.x() / 2;
+        worldStreamer.enqueueRange(worldCenterX - worldWidth / 2, worldCenterX + worldWidth / 2,
+                avatar.getCenter().x());
+        foliageLod.update(avatar.getCenter().x());
+
+
+    }
+
+    /**
+     * Creates the content of a chunk of the world: its terrain blocks and ground fill, water and
+     * light, and its trees with their leaves and fruits. They are created from the chunk's
+     * generated data, which the chunk cache keeps.
+     *
+     * @param chunk The chunk index.
+     */
+    private void createChunk(int chunk) {
+        ChunkData data = chunkCache.get(chunk);
+        terrainEditor.addBlocks(terrain.createChunk(data));
+        groundFill.loadChunk(chunk);
+        water.loadChunk(chunk);
+        lightMap.loadChunk(chunk);
+        navGraph.onChunkLoaded(chunk);
+        minimap.onChunkLoaded(chunk);
+        List<GameObject> trees = flora.createFromLayout(data.getTrees());
         for (GameObject tree : trees) {
-            //Create tree trunk
-            gameObjects().addGameObject(((Tree) tree).getTrunk(), Layer.DEFAULT);
+            //Create tree trunk, which agents cannot walk through
+            GameObject trunk = ((Tree) tree).getTrunk();
+            gameObjects().addGameObject(trunk, Layer.DEFAULT);
+            navGraph.addObstacle(trunk.getTopLeftCorner().x(), trunk.getTopLeftCorner().y(),
+                    trunk.getDimensions().x());
             // add callback to react to avatar jump
-            ((Avatar) avatar).addJumpCallback(((Tree) tree).getTrunk()::changeColor);
-            //create tree leaves
+            avatar.addJumpCallback(tree.getCenter().x(), ((Tree) tree).getTrunk()::changeColor);
+            //create tree leaves, shown by the foliage level of detail when the tree is near
+            foliageLod.add((Tree) tree);
+            GameObject canopy = ((Tree) tree).getCanopy();
+            fallingLeaves.addEmitter(canopy.getTopLeftCorner(), canopy.getDimensions());
             TreeLeaves leaves = ((Tree) tree).getTreeLeaves();
             for (GameObject leaf : leaves) {
-
-
-                gameObjects().addGameObject(leaf, Layer.STATIC_OBJECTS);
+                worldRegions.add((Leaf) leaf);
                 // add callback to react to avatar jump
 
-                ((Avatar) avatar).addJumpCallback(() -> ((Leaf) leaf).reactToJump());
+                avatar.addJumpCallback(leaf.getCenter().x(), () -> ((Leaf) leaf).reactToJump());
             }
             Fruits fruits = (((Tree) tree).getFruits());
+            long treeColumn = Math.floorDiv((int) tree.getTopLeftCorner().x(), Block.SIZE);
+            int fruitIndex = 0;
             for (GameObject fruit : fruits) {
                 //create tree fruits
                 gameObjects().addGameObject(fruit, Layer.DEFAULT);
-                // add callback to react to avatar jump
+                worldRegions.add((Fruit) fruit);
+                // fruits are identified by their tree's column, which the seed fixes
+                long fruitId = (treeColumn << 8) | fruitIndex++;
+                fruitsById.put(fruitId, (Fruit) fruit);
+                restoreFruit(fruitId, (Fruit) fruit);
+                if (client != null) {
+                    applyFruitFlags((Fruit) fruit, client.getFruitFlags(fruitId));
+                }
+                // fruits glow at night until they are eaten
+                lightMap.addLightSource(fruit.getCenter(), FRUIT_LIGHT, () -> !((Fruit) fruit).isEaten());
+                // add callback to react to avatar jump; in a shared world, the server recolors fruits
+                if (client == null) {
+                    avatar.addJumpCallback(fruit.getCenter().x(), () -> ((Fruit) fruit).reactToJump());
+                }
+            }
 
-                ((Avatar) avatar).addJumpCallback(() -> ((Fruit) fruit).reactToJump());
+        }
+    }
+
+    /**
+     * Reports how long the first frame and the whole world took to appear, while the world is
+     * streamed in by the job scheduler.
+     */
+    private void updateStreaming() {
+        if (!hasDrawnFirstFrame) {
+            hasDrawnFirstFrame = true;
+            System.out.printf("First frame after %.1f ms, %d of %d chunks created%n",
+                    (System.nanoTime() - startNanos) / 1e6, worldStreamer.getCreatedCount(),
+                    worldStreamer.getCreatedCount() + worldStreamer.getPendingCount());
+        }
+        if (!isStreaming) {
+            return;
+        }
+        if (worldStreamer.isDone()) {
+            isStreaming = false;
+            System.out.printf("World of %d chunks created after %.1f ms; %s%n",
+                    worldStreamer.getCreatedCount(), (System.nanoTime() - startNanos) / 1e6,
+                    jobScheduler);
+            if (options.getScalingReportFrames() > 0) {
+                System.out.print(worldRegions.reportScaling(options.getScalingReportFrames()));
             }
+        }
+    }
 
+    /**
+     * Reads the saved game to resume, and restores the state that is needed before the world
+     * is created: its seed and the time. The terrain edits, the avatar and the fruits are
+     * restored as they are created.
+     */
+    private void loadSnapshot() {
+        try {
+            loadedSnapshot = GameSnapshot.load(options.getLoadFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        seed = loadedSnapshot.getSeed();
+        gameClock.set(loadedSnapshot.getGameTime());
+        dayNightCycle.setPhase(loadedSnapshot.getDayPhase());
+        for (int i = 0; i < loadedSnapshot.getFruitCount(); i++) {
+            savedFruits.put(loadedSnapshot.getFruitId(i), i);
+        }
+    }
 
+    /**
+     * Restores a newly created fruit to how it was saved, if the saved game changed it.
+     * An eaten fruit is taken off its tree and grows back after the time it had left.
+     *
+     * @param fruitId The id of the fruit.
+     * @param fruit The fruit, as it grew from the seed.
+     */
+    private void restoreFruit(long fruitId, Fruit fruit) {
+        Integer index = savedFruits.remove(fruitId);
+        if (index == null) {
+            return;
+        }
+        byte flags = loadedSnapshot.getFruitFlags(index);
+        if ((flags & GameSnapshot.FRUIT_RECOLORED) != 0) {
+            fruit.reactToJump();
+        }
+        if ((flags & GameSnapshot.FRUIT_EATEN) != 0) {
+            double eatenAt = loadedSnapshot.getFruitEatenAt(index);
+            gameObjects().removeGameObject(fruit);
+            fruit.eat(eatenAt);
+            fruitRegrowth.add(fruit);
+        }
+    }
 
+    /**
+     * Sends the server of a shared world the keys of this tick, and keeps where the avatar got
+     * with the keys of the previous tick, which moved it in the frames since; the server
+     * applies the keys of each tick in a tick of its own, so the two positions can be compared.
+     * If the server is lost, the game goes on alone.
+     */
+    private void sendNetworkInput() {
+        if (client == null) {
+            return;
+        }
+        int tick = (int) tickScheduler.getTickCount();
+        client.recordPrediction(tick - 1, avatar.getTopLeftCorner().x(), avatar.getTopLeftCorner().y());
+        try {
+            client.sendInput(InputRecording.keyMask(liveInputListener), tick);
+        } catch (IOException e) {
+            System.err.println("Lost the server, playing alone: " + e.getMessage());
+            disconnect();
+        }
     }
-}
 
+    /**
+     * Exchanges state with the server of a shared world: applies what the latest snapshots
+     * changed, namely the fruits, the avatar's energy, the time of day and the other players'
+     * avatars, and reconciles the player's own avatar with the server's. The own avatar moves
+     * locally, so it responds at once. If the server is lost, the game goes on alone.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    private void updateNetwork(float deltaTime) {
+        try {
+            client.poll(deltaTime);
+        } catch (IOException e) {
+            System.err.println("Lost the server, playing alone: " + e.getMessage());
+            disconnect();
+            return;
+        }
+        reconcileAvatar();
+        client.drainFruitChanges((fruitId, flags) -> {
+            Fruit fruit = fruitsById.get(fruitId);
+            if (fruit != null) {
+                applyFruitFlags(fruit, flags);
+            }
+        });
+        int energy = client.getAvatarEnergy(client.getAvatarId());
+        if (energy >= 0 && energy != avatar.getEnergy()) {
+            avatar.setEnergy(energy);
+        }
+        dayNightCycle.setPhase(client.getDayPhase());
+        for (int id : client.getAvatarIds()) {
+            if (id == client.getAvatarId()) {
+                continue;
+            }
+            GameObject remoteAvatar = remoteAvatars.computeIfAbsent(id, newId -> {
+                GameObject created = new GameObject(Vector2.ZERO, Vector2.ONES.mult(Avatar.SIZE),
+                        remoteAvatarImage);
+                gameObjects().addGameObject(created, Layer.FOREGROUND);
+                return created;
+            });
+            remoteAvatar.setTopLeftCorner(client.getAvatarPosition(id));
+        }
+        remoteAvatars.entrySet().removeIf(entry -> {
+            if (client.getAvatarIds().contains(entry.getKey())) {
+                return false;
+            }
+            gameObjects().removeGameObject(entry.getValue(), Layer.FOREGROUND);
+            return true;
+        });
+    }
+
+    /**
+     * Corrects how far the player's avatar drifted from where the server has it after the same
+     * input, since the two move with different physics and the server may miss an input.
+     * A small drift is corrected a fraction per snapshot, so the avatar does not visibly jump;
+     * a large one, such as a step the server did not climb, at once.
+     */
+    private void reconcileAvatar() {
+        Vector2 error = client.takePredictionError();
+        if (error == null || error.magnitude() <= RECONCILE_TOLERANCE) {
+            return;
+        }
+        Vector2 correction = error.magnitude() > RECONCILE_SNAP_DISTANCE ? error : error.mult(RECONCILE_RATE);
+        avatar.setTopLeftCorner(avatar.getTopLeftCorner().add(correction));
+        client.shiftPredictions(correction.x(), correction.y());
+    }
+
+    /**
+     * Leaves the shared world: removes the other players' avatars, and lets the avatar eat
+     * fruits again.
+     */
+    private void disconnect() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // The connection is gone either way.
+        }
+        client = null;
+        for (GameObject remoteAvatar : remoteAvatars.values()) {
+            gameObjects().removeGameObject(remoteAvatar, Layer.FOREGROUND);
+        }
+        remoteAvatars.clear();
+        avatar.setInteractionQueue(worldRegions::post);
+    }
+
+    /**
+     * Shows a fruit the way the server of a shared world says it is: on its tree or eaten,
+     * and with the color it grew with or recolored.
+     *
+     * @param fruit The fruit.
+     * @param flags The fruit's GameSnapshot flags.
+     */
+    private void applyFruitFlags(Fruit fruit, byte flags) {
+        boolean isEaten = (flags & GameSnapshot.FRUIT_EATEN) != 0;
+        if (isEaten && !fruit.isEaten()) {
+            gameObjects().removeGameObject(fruit);
+            fruit.eat(gameClock.now());
+            fruit.setSleeping(true);
+        } else if (!isEaten && fruit.isEaten()) {
+            fruit.respawn();
+            fruit.setSleeping(false);
+            gameObjects().addGameObject(fruit, Layer.DEFAULT);
+        }
+        if (fruit.isRecolored() != ((flags & GameSnapshot.FRUIT_RECOLORED) != 0)) {
+            fruit.reactToJump();
+        }
+    }
+
+    /**
+     * Captures the state of the game that the seed does not determine. Only primitives are
+     * copied, so this is cheap enough to run on the game thread between two frames.
+     *
+     * @return The snapshot.
+     */
+    private GameSnapshot captureSnapshot() {
+        int count = 0;
+        long[] fruitIds = new long[fruitsById.size()];
+        byte[] fruitFlags = new byte[fruitsById.size()];
+        double[] fruitEatenAt = new double[fruitsById.size()];
+        for (Map.Entry<Long, Fruit> entry : fruitsById.entrySet()) {
+            Fruit fruit = entry.getValue();
+            byte flags = (byte) ((fruit.isEaten() ? GameSnapshot.FRUIT_EATEN : 0)
+                    | (fruit.isRecolored() ? GameSnapshot.FRUIT_RECOLORED : 0));
+            if (flags != 0) {
+                fruitIds[count] = entry.getKey();
+                fruitFlags[count] = flags;
+                fruitEatenAt[count] = fruit.getEatenAt();
+                count++;
+            }
+        }
+        int[] editedChunks = terrain.getEdits().getEditedChunks();
+        byte[][] editLogs = new byte[editedChunks.length][];
+        for (int i = 0; i < editedChunks.length; i++) {
+            editLogs[i] = terrain.getEdits().toLog(editedChunks[i]);
+        }
+        Vector2 position = avatar.getTopLeftCorner();
+        Vector2 velocity = avatar.getVelocity();
+        return new GameSnapshot(seed, gameClock.now(), dayNightCycle.getPhase(),
+                position.x(), position.y(), velocity.x(), velocity.y(), avatar.getEnergy(),
+                Arrays.copyOf(fruitIds, count), Arrays.copyOf(fruitFlags, count),
+                Arrays.copyOf(fruitEatenAt, count), editedChunks, editLogs);
+    }
+
+    /**
+     * Saves the game when the save key is pressed. The snapshot is captured in this frame and
+     * written to disk in the background.
+     */
+    private void updateSaving() {
+        boolean isSaveKeyPressed = liveInputListener.isKeyPressed(SAVE_KEY);
+        if (isSaveKeyPressed && !wasSaveKeyPressed) {
+            snapshotWriter.save(captureSnapshot(), options.getSaveFile());
+        }
+        wasSaveKeyPressed = isSaveKeyPressed;
+    }
+
+    /**
+     * Updates the game for a rendered frame, then runs the gameplay ticks that fit in the
+     * elapsed time. Input is recorded and replayed per tick, so a replay does not depend on
+     * the frame rate it is rendered at.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    @Override
+    public void update(float deltaTime) {
+        long updateStart = System.nanoTime();
+        if (allocationProbe != null) {
+            allocationProbe.beginFrame();
+        }
+        worldStats.update(deltaTime, lastUpdateMillis);
+        super.update(deltaTime);
+        dayNightCycle.advance(deltaTime);
+        updateSaving();
+        updateStreaming();
+        jobScheduler.runFrame();
+        float avatarX = MutableVector2.centerX(avatar);
+        foliageLod.update(avatarX);
+        fallingLeaves.setView(camera().getTopLeftCorner(), camera().getDimensions());
+        cloudLayers.update(deltaTime, camera().getTopLeftCorner().x());
+        if (client != null) {
+            updateNetwork(deltaTime);
+        }
+        // Only the fruits in view are checked for regrowth; the rest regrow when seen again.
+        Vector2 windowDimensions = windowController.getWindowDimensions();
+        fruitRegrowth.update(avatarX - windowDimensions.x(), avatarX + windowDimensions.x());
+        worldRegions.update(deltaTime);
+        // Ticks run before the textures are redrawn, so an edit made in a tick shows this frame.
+        tickScheduler.advance(deltaTime);
+        water.update();
+        lightMap.update();
+        if (allocationProbe != null) {
+            allocationProbe.endFrame(!isStreaming);
+        }
+        if (replayListener != null) {
+            updateReplay();
+        }
+        lastUpdateMillis = (System.nanoTime() - updateStart) / 1_000_000f;
+    }
+
+    /**
+     * Measures the frame time of a replayed frame, and reports the frame-time statistics
+     * once the whole recording was replayed.
+     */
+    private void updateReplay() {
+        long now = System.nanoTime();
+        if (lastFrameNanos != 0) {
+            frameTimeStats.addFrame((now - lastFrameNanos) / 1_000_000f);
+        }
+        lastFrameNanos = now;
+        if (!replayListener.isFinished()) {
+            return;
+        }
+        try {
+            Path baselineFile = options.getBaselineFile();
+            if (baselineFile == null) {
+                System.out.print(frameTimeStats);
+            } else if (Files.exists(baselineFile)) {
+                System.out.print(frameTimeStats.compareToBaseline(baselineFile));
+            } else {
+                frameTimeStats.saveBaseline(baselineFile);
+                System.out.print("Stored new baseline:\n" + frameTimeStats);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not use frame-time baseline: " + e.getMessage());
+        }
+        if (allocationProbe != null) {
+            System.out.print(allocationProbe);
+            if (allocationProbe.getMeanBytesPerFrame() > options.getMaxFrameAllocation()) {
+                System.out.printf("Allocation regression: more than the limit of %d bytes/frame%n",
+                        options.getMaxFrameAllocation());
+                hasFailedCheck = true;
+            }
+        }
+        replayListener = null;
+        windowController.closeWindow();
+    }
+
+    /**
+     * Saves the input recording to its file, called when the game exits.
+     */
+    private void saveRecording() {
+        try {
+            recording.save(options.getRecordFile());
+        } catch (IOException e) {
+            System.err.println("Could not save input recording: " + e.getMessage());
+        }
+    }
+}
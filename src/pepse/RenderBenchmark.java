@@ -0,0 +1,269 @@
+package pepse;
+
+import danogl.GameObject;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.Sky;
+import pepse.world.Terrain;
+import pepse.world.daynight.DayNightCycle;
+import pepse.world.daynight.Night;
+import pepse.world.daynight.Sun;
+import pepse.world.daynight.SunHalo;
+import pepse.world.trees.Flora;
+import pepse.world.trees.FoliageLod;
+import pepse.world.trees.Tree;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measures how long it takes to render frames of a generated world, without a window.
+ * Frames are drawn into an offscreen BufferedImage through Graphics2D, the same way the game
+ * draws each renderable, and every draw is counted per layer and per renderable type.
+ * Each world is rendered three ways, to show what culling and the canopy sprites save:
+ * every object in full detail, only the objects in view, and only the objects in view with
+ * far trees drawn as canopies.
+ */
+public class RenderBenchmark {
+    /**
+     * constants that are used through the class
+     */
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1200, 800); // Size of a frame.
+    private static final int SEED = 0; // Seed of the benchmarked worlds.
+    private static final int WARMUP_FRAMES = 20; // Frames drawn before measuring.
+    private static final int DEFAULT_FRAMES = 100; // Frames measured for each configuration.
+    private static final int[] LAYERS = {Layer.BACKGROUND, Layer.STATIC_OBJECTS, Layer.DEFAULT};
+    private static final String[] LAYER_NAMES = {"BACKGROUND", "STATIC_OBJECTS", "DEFAULT"};
+    private static final float[] DEFAULT_WIDTHS = {1200, 4800, 19200}; // World widths, in pixels.
+    private static final float[] DEFAULT_DENSITIES = {0.05f, Flora.DEFAULT_TREE_DENSITY, 0.2f};
+
+    /**
+     * How a frame selects what to draw.
+     */
+    private enum Mode {
+        /** Every object, with every tree's leaves. */
+        ALL,
+        /** Only the objects in view, with every tree's leaves. */
+        CULLED,
+        /** Only the objects in view, with far trees drawn as their canopy sprite. */
+        CULLED_LOD
+    }
+
+    /**
+     * An object of the benchmarked scene, with where it is drawn.
+     */
+    private static class Drawable {
+        private final GameObject object; // The object to draw.
+        private final int layer; // The layer the object is drawn in.
+        private final boolean isOnScreen; // Whether the object is in camera coordinates.
+
+        Drawable(GameObject object, int layer, boolean isOnScreen) {
+            this.object = object;
+            this.layer = layer;
+            this.isOnScreen = isOnScreen;
+        }
+    }
+
+    /**
+     * A generated world, split into the objects drawn in every mode and the trees whose
+     * leaves or canopy are drawn depending on the mode.
+     */
+    private static class Scene {
+        private final List<Drawable> drawables = new ArrayList<>(); // Objects drawn in every mode.
+        private final List<Tree> trees = new ArrayList<>(); // The trees, whose foliage depends on the mode.
+    }
+
+    private final Map<String, Integer> drawsPerLayer = new LinkedHashMap<>(); // Draws in the last frame.
+    private final Map<String, Integer> drawsPerType = new TreeMap<>(); // Draws in the last frame.
+
+    /**
+     * Runs the benchmark.
+     * Arguments: "--widths W1,W2,..." to set the world widths, "--densities D1,D2,..." to set
+     * the tree densities, and "--frames N" to set the number of measured frames.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        float[] widths = DEFAULT_WIDTHS;
+        float[] densities = DEFAULT_DENSITIES;
+        int frames = DEFAULT_FRAMES;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--widths":
+                    widths = parseList(args[i + 1]);
+                    break;
+                case "--densities":
+                    densities = parseList(args[i + 1]);
+                    break;
+                case "--frames":
+                    frames = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        RenderBenchmark benchmark = new RenderBenchmark();
+        for (float width : widths) {
+            for (float density : densities) {
+                Scene scene = createScene(width, density);
+                for (Mode mode : Mode.values()) {
+                    System.out.println(benchmark.measure(scene, mode, frames, width, density));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of numbers.
+     *
+     * @param list The list.
+     * @return The numbers.
+     */
+    private static float[] parseList(String list) {
+        String[] items = list.split(",");
+        float[] values = new float[items.length];
+        for (int i = 0; i < items.length; i++) {
+            values[i] = Float.parseFloat(items[i].trim());
+        }
+        return values;
+    }
+
+    /**
+     * Generates a world centered on the view, the way the game does.
+     *
+     * @param width The width of the world, in pixels.
+     * @param density The chance of a tree in each column.
+     * @return The scene.
+     */
+    private static Scene createScene(float width, float density) {
+        Scene scene = new Scene();
+        DayNightCycle cycle = new DayNightCycle(1);
+        GameObject sun = Sun.create(WINDOW_DIMENSIONS, cycle);
+        scene.drawables.add(new Drawable(Sky.create(WINDOW_DIMENSIONS), Layer.BACKGROUND, true));
+        scene.drawables.add(new Drawable(Night.create(WINDOW_DIMENSIONS, cycle), Layer.BACKGROUND, true));
+        scene.drawables.add(new Drawable(sun, Layer.BACKGROUND, true));
+        scene.drawables.add(new Drawable(SunHalo.create(sun), Layer.BACKGROUND, true));
+        int minX = (int) (WINDOW_DIMENSIONS.x() - width) / 2;
+        int maxX = minX + (int) width - 1;
+        Terrain terrain = new Terrain(WINDOW_DIMENSIONS, SEED);
+        for (Block block : terrain.createInRange(minX, maxX)) {
+            scene.drawables.add(new Drawable(block, Layer.STATIC_OBJECTS, false));
+        }
+        Flora flora = new Flora(null, terrain, null, SEED);
+        flora.setTreeDensity(density);
+        for (GameObject object : flora.createInRange(minX, maxX)) {
+            Tree tree = (Tree) object;
+            scene.trees.add(tree);
+            scene.drawables.add(new Drawable(tree.getTrunk(), Layer.DEFAULT, false));
+            for (GameObject fruit : tree.getFruits()) {
+                scene.drawables.add(new Drawable(fruit, Layer.DEFAULT, false));
+            }
+        }
+        return scene;
+    }
+
+    /**
+     * Renders frames of a scene and formats how long they took and what they drew.
+     *
+     * @param scene The scene.
+     * @param mode How frames select what to draw.
+     * @param frames The number of frames to measure.
+     * @param width The width of the world, for the report.
+     * @param density The tree density, for the report.
+     * @return The report of the configuration.
+     */
+    private String measure(Scene scene, Mode mode, int frames, float width, float density) {
+        BufferedImage image = new BufferedImage((int) WINDOW_DIMENSIONS.x(), (int) WINDOW_DIMENSIONS.y(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            renderFrame(g, scene, mode);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            renderFrame(g, scene, mode);
+        }
+        double millisPerFrame = (System.nanoTime() - start) / 1e6 / frames;
+        g.dispose();
+        int draws = drawsPerLayer.values().stream().mapToInt(Integer::intValue).sum();
+        return String.format(Locale.ROOT,
+                "width %6.0f density %.2f %-10s %7.3f ms/frame %6d draws, per layer %s, per type %s",
+                width, density, mode, millisPerFrame, draws, drawsPerLayer, drawsPerType);
+    }
+
+    /**
+     * Renders a single frame of a scene, layer by layer, counting the draws.
+     *
+     * @param g The graphics to draw on.
+     * @param scene The scene.
+     * @param mode How the frame selects what to draw.
+     */
+    private void renderFrame(Graphics2D g, Scene scene, Mode mode) {
+        drawsPerLayer.clear();
+        drawsPerType.clear();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, (int) WINDOW_DIMENSIONS.x(), (int) WINDOW_DIMENSIONS.y());
+        // The view is the window at the origin, where the game starts, and the world is
+        // centered on it; objects in camera coordinates are never culled.
+        float viewCenterX = WINDOW_DIMENSIONS.x() / 2;
+        boolean isCulled = mode != Mode.ALL;
+        for (int i = 0; i < LAYERS.length; i++) {
+            int layer = LAYERS[i];
+            String layerName = LAYER_NAMES[i];
+            for (Drawable drawable : scene.drawables) {
+                if (drawable.layer == layer) {
+                    draw(g, drawable.object, layerName, isCulled && !drawable.isOnScreen);
+                }
+            }
+            if (layer != Layer.STATIC_OBJECTS) {
+                continue;
+            }
+            // Tree foliage is drawn with the static objects, as in the game.
+            for (Tree tree : scene.trees) {
+                boolean isNear = Math.abs(tree.getCenter().x() - viewCenterX) <= FoliageLod.DEFAULT_NEAR_RADIUS;
+                if (mode == Mode.CULLED_LOD && !isNear) {
+                    draw(g, tree.getCanopy(), layerName, true);
+                } else {
+                    for (GameObject leaf : tree.getTreeLeaves()) {
+                        draw(g, leaf, layerName, isCulled);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws an object with its renderable, unless it is culled for being out of view.
+     *
+     * @param g The graphics to draw on.
+     * @param object The object.
+     * @param layerName The name of the layer the object is drawn in, for counting.
+     * @param isCulled Whether objects out of view are skipped.
+     */
+    private void draw(Graphics2D g, GameObject object, String layerName, boolean isCulled) {
+        Renderable renderable = object.renderer().getRenderable();
+        if (renderable == null) {
+            return;
+        }
+        Vector2 topLeft = object.getTopLeftCorner();
+        Vector2 dimensions = object.getDimensions();
+        if (isCulled && (topLeft.x() + dimensions.x() < 0 || topLeft.x() > WINDOW_DIMENSIONS.x()
+                || topLeft.y() + dimensions.y() < 0 || topLeft.y() > WINDOW_DIMENSIONS.y())) {
+            return;
+        }
+        renderable.render(g, topLeft, dimensions, object.renderer().getRenderableAngle(),
+                false, false, object.renderer().getOpaqueness());
+        drawsPerLayer.merge(layerName, 1, Integer::sum);
+        drawsPerType.merge(renderable.getClass().getSimpleName(), 1, Integer::sum);
+    }
+}
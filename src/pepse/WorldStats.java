@@ -0,0 +1,244 @@
+package pepse;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import pepse.util.FrameTimeStats;
+import pepse.util.JobScheduler;
+import pepse.world.Avatar;
+import pepse.world.BlockStore;
+import pepse.world.ChunkCache;
+import pepse.world.WorldRegions;
+import pepse.world.daynight.LightMap;
+import pepse.world.trees.FoliageLod;
+import pepse.world.trees.FruitRegrowth;
+import pepse.world.water.WaterSimulation;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Publishes live statistics of the world over JMX, so a running game can be inspected without
+ * a profiler. The world is only ever touched on the game thread: statistics are sampled there
+ * about once a second into immutable copies that JMX threads read, and operations requested
+ * over JMX are queued and applied there at the start of the next frame.
+ */
+public class WorldStats implements WorldStatsMXBean {
+    /**
+     * constants that are used through the class
+     */
+    private static final String OBJECT_NAME = "pepse:type=WorldStats"; // The name the bean is registered under.
+    private static final float SAMPLE_INTERVAL = 1; // Seconds between samples.
+    private static final int[] LAYERS = {Layer.BACKGROUND, Layer.STATIC_OBJECTS, Layer.DEFAULT,
+            Layer.FOREGROUND, Layer.UI};
+    private static final String[] LAYER_NAMES = {"BACKGROUND", "STATIC_OBJECTS", "DEFAULT",
+            "FOREGROUND", "UI"};
+
+    private final GameObjectCollection gameObjects; // The game's objects.
+    private final Avatar avatar; // The avatar, which owns the jump callbacks.
+    private final FruitRegrowth fruitRegrowth; // Grows eaten fruits back.
+    private final JobScheduler jobScheduler; // The queue of deferred work.
+    private final WorldRegions worldRegions; // The regions leaves and fruits are updated in.
+    private final BlockStore blockStore; // The terrain's cells.
+    private final LightMap lightMap; // The terrain's light.
+    private final FoliageLod foliageLod; // Decides which trees show their leaves.
+    private final ChunkCache chunkCache; // The generated data of recent chunks.
+    private final WaterSimulation water; // The water in the terrain's valleys.
+    private final FrameTimeStats frameUpdateTimes = new FrameTimeStats(); // Frame update times since the last sample.
+    // Operations requested over JMX, waiting for the game thread.
+    private final ConcurrentLinkedQueue<Runnable> operations = new ConcurrentLinkedQueue<>();
+    private float timeSinceSample = SAMPLE_INTERVAL; // Game time since the last sample.
+    // The job scheduler's counters at the last sample. Samples take differences of them instead
+    // of resetting the scheduler, whose statistics the streaming report also reads.
+    private long sampledJobsRun;
+    private double sampledLatencyMillis;
+
+    // The last sample, replaced as a whole so JMX threads always read a consistent copy.
+    private volatile Map<String, Integer> objectsPerLayer = Collections.emptyMap();
+    private volatile Map<String, Integer> objectsPerType = Collections.emptyMap();
+    private volatile int jumpCallbackCount;
+    private volatile int pendingRespawnCount;
+    private volatile int jobQueueDepth;
+    private volatile float jobLatencyMillis;
+    private volatile float[] frameUpdateTimePercentiles = new float[FrameTimeStats.PERCENTILES.length];
+    private volatile long worldDataBytes;
+    private volatile float cullingRadius;
+    private volatile float chunkCacheHitRatio;
+    private volatile long chunkCacheBytes;
+    private volatile int waterActiveCells;
+
+    /**
+     * Constructor for WorldStats.
+     *
+     * @param gameObjects The game's objects.
+     * @param avatar The avatar.
+     * @param fruitRegrowth Grows eaten fruits back.
+     * @param jobScheduler The queue of deferred work.
+     * @param worldRegions The regions leaves and fruits are updated in.
+     * @param blockStore The terrain's cells.
+     * @param lightMap The terrain's light.
+     * @param foliageLod Decides which trees show their leaves.
+     * @param chunkCache The generated data of recent chunks.
+     * @param water The water in the terrain's valleys.
+     */
+    public WorldStats(GameObjectCollection gameObjects, Avatar avatar, FruitRegrowth fruitRegrowth,
+                      JobScheduler jobScheduler, WorldRegions worldRegions, BlockStore blockStore,
+                      LightMap lightMap, FoliageLod foliageLod, ChunkCache chunkCache,
+                      WaterSimulation water) {
+        this.gameObjects = gameObjects;
+        this.avatar = avatar;
+        this.fruitRegrowth = fruitRegrowth;
+        this.jobScheduler = jobScheduler;
+        this.worldRegions = worldRegions;
+        this.blockStore = blockStore;
+        this.lightMap = lightMap;
+        this.foliageLod = foliageLod;
+        this.chunkCache = chunkCache;
+        this.water = water;
+        this.cullingRadius = foliageLod.getNearRadius();
+    }
+
+    /**
+     * Registers the statistics with the platform's MBean server. A failure is reported but
+     * does not stop the game.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Could not register world statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the operations requested over JMX, and records the time spent updating the
+     * last frame. Called once a frame on the game thread.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     * @param lastUpdateMillis The time the game spent updating the last frame, in milliseconds.
+     */
+    public void update(float deltaTime, float lastUpdateMillis) {
+        for (Runnable operation = operations.poll(); operation != null; operation = operations.poll()) {
+            operation.run();
+        }
+        frameUpdateTimes.addFrame(lastUpdateMillis);
+        timeSinceSample += deltaTime;
+        if (timeSinceSample >= SAMPLE_INTERVAL) {
+            timeSinceSample = 0;
+            sample();
+        }
+    }
+
+    /**
+     * Samples the statistics of the world. Must be called on the game thread.
+     */
+    private void sample() {
+        Map<String, Integer> perLayer = new LinkedHashMap<>();
+        Map<String, Integer> perType = new TreeMap<>();
+        for (int i = 0; i < LAYERS.length; i++) {
+            int count = 0;
+            for (GameObject object : gameObjects.objectsInLayer(LAYERS[i])) {
+                perType.merge(object.getClass().getSimpleName(), 1, Integer::sum);
+                count++;
+            }
+            perLayer.put(LAYER_NAMES[i], count);
+        }
+        objectsPerLayer = Collections.unmodifiableMap(perLayer);
+        objectsPerType = Collections.unmodifiableMap(perType);
+        jumpCallbackCount = avatar.getJumpCallbackCount();
+        pendingRespawnCount = fruitRegrowth.getEatenCount();
+        jobQueueDepth = jobScheduler.getDepth();
+        long jobsRun = jobScheduler.getJobsRun() - sampledJobsRun;
+        double latencyMillis = jobScheduler.getTotalLatencyMillis() - sampledLatencyMillis;
+        jobLatencyMillis = jobsRun <= 0 ? 0 : (float) (latencyMillis / jobsRun);
+        sampledJobsRun = jobScheduler.getJobsRun();
+        sampledLatencyMillis = jobScheduler.getTotalLatencyMillis();
+        frameUpdateTimePercentiles = frameUpdateTimes.summary();
+        frameUpdateTimes.clear();
+        worldDataBytes = blockStore.memoryBytes() + lightMap.memoryBytes() + water.memoryBytes();
+        cullingRadius = foliageLod.getNearRadius();
+        chunkCacheHitRatio = chunkCache.getHitRatio();
+        chunkCacheBytes = chunkCache.memoryBytes();
+        waterActiveCells = water.getActiveCount();
+    }
+
+    @Override
+    public Map<String, Integer> getObjectsPerLayer() {
+        return objectsPerLayer;
+    }
+
+    @Override
+    public Map<String, Integer> getObjectsPerType() {
+        return objectsPerType;
+    }
+
+    @Override
+    public int getJumpCallbackCount() {
+        return jumpCallbackCount;
+    }
+
+    @Override
+    public int getPendingRespawnCount() {
+        return pendingRespawnCount;
+    }
+
+    @Override
+    public int getJobQueueDepth() {
+        return jobQueueDepth;
+    }
+
+    @Override
+    public float getJobLatencyMillis() {
+        return jobLatencyMillis;
+    }
+
+    @Override
+    public float[] getFrameUpdateTimePercentiles() {
+        return frameUpdateTimePercentiles.clone();
+    }
+
+    @Override
+    public long getWorldDataBytes() {
+        return worldDataBytes;
+    }
+
+    @Override
+    public float getChunkCacheHitRatio() {
+        return chunkCacheHitRatio;
+    }
+
+    @Override
+    public long getChunkCacheBytes() {
+        return chunkCacheBytes;
+    }
+
+    @Override
+    public int getWaterActiveCells() {
+        return waterActiveCells;
+    }
+
+    @Override
+    public float getCullingRadius() {
+        return cullingRadius;
+    }
+
+    @Override
+    public void setCullingRadius(float radius) {
+        cullingRadius = radius;
+        operations.add(() -> foliageLod.setNearRadius(radius));
+    }
+
+    @Override
+    public void compactWorld() {
+        operations.add(() -> {
+            worldRegions.compact();
+            avatar.compact();
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package pepse;
+
+import java.util.Map;
+
+/**
+ * The management interface of a running game's world statistics, exposed over JMX as
+ * "pepse:type=WorldStats". Attributes are sampled on the game thread about once a second,
+ * and operations are applied on the game thread at the start of the next frame.
+ */
+public interface WorldStatsMXBean {
+    /**
+     * Gets the number of GameObjects in each layer.
+     *
+     * @return The number of objects, by layer name.
+     */
+    Map<String, Integer> getObjectsPerLayer();
+
+    /**
+     * Gets the number of GameObjects of each type, such as Block, Leaf, Fruit and TreeTrunk.
+     *
+     * @return The number of objects, by simple class name.
+     */
+    Map<String, Integer> getObjectsPerType();
+
+    /**
+     * Gets the number of callbacks reacting to the avatar's jumps.
+     *
+     * @return The number of jump callbacks.
+     */
+    int getJumpCallbackCount();
+
+    /**
+     * Gets the number of eaten fruits waiting to grow back, in view or not.
+     *
+     * @return The number of pending respawns.
+     */
+    int getPendingRespawnCount();
+
+    /**
+     * Gets the number of deferred jobs waiting in the job scheduler.
+     *
+     * @return The queue depth.
+     */
+    int getJobQueueDepth();
+
+    /**
+     * Gets the mean time deferred jobs waited after they were due, since the last sample.
+     *
+     * @return The mean latency, in milliseconds.
+     */
+    float getJobLatencyMillis();
+
+    /**
+     * Gets the percentiles of the time the game spent updating a frame, since the last sample.
+     *
+     * @return The 50th, 90th and 99th percentiles, in milliseconds.
+     */
+    float[] getFrameUpdateTimePercentiles();
+
+    /**
+     * Gets an estimate of the heap used by the world's data: its terrain cells, their light and
+     * their water.
+     *
+     * @return The estimated size, in bytes.
+     */
+    long getWorldDataBytes();
+
+    /**
+     * Gets the share of chunk creations whose generated data came from the chunk cache.
+     *
+     * @return The hit ratio, between 0 and 1.
+     */
+    float getChunkCacheHitRatio();
+
+    /**
+     * Gets an estimate of the heap used by the chunk cache.
+     *
+     * @return The estimated size, in bytes.
+     */
+    long getChunkCacheBytes();
+
+    /**
+     * Gets the number of water cells the last tick simulated; settled water is not counted.
+     *
+     * @return The number of active cells.
+     */
+    int getWaterActiveCells();
+
+    /**
+     * Gets the distance from the avatar within which trees show their individual leaves.
+     *
+     * @return The radius, in pixels.
+     */
+    float getCullingRadius();
+
+    /**
+     * Sets the distance from the avatar within which trees show their individual leaves.
+     *
+     * @param radius The radius, in pixels.
+     */
+    void setCullingRadius(float radius);
+
+    /**
+     * Frees the spare capacity held by the world's collections without forcing a garbage
+     * collection.
+     */
+    void compactWorld();
+}
@@ -0,0 +1,146 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.world.ChunkCache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures what each connected client costs a server, over loopback sockets, without a window.
+ * For each number of clients, a server is started and that many clients connect and play a
+ * scripted walk-and-jump session; the server's tick cost, snapshot cost and bandwidth per
+ * client are reported, along with what the clients received.
+ */
+public class NetBenchmark {
+    /**
+     * constants that are used through the class
+     */
+    private static final Vector2 VIEW_DIMENSIONS = new Vector2(1200, 800); // The view the terrain is laid out for.
+    private static final int SEED = 0; // Seed of the benchmarked world.
+    private static final int TICK_RATE = 60; // Ticks the server simulates per second.
+    private static final float DAY_NIGHT_CYCLE_LENGTH = 60; // The length of a day, in seconds.
+    private static final float WARMUP_SECONDS = 1; // Play before measuring.
+    private static final float DEFAULT_SECONDS = 5; // Play measured for each number of clients.
+    private static final int[] DEFAULT_CLIENTS = {1, 2, 4, 8, 16}; // The numbers of clients measured.
+    private static final float SEGMENT_SECONDS = 2; // How long each move of the script lasts.
+    private static final long POLL_MILLIS = 16; // Time between two polls of the clients.
+    private static final byte LEFT = 1; // Key masks, in the order of InputRecording.RECORDED_KEYS.
+    private static final byte RIGHT = 2;
+    private static final byte JUMP = 4;
+    private static final byte[] SCRIPT = {RIGHT, RIGHT | JUMP, LEFT, JUMP}; // The moves clients repeat.
+
+    /**
+     * Runs the benchmark.
+     * Arguments: "--clients N1,N2,..." to set the numbers of clients, and "--seconds S" to set
+     * how long each is measured.
+     *
+     * @param args Command line arguments.
+     * @throws IOException If the server or a client failed.
+     * @throws InterruptedException If interrupted while the clients play.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int[] clientCounts = DEFAULT_CLIENTS;
+        float seconds = DEFAULT_SECONDS;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients":
+                    String[] items = args[i + 1].split(",");
+                    clientCounts = new int[items.length];
+                    for (int j = 0; j < items.length; j++) {
+                        clientCounts[j] = Integer.parseInt(items[j].trim());
+                    }
+                    break;
+                case "--seconds":
+                    seconds = Float.parseFloat(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        for (int clientCount : clientCounts) {
+            System.out.println(measure(clientCount, seconds));
+        }
+    }
+
+    /**
+     * Serves a new world to a number of scripted clients and reports what they cost.
+     *
+     * @param clientCount The number of clients.
+     * @param seconds How long to measure.
+     * @return The report.
+     * @throws IOException If the server or a client failed.
+     * @throws InterruptedException If interrupted while the clients play.
+     */
+    private static String measure(int clientCount, float seconds) throws IOException, InterruptedException {
+        ServerWorld world = new ServerWorld(SEED, VIEW_DIMENSIONS, DAY_NIGHT_CYCLE_LENGTH,
+                ChunkCache.DEFAULT_BUDGET_BYTES);
+        try (PepseServer server = new PepseServer(0, world, TICK_RATE, VIEW_DIMENSIONS.y())) {
+            server.start();
+            List<PepseClient> clients = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                clients.add(new PepseClient("127.0.0.1", server.getPort()));
+            }
+            play(clients, 0, WARMUP_SECONDS);
+            server.resetStats();
+            long[] bytesBefore = new long[clientCount];
+            int[] snapshotsBefore = new int[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                bytesBefore[i] = clients.get(i).getBytesReceived();
+                snapshotsBefore[i] = clients.get(i).getSnapshotCount();
+            }
+            play(clients, WARMUP_SECONDS, seconds);
+            long bytes = 0;
+            int snapshots = 0;
+            for (int i = 0; i < clientCount; i++) {
+                bytes += clients.get(i).getBytesReceived() - bytesBefore[i];
+                snapshots += clients.get(i).getSnapshotCount() - snapshotsBefore[i];
+            }
+            String report = String.format(Locale.ROOT,
+                    "%3d clients: world tick %.3f ms, snapshot %6.1f us/client, %6.2f kB/s/client sent, "
+                            + "%6.2f kB/s/client and %.1f snapshots/s/client received, %d chunks, "
+                            + "%.1f%% chunk cache hits",
+                    clientCount, server.getMeanTickMillis(), server.getMeanSnapshotMicros(),
+                    server.getMeanBytesPerClientSecond() / 1e3, bytes / 1e3 / seconds / clientCount,
+                    snapshots / seconds / clientCount, world.getChunkCount(),
+                    world.getChunkCache().getHitRatio() * 100);
+            for (PepseClient client : clients) {
+                client.close();
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Lets the clients play their script for a while, polling them like a game's frames.
+     * Each client starts the script at its own point, so they spread out.
+     *
+     * @param clients The clients.
+     * @param startSeconds The script time to start at.
+     * @param seconds How long to play.
+     * @throws IOException If a client failed.
+     * @throws InterruptedException If interrupted.
+     */
+    private static void play(List<PepseClient> clients, float startSeconds, float seconds)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long last = start;
+        for (int poll = 0; ; poll++) {
+            long now = System.nanoTime();
+            float elapsed = (now - start) / 1e9f;
+            if (elapsed >= seconds) {
+                return;
+            }
+            for (int i = 0; i < clients.size(); i++) {
+                float scriptTime = startSeconds + elapsed + i * SEGMENT_SECONDS / 2;
+                clients.get(i).sendInput(SCRIPT[(int) (scriptTime / SEGMENT_SECONDS) % SCRIPT.length], poll);
+                clients.get(i).poll((now - last) / 1e9f);
+            }
+            last = now;
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+}
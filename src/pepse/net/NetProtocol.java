@@ -0,0 +1,98 @@
+package pepse.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The binary protocol between a Pepse server and its clients. Every message is a frame: an
+ * int length, then a type byte and the message's fields. Ids and counts are written as
+ * variable-length integers, and positions as fixed-point ints, so a delta of a few changed
+ * fruits and avatars takes a few dozen bytes.
+ * <p>
+ * Messages from the server:
+ * WELCOME (avatar id, world seed, view height, tick rate, snapshot interval) once per client,
+ * then SNAPSHOT (tick, game time, day phase, avatar entries, fruit entries) for every
+ * snapshot interval. An avatar entry holds its id and a mask of the fields that follow: the
+ * position, the energy, and for the client's own avatar the sequence of its latest input the
+ * server applied; a fruit entry holds its id and its GameSnapshot flags.
+ * <p>
+ * Messages from a client: INPUT (key mask, as made by InputRecording.keyMask, and the int
+ * sequence of the client's tick it was held in), every tick.
+ */
+public final class NetProtocol {
+    /**
+     * constants that are used through the class
+     */
+    public static final byte WELCOME = 1; // Type of the message that admits a client.
+    public static final byte SNAPSHOT = 2; // Type of a delta of the world's state.
+    public static final byte INPUT = 3; // Type of a client's key state.
+    public static final int AVATAR_POSITION = 1; // An avatar entry holds a new position.
+    public static final int AVATAR_ENERGY = 2; // An avatar entry holds a new energy.
+    public static final int AVATAR_REMOVED = 4; // An avatar entry removes the avatar.
+    public static final int AVATAR_INPUT = 8; // An avatar entry holds its latest applied input.
+    public static final float POSITION_SCALE = 4; // Fixed-point steps per pixel of a position.
+    public static final int MAX_FRAME_LENGTH = 1 << 20; // The longest frame a peer accepts.
+
+    /**
+     * No instances: the protocol is a set of constants and static helpers.
+     */
+    private NetProtocol() {
+    }
+
+    /**
+     * Converts a coordinate to the fixed-point int it is sent as.
+     *
+     * @param coordinate The coordinate, in pixels.
+     * @return The fixed-point coordinate.
+     */
+    public static int quantize(float coordinate) {
+        return Math.round(coordinate * POSITION_SCALE);
+    }
+
+    /**
+     * Converts a fixed-point int back to a coordinate.
+     *
+     * @param quantized The fixed-point coordinate.
+     * @return The coordinate, in pixels.
+     */
+    public static float dequantize(int quantized) {
+        return quantized / POSITION_SCALE;
+    }
+
+    /**
+     * Writes a signed long using 7 bits per byte, after zigzag encoding, so values close to
+     * zero take a single byte whatever their sign.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     * @throws IOException If writing fails.
+     */
+    public static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    /**
+     * Reads a long written by writeVarLong.
+     *
+     * @param in The stream to read from.
+     * @return The value read.
+     * @throws IOException If reading fails.
+     */
+    public static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,508 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A connection to a Pepse server, polled once a frame on the game thread. It sends the
+ * player's keys every tick, and applies the server's delta snapshots to its copy of the
+ * shared state: the avatars around the player and the fruits that differ from how they grew.
+ * Other avatars are shown a couple of snapshots in the past and interpolated between the
+ * snapshots around that time, so they move smoothly although snapshots arrive a few ticks
+ * apart and at uneven times.
+ * The player's own avatar moves at once, ahead of the server. The client keeps where it was
+ * after each of its recent inputs, and when a snapshot says which input the server applied
+ * last, compares the server's position with the one kept for that input; the difference is
+ * how far the avatar drifted from the server's, and is corrected.
+ */
+public class PepseClient implements Closeable {
+    /**
+     * constants that are used through the class
+     */
+    private static final int INTERPOLATION_DELAY = 2; // Snapshots the shown avatars lag behind.
+    private static final int HISTORY = 4; // Snapshots of each avatar kept for interpolation.
+    private static final float CLOCK_CORRECTION = 0.1f; // How fast the shown time follows the server's.
+    private static final int READ_BUFFER_SIZE = 64 * 1024; // Bytes initially buffered from the server.
+    private static final int WRITE_BUFFER_SIZE = 1024; // Bytes of input frames buffered for the server.
+    private static final int INPUT_FRAME_LENGTH = 2 + Integer.BYTES; // Type, key mask and sequence.
+    private static final int PREDICTION_HISTORY = 128; // Inputs whose positions are kept, two seconds' worth.
+
+    private final SocketChannel channel; // The server's socket.
+    private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE); // Bytes not parsed yet.
+    private final ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE); // Input frames not written yet.
+    private final int avatarId; // The player's avatar.
+    private final int seed; // The world seed.
+    private final float viewHeight; // The view height the server's terrain is laid out for.
+    private final int tickRate; // Ticks the server simulates per second.
+    private final int snapshotInterval; // Ticks between two snapshots.
+    private final Map<Integer, RemoteAvatar> avatars = new LinkedHashMap<>(); // The avatars in range, by id.
+    private final Map<Long, Byte> fruitFlags = new HashMap<>(); // The fruit flags that are not 0.
+    private final Map<Long, Byte> fruitChanges = new LinkedHashMap<>(); // Fruit flags not applied yet.
+    // Where the player's avatar was after each recent input, by sequence modulo the history.
+    private final long[] predictedSequences = new long[PREDICTION_HISTORY];
+    private final float[] predictedX = new float[PREDICTION_HISTORY];
+    private final float[] predictedY = new float[PREDICTION_HISTORY];
+    private long appliedInput = -1; // The latest input the server applied, or -1 before the first.
+    private boolean isAppliedInputNew; // Whether appliedInput changed since the last correction.
+    private int latestTick = -1; // The tick of the latest snapshot.
+    private float shownTick; // The tick avatars are shown at, between two snapshots.
+    private float gameTime; // The server's game time at the latest snapshot.
+    private float dayPhase; // The server's day phase at the latest snapshot.
+    private long bytesReceived; // Bytes received since connecting.
+    private int snapshotCount; // Snapshots received since connecting.
+
+    /**
+     * An avatar as the latest snapshots showed it.
+     */
+    private static class RemoteAvatar {
+        private final int[] ticks = new int[HISTORY]; // The ticks of the kept snapshots, oldest first.
+        private final int[] xs = new int[HISTORY]; // Quantized positions at those ticks.
+        private final int[] ys = new int[HISTORY];
+        private int energy; // The latest energy.
+
+        RemoteAvatar(int tick, int x, int y) {
+            for (int i = 0; i < HISTORY; i++) {
+                ticks[i] = tick;
+                xs[i] = x;
+                ys[i] = y;
+            }
+        }
+
+        /**
+         * Keeps the avatar's position at a new snapshot, dropping the oldest one.
+         *
+         * @param tick The snapshot's tick.
+         * @param x The quantized x-coordinate.
+         * @param y The quantized y-coordinate.
+         */
+        void push(int tick, int x, int y) {
+            System.arraycopy(ticks, 1, ticks, 0, HISTORY - 1);
+            System.arraycopy(xs, 1, xs, 0, HISTORY - 1);
+            System.arraycopy(ys, 1, ys, 0, HISTORY - 1);
+            ticks[HISTORY - 1] = tick;
+            xs[HISTORY - 1] = x;
+            ys[HISTORY - 1] = y;
+        }
+
+        /**
+         * Interpolates the avatar's position between the kept snapshots around a tick.
+         *
+         * @param tick The tick, possibly between two snapshots.
+         * @return The position.
+         */
+        Vector2 positionAt(float tick) {
+            int i = 0;
+            while (i < HISTORY - 2 && tick > ticks[i + 1]) {
+                i++;
+            }
+            float span = ticks[i + 1] - ticks[i];
+            float t = span <= 0 ? 1 : Math.max(0, Math.min(1, (tick - ticks[i]) / span));
+            return new Vector2(NetProtocol.dequantize(xs[i]) + t * NetProtocol.dequantize(xs[i + 1] - xs[i]),
+                    NetProtocol.dequantize(ys[i]) + t * NetProtocol.dequantize(ys[i + 1] - ys[i]));
+        }
+    }
+
+    /**
+     * Constructor for a PepseClient. Connects to the server and waits to be welcomed, which
+     * tells the client how to generate the shared world.
+     *
+     * @param host The server's host.
+     * @param port The server's port.
+     * @throws IOException If the server could not be reached, or did not welcome the client.
+     */
+    public PepseClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        DataInputStream welcome = new DataInputStream(new ByteArrayInputStream(readFrameBlocking()));
+        if (welcome.readByte() != NetProtocol.WELCOME) {
+            throw new IOException("The server did not welcome the client");
+        }
+        avatarId = welcome.readInt();
+        seed = welcome.readInt();
+        viewHeight = welcome.readFloat();
+        tickRate = welcome.readInt();
+        snapshotInterval = welcome.readInt();
+        channel.configureBlocking(false);
+        Arrays.fill(predictedSequences, -1);
+    }
+
+    /**
+     * Gets the id of the player's avatar.
+     *
+     * @return The avatar id.
+     */
+    public int getAvatarId() {
+        return avatarId;
+    }
+
+    /**
+     * Gets the seed of the shared world.
+     *
+     * @return The seed.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the view height the server's terrain is laid out for, which the client's terrain
+     * must use too.
+     *
+     * @return The view height.
+     */
+    public float getViewHeight() {
+        return viewHeight;
+    }
+
+    /**
+     * Sends the keys the player holds in a tick. Called once a tick, with increasing sequences.
+     * If the socket is so backed up that the input does not fit in the buffer, it is dropped,
+     * and the server keeps the previous keys held.
+     *
+     * @param input The key mask, as made by InputRecording.keyMask.
+     * @param sequence The number of the tick.
+     * @throws IOException If the socket failed.
+     */
+    public void sendInput(byte input, int sequence) throws IOException {
+        if (out.remaining() >= Integer.BYTES + INPUT_FRAME_LENGTH) {
+            out.putInt(INPUT_FRAME_LENGTH).put(NetProtocol.INPUT).put(input).putInt(sequence);
+        }
+        flush();
+    }
+
+    /**
+     * Keeps where the player's avatar is after an input took effect, to compare with where
+     * the server has it once it applied that input.
+     *
+     * @param sequence The input's sequence, as it was sent.
+     * @param x The avatar's x-coordinate.
+     * @param y The avatar's y-coordinate.
+     */
+    public void recordPrediction(int sequence, float x, float y) {
+        int slot = Math.floorMod(sequence, PREDICTION_HISTORY);
+        predictedSequences[slot] = sequence;
+        predictedX[slot] = x;
+        predictedY[slot] = y;
+    }
+
+    /**
+     * Gets how far the server's position of the player's avatar is from the one kept for the
+     * latest input the server applied, once per newly applied input.
+     *
+     * @return The server's position minus the kept one, or null if the server applied no new
+     *         input since the last call, or the kept position is too old to be known.
+     */
+    public Vector2 takePredictionError() {
+        RemoteAvatar own = avatars.get(avatarId);
+        if (!isAppliedInputNew || own == null) {
+            return null;
+        }
+        isAppliedInputNew = false;
+        int slot = (int) Math.floorMod(appliedInput, (long) PREDICTION_HISTORY);
+        if (predictedSequences[slot] != appliedInput) {
+            return null;
+        }
+        return new Vector2(NetProtocol.dequantize(own.xs[HISTORY - 1]) - predictedX[slot],
+                NetProtocol.dequantize(own.ys[HISTORY - 1]) - predictedY[slot]);
+    }
+
+    /**
+     * Moves the kept positions of the inputs the server did not apply yet by an offset, after
+     * the avatar was moved by it to correct a prediction error, so the error is not corrected
+     * again when the server applies them.
+     *
+     * @param dx The offset's x-coordinate.
+     * @param dy The offset's y-coordinate.
+     */
+    public void shiftPredictions(float dx, float dy) {
+        for (int slot = 0; slot < PREDICTION_HISTORY; slot++) {
+            if (predictedSequences[slot] > appliedInput) {
+                predictedX[slot] += dx;
+                predictedY[slot] += dy;
+            }
+        }
+    }
+
+    /**
+     * Writes pending input, reads and applies the snapshots that arrived, and advances the
+     * time avatars are shown at. Called once a frame.
+     *
+     * @param deltaTime The time elapsed since the last poll.
+     * @throws IOException If the socket failed or the server closed it.
+     */
+    public void poll(float deltaTime) throws IOException {
+        flush();
+        int read;
+        while ((read = channel.read(in)) > 0) {
+            bytesReceived += read;
+            parseFrames();
+        }
+        if (read < 0) {
+            throw new IOException("The server closed the connection");
+        }
+        if (latestTick < 0) {
+            return;
+        }
+        float target = latestTick - INTERPOLATION_DELAY * snapshotInterval;
+        shownTick += deltaTime * tickRate;
+        if (Math.abs(target - shownTick) > 2 * snapshotInterval) {
+            shownTick = target; // Too far off, after joining or a stall: jump to the server's time.
+        } else {
+            shownTick += (target - shownTick) * CLOCK_CORRECTION;
+        }
+    }
+
+    /**
+     * Gets the ids of the avatars around the player, including the player's own.
+     *
+     * @return The avatar ids.
+     */
+    public Set<Integer> getAvatarIds() {
+        return Collections.unmodifiableSet(avatars.keySet());
+    }
+
+    /**
+     * Gets where an avatar is shown, interpolated between the snapshots around the shown time.
+     *
+     * @param id The avatar id.
+     * @return The avatar's top-left corner, or null if it is not around the player.
+     */
+    public Vector2 getAvatarPosition(int id) {
+        RemoteAvatar avatar = avatars.get(id);
+        return avatar == null ? null : avatar.positionAt(shownTick);
+    }
+
+    /**
+     * Gets an avatar's energy, as of the latest snapshot.
+     *
+     * @param id The avatar id.
+     * @return The energy, or -1 if the avatar is not around the player.
+     */
+    public int getAvatarEnergy(int id) {
+        RemoteAvatar avatar = avatars.get(id);
+        return avatar == null ? -1 : avatar.energy;
+    }
+
+    /**
+     * Gets the GameSnapshot flags of a fruit, as of the latest snapshot.
+     *
+     * @param id The fruit's id.
+     * @return The flags; 0 for a fruit as it grew.
+     */
+    public byte getFruitFlags(long id) {
+        return fruitFlags.getOrDefault(id, (byte) 0);
+    }
+
+    /**
+     * Passes on the fruits whose flags changed since the last call, with their new flags.
+     *
+     * @param consumer Receives each changed fruit's id and flags.
+     */
+    public void drainFruitChanges(BiConsumer<Long, Byte> consumer) {
+        fruitChanges.forEach(consumer);
+        fruitChanges.clear();
+    }
+
+    /**
+     * Gets the server's day phase, as of the latest snapshot.
+     *
+     * @return The phase, in [0, 1).
+     */
+    public float getDayPhase() {
+        return dayPhase;
+    }
+
+    /**
+     * Gets the server's game time, as of the latest snapshot.
+     *
+     * @return The game time, in seconds.
+     */
+    public float getGameTime() {
+        return gameTime;
+    }
+
+    /**
+     * Gets the number of bytes received since connecting.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the number of snapshots received since connecting.
+     *
+     * @return The number of snapshots.
+     */
+    public int getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    /**
+     * Disconnects from the server.
+     *
+     * @throws IOException If the socket could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes as much of the pending input frames as the socket takes.
+     *
+     * @throws IOException If the socket failed.
+     */
+    private void flush() throws IOException {
+        out.flip();
+        if (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.compact();
+    }
+
+    /**
+     * Reads a single frame while the socket still blocks, during the handshake.
+     *
+     * @return The frame's content, after its length.
+     * @throws IOException If the socket failed or the frame is malformed.
+     */
+    private byte[] readFrameBlocking() throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(length);
+        int frameLength = length.getInt(0);
+        if (frameLength < 1 || frameLength > NetProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Malformed frame from the server");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(frameLength);
+        readFully(frame);
+        return frame.array();
+    }
+
+    /**
+     * Fills a buffer from the socket while it still blocks.
+     *
+     * @param buffer The buffer.
+     * @throws IOException If the socket failed or closed first.
+     */
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("The server closed the connection");
+            }
+        }
+    }
+
+    /**
+     * Applies the complete frames in the read buffer, growing it for a frame that does not fit.
+     *
+     * @throws IOException If a frame is malformed.
+     */
+    private void parseFrames() throws IOException {
+        in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > NetProtocol.MAX_FRAME_LENGTH) {
+                throw new IOException("Malformed frame from the server");
+            }
+            if (in.remaining() < Integer.BYTES + length) {
+                if (Integer.BYTES + length > in.capacity()) {
+                    ByteBuffer grown = ByteBuffer.allocate(Integer.BYTES + length);
+                    grown.put(in);
+                    in = grown;
+                    return;
+                }
+                break;
+            }
+            in.getInt();
+            byte[] frame = new byte[length];
+            in.get(frame);
+            DataInputStream message = new DataInputStream(new ByteArrayInputStream(frame));
+            if (message.readByte() == NetProtocol.SNAPSHOT) {
+                applySnapshot(message);
+            }
+        }
+        in.compact();
+    }
+
+    /**
+     * Applies a snapshot's deltas to the known avatars and fruits. An avatar the snapshot does
+     * not mention stayed where it was.
+     *
+     * @param message The snapshot, after its type.
+     * @throws IOException If the snapshot is malformed.
+     */
+    private void applySnapshot(DataInputStream message) throws IOException {
+        int tick = message.readInt();
+        gameTime = message.readFloat();
+        dayPhase = message.readFloat();
+        Map<Integer, RemoteAvatar> moved = new HashMap<>();
+        long avatarCount = NetProtocol.readVarLong(message);
+        for (long i = 0; i < avatarCount; i++) {
+            int id = (int) NetProtocol.readVarLong(message);
+            int fields = message.readUnsignedByte();
+            if ((fields & NetProtocol.AVATAR_REMOVED) != 0) {
+                avatars.remove(id);
+                continue;
+            }
+            RemoteAvatar avatar = avatars.get(id);
+            if ((fields & NetProtocol.AVATAR_POSITION) != 0) {
+                int x = (int) NetProtocol.readVarLong(message);
+                int y = (int) NetProtocol.readVarLong(message);
+                if (avatar == null) {
+                    avatar = new RemoteAvatar(tick, x, y);
+                    avatars.put(id, avatar);
+                } else {
+                    avatar.push(tick, avatar.xs[HISTORY - 1] + x, avatar.ys[HISTORY - 1] + y);
+                }
+                moved.put(id, avatar);
+            }
+            if ((fields & NetProtocol.AVATAR_ENERGY) != 0) {
+                int energy = message.readUnsignedByte();
+                if (avatar != null) {
+                    avatar.energy = energy;
+                }
+            }
+            if ((fields & NetProtocol.AVATAR_INPUT) != 0) {
+                appliedInput = NetProtocol.readVarLong(message);
+                isAppliedInputNew = true;
+            }
+        }
+        for (Map.Entry<Integer, RemoteAvatar> entry : avatars.entrySet()) {
+            if (!moved.containsKey(entry.getKey())) {
+                RemoteAvatar avatar = entry.getValue();
+                avatar.push(tick, avatar.xs[HISTORY - 1], avatar.ys[HISTORY - 1]);
+            }
+        }
+        long fruitCount = NetProtocol.readVarLong(message);
+        long id = 0;
+        for (long i = 0; i < fruitCount; i++) {
+            id += NetProtocol.readVarLong(message);
+            byte flags = message.readByte();
+            if (flags == 0) {
+                fruitFlags.remove(id);
+            } else {
+                fruitFlags.put(id, flags);
+            }
+            fruitChanges.put(id, flags);
+        }
+        latestTick = tick;
+        snapshotCount++;
+    }
+}
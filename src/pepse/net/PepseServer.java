@@ -0,0 +1,586 @@
+package pepse.net;
+
+import pepse.world.WorldStreamer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Serves a ServerWorld to several clients over non-blocking sockets, on a single thread that
+ * both ticks the world at a fixed rate and moves the bytes. Every few ticks each client is
+ * sent a snapshot with only what changed since its last one, and only for the part of the
+ * world around its own avatar: the avatars whose position or energy changed, the avatars
+ * that left its range, and the fruits whose state differs from what it was told. Since the
+ * sockets deliver in order, a delta is taken against what was sent, with no acknowledgments.
+ * A client whose socket is backed up skips snapshots; its next delta covers what it missed.
+ */
+public class PepseServer implements Closeable {
+    /**
+     * constants that are used through the class
+     */
+    public static final int SNAPSHOT_INTERVAL = 3; // Ticks between two snapshots to a client.
+    private static final int READ_BUFFER_SIZE = 4096; // Bytes buffered from a client.
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int MAX_TICKS_BEHIND = 5; // Ticks to catch up before dropping the backlog.
+
+    private final ServerWorld world; // The simulation clients play in.
+    private final int tickRate; // Ticks simulated per second.
+    private final float viewHeight; // The view height the world's terrain is laid out for.
+    private final Selector selector; // Waits for sockets and the next tick.
+    private final ServerSocketChannel serverChannel; // Accepts clients.
+    private final List<Connection> connections = new CopyOnWriteArrayList<>(); // The connected clients.
+    private final ByteArrayOutputStream frameBytes = new ByteArrayOutputStream(); // Reused to encode frames.
+    private final DataOutputStream frame = new DataOutputStream(frameBytes);
+    private final ByteArrayOutputStream avatarBytes = new ByteArrayOutputStream(); // A snapshot's avatar entries.
+    private final DataOutputStream avatarEntries = new DataOutputStream(avatarBytes);
+    private final ByteArrayOutputStream fruitBytes = new ByteArrayOutputStream(); // A snapshot's fruit entries.
+    private final DataOutputStream fruitEntries = new DataOutputStream(fruitBytes);
+    private volatile boolean isRunning = true; // Cleared to stop the server.
+    private Thread thread; // The server's thread, when started in the background.
+    // Statistics since the last reset, written on the server's thread only.
+    private volatile long statsStartNanos = System.nanoTime();
+    private volatile long ticks;
+    private volatile long tickNanos; // Time spent simulating the world.
+    private volatile long snapshots;
+    private volatile long snapshotNanos; // Time spent encoding and sending snapshots.
+
+    /**
+     * A connected client, with what it was sent so far.
+     */
+    private static class Connection {
+        final SocketChannel channel; // The client's socket.
+        final int avatarId; // The client's avatar.
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE); // Bytes not parsed yet.
+        ByteBuffer out; // The frame being written, or null.
+        final Map<Integer, int[]> sentAvatars = new HashMap<>(); // Quantized x, y and energy it knows.
+        final Map<Long, Byte> sentFruits = new HashMap<>(); // The fruit flags it knows, if not 0.
+        Set<Integer> sentChunks = new HashSet<>(); // The chunks in its range at its last snapshot.
+        int sentTick = -1; // The tick of its last snapshot.
+        long sentAppliedInput = -1; // The sequence of its latest applied input it was told.
+        volatile long bytesSent;
+        volatile long bytesReceived;
+        volatile int skippedSnapshots;
+
+        Connection(SocketChannel channel, int avatarId) {
+            this.channel = channel;
+            this.avatarId = avatarId;
+        }
+    }
+
+    /**
+     * Constructor for a PepseServer. It listens right away, and starts ticking once run.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @param world The simulation to serve.
+     * @param tickRate Ticks simulated per second.
+     * @param viewHeight The view height the world's terrain is laid out for.
+     * @throws IOException If the port could not be listened on.
+     */
+    public PepseServer(int port, ServerWorld world, int tickRate, float viewHeight) throws IOException {
+        this.world = world;
+        this.tickRate = tickRate;
+        this.viewHeight = viewHeight;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Runs the server on a background thread.
+     */
+    public void start() {
+        thread = new Thread(this::run, "pepse-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs the server on the calling thread until it is closed: ticks the world at the tick
+     * rate, and between ticks accepts clients, reads their input and writes their snapshots.
+     * Every reportInterval seconds, the statistics are printed and reset.
+     *
+     * @param reportInterval Seconds between two reports, or 0 to not report.
+     */
+    public void run(float reportInterval) {
+        long tickLengthNanos = NANOS_PER_SECOND / tickRate;
+        long nextTick = System.nanoTime() + tickLengthNanos;
+        long nextReport = System.nanoTime() + (long) (reportInterval * NANOS_PER_SECOND);
+        try {
+            while (isRunning) {
+                long now = System.nanoTime();
+                if (now >= nextTick) {
+                    tick();
+                    nextTick += tickLengthNanos;
+                    if (now - nextTick > MAX_TICKS_BEHIND * tickLengthNanos) {
+                        nextTick = now + tickLengthNanos; // Too far behind to catch up.
+                    }
+                    continue;
+                }
+                if (reportInterval > 0 && now >= nextReport) {
+                    System.out.println(getReport());
+                    resetStats();
+                    nextReport = now + (long) (reportInterval * NANOS_PER_SECOND);
+                }
+                long waitMillis = (nextTick - now) / 1_000_000;
+                if (waitMillis > 0) {
+                    selector.select(waitMillis);
+                } else {
+                    selector.selectNow();
+                }
+                handleSelectedKeys();
+            }
+        } catch (IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the server on the calling thread until it is closed, without reports.
+     */
+    private void run() {
+        run(0);
+    }
+
+    /**
+     * Stops the server and disconnects its clients.
+     *
+     * @throws IOException If a socket could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        isRunning = false;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Connection connection : connections) {
+            connection.channel.close();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    /**
+     * Gets the number of connected clients.
+     *
+     * @return The number of clients.
+     */
+    public int getClientCount() {
+        return connections.size();
+    }
+
+    /**
+     * Formats the statistics since the last reset: the cost of a tick, of a snapshot, and the
+     * bandwidth each client uses.
+     *
+     * @return The report.
+     */
+    public String getReport() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - statsStartNanos) / 1e9);
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%d clients, %d chunks: world tick %.3f ms, snapshot %.1f us per client, %d ticks, "
+                        + "chunk cache %.1f%% hits in %d kB",
+                connections.size(), world.getChunkCount(), ticks == 0 ? 0 : tickNanos / 1e6 / ticks,
+                snapshots == 0 ? 0 : snapshotNanos / 1e3 / snapshots, ticks,
+                world.getChunkCache().getHitRatio() * 100, world.getChunkCache().memoryBytes() / 1024));
+        for (Connection connection : connections) {
+            report.append(String.format(Locale.ROOT, "%n  avatar %d: %.2f kB/s out, %.2f kB/s in, %d skipped",
+                    connection.avatarId, connection.bytesSent / 1e3 / seconds,
+                    connection.bytesReceived / 1e3 / seconds, connection.skippedSnapshots));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Gets the mean time spent simulating a tick of the world since the last reset.
+     *
+     * @return The time, in milliseconds.
+     */
+    public double getMeanTickMillis() {
+        return ticks == 0 ? 0 : tickNanos / 1e6 / ticks;
+    }
+
+    /**
+     * Gets the mean time spent encoding and sending a snapshot to a client since the last reset.
+     *
+     * @return The time, in microseconds.
+     */
+    public double getMeanSnapshotMicros() {
+        return snapshots == 0 ? 0 : snapshotNanos / 1e3 / snapshots;
+    }
+
+    /**
+     * Gets the mean rate bytes were sent to each client at since the last reset.
+     *
+     * @return The rate, in bytes per second.
+     */
+    public double getMeanBytesPerClientSecond() {
+        if (connections.isEmpty()) {
+            return 0;
+        }
+        long bytes = 0;
+        for (Connection connection : connections) {
+            bytes += connection.bytesSent;
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - statsStartNanos) / 1e9);
+        return bytes / seconds / connections.size();
+    }
+
+    /**
+     * Starts measuring the statistics anew.
+     */
+    public void resetStats() {
+        statsStartNanos = System.nanoTime();
+        ticks = 0;
+        tickNanos = 0;
+        snapshots = 0;
+        snapshotNanos = 0;
+        for (Connection connection : connections) {
+            connection.bytesSent = 0;
+            connection.bytesReceived = 0;
+            connection.skippedSnapshots = 0;
+        }
+    }
+
+    /**
+     * Simulates a tick, and sends the clients their snapshots when one is due. A client whose
+     * socket failed is disconnected.
+     *
+     * @throws IOException If encoding fails.
+     */
+    private void tick() throws IOException {
+        long start = System.nanoTime();
+        world.tick(1f / tickRate);
+        long simulated = System.nanoTime();
+        tickNanos += simulated - start;
+        ticks++;
+        if (world.getTick() % SNAPSHOT_INTERVAL != 0) {
+            return;
+        }
+        for (Connection connection : connections) {
+            if (connection.out != null) {
+                connection.skippedSnapshots++;
+                continue;
+            }
+            connection.out = ByteBuffer.wrap(encodeSnapshot(connection));
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                disconnect(connection);
+            }
+        }
+        snapshotNanos += System.nanoTime() - simulated;
+        snapshots += connections.size();
+    }
+
+    /**
+     * Accepts new clients, reads input, and writes the frames that did not fit in their
+     * sockets before.
+     *
+     * @throws IOException If accepting fails.
+     */
+    private void handleSelectedKeys() throws IOException {
+        for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(connection);
+                }
+            } catch (IOException e) {
+                disconnect(connection);
+            }
+        }
+    }
+
+    /**
+     * Accepts a client, gives it an avatar, and welcomes it with what it needs to generate
+     * the world.
+     *
+     * @throws IOException If accepting fails.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel, world.addAvatar());
+        channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        frameBytes.reset();
+        frame.writeInt(0); // The length, filled in below.
+        frame.writeByte(NetProtocol.WELCOME);
+        frame.writeInt(connection.avatarId);
+        frame.writeInt(world.getSeed());
+        frame.writeFloat(viewHeight);
+        frame.writeInt(tickRate);
+        frame.writeInt(SNAPSHOT_INTERVAL);
+        connection.out = ByteBuffer.wrap(finishFrame());
+        try {
+            flush(connection);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Reads what a client sent, and applies its complete messages.
+     *
+     * @param connection The client.
+     * @throws IOException If the socket failed or the client sent a malformed frame.
+     */
+    private void read(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.in);
+        if (read < 0) {
+            disconnect(connection);
+            return;
+        }
+        connection.bytesReceived += read;
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > in.capacity() - Integer.BYTES) {
+                throw new IOException("Malformed frame from avatar " + connection.avatarId);
+            }
+            if (in.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            int end = in.position() + Integer.BYTES + length;
+            in.getInt();
+            if (in.get() == NetProtocol.INPUT && end - in.position() >= 1 + Integer.BYTES) {
+                byte input = in.get();
+                world.queueInput(connection.avatarId, input, in.getInt());
+            }
+            in.position(end); // Skip what this version does not understand.
+        }
+        in.compact();
+    }
+
+    /**
+     * Writes as much of a client's pending frame as its socket takes, and waits for the
+     * socket to be writable if some is left.
+     *
+     * @param connection The client.
+     * @throws IOException If the socket failed.
+     */
+    private void flush(Connection connection) throws IOException {
+        connection.bytesSent += connection.channel.write(connection.out);
+        SelectionKey key = connection.channel.keyFor(selector);
+        if (connection.out.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            connection.out = null;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Disconnects a client and removes its avatar.
+     *
+     * @param connection The client.
+     */
+    private void disconnect(Connection connection) {
+        connections.remove(connection);
+        world.removeAvatar(connection.avatarId);
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // The client is gone either way.
+        }
+    }
+
+    /**
+     * Encodes a client's next snapshot: what changed around its avatar since its last one.
+     * What it is sent is remembered as what it knows.
+     *
+     * @param connection The client.
+     * @return The frame.
+     * @throws IOException If encoding fails.
+     */
+    private byte[] encodeSnapshot(Connection connection) throws IOException {
+        ServerWorld.AvatarState own = world.getAvatar(connection.avatarId);
+        float minX = own.x - ServerWorld.INTEREST_RADIUS;
+        float maxX = own.x + ServerWorld.INTEREST_RADIUS;
+        int avatarCount = encodeAvatars(connection, minX, maxX);
+        int fruitCount = encodeFruits(connection, minX, maxX);
+        connection.sentTick = world.getTick();
+        frameBytes.reset();
+        frame.writeInt(0); // The length, filled in below.
+        frame.writeByte(NetProtocol.SNAPSHOT);
+        frame.writeInt(world.getTick());
+        frame.writeFloat((float) world.getGameTime()); // Only shown by clients, so a float is enough.
+        frame.writeFloat(world.getDayPhase());
+        NetProtocol.writeVarLong(frame, avatarCount);
+        avatarBytes.writeTo(frame);
+        NetProtocol.writeVarLong(frame, fruitCount);
+        fruitBytes.writeTo(frame);
+        return finishFrame();
+    }
+
+    /**
+     * Encodes the avatar entries of a client's snapshot: the avatars in its range whose
+     * quantized position or energy it does not know, and those it knows that left its range.
+     * Its own avatar's entry also holds the latest of its inputs that was applied, when that
+     * changed, so it can tell which of its ticks the avatar's position is the result of.
+     *
+     * @param connection The client.
+     * @param minX The left end of its range.
+     * @param maxX The right end of its range.
+     * @return The number of entries.
+     * @throws IOException If encoding fails.
+     */
+    private int encodeAvatars(Connection connection, float minX, float maxX) throws IOException {
+        avatarBytes.reset();
+        int count = 0;
+        for (ServerWorld.AvatarState avatar : world.getAvatars()) {
+            if (avatar.x < minX || avatar.x > maxX) {
+                continue;
+            }
+            int x = NetProtocol.quantize(avatar.x);
+            int y = NetProtocol.quantize(avatar.y);
+            int[] sent = connection.sentAvatars.get(avatar.id);
+            int fields = 0;
+            if (sent == null || sent[0] != x || sent[1] != y) {
+                fields |= NetProtocol.AVATAR_POSITION;
+            }
+            if (sent == null || sent[2] != avatar.energy) {
+                fields |= NetProtocol.AVATAR_ENERGY;
+            }
+            boolean isOwn = avatar.id == connection.avatarId;
+            if (isOwn && avatar.appliedInput != connection.sentAppliedInput) {
+                fields |= NetProtocol.AVATAR_INPUT;
+            }
+            if (fields == 0) {
+                continue;
+            }
+            NetProtocol.writeVarLong(avatarEntries, avatar.id);
+            avatarEntries.writeByte(fields);
+            if ((fields & NetProtocol.AVATAR_POSITION) != 0) {
+                // Positions are sent as changes from the known one, which are small.
+                NetProtocol.writeVarLong(avatarEntries, sent == null ? x : x - sent[0]);
+                NetProtocol.writeVarLong(avatarEntries, sent == null ? y : y - sent[1]);
+            }
+            if ((fields & NetProtocol.AVATAR_ENERGY) != 0) {
+                avatarEntries.writeByte(avatar.energy);
+            }
+            if ((fields & NetProtocol.AVATAR_INPUT) != 0) {
+                NetProtocol.writeVarLong(avatarEntries, avatar.appliedInput);
+                connection.sentAppliedInput = avatar.appliedInput;
+            }
+            connection.sentAvatars.put(avatar.id, new int[]{x, y, avatar.energy});
+            count++;
+        }
+        for (Iterator<Integer> ids = connection.sentAvatars.keySet().iterator(); ids.hasNext(); ) {
+            int id = ids.next();
+            ServerWorld.AvatarState avatar = world.getAvatar(id);
+            if (avatar == null || avatar.x < minX || avatar.x > maxX) {
+                NetProtocol.writeVarLong(avatarEntries, id);
+                avatarEntries.writeByte(NetProtocol.AVATAR_REMOVED);
+                ids.remove();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Encodes the fruit entries of a client's snapshot: the fruits in its range whose flags
+     * differ from what it knows. Only the chunks that changed since its last snapshot, or
+     * that entered its range, are compared.
+     *
+     * @param connection The client.
+     * @param minX The left end of its range.
+     * @param maxX The right end of its range.
+     * @return The number of entries.
+     * @throws IOException If encoding fails.
+     */
+    private int encodeFruits(Connection connection, float minX, float maxX) throws IOException {
+        fruitBytes.reset();
+        int count = 0;
+        long previousId = 0;
+        Set<Integer> chunks = new HashSet<>();
+        for (ServerWorld.FruitChunk chunk : world.getChunks(WorldStreamer.chunkAt(minX),
+                WorldStreamer.chunkAt(maxX)).values()) {
+            chunks.add(chunk.index);
+            if (connection.sentChunks.contains(chunk.index) && chunk.changedTick <= connection.sentTick) {
+                continue;
+            }
+            for (int i = 0; i < chunk.ids.length; i++) {
+                long id = chunk.ids[i];
+                byte known = connection.sentFruits.getOrDefault(id, (byte) 0);
+                if (chunk.flags[i] == known) {
+                    continue;
+                }
+                // Ids are sent as changes from the previous entry's, which are small.
+                NetProtocol.writeVarLong(fruitEntries, id - previousId);
+                fruitEntries.writeByte(chunk.flags[i]);
+                previousId = id;
+                if (chunk.flags[i] == 0) {
+                    connection.sentFruits.remove(id);
+                } else {
+                    connection.sentFruits.put(id, chunk.flags[i]);
+                }
+                count++;
+            }
+        }
+        connection.sentChunks = chunks;
+        return count;
+    }
+
+    /**
+     * Fills in the length of the frame encoded in frameBytes.
+     *
+     * @return The frame.
+     */
+    private byte[] finishFrame() {
+        byte[] bytes = frameBytes.toByteArray();
+        ByteBuffer.wrap(bytes).putInt(0, bytes.length - Integer.BYTES);
+        return bytes;
+    }
+}
@@ -0,0 +1,532 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.util.GameClock;
+import pepse.util.GameSnapshot;
+import pepse.util.InputRecording;
+import pepse.world.Avatar;
+import pepse.world.Block;
+import pepse.world.BlockStore;
+import pepse.world.ChunkCache;
+import pepse.world.Terrain;
+import pepse.world.WorldStreamer;
+import pepse.world.daynight.DayNightCycle;
+import pepse.world.trees.Flora;
+import pepse.world.trees.FruitRegrowth;
+import pepse.world.trees.Fruits;
+import pepse.world.trees.TreeLayout;
+
+import java.awt.event.KeyEvent;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The authoritative simulation of a world shared by several players, without rendering.
+ * It ticks what the players can change: their avatars, and the fruits they eat and recolor,
+ * along with the time of day. Everything else grows from the seed, which every client
+ * generates for itself. Avatars follow the same movement and energy rules as the Avatar of a
+ * local game, on the terrain's block-aligned ground, and are stopped by the sides of higher
+ * columns as the blocks stop a local Avatar. Each tick applies the next of the inputs a
+ * player sent for its own ticks, and the avatar remembers which one, so its client can
+ * reconcile the avatar it moves at once with where the server has it.
+ * Fruits are only generated for the chunks near an avatar, and keep the stable ids a saved
+ * game uses. Chunks no avatar is near, and whose fruits are as they grew, are unloaded again;
+ * their generated data stays in a chunk cache, so reloading them does not run the noise or
+ * the random generators.
+ */
+public class ServerWorld {
+    /**
+     * constants that are used through the class
+     */
+    public static final float INTEREST_RADIUS = 1200; // How far around an avatar the world is simulated.
+    private static final int MAX_ENERGY = 100; // The most energy an avatar has.
+    private static final int JUMP_ENERGY = 10; // The energy a jump costs.
+    private static final int FRUIT_ENERGY = 10; // The energy eating a fruit gives.
+    private static final float SPAWN_HEIGHT = 30; // How far above the ground avatars spawn.
+    private static final float UNLOAD_RADIUS = 2 * INTEREST_RADIUS; // How far from every avatar chunks unload.
+    private static final int UNLOAD_INTERVAL = 60; // Ticks between two checks for chunks to unload.
+    private static final int MAX_QUEUED_INPUTS = 6; // Inputs of a player waiting for their tick.
+
+    private final int seed; // The world seed.
+    private final Terrain terrain; // Where the ground is.
+    private final ChunkCache chunkCache; // The generated ground heights and fruits of recent chunks.
+    private final GameClock gameClock = new GameClock(); // The time simulated since the server started.
+    private final DayNightCycle dayNightCycle; // The time of day.
+    private final Map<Integer, AvatarState> avatars = new LinkedHashMap<>(); // The avatars, by id.
+    private final NavigableMap<Integer, FruitChunk> chunks = new TreeMap<>(); // Generated chunks, by index.
+    private int tick; // The number of ticks simulated.
+    private int nextAvatarId; // The id of the next avatar to join.
+
+    /**
+     * The state of a player's avatar.
+     */
+    static class AvatarState {
+        final int id; // The avatar's id, which its client is told.
+        float x; // The avatar's top-left corner.
+        float y;
+        float velocityX; // The avatar's velocity.
+        float velocityY;
+        int energy = MAX_ENERGY; // The avatar's energy.
+        byte input; // The keys its player holds, as made by InputRecording.keyMask.
+        long appliedInput = -1; // The sequence of the latest input applied, or -1 before the first.
+        // Inputs not applied yet, oldest first, each as its sequence shifted left by 8 over its key mask.
+        final ArrayDeque<Long> queuedInputs = new ArrayDeque<>();
+
+        AvatarState(int id, float x, float y) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * The fruits of a chunk's trees, in parallel arrays, with the tick any of them last changed.
+     */
+    static class FruitChunk {
+        final int index; // The chunk index.
+        final long[] ids; // Each fruit's stable id.
+        final float[] x; // Each fruit's top-left corner.
+        final float[] y;
+        final float[] size; // Each fruit's size.
+        final byte[] flags; // GameSnapshot flags of each fruit.
+        final double[] eatenAt; // Game time each eaten fruit was eaten at.
+        int changedTick = -1; // The last tick a fruit of the chunk changed in.
+
+        FruitChunk(int index, int count) {
+            this.index = index;
+            ids = new long[count];
+            x = new float[count];
+            y = new float[count];
+            size = new float[count];
+            flags = new byte[count];
+            eatenAt = new double[count];
+        }
+    }
+
+    /**
+     * Constructor for a ServerWorld.
+     *
+     * @param seed The world seed.
+     * @param viewDimensions The view the terrain's height is laid out for; clients must lay
+     *                       out their terrain for the same height.
+     * @param dayNightCycleLength The length of a day, in seconds.
+     * @param chunkCacheBytes The memory budget of the generated chunk data kept for reloading.
+     */
+    public ServerWorld(int seed, Vector2 viewDimensions, float dayNightCycleLength, long chunkCacheBytes) {
+        this.seed = seed;
+        this.terrain = new Terrain(viewDimensions, seed);
+        this.chunkCache = new ChunkCache(chunkCacheBytes, terrain, new Flora(null, terrain, null, seed));
+        this.dayNightCycle = new DayNightCycle(dayNightCycleLength);
+    }
+
+    /**
+     * Adds an avatar for a player who joined, at the spawn point of a new game.
+     *
+     * @return The id of the avatar.
+     */
+    public int addAvatar() {
+        int id = nextAvatarId++;
+        avatars.put(id, new AvatarState(id, 0, terrain.groundHeightAt(0) - SPAWN_HEIGHT));
+        return id;
+    }
+
+    /**
+     * Removes the avatar of a player who left.
+     *
+     * @param id The id of the avatar.
+     */
+    public void removeAvatar(int id) {
+        avatars.remove(id);
+    }
+
+    /**
+     * Queues the keys a player held in one of its ticks. Each of the world's ticks applies the
+     * next queued input; while none is queued, the last keys stay held. If the player's inputs
+     * arrive faster than they are applied, the oldest ones are dropped, so the avatar does
+     * not lag further and further behind its player.
+     *
+     * @param id The id of the player's avatar.
+     * @param input The key mask, as made by InputRecording.keyMask.
+     * @param sequence The number of the player's tick the keys were held in.
+     */
+    public void queueInput(int id, byte input, long sequence) {
+        AvatarState avatar = avatars.get(id);
+        if (avatar == null) {
+            return;
+        }
+        if (avatar.queuedInputs.size() == MAX_QUEUED_INPUTS) {
+            avatar.queuedInputs.poll();
+        }
+        avatar.queuedInputs.add(sequence << 8 | (input & 0xFF));
+    }
+
+    /**
+     * Simulates a single fixed-length tick: moves the avatars, generates the chunks near
+     * them, lets them eat the fruits they touch, grows back the eaten fruits near them
+     * whose time came, and from time to time unloads the chunks far from all of them.
+     *
+     * @param tickLength The length of the tick, in seconds.
+     */
+    public void tick(float tickLength) {
+        tick++;
+        gameClock.advance(tickLength);
+        dayNightCycle.advance(tickLength);
+        for (AvatarState avatar : avatars.values()) {
+            loadChunksAround(avatar.x);
+            Long input = avatar.queuedInputs.poll();
+            if (input != null) {
+                avatar.input = input.byteValue();
+                avatar.appliedInput = input >> 8;
+            }
+            move(avatar, tickLength);
+            eatFruits(avatar);
+        }
+        for (AvatarState avatar : avatars.values()) {
+            regrowFruitsAround(avatar.x);
+        }
+        if (tick % UNLOAD_INTERVAL == 0) {
+            unloadIdleChunks();
+        }
+    }
+
+    /**
+     * Gets the world seed.
+     *
+     * @return The seed.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of ticks simulated.
+     *
+     * @return The tick.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Gets the time simulated since the server started.
+     *
+     * @return The game time, in seconds.
+     */
+    public double getGameTime() {
+        return gameClock.now();
+    }
+
+    /**
+     * Gets the phase of the day-night cycle.
+     *
+     * @return The phase, in [0, 1).
+     */
+    public float getDayPhase() {
+        return dayNightCycle.getPhase();
+    }
+
+    /**
+     * Gets the number of generated chunks.
+     *
+     * @return The number of chunks.
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Gets the cache of generated chunk data, for reports.
+     *
+     * @return The chunk cache.
+     */
+    public ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+
+    /**
+     * Gets the avatars, in the order they joined.
+     *
+     * @return The avatars.
+     */
+    Collection<AvatarState> getAvatars() {
+        return avatars.values();
+    }
+
+    /**
+     * Gets an avatar.
+     *
+     * @param id The id of the avatar.
+     * @return The avatar, or null if it left.
+     */
+    AvatarState getAvatar(int id) {
+        return avatars.get(id);
+    }
+
+    /**
+     * Gets the generated chunks between two chunk indices.
+     *
+     * @param firstChunk The first chunk index (inclusive).
+     * @param lastChunk The last chunk index (inclusive).
+     * @return The chunks, by index.
+     */
+    NavigableMap<Integer, FruitChunk> getChunks(int firstChunk, int lastChunk) {
+        return chunks.subMap(firstChunk, true, lastChunk, true);
+    }
+
+    /**
+     * Moves an avatar by a tick, with the movement and energy rules of Avatar: the held
+     * arrow keys move it while it has energy, space jumps off the ground for JUMP_ENERGY, and
+     * it lands on the top of the highest block under it. It moves sideways first and then
+     * vertically, so a column higher than its feet stops it instead of lifting it on top, and
+     * it has to jump up a step as a local Avatar does. A jump recolors the fruits around it.
+     *
+     * @param avatar The avatar.
+     * @param tickLength The length of the tick, in seconds.
+     */
+    private void move(AvatarState avatar, float tickLength) {
+        int movingKeys = 0;
+        avatar.velocityX = 0;
+        if (InputRecording.isKeyInMask(avatar.input, KeyEvent.VK_LEFT) && avatar.energy >= 1) {
+            avatar.velocityX -= Avatar.VELOCITY_X;
+            movingKeys++;
+        }
+        if (InputRecording.isKeyInMask(avatar.input, KeyEvent.VK_RIGHT) && avatar.energy >= 1) {
+            avatar.velocityX += Avatar.VELOCITY_X;
+            movingKeys++;
+        }
+        if (InputRecording.isKeyInMask(avatar.input, KeyEvent.VK_SPACE)
+                && Math.abs(avatar.velocityY) < 0.01f && avatar.energy >= JUMP_ENERGY) {
+            avatar.velocityY = Avatar.VELOCITY_Y;
+            avatar.energy -= JUMP_ENERGY;
+            recolorFruitsAround(avatar.x);
+        }
+        avatar.velocityY += Avatar.GRAVITY * tickLength;
+        moveSideways(avatar, avatar.velocityX * tickLength);
+        avatar.y += avatar.velocityY * tickLength;
+        float ground = groundUnder(avatar.x);
+        if (avatar.y + Avatar.SIZE >= ground) {
+            avatar.y = ground - Avatar.SIZE;
+            avatar.velocityY = 0;
+        }
+        if (movingKeys > 0) {
+            if (avatar.energy - movingKeys >= 0) {
+                avatar.energy -= movingKeys;
+            }
+        } else if (avatar.velocityY == 0 && avatar.energy < MAX_ENERGY) {
+            avatar.energy++;
+        }
+    }
+
+    /**
+     * Moves an avatar sideways, stopping it against the side of the first column in its way
+     * whose ground is higher than its feet. A column exactly at the height of its feet is the
+     * one it stands on, and does not stop it.
+     *
+     * @param avatar The avatar.
+     * @param distance How far to move it; negative to the left.
+     */
+    private void moveSideways(AvatarState avatar, float distance) {
+        float feet = avatar.y + Avatar.SIZE;
+        if (distance > 0) {
+            int lastColumn = BlockStore.columnAt(avatar.x + distance + Avatar.SIZE - 1);
+            for (int column = BlockStore.columnAt(avatar.x + Avatar.SIZE - 1) + 1; column <= lastColumn; column++) {
+                if (columnTop(column) < feet) {
+                    avatar.x = column * Block.SIZE - Avatar.SIZE;
+                    avatar.velocityX = 0;
+                    return;
+                }
+            }
+        } else if (distance < 0) {
+            int lastColumn = BlockStore.columnAt(avatar.x + distance);
+            for (int column = BlockStore.columnAt(avatar.x) - 1; column >= lastColumn; column--) {
+                if (columnTop(column) < feet) {
+                    avatar.x = (column + 1) * Block.SIZE;
+                    avatar.velocityX = 0;
+                    return;
+                }
+            }
+        }
+        avatar.x += distance;
+    }
+
+    /**
+     * Gets the top of the highest column under an avatar, which may span three columns.
+     *
+     * @param x The avatar's x-coordinate.
+     * @return The y-coordinate of the ground's top.
+     */
+    private float groundUnder(float x) {
+        float ground = Float.MAX_VALUE;
+        int lastColumn = BlockStore.columnAt(x + Avatar.SIZE - 1);
+        for (int column = BlockStore.columnAt(x); column <= lastColumn; column++) {
+            ground = Math.min(ground, columnTop(column));
+        }
+        return ground;
+    }
+
+    /**
+     * Gets the top of a column's ground, aligned to the block grid.
+     *
+     * @param column The column.
+     * @return The y-coordinate of the ground's top.
+     */
+    private float columnTop(int column) {
+        float groundHeight = chunkCache.get(BlockStore.chunkOf(column)).getGroundHeight(column);
+        return (float) Math.floor(groundHeight / Block.SIZE) * Block.SIZE;
+    }
+
+    /**
+     * Lets an avatar eat the fruits it touches, for FRUIT_ENERGY each.
+     *
+     * @param avatar The avatar.
+     */
+    private void eatFruits(AvatarState avatar) {
+        // A fruit belongs to the chunk of its tree, and hangs at most a chunk away from it.
+        int firstChunk = WorldStreamer.chunkAt(avatar.x) - 1;
+        int lastChunk = WorldStreamer.chunkAt(avatar.x + Avatar.SIZE) + 1;
+        for (FruitChunk chunk : getChunks(firstChunk, lastChunk).values()) {
+            for (int i = 0; i < chunk.ids.length; i++) {
+                if ((chunk.flags[i] & GameSnapshot.FRUIT_EATEN) != 0
+                        || chunk.x[i] + chunk.size[i] < avatar.x || chunk.x[i] > avatar.x + Avatar.SIZE
+                        || chunk.y[i] + chunk.size[i] < avatar.y || chunk.y[i] > avatar.y + Avatar.SIZE) {
+                    continue;
+                }
+                chunk.flags[i] |= GameSnapshot.FRUIT_EATEN;
+                chunk.eatenAt[i] = gameClock.now();
+                chunk.changedTick = tick;
+                if (avatar.energy + FRUIT_ENERGY <= MAX_ENERGY) {
+                    avatar.energy += FRUIT_ENERGY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recolors the fruits around a jumping avatar.
+     *
+     * @param x The avatar's x-coordinate.
+     */
+    private void recolorFruitsAround(float x) {
+        for (FruitChunk chunk : chunksAround(x).values()) {
+            for (int i = 0; i < chunk.ids.length; i++) {
+                chunk.flags[i] ^= GameSnapshot.FRUIT_RECOLORED;
+            }
+            chunk.changedTick = tick;
+        }
+    }
+
+    /**
+     * Grows back the eaten fruits around an avatar whose regrowth time passed, the way
+     * FruitRegrowth does in a local game.
+     *
+     * @param x The avatar's x-coordinate.
+     */
+    private void regrowFruitsAround(float x) {
+        for (FruitChunk chunk : chunksAround(x).values()) {
+            for (int i = 0; i < chunk.ids.length; i++) {
+                if ((chunk.flags[i] & GameSnapshot.FRUIT_EATEN) != 0
+                        && gameClock.now() - chunk.eatenAt[i] >= FruitRegrowth.REGROWTH_TIME) {
+                    // A fruit grows back with the color it grew with, as Fruit.respawn does.
+                    chunk.flags[i] = 0;
+                    chunk.changedTick = tick;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the generated chunks within INTEREST_RADIUS of an x-coordinate.
+     *
+     * @param x The x-coordinate.
+     * @return The chunks, by index.
+     */
+    private NavigableMap<Integer, FruitChunk> chunksAround(float x) {
+        return getChunks(WorldStreamer.chunkAt(x - INTEREST_RADIUS), WorldStreamer.chunkAt(x + INTEREST_RADIUS));
+    }
+
+    /**
+     * Generates the chunks within INTEREST_RADIUS of an x-coordinate that were not generated yet.
+     *
+     * @param x The x-coordinate.
+     */
+    private void loadChunksAround(float x) {
+        int lastChunk = WorldStreamer.chunkAt(x + INTEREST_RADIUS);
+        for (int chunk = WorldStreamer.chunkAt(x - INTEREST_RADIUS); chunk <= lastChunk; chunk++) {
+            if (!chunks.containsKey(chunk)) {
+                chunks.put(chunk, generateChunk(chunk));
+            }
+        }
+    }
+
+    /**
+     * Unloads the chunks farther than UNLOAD_RADIUS from every avatar whose fruits are all as
+     * they grew. Chunks with an eaten or recolored fruit are kept, since their state cannot be
+     * generated again.
+     */
+    private void unloadIdleChunks() {
+        Iterator<FruitChunk> iterator = chunks.values().iterator();
+        while (iterator.hasNext()) {
+            FruitChunk chunk = iterator.next();
+            if (isIdle(chunk)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks whether a chunk can be unloaded: it is far from every avatar, and its fruits are
+     * all as they grew.
+     *
+     * @param chunk The chunk.
+     * @return True if the chunk can be unloaded.
+     */
+    private boolean isIdle(FruitChunk chunk) {
+        float centerX = (chunk.index + 0.5f) * WorldStreamer.CHUNK_WIDTH;
+        for (AvatarState avatar : avatars.values()) {
+            if (Math.abs(avatar.x - centerX) < UNLOAD_RADIUS) {
+                return false;
+            }
+        }
+        for (byte flags : chunk.flags) {
+            if (flags != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lays out a chunk's fruits from its cached or newly generated data, with the ids
+     * PepseGameManager gives them. The chunk is marked as changed, so clients that were sent
+     * it before it was unloaded are sent it again.
+     *
+     * @param index The chunk index.
+     * @return The chunk's fruits.
+     */
+    private FruitChunk generateChunk(int index) {
+        TreeLayout trees = chunkCache.get(index).getTrees();
+        int count = 0;
+        for (int tree = 0; tree < trees.getTreeCount(); tree++) {
+            count += trees.getFruitCount(tree);
+        }
+        FruitChunk chunk = new FruitChunk(index, count);
+        int i = 0;
+        for (int tree = 0; tree < trees.getTreeCount(); tree++) {
+            long treeColumn = Math.floorDiv(trees.getTreeX(tree), Block.SIZE);
+            for (int fruit = 0; fruit < trees.getFruitCount(tree); fruit++) {
+                chunk.ids[i] = (treeColumn << 8) | fruit;
+                chunk.x[i] = trees.getFruitX(tree, fruit);
+                chunk.y[i] = trees.getFruitY(tree, fruit);
+                chunk.size[i] = Fruits.FRUIT_SIZE;
+                i++;
+            }
+        }
+        chunk.changedTick = tick;
+        return chunk;
+    }
+}
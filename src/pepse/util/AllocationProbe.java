@@ -0,0 +1,120 @@
+package pepse.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Measures how many bytes the game thread allocates per frame, with the JVM's per-thread
+ * allocation counter. Only frames in a steady state are counted, after a warm-up, since
+ * creating the world allocates by design. Replaying a recorded session with a limit on the
+ * mean makes an allocation regression test: a change that makes a hot path allocate again
+ * pushes the mean over the limit. AllocationCheck does the same for the per-frame hot paths
+ * without a recording, against a limit it fixes.
+ */
+public class AllocationProbe {
+    /**
+     * constants that are used through the class
+     */
+    private static final int WARMUP_FRAMES = 120; // Steady frames skipped while the JIT settles.
+
+    private final com.sun.management.ThreadMXBean threads; // The counter, or null if unsupported.
+    private long frameStartBytes; // The thread's allocated bytes when the frame began.
+    private int warmupFramesLeft = WARMUP_FRAMES; // Steady frames still to skip.
+    private long totalBytes; // Bytes allocated in the counted frames.
+    private long maxBytes; // The most bytes allocated in a counted frame.
+    private int frameCount; // The number of counted frames.
+
+    /**
+     * Constructor for an AllocationProbe of the calling thread's frames.
+     */
+    public AllocationProbe() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+    }
+
+    /**
+     * Checks whether the JVM counts the bytes each thread allocates.
+     *
+     * @return True if frames can be measured.
+     */
+    public boolean isSupported() {
+        return threads != null;
+    }
+
+    /**
+     * Marks the beginning of a frame. Must be called on the measured thread.
+     */
+    public void beginFrame() {
+        if (threads != null) {
+            frameStartBytes = threads.getCurrentThreadAllocatedBytes();
+        }
+    }
+
+    /**
+     * Marks the end of a frame, and counts it if it is steady and the warm-up is over.
+     * Must be called on the measured thread.
+     *
+     * @param isSteady Whether the frame is in the steady state, for example after the world
+     *                 was created.
+     */
+    public void endFrame(boolean isSteady) {
+        if (threads == null || !isSteady) {
+            return;
+        }
+        long bytes = threads.getCurrentThreadAllocatedBytes() - frameStartBytes;
+        if (warmupFramesLeft > 0) {
+            warmupFramesLeft--;
+            return;
+        }
+        totalBytes += bytes;
+        maxBytes = Math.max(maxBytes, bytes);
+        frameCount++;
+    }
+
+    /**
+     * Gets the mean bytes allocated per counted frame.
+     *
+     * @return The mean, or 0 if no frame was counted.
+     */
+    public float getMeanBytesPerFrame() {
+        return frameCount == 0 ? 0 : (float) totalBytes / frameCount;
+    }
+
+    /**
+     * Gets the most bytes allocated in a counted frame.
+     *
+     * @return The bytes.
+     */
+    public long getMaxBytesPerFrame() {
+        return maxBytes;
+    }
+
+    /**
+     * Gets the number of counted frames.
+     *
+     * @return The number of frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Builds a report of the counted frames.
+     *
+     * @return A human-readable summary.
+     */
+    @Override
+    public String toString() {
+        if (threads == null) {
+            return String.format(Locale.ROOT, "allocation: not measured, unsupported by this JVM%n");
+        }
+        return String.format(Locale.ROOT, "allocation: %.0f bytes/frame mean, %d bytes/frame max, %d frames%n",
+                getMeanBytesPerFrame(), maxBytes, frameCount);
+    }
+}
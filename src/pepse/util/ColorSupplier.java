@@ -1,4 +1,147 @@
 package pepse.util;
 
+import java.awt.*;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides procedurally-generated colors around a pivot, reproducibly and without shared
+ * mutable random state, so colors can be generated on any thread and in any order.
+ * A color is either derived from a hash of the world seed and a position, or drawn from a
+ * seedable stream, such as the stream of a chunk or of a tree. Colors are quantized and shared
+ * through a cache, since generated colors repeat often.
+ */
 public class ColorSupplier {
+    /**
+     * constants that are used through the class
+     */
+    public static final int DEFAULT_COLOR_DELTA = 10; // The default per-channel difference from the pivot.
+    private static final int COLOR_QUANTUM = 2; // Channel values are rounded to multiples of this.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // Spreads consecutive keys apart.
+    private static final long Y_MULTIPLIER = 0xC2B2AE3D27D4EB4FL; // Separates the two coordinates.
+    private static final int CHANNEL_BITS = 16; // Hash bits used for each channel.
+    private static final int CHANNEL_MASK = (1 << CHANNEL_BITS) - 1;
+
+    // Quantized colors by their packed RGB value, shared by all suppliers.
+    private static final Map<Integer, Color> colorCache = new ConcurrentHashMap<>();
+
+    private final long seed; // The world seed every color is derived from.
+
+    /**
+     * Constructor for a ColorSupplier.
+     *
+     * @param seed The world seed.
+     */
+    public ColorSupplier(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the random stream of a key, such as a chunk index or a column. The same key always
+     * gives the same stream, regardless of which other streams were created before it.
+     * A stream is not thread-safe; each thread should use its own streams.
+     *
+     * @param key The key of the stream.
+     * @return A new random stream.
+     */
+    public SplittableRandom stream(long key) {
+        return new SplittableRandom(mix(seed + GOLDEN_GAMMA * key));
+    }
+
+    /**
+     * Hashes a key, such as a column, together with a seed into 64 well-mixed bits, which may
+     * seed a generator of the key. Nearby keys and nearby seeds give unrelated hashes.
+     *
+     * @param seed The seed.
+     * @param key The key.
+     * @return The hash.
+     */
+    public static long hash(long seed, long key) {
+        return mix(seed ^ mix(key * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Returns a color similar to baseColor, with the default delta, that only depends on the
+     * seed and a position.
+     *
+     * @param baseColor A color that we wish to approximate.
+     * @param x The first coordinate of the position, such as a column.
+     * @param y The second coordinate of the position, such as a row.
+     * @return A color similar to baseColor.
+     */
+    public Color approximateColor(Color baseColor, int x, int y) {
+        long hash = mix(seed ^ mix(x * GOLDEN_GAMMA + y * Y_MULTIPLIER));
+        int range = 2 * DEFAULT_COLOR_DELTA + 1;
+        return colorOf(
+                baseColor.getRed() + channelOffset(hash, 0, range),
+                baseColor.getGreen() + channelOffset(hash, 1, range),
+                baseColor.getBlue() + channelOffset(hash, 2, range));
+    }
+
+    /**
+     * Returns a color similar to baseColor, with a difference of at most colorDelta, drawn
+     * from a random stream.
+     *
+     * @param baseColor A color that we wish to approximate.
+     * @param colorDelta The maximal difference (per channel) between the sampled color and the base color.
+     * @param random The stream to draw from.
+     * @return A color similar to baseColor.
+     */
+    public static Color approximateColor(Color baseColor, int colorDelta, SplittableRandom random) {
+        return colorOf(
+                baseColor.getRed() + random.nextInt(-colorDelta, colorDelta + 1),
+                baseColor.getGreen() + random.nextInt(-colorDelta, colorDelta + 1),
+                baseColor.getBlue() + random.nextInt(-colorDelta, colorDelta + 1));
+    }
+
+    /**
+     * Gets the shared color nearest to the given channel values. Channels are clipped to
+     * [0, 255] and rounded to the quantum, so many nearby values share a Color instance.
+     *
+     * @param red The red channel.
+     * @param green The green channel.
+     * @param blue The blue channel.
+     * @return The shared color.
+     */
+    public static Color colorOf(int red, int green, int blue) {
+        int rgb = quantize(red) << 16 | quantize(green) << 8 | quantize(blue);
+        return colorCache.computeIfAbsent(rgb, Color::new);
+    }
+
+    /**
+     * Clips a channel to [0, 255] and rounds it to the nearest multiple of the quantum.
+     *
+     * @param channel The channel value.
+     * @return The quantized channel.
+     */
+    private static int quantize(int channel) {
+        int rounded = Math.round((float) channel / COLOR_QUANTUM) * COLOR_QUANTUM;
+        return Math.min(255, Math.max(rounded, 0));
+    }
+
+    /**
+     * Takes the offset of one channel from a hash.
+     *
+     * @param hash The hash of the position.
+     * @param channel The index of the channel, from 0 to 2.
+     * @param range The number of possible offsets, centered on zero.
+     * @return The channel's offset.
+     */
+    private static int channelOffset(long hash, int channel, int range) {
+        int bits = (int) (hash >>> (channel * CHANNEL_BITS)) & CHANNEL_MASK;
+        return (bits * range >>> CHANNEL_BITS) - range / 2;
+    }
+
+    /**
+     * Scrambles a value into a well-distributed hash (the SplitMix64 finalizer).
+     *
+     * @param z The value.
+     * @return The hash.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
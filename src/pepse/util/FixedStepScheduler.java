@@ -0,0 +1,89 @@
+package pepse.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs gameplay rules at a fixed tick rate, independently of the rate frames are rendered at.
+ * Frame times are accumulated, and every full tick length in the accumulator runs the tick
+ * callbacks once. The number of ticks run in a single frame is capped, so a slow frame cannot
+ * cause more and more catch-up work (the "spiral of death"); the time that could not be caught
+ * up is dropped instead.
+ */
+public class FixedStepScheduler {
+    private final float tickLength; // The simulated duration of a single tick, in seconds.
+    private final int maxTicksPerFrame; // The most ticks that may run to catch up in one frame.
+    private final List<Runnable> tickCallbacks = new ArrayList<>(); // Rules that run once per tick.
+    private float accumulator; // Frame time that was not yet simulated, in seconds.
+    private long tickCount; // The number of ticks run since the game started.
+
+    /**
+     * Constructor for a FixedStepScheduler.
+     *
+     * @param ticksPerSecond The rate gameplay rules run at.
+     * @param maxTicksPerFrame The most ticks that may run in a single frame to catch up.
+     */
+    public FixedStepScheduler(int ticksPerSecond, int maxTicksPerFrame) {
+        this.tickLength = 1f / ticksPerSecond;
+        this.maxTicksPerFrame = maxTicksPerFrame;
+    }
+
+    /**
+     * Adds a callback to be run once every tick.
+     *
+     * @param callback The runnable to be executed every tick.
+     */
+    public void addTickCallback(Runnable callback) {
+        tickCallbacks.add(callback);
+    }
+
+    /**
+     * Advances the simulation by a frame, running as many ticks as fit in the elapsed time.
+     *
+     * @param deltaTime The time elapsed since the last frame, in seconds.
+     * @return The number of ticks that were run.
+     */
+    public int advance(float deltaTime) {
+        accumulator += deltaTime;
+        int ticks = 0;
+        while (accumulator >= tickLength && ticks < maxTicksPerFrame) {
+            GameEvents.Tick event = new GameEvents.Tick();
+            event.begin();
+            for (Runnable callback : tickCallbacks) {
+                callback.run();
+            }
+            if (event.shouldCommit()) {
+                event.tick = tickCount;
+                event.tickInFrame = ticks;
+                event.callbackCount = tickCallbacks.size();
+                event.commit();
+            }
+            accumulator -= tickLength;
+            ticks++;
+            tickCount++;
+        }
+        if (accumulator >= tickLength) {
+            // Too far behind to catch up: drop the backlog rather than growing it.
+            accumulator %= tickLength;
+        }
+        return ticks;
+    }
+
+    /**
+     * Gets the simulated duration of a single tick.
+     *
+     * @return The tick length, in seconds.
+     */
+    public float getTickLength() {
+        return tickLength;
+    }
+
+    /**
+     * Gets the number of ticks run since the game started.
+     *
+     * @return The tick count.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+}
@@ -0,0 +1,130 @@
+package pepse.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Collects frame times of a session and summarizes them as percentiles.
+ * A summary can be stored as a baseline and compared against later runs of the same replay,
+ * which makes performance numbers comparable between builds.
+ */
+public class FrameTimeStats {
+    /**
+     * constants that are used through the class
+     */
+    // The percentiles reported by the summary, in the order they are stored in a baseline file.
+    public static final double[] PERCENTILES = {50, 90, 99};
+    private static final int INITIAL_CAPACITY = 4096; // Initial number of frames the buffer can hold.
+
+    private float[] frameTimes = new float[INITIAL_CAPACITY]; // Recorded frame times, in milliseconds.
+    private int frameCount; // The number of frames recorded so far.
+
+    /**
+     * Records the duration of a single frame.
+     *
+     * @param milliseconds The duration of the frame, in milliseconds.
+     */
+    public void addFrame(float milliseconds) {
+        if (frameCount == frameTimes.length) {
+            frameTimes = Arrays.copyOf(frameTimes, frameTimes.length * 2);
+        }
+        frameTimes[frameCount++] = milliseconds;
+    }
+
+    /**
+     * Forgets the recorded frames, for example to start a new measuring window.
+     */
+    public void clear() {
+        frameCount = 0;
+    }
+
+    /**
+     * Gets the number of recorded frames.
+     *
+     * @return The number of frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Computes a percentile of the recorded frame times.
+     *
+     * @param percentile The percentile to compute, between 0 and 100.
+     * @return The frame time at that percentile, in milliseconds, or 0 if nothing was recorded.
+     */
+    public float percentile(double percentile) {
+        if (frameCount == 0) {
+            return 0;
+        }
+        float[] sorted = Arrays.copyOf(frameTimes, frameCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * frameCount) - 1;
+        return sorted[Math.max(0, Math.min(index, frameCount - 1))];
+    }
+
+    /**
+     * Computes all the reported percentiles, in the order of PERCENTILES.
+     *
+     * @return The frame times at each reported percentile, in milliseconds.
+     */
+    public float[] summary() {
+        float[] summary = new float[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            summary[i] = percentile(PERCENTILES[i]);
+        }
+        return summary;
+    }
+
+    /**
+     * Stores the summary of this run as a baseline file, one percentile per line.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file could not be written.
+     */
+    public void saveBaseline(Path file) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (float value : summary()) {
+            builder.append(value).append('\n');
+        }
+        Files.writeString(file, builder.toString());
+    }
+
+    /**
+     * Builds a report comparing this run against a stored baseline.
+     *
+     * @param baselineFile A file previously written by saveBaseline.
+     * @return A human-readable comparison, one line per percentile.
+     * @throws IOException If the baseline could not be read.
+     */
+    public String compareToBaseline(Path baselineFile) throws IOException {
+        String[] lines = Files.readString(baselineFile).trim().split("\n");
+        float[] summary = summary();
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < PERCENTILES.length && i < lines.length; i++) {
+            float baseline = Float.parseFloat(lines[i].trim());
+            float change = baseline == 0 ? 0 : (summary[i] - baseline) / baseline * 100;
+            report.append(String.format(Locale.ROOT, "p%.0f: %.3f ms (baseline %.3f ms, %+.1f%%)%n",
+                    PERCENTILES[i], summary[i], baseline, change));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Builds a report of this run alone.
+     *
+     * @return A human-readable summary, one line per percentile.
+     */
+    @Override
+    public String toString() {
+        float[] summary = summary();
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            report.append(String.format(Locale.ROOT, "p%.0f: %.3f ms%n", PERCENTILES[i], summary[i]));
+        }
+        return report.toString();
+    }
+}
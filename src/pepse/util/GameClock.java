@@ -0,0 +1,38 @@
+package pepse.util;
+
+/**
+ * Keeps the game time: the time simulated since the world was created, which, unlike the
+ * time on the wall clock, pauses with the game and can be saved and restored.
+ * The time is a double: a float's steps grow to milliseconds within hours, so adding a tick's
+ * length to it would be rounded badly in a long session.
+ */
+public class GameClock {
+    private double time; // The game time, in seconds.
+
+    /**
+     * Advances the game time.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    public void advance(float deltaTime) {
+        time += deltaTime;
+    }
+
+    /**
+     * Gets the game time.
+     *
+     * @return The time since the world was created, in seconds.
+     */
+    public double now() {
+        return time;
+    }
+
+    /**
+     * Sets the game time, for example when restoring a saved game.
+     *
+     * @param time The game time, in seconds.
+     */
+    public void set(double time) {
+        this.time = time;
+    }
+}
@@ -0,0 +1,164 @@
+package pepse.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the game's subsystems, so a recording shows which game-level
+ * activity caused a hitch next to the JVM's own events. Enable them with
+ * -XX:StartFlightRecording; they are in the "Pepse" category.
+ * Duration events have a threshold, so only slow occurrences are recorded and the events can
+ * stay enabled in long recordings; the threshold of each can be changed in the recording's
+ * settings, such as "pepse.Tick#threshold=0 ms" to record every tick. Stack traces are off,
+ * since the event's name already says where it comes from.
+ * A call site creates its event, calls begin() before the work, and fills in and commits the
+ * event only if shouldCommit() is true. When the event is disabled, JFR makes these calls no-ops
+ * that the JIT removes, together with the event's allocation, so the overhead is near zero.
+ */
+public final class GameEvents {
+    /**
+     * Creating a range of terrain: storing its cells and creating the blocks of the exposed ones.
+     */
+    @Name("pepse.TerrainGeneration")
+    @Label("Terrain Generation")
+    @Category({"Pepse", "World"})
+    @Description("Creating the cells and blocks of a range of terrain columns")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static class TerrainGeneration extends Event {
+        @Label("First Column")
+        public int firstColumn; // The first column of the range.
+
+        @Label("Columns")
+        public int columns; // The number of columns in the range.
+
+        @Label("Blocks")
+        @Description("Block GameObjects created for the exposed cells")
+        public int blockCount; // The number of created blocks.
+    }
+
+    /**
+     * Creating the trees of a range, with their leaves and fruits.
+     */
+    @Name("pepse.FloraGeneration")
+    @Label("Flora Generation")
+    @Category({"Pepse", "World"})
+    @Description("Creating the trees of a range, with their leaves and fruits")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static class FloraGeneration extends Event {
+        @Label("Min X")
+        public int minX; // The x-coordinate of the range's first tree, or 0 without trees.
+
+        @Label("Max X")
+        public int maxX; // The x-coordinate of the range's last tree, or 0 without trees.
+
+        @Label("Trees")
+        public int treeCount; // The number of created trees.
+
+        @Label("Fruits")
+        public int fruitCount; // The number of created fruits.
+    }
+
+    /**
+     * Fanning out the reactions to a jump of the avatar, run directly or scheduled as jobs.
+     */
+    @Name("pepse.JumpReactions")
+    @Label("Jump Reactions")
+    @Category({"Pepse", "Avatar"})
+    @Description("Running or scheduling the reactions to a jump of the avatar")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static class JumpReactions extends Event {
+        @Label("Listeners")
+        @Description("Callbacks reacting to the jump")
+        public int listenerCount; // The number of jump callbacks.
+
+        @Label("Chunks")
+        public int chunkCount; // The number of chunks with jump callbacks.
+
+        @Label("Deferred")
+        @Description("Whether the reactions were scheduled as jobs instead of run right away")
+        public boolean isDeferred; // Whether a job scheduler runs the reactions.
+    }
+
+    /**
+     * Running the reactions of one chunk to a jump.
+     */
+    @Name("pepse.JumpReactionBatch")
+    @Label("Jump Reaction Batch")
+    @Category({"Pepse", "Avatar"})
+    @Description("Running the reactions of one chunk to a jump of the avatar")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static class JumpReactionBatch extends Event {
+        @Label("Chunk")
+        public int chunk; // The chunk index.
+
+        @Label("Reactions")
+        public int reactionCount; // The number of reactions run.
+    }
+
+    /**
+     * A fruit being eaten.
+     */
+    @Name("pepse.FruitEaten")
+    @Label("Fruit Eaten")
+    @Category({"Pepse", "Fruits"})
+    @StackTrace(false)
+    public static class FruitEaten extends Event {
+        @Label("X")
+        public float x; // The fruit's x-coordinate.
+
+        @Label("Y")
+        public float y; // The fruit's y-coordinate.
+
+        @Label("Game Time")
+        @Description("The game time the fruit was eaten at, in seconds")
+        public double time; // The game time.
+    }
+
+    /**
+     * A fruit growing back on its tree.
+     */
+    @Name("pepse.FruitRespawned")
+    @Label("Fruit Respawned")
+    @Category({"Pepse", "Fruits"})
+    @StackTrace(false)
+    public static class FruitRespawned extends Event {
+        @Label("X")
+        public float x; // The fruit's x-coordinate.
+
+        @Label("Y")
+        public float y; // The fruit's y-coordinate.
+    }
+
+    /**
+     * A single gameplay tick, summarizing what ran in it.
+     */
+    @Name("pepse.Tick")
+    @Label("Tick")
+    @Category({"Pepse", "Simulation"})
+    @Description("Running the gameplay rules of a fixed-rate tick")
+    @Threshold("4 ms")
+    @StackTrace(false)
+    public static class Tick extends Event {
+        @Label("Tick")
+        public long tick; // The tick's number since the game started.
+
+        @Label("Tick In Frame")
+        @Description("0 for a frame's first tick, more for the ticks catching up")
+        public int tickInFrame; // The tick's index in its frame.
+
+        @Label("Callbacks")
+        public int callbackCount; // The number of tick callbacks run.
+    }
+
+    private GameEvents() {
+    }
+}
@@ -0,0 +1,305 @@
+package pepse.util;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A copy of the state of a game that cannot be generated again from the world seed:
+ * the avatar, the time of day, the fruits that differ from how they grew, and the log of the
+ * blocks the player dug or placed in each edited chunk.
+ * A snapshot only holds primitive copies, so it is cheap to capture on the game thread and
+ * safe to write from another thread. It is stored in a small, versioned binary format.
+ */
+public class GameSnapshot {
+    /**
+     * constants that are used through the class
+     */
+    public static final byte FRUIT_EATEN = 1; // Flag of a fruit that was eaten.
+    public static final byte FRUIT_RECOLORED = 2; // Flag of a fruit whose color a jump changed.
+    private static final int MAGIC = 0x50534156; // "PSAV", identifies a save file.
+    private static final short FORMAT_VERSION = 3; // Version of the binary layout written below.
+    private static final short NO_EDITS_VERSION = 2; // The older layout, without terrain edits.
+    private static final short FLOAT_TIME_VERSION = 1; // The oldest layout, with float game times.
+
+    private final int seed; // The world seed.
+    private final double gameTime; // The game time when the snapshot was captured.
+    private final float dayPhase; // The phase of the day-night cycle.
+    private final float avatarX; // The avatar's top-left corner.
+    private final float avatarY;
+    private final float avatarVelocityX; // The avatar's velocity.
+    private final float avatarVelocityY;
+    private final int energy; // The avatar's energy.
+    private final long[] fruitIds; // Ids of the fruits that differ from how they grew.
+    private final byte[] fruitFlags; // FRUIT_EATEN and FRUIT_RECOLORED flags of each fruit.
+    private final double[] fruitEatenAt; // Game time each eaten fruit was eaten at.
+    private final int[] editedChunks; // Indices of the chunks with terrain edits.
+    private final byte[][] editLogs; // The edit log of each of those chunks, as TerrainEdits writes it.
+
+    /**
+     * Constructor for a GameSnapshot. The arrays are kept, not copied.
+     *
+     * @param seed The world seed.
+     * @param gameTime The game time.
+     * @param dayPhase The phase of the day-night cycle.
+     * @param avatarX The x-coordinate of the avatar's top-left corner.
+     * @param avatarY The y-coordinate of the avatar's top-left corner.
+     * @param avatarVelocityX The avatar's horizontal velocity.
+     * @param avatarVelocityY The avatar's vertical velocity.
+     * @param energy The avatar's energy.
+     * @param fruitIds Ids of the fruits that differ from how they grew.
+     * @param fruitFlags Flags of each of those fruits.
+     * @param fruitEatenAt Game time each of those fruits was eaten at, if eaten.
+     * @param editedChunks Indices of the chunks with terrain edits.
+     * @param editLogs The edit log of each of those chunks.
+     */
+    public GameSnapshot(int seed, double gameTime, float dayPhase, float avatarX, float avatarY,
+                        float avatarVelocityX, float avatarVelocityY, int energy,
+                        long[] fruitIds, byte[] fruitFlags, double[] fruitEatenAt,
+                        int[] editedChunks, byte[][] editLogs) {
+        this.seed = seed;
+        this.gameTime = gameTime;
+        this.dayPhase = dayPhase;
+        this.avatarX = avatarX;
+        this.avatarY = avatarY;
+        this.avatarVelocityX = avatarVelocityX;
+        this.avatarVelocityY = avatarVelocityY;
+        this.energy = energy;
+        this.fruitIds = fruitIds;
+        this.fruitFlags = fruitFlags;
+        this.fruitEatenAt = fruitEatenAt;
+        this.editedChunks = editedChunks;
+        this.editLogs = editLogs;
+    }
+
+    /**
+     * Gets the world seed.
+     *
+     * @return The seed.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the game time when the snapshot was captured.
+     *
+     * @return The game time, in seconds.
+     */
+    public double getGameTime() {
+        return gameTime;
+    }
+
+    /**
+     * Gets the phase of the day-night cycle.
+     *
+     * @return The phase, in [0, 1).
+     */
+    public float getDayPhase() {
+        return dayPhase;
+    }
+
+    /**
+     * Gets the x-coordinate of the avatar's top-left corner.
+     *
+     * @return The x-coordinate.
+     */
+    public float getAvatarX() {
+        return avatarX;
+    }
+
+    /**
+     * Gets the y-coordinate of the avatar's top-left corner.
+     *
+     * @return The y-coordinate.
+     */
+    public float getAvatarY() {
+        return avatarY;
+    }
+
+    /**
+     * Gets the avatar's horizontal velocity.
+     *
+     * @return The velocity.
+     */
+    public float getAvatarVelocityX() {
+        return avatarVelocityX;
+    }
+
+    /**
+     * Gets the avatar's vertical velocity.
+     *
+     * @return The velocity.
+     */
+    public float getAvatarVelocityY() {
+        return avatarVelocityY;
+    }
+
+    /**
+     * Gets the avatar's energy.
+     *
+     * @return The energy.
+     */
+    public int getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Gets the number of fruits that differ from how they grew.
+     *
+     * @return The number of fruits.
+     */
+    public int getFruitCount() {
+        return fruitIds.length;
+    }
+
+    /**
+     * Gets the id of a saved fruit.
+     *
+     * @param i The index of the fruit, below getFruitCount().
+     * @return The fruit's id.
+     */
+    public long getFruitId(int i) {
+        return fruitIds[i];
+    }
+
+    /**
+     * Gets the FRUIT_EATEN and FRUIT_RECOLORED flags of a saved fruit.
+     *
+     * @param i The index of the fruit, below getFruitCount().
+     * @return The fruit's flags.
+     */
+    public byte getFruitFlags(int i) {
+        return fruitFlags[i];
+    }
+
+    /**
+     * Gets the game time a saved fruit was eaten at.
+     *
+     * @param i The index of the fruit, below getFruitCount().
+     * @return The game time, meaningful only if the fruit is eaten.
+     */
+    public double getFruitEatenAt(int i) {
+        return fruitEatenAt[i];
+    }
+
+    /**
+     * Gets the number of chunks with terrain edits.
+     *
+     * @return The number of edited chunks.
+     */
+    public int getEditedChunkCount() {
+        return editedChunks.length;
+    }
+
+    /**
+     * Gets the index of an edited chunk.
+     *
+     * @param i The index of the saved chunk, below getEditedChunkCount().
+     * @return The chunk index.
+     */
+    public int getEditedChunk(int i) {
+        return editedChunks[i];
+    }
+
+    /**
+     * Gets the edit log of an edited chunk.
+     *
+     * @param i The index of the saved chunk, below getEditedChunkCount().
+     * @return The chunk's log, as TerrainEdits writes it.
+     */
+    public byte[] getEditLog(int i) {
+        return editLogs[i];
+    }
+
+    /**
+     * Writes the snapshot to a file. The file is written next to its destination first and
+     * then moved over it, so an interrupted save never leaves a broken save file behind.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(seed);
+            out.writeDouble(gameTime);
+            out.writeFloat(dayPhase);
+            out.writeFloat(avatarX);
+            out.writeFloat(avatarY);
+            out.writeFloat(avatarVelocityX);
+            out.writeFloat(avatarVelocityY);
+            out.writeInt(energy);
+            out.writeInt(fruitIds.length);
+            for (int i = 0; i < fruitIds.length; i++) {
+                out.writeLong(fruitIds[i]);
+                out.writeByte(fruitFlags[i]);
+                out.writeDouble(fruitEatenAt[i]);
+            }
+            out.writeInt(editedChunks.length);
+            for (int i = 0; i < editedChunks.length; i++) {
+                out.writeInt(editedChunks[i]);
+                out.writeInt(editLogs[i].length);
+                out.write(editLogs[i]);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot previously written by save.
+     *
+     * @param file The file to read from.
+     * @return The loaded snapshot.
+     * @throws IOException If the file could not be read, or is not a save of a supported version.
+     */
+    public static GameSnapshot load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a supported save file: " + file);
+            }
+            short version = in.readShort();
+            if (version != FORMAT_VERSION && version != NO_EDITS_VERSION
+                    && version != FLOAT_TIME_VERSION) {
+                throw new IOException("Not a supported save file: " + file);
+            }
+            // Saves of the older version stored the game times as floats.
+            boolean hasFloatTimes = version == FLOAT_TIME_VERSION;
+            int seed = in.readInt();
+            double gameTime = hasFloatTimes ? in.readFloat() : in.readDouble();
+            float dayPhase = in.readFloat();
+            float avatarX = in.readFloat();
+            float avatarY = in.readFloat();
+            float avatarVelocityX = in.readFloat();
+            float avatarVelocityY = in.readFloat();
+            int energy = in.readInt();
+            int fruitCount = in.readInt();
+            long[] fruitIds = new long[fruitCount];
+            byte[] fruitFlags = new byte[fruitCount];
+            double[] fruitEatenAt = new double[fruitCount];
+            for (int i = 0; i < fruitCount; i++) {
+                fruitIds[i] = in.readLong();
+                fruitFlags[i] = in.readByte();
+                fruitEatenAt[i] = hasFloatTimes ? in.readFloat() : in.readDouble();
+            }
+            // Saves of the older versions have no terrain edits.
+            int editedChunkCount = version == FORMAT_VERSION ? in.readInt() : 0;
+            int[] editedChunks = new int[editedChunkCount];
+            byte[][] editLogs = new byte[editedChunkCount][];
+            for (int i = 0; i < editedChunkCount; i++) {
+                editedChunks[i] = in.readInt();
+                editLogs[i] = new byte[in.readInt()];
+                in.readFully(editLogs[i]);
+            }
+            return new GameSnapshot(seed, gameTime, dayPhase, avatarX, avatarY, avatarVelocityX,
+                    avatarVelocityY, energy, fruitIds, fruitFlags, fruitEatenAt,
+                    editedChunks, editLogs);
+        }
+    }
+}
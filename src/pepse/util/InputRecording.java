@@ -0,0 +1,216 @@
+package pepse.util;
+
+import danogl.gui.UserInputListener;
+
+import java.awt.event.KeyEvent;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A compact, per-tick log of the avatar's keys, together with the world seed
+ * the session was played on. Recording the keys (and not the time they were pressed)
+ * makes a session repeatable, so the same walk-and-jump run can be replayed on
+ * different builds and its frame times compared.
+ * The binary format is run-length encoded, since key state rarely changes between ticks.
+ */
+public class InputRecording {
+    /**
+     * constants that are used through the class
+     */
+    // The keys that are recorded, in the order of their bits in a tick mask.
+    // The edit keys were added last, so older recordings replay unchanged.
+    public static final int[] RECORDED_KEYS = {KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_SPACE,
+            KeyEvent.VK_DOWN, KeyEvent.VK_UP};
+    private static final int MAGIC = 0x50455053; // "PEPS", identifies a recording file.
+    private static final byte FORMAT_VERSION = 1; // Version of the binary layout written below.
+    private static final int INITIAL_CAPACITY = 4096; // Initial number of ticks the buffer can hold.
+
+    private final int seed; // The seed of the world the session was recorded on.
+    private byte[] masks; // Key state per tick, one bit per recorded key.
+    private int tickCount; // The number of ticks recorded so far.
+
+    /**
+     * Constructor for an empty recording.
+     *
+     * @param seed The seed of the world the recorded session is played on.
+     */
+    public InputRecording(int seed) {
+        this.seed = seed;
+        this.masks = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Samples the recorded keys from the given listener and appends them as the next tick.
+     *
+     * @param inputListener The listener whose key state should be recorded.
+     */
+    public void recordTick(UserInputListener inputListener) {
+        appendTick(keyMask(inputListener));
+    }
+
+    /**
+     * Samples the recorded keys from the given listener into a mask, one bit per key in the
+     * order of RECORDED_KEYS. The same mask is sent to a server as the avatar's input.
+     *
+     * @param inputListener The listener whose key state should be sampled.
+     * @return The key mask.
+     */
+    public static byte keyMask(UserInputListener inputListener) {
+        byte mask = 0;
+        for (int bit = 0; bit < RECORDED_KEYS.length; bit++) {
+            if (inputListener.isKeyPressed(RECORDED_KEYS[bit])) {
+                mask |= (byte) (1 << bit);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Checks whether a key is held down in a key mask.
+     *
+     * @param mask The key mask, as made by keyMask.
+     * @param keyCode The key code, one of RECORDED_KEYS.
+     * @return True if the key is pressed in the mask, false otherwise
+     * (including keys that are not recorded).
+     */
+    public static boolean isKeyInMask(byte mask, int keyCode) {
+        for (int bit = 0; bit < RECORDED_KEYS.length; bit++) {
+            if (RECORDED_KEYS[bit] == keyCode) {
+                return (mask & (1 << bit)) != 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the seed of the world this recording was made on.
+     *
+     * @return The world seed.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of recorded ticks.
+     *
+     * @return The number of ticks in the recording.
+     */
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Checks whether a key was held down during a recorded tick.
+     *
+     * @param tick The tick to check, between 0 and getTickCount() - 1.
+     * @param keyCode The key code, one of RECORDED_KEYS.
+     * @return True if the key was pressed during the tick, false otherwise
+     * (including keys that are not recorded).
+     */
+    public boolean isKeyPressed(int tick, int keyCode) {
+        return isKeyInMask(masks[tick], keyCode);
+    }
+
+    /**
+     * Writes the recording to a file, as a sequence of (mask, run length) pairs.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(seed);
+            out.writeInt(tickCount);
+            int tick = 0;
+            while (tick < tickCount) {
+                // Count how many consecutive ticks share the same key state.
+                int runLength = 1;
+                while (tick + runLength < tickCount && masks[tick + runLength] == masks[tick]) {
+                    runLength++;
+                }
+                out.writeByte(masks[tick]);
+                writeVarInt(out, runLength);
+                tick += runLength;
+            }
+        }
+    }
+
+    /**
+     * Reads a recording previously written by save.
+     *
+     * @param file The file to read from.
+     * @return The loaded recording.
+     * @throws IOException If the file could not be read or is not a recording.
+     */
+    public static InputRecording load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                throw new IOException("Not a supported input recording: " + file);
+            }
+            InputRecording recording = new InputRecording(in.readInt());
+            int tickCount = in.readInt();
+            while (recording.tickCount < tickCount) {
+                byte mask = in.readByte();
+                int runLength = readVarInt(in);
+                for (int i = 0; i < runLength; i++) {
+                    recording.appendTick(mask);
+                }
+            }
+            return recording;
+        }
+    }
+
+    /**
+     * Appends a single tick to the recording, growing the buffer when needed.
+     *
+     * @param mask The key state of the tick.
+     */
+    private void appendTick(byte mask) {
+        if (tickCount == masks.length) {
+            byte[] grown = new byte[masks.length * 2];
+            System.arraycopy(masks, 0, grown, 0, tickCount);
+            masks = grown;
+        }
+        masks[tickCount++] = mask;
+    }
+
+    /**
+     * Writes a non-negative int using 7 bits per byte, so short runs take a single byte.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     * @throws IOException If writing fails.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by writeVarInt.
+     *
+     * @param in The stream to read from.
+     * @return The value read.
+     * @throws IOException If reading fails.
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
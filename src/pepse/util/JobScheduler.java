@@ -0,0 +1,224 @@
+package pepse.util;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * A queue of deferred jobs that run on the game thread, so bursts of work are spread over
+ * several frames instead of stalling one. Each frame runs the jobs that are due, most urgent
+ * first, until a time budget is spent. Jobs of the same priority run in the order they became
+ * due, and then in the order they were scheduled, so deferring work keeps its order.
+ * A job can be delayed by game time, which makes the queue also replace one-shot timers.
+ */
+public class JobScheduler {
+    /**
+     * constants that are used through the class
+     */
+    private static final long NANOS_PER_MILLI = 1_000_000L; // Nanoseconds in a millisecond.
+    private static final float MILLIS_PER_SECOND = 1000; // Milliseconds in a second.
+
+    /**
+     * How urgent a job is. Among the jobs that are due, more urgent ones run first.
+     */
+    public enum Priority {
+        /** Work the player sees right away, such as reactions to the player's actions. */
+        HIGH,
+        /** Work the player sees soon, such as objects growing back. */
+        NORMAL,
+        /** Work that can wait, such as creating parts of the world that are out of view. */
+        LOW
+    }
+
+    /**
+     * A job waiting in the queue.
+     */
+    private static class Job {
+        private final Runnable work; // What the job does.
+        private final Priority priority; // How urgent the job is.
+        private final double dueTime; // The game time the job may run at.
+        private final long sequence; // Order the job was scheduled in, to break ties.
+
+        Job(Runnable work, Priority priority, double dueTime, long sequence) {
+            this.work = work;
+            this.priority = priority;
+            this.dueTime = dueTime;
+            this.sequence = sequence;
+        }
+    }
+
+    private final GameClock clock; // The clock that delays are measured on.
+    private final PriorityQueue<Job> delayed = new PriorityQueue<>( // Jobs that are not due yet.
+            Comparator.<Job>comparingDouble(job -> job.dueTime).thenComparingLong(job -> job.sequence));
+    private final PriorityQueue<Job> due = new PriorityQueue<>( // Jobs that may run, most urgent first.
+            Comparator.<Job, Priority>comparing(job -> job.priority)
+                    .thenComparingDouble(job -> job.dueTime)
+                    .thenComparingLong(job -> job.sequence));
+    private long budgetNanos; // The time a frame may spend running jobs.
+    private long nextSequence; // The sequence number of the next scheduled job.
+    private long jobsRun; // Jobs run since the statistics were reset.
+    private int maxDepth; // The most jobs queued at once since the statistics were reset.
+    private double totalLatency; // Sum of the time jobs waited after they were due, in seconds.
+    private float maxLatency; // The longest time a job waited after it was due, in seconds.
+
+    /**
+     * Constructor for a JobScheduler.
+     *
+     * @param clock The game clock delays are measured on.
+     * @param budgetMillis The time a frame may spend running jobs, in milliseconds.
+     */
+    public JobScheduler(GameClock clock, float budgetMillis) {
+        this.clock = clock;
+        setBudget(budgetMillis);
+    }
+
+    /**
+     * Sets the time a frame may spend running jobs.
+     * At least one due job runs in every frame, so a small budget slows the queue down but
+     * never stops it.
+     *
+     * @param budgetMillis The budget, in milliseconds.
+     */
+    public void setBudget(float budgetMillis) {
+        this.budgetNanos = (long) (budgetMillis * NANOS_PER_MILLI);
+    }
+
+    /**
+     * Queues a job to run as soon as the budget allows.
+     *
+     * @param priority How urgent the job is.
+     * @param work The job.
+     */
+    public void submit(Priority priority, Runnable work) {
+        schedule(priority, 0, work);
+    }
+
+    /**
+     * Queues a job to run once some game time has passed.
+     *
+     * @param priority How urgent the job is once it is due.
+     * @param delay The game time until the job is due, in seconds.
+     * @param work The job.
+     */
+    public void schedule(Priority priority, float delay, Runnable work) {
+        Job job = new Job(work, priority, clock.now() + Math.max(0, delay), nextSequence++);
+        if (delay > 0) {
+            delayed.add(job);
+        } else {
+            due.add(job);
+        }
+        maxDepth = Math.max(maxDepth, getDepth());
+    }
+
+    /**
+     * Runs the jobs that are due, most urgent first, until the frame's budget is spent.
+     * Called once a frame on the game thread, after the game clock advanced.
+     *
+     * @return The number of jobs run.
+     */
+    public int runFrame() {
+        double now = clock.now();
+        while (!delayed.isEmpty() && delayed.peek().dueTime <= now) {
+            due.add(delayed.poll());
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        int count = 0;
+        while (!due.isEmpty() && (count == 0 || System.nanoTime() < deadline)) {
+            Job job = due.poll();
+            float latency = (float) Math.max(0, now - job.dueTime);
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            jobsRun++;
+            count++;
+            job.work.run();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of queued jobs, due or not.
+     *
+     * @return The queue depth.
+     */
+    public int getDepth() {
+        return due.size() + delayed.size();
+    }
+
+    /**
+     * Gets the number of jobs that are due but did not run yet.
+     *
+     * @return The number of due jobs.
+     */
+    public int getDueCount() {
+        return due.size();
+    }
+
+    /**
+     * Gets the most jobs that were queued at once since the statistics were reset.
+     *
+     * @return The maximal queue depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of jobs run since the statistics were reset.
+     *
+     * @return The number of jobs.
+     */
+    public long getJobsRun() {
+        return jobsRun;
+    }
+
+    /**
+     * Gets the mean game time jobs waited after they were due, since the statistics were reset.
+     *
+     * @return The mean latency, in milliseconds.
+     */
+    public float getMeanLatencyMillis() {
+        return jobsRun == 0 ? 0 : (float) (totalLatency / jobsRun * MILLIS_PER_SECOND);
+    }
+
+    /**
+     * Gets the total game time jobs waited after they were due, since the statistics were reset.
+     * Readers that sample the statistics periodically can take differences of it and of
+     * getJobsRun, instead of resetting the statistics for every other reader.
+     *
+     * @return The total latency, in milliseconds.
+     */
+    public double getTotalLatencyMillis() {
+        return totalLatency * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Gets the longest game time a job waited after it was due, since the statistics were reset.
+     *
+     * @return The maximal latency, in milliseconds.
+     */
+    public float getMaxLatencyMillis() {
+        return maxLatency * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Resets the statistics, keeping the queued jobs.
+     */
+    public void resetStats() {
+        jobsRun = 0;
+        maxDepth = getDepth();
+        totalLatency = 0;
+        maxLatency = 0;
+    }
+
+    /**
+     * Formats the queue statistics as a single line.
+     *
+     * @return The statistics.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "jobs run %d, depth %d (max %d), latency mean %.1f ms, max %.1f ms",
+                jobsRun, getDepth(), maxDepth, getMeanLatencyMillis(), getMaxLatencyMillis());
+    }
+}
@@ -0,0 +1,168 @@
+package pepse.util;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+
+/**
+ * A mutable 2D vector, for the vector math of code that runs every frame or tick. Each
+ * operation of danogl's Vector2 returns a new vector, so a chain of them allocates an object
+ * per step; a MutableVector2 is changed in place instead, and reused, so the chain allocates
+ * nothing, and only the final result is turned into a Vector2 when danogl needs one.
+ * The static helpers read an object's center without the vectors GameObject.getCenter makes.
+ * A MutableVector2 is not thread-safe; each hot path keeps its own.
+ */
+public final class MutableVector2 {
+    private float x; // The x component.
+    private float y; // The y component.
+
+    /**
+     * Constructor for a zero MutableVector2.
+     */
+    public MutableVector2() {
+    }
+
+    /**
+     * Constructor for a MutableVector2.
+     *
+     * @param x The x component.
+     * @param y The y component.
+     */
+    public MutableVector2(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Gets the x component.
+     *
+     * @return The x component.
+     */
+    public float x() {
+        return x;
+    }
+
+    /**
+     * Gets the y component.
+     *
+     * @return The y component.
+     */
+    public float y() {
+        return y;
+    }
+
+    /**
+     * Sets both components.
+     *
+     * @param x The x component.
+     * @param y The y component.
+     * @return This vector.
+     */
+    public MutableVector2 set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    /**
+     * Sets both components to those of a Vector2.
+     *
+     * @param vector The vector to copy.
+     * @return This vector.
+     */
+    public MutableVector2 set(Vector2 vector) {
+        return set(vector.x(), vector.y());
+    }
+
+    /**
+     * Sets this vector to the center of a GameObject.
+     *
+     * @param object The object.
+     * @return This vector.
+     */
+    public MutableVector2 setToCenterOf(GameObject object) {
+        return set(centerX(object), centerY(object));
+    }
+
+    /**
+     * Adds to this vector.
+     *
+     * @param dx The x component to add.
+     * @param dy The y component to add.
+     * @return This vector.
+     */
+    public MutableVector2 add(float dx, float dy) {
+        x += dx;
+        y += dy;
+        return this;
+    }
+
+    /**
+     * Subtracts from this vector.
+     *
+     * @param dx The x component to subtract.
+     * @param dy The y component to subtract.
+     * @return This vector.
+     */
+    public MutableVector2 subtract(float dx, float dy) {
+        x -= dx;
+        y -= dy;
+        return this;
+    }
+
+    /**
+     * Multiplies this vector by a scalar.
+     *
+     * @param factor The scalar.
+     * @return This vector.
+     */
+    public MutableVector2 mult(float factor) {
+        x *= factor;
+        y *= factor;
+        return this;
+    }
+
+    /**
+     * Rotates this vector around the origin, the way Vector2.rotated does.
+     *
+     * @param degrees The angle, in degrees.
+     * @return This vector.
+     */
+    public MutableVector2 rotate(float degrees) {
+        double radians = Math.toRadians(degrees);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        float rotatedX = x * cos - y * sin;
+        y = x * sin + y * cos;
+        x = rotatedX;
+        return this;
+    }
+
+    /**
+     * Creates an immutable copy of this vector, for passing to danogl.
+     *
+     * @return The new Vector2.
+     */
+    public Vector2 toVector2() {
+        return new Vector2(x, y);
+    }
+
+    /**
+     * Gets the x-coordinate of a GameObject's center, without allocating.
+     *
+     * @param object The object.
+     * @return The x-coordinate.
+     */
+    public static float centerX(GameObject object) {
+        return object.getTopLeftCorner().x() + object.getDimensions().x() / 2;
+    }
+
+    /**
+     * Gets the y-coordinate of a GameObject's center, without allocating.
+     *
+     * @param object The object.
+     * @return The y-coordinate.
+     */
+    public static float centerY(GameObject object) {
+        return object.getTopLeftCorner().y() + object.getDimensions().y() / 2;
+    }
+}
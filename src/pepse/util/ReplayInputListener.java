@@ -0,0 +1,96 @@
+package pepse.util;
+
+import danogl.gui.UserInputListener;
+import danogl.util.Vector2;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A stand-in input listener that answers key queries from an InputRecording instead of the keyboard.
+ * The recording is advanced one tick at a time by the game loop, so the avatar sees exactly
+ * the key state it saw when the session was recorded.
+ * Mouse queries are forwarded to the real listener, since they are not recorded.
+ */
+public class ReplayInputListener implements UserInputListener {
+    private final InputRecording recording; // The recording being replayed.
+    private final UserInputListener liveListener; // The real listener, used for unrecorded input.
+    private int tick; // The tick currently being replayed.
+
+    /**
+     * Constructor for a ReplayInputListener.
+     *
+     * @param recording The recording to replay.
+     * @param liveListener The real listener of the game, used for anything that was not recorded.
+     */
+    public ReplayInputListener(InputRecording recording, UserInputListener liveListener) {
+        this.recording = recording;
+        this.liveListener = liveListener;
+    }
+
+    /**
+     * Moves the replay to the next recorded tick.
+     */
+    public void advanceTick() {
+        if (tick < recording.getTickCount()) {
+            tick++;
+        }
+    }
+
+    /**
+     * Checks whether every recorded tick has been replayed.
+     *
+     * @return True if the replay reached the end of the recording.
+     */
+    public boolean isFinished() {
+        return tick >= recording.getTickCount();
+    }
+
+    /**
+     * Checks whether a key is pressed in the tick currently being replayed.
+     *
+     * @param keyCode The key code to check.
+     * @return True if the key was pressed in the recorded tick.
+     */
+    @Override
+    public boolean isKeyPressed(int keyCode) {
+        return !isFinished() && recording.isKeyPressed(tick, keyCode);
+    }
+
+    /**
+     * Gets the recorded keys that are pressed in the tick currently being replayed.
+     *
+     * @return The set of pressed key codes.
+     */
+    @Override
+    public Set<Integer> pressedKeys() {
+        Set<Integer> keys = new HashSet<>();
+        for (int keyCode : InputRecording.RECORDED_KEYS) {
+            if (isKeyPressed(keyCode)) {
+                keys.add(keyCode);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Forwards mouse button queries to the real listener.
+     *
+     * @param button The mouse button to check.
+     * @return True if the button is pressed.
+     */
+    @Override
+    public boolean isMouseButtonPressed(int button) {
+        return liveListener.isMouseButtonPressed(button);
+    }
+
+    /**
+     * Forwards mouse position queries to the real listener.
+     *
+     * @return The mouse position on screen.
+     */
+    @Override
+    public Vector2 getMouseScreenPos() {
+        return liveListener.getMouseScreenPos();
+    }
+}
@@ -0,0 +1,36 @@
+package pepse.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes game snapshots on a background thread, so saving never stalls the game loop.
+ * Snapshots are written one at a time, in the order they were captured.
+ */
+public class SnapshotWriter {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-writer");
+        thread.setDaemon(true); // A save in progress does not keep the game from exiting.
+        return thread;
+    });
+
+    /**
+     * Queues a snapshot to be written to a file.
+     *
+     * @param snapshot The snapshot to write.
+     * @param file The file to write to.
+     * @return A future completing once the file was written.
+     */
+    public Future<?> save(GameSnapshot snapshot, Path file) {
+        return executor.submit(() -> {
+            try {
+                snapshot.save(file);
+            } catch (IOException e) {
+                System.err.println("Could not save the game: " + e.getMessage());
+            }
+        });
+    }
+}
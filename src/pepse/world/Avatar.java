@@ -3,8 +3,6 @@ package pepse.world;
 import danogl.GameObject;
 import danogl.collisions.Collision;
 import danogl.collisions.GameObjectCollection;
-import danogl.collisions.Layer;
-import danogl.components.ScheduledTask;
 import danogl.gui.ImageReader;
 import danogl.gui.UserInputListener;
 import danogl.gui.WindowController;
@@ -14,25 +12,37 @@ import danogl.gui.rendering.Renderable;
 import danogl.gui.rendering.TextRenderable;
 import danogl.util.Counter;
 import danogl.util.Vector2;
+import pepse.util.GameClock;
+import pepse.util.GameEvents;
+import pepse.util.JobScheduler;
 import pepse.world.trees.Fruit;
+import pepse.world.trees.FruitRegrowth;
 
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
  * Represents a playable avatar character with energy-based movement and jumping abilities.
  * The avatar's energy level affects its capabilities, with interactions that can change energy levels.
+ * The avatar can also dig the terrain in front of it or below it (down key), and place blocks
+ * in front of it (up key).
  */
 public class Avatar extends GameObject {
 
     // Constants defining the avatar's behavior and assets.
-    private static final String AVATAR_IMAGE_PATH = "assets/idle_0.png"; // Default image path for the avatar.
-    private static final float GRAVITY = 500; // Gravitational acceleration affecting the avatar.
-    private static final float VELOCITY_X = 400; // Horizontal movement speed.
-    private static final float VELOCITY_Y = -650; // Initial velocity for jumps.
+    public static final String AVATAR_IMAGE_PATH = "assets/idle_0.png"; // Default image path for the avatar.
+    public static final float SIZE = 50; // The width and height of the avatar.
+    public static final float GRAVITY = 500; // Gravitational acceleration affecting the avatar.
+    public static final float VELOCITY_X = 400; // Horizontal movement speed.
+    public static final float VELOCITY_Y = -650; // Initial velocity for jumps.
+    private static final float JUMP_RIPPLE_SPEED = 3000; // How fast jump reactions spread, in pixels/s.
+    private static final int EDIT_COOLDOWN_TICKS = 10; // Ticks between edits while an edit key is held.
     private int energy; // Current energy level of the avatar.
     private Consumer<Integer> energyUpdateCallback; // Callback to notify on energy changes.
     private ImageReader imageReader; // Utility for reading images from assets.
@@ -43,8 +53,21 @@ public class Avatar extends GameObject {
     private AnimationRenderable jumpingAnimation;
 
     private GameObjectCollection gameObjects; // Reference to the game's object collection for interaction.
-    private List<Runnable> jumpCallbacks = new ArrayList<>(); // Callbacks triggered upon jumping.
+    // Callbacks triggered upon jumping, by the chunk of the object they belong to.
+    private Map<Integer, ArrayList<Runnable>> jumpCallbacks = new TreeMap<>();
+    private int jumpCallbackCount; // The number of registered jump callbacks.
+    private FruitRegrowth fruitRegrowth; // Grows eaten fruits back.
     private UserInputListener inputListener;
+    private int movingKeys; // How many movement keys moved the avatar in the last tick.
+    private boolean isResting; // Whether the avatar stood still on the ground in the last tick.
+    private boolean hasJumped; // Whether the avatar jumped since the last frame's animation.
+    private GameClock gameClock = new GameClock(); // The game time fruits are eaten at.
+    private JobScheduler jobScheduler; // Defers jump reactions, or null to not defer them.
+    // Receives interactions with other objects, with the x-coordinate they happen at.
+    private BiConsumer<Float, Runnable> interactionQueue = (x, interaction) -> interaction.run();
+    private TerrainEditor terrainEditor; // Digs and places blocks, or null if the avatar cannot.
+    private boolean isFacingLeft; // Whether the avatar last moved to the left.
+    private int editCooldown; // Ticks left before the next edit.
 
     /**
      * Constructs an Avatar instance with specified parameters.
@@ -57,7 +80,7 @@ public class Avatar extends GameObject {
      */
     public Avatar(Vector2 pos, UserInputListener inputListener, ImageReader imageReader,
                   Consumer<Integer> energyUpdateCallback, GameObjectCollection gameObjects) {
-        super(pos, Vector2.ONES.mult(50), imageReader.readImage(AVATAR_IMAGE_PATH, true));
+        super(pos, Vector2.ONES.mult(SIZE), imageReader.readImage(AVATAR_IMAGE_PATH, true));
         this.inputListener = inputListener;
         this.energy = 100; // Initial energy level set to 100%.
         this.gameObjects = gameObjects;
@@ -104,6 +127,74 @@ public class Avatar extends GameObject {
         }
     }
 
+    /**
+     * Gets the avatar's energy level.
+     *
+     * @return The energy, between 0 and 100.
+     */
+    public int getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Sets the avatar's energy level, for example when restoring a saved game.
+     *
+     * @param energy The energy, between 0 and 100.
+     */
+    public void setEnergy(int energy) {
+        this.energy = Math.max(0, Math.min(100, energy));
+        energyUpdateCallback.accept(this.energy);
+    }
+
+    /**
+     * Sets the clock the time fruits are eaten at is read from.
+     *
+     * @param gameClock The game clock.
+     */
+    public void setGameClock(GameClock gameClock) {
+        this.gameClock = gameClock;
+    }
+
+    /**
+     * Sets where eaten fruits are sent to grow back. Must be set before the avatar eats fruits.
+     *
+     * @param fruitRegrowth The fruit regrowth.
+     */
+    public void setFruitRegrowth(FruitRegrowth fruitRegrowth) {
+        this.fruitRegrowth = fruitRegrowth;
+    }
+
+    /**
+     * Sets the scheduler that jump reactions are deferred to. Jump reactions
+     * then ripple outwards from the avatar over several frames, instead of all running in the
+     * frame of the jump.
+     *
+     * @param jobScheduler The job scheduler.
+     */
+    public void setJobScheduler(JobScheduler jobScheduler) {
+        this.jobScheduler = jobScheduler;
+    }
+
+    /**
+     * Sets where the avatar's interactions with other objects are sent. By default they are
+     * applied immediately; the world can instead queue them for its merge phase.
+     *
+     * @param interactionQueue Receives each interaction with the x-coordinate it happens at.
+     */
+    public void setInteractionQueue(BiConsumer<Float, Runnable> interactionQueue) {
+        this.interactionQueue = interactionQueue;
+    }
+
+    /**
+     * Sets the editor the avatar digs and places blocks with. Without one, the edit keys do
+     * nothing, as in a shared world, whose server does not know of edits.
+     *
+     * @param terrainEditor The terrain editor.
+     */
+    public void setTerrainEditor(TerrainEditor terrainEditor) {
+        this.terrainEditor = terrainEditor;
+    }
+
     /**
      * Handles interactions when the avatar collides with other objects.
      * Specifically, regenerates energy when colliding with fruits and respawns the fruits.
@@ -115,89 +206,217 @@ public class Avatar extends GameObject {
     public void onCollisionEnter(GameObject other, Collision collision) {
         super.onCollisionEnter(other, collision);
         if (other instanceof Fruit) {
-            updateEnergy(+10); // Gain energy on fruit collision.
-            gameObjects.removeGameObject(other); // Remove the collided fruit.
-            // Schedule a task to respawn the fruit after a delay.
-            new ScheduledTask(this, 30, false, () -> {
-                Fruit newFruit = new Fruit(((Fruit) other).getPosition(),
-                        ((Fruit) other).getSize(), gameObjects);
-                gameObjects.addGameObject(newFruit, Layer.DEFAULT);
-            });
+            Fruit fruit = (Fruit) other;
+            interactionQueue.accept(fruit.getPosition().x(), () -> eatFruit(fruit));
         }
     }
 
     /**
-     * Updates the avatar's state based on user input and current energy level.
-     * Handles movement, jumping, and energy consumption/regeneration.
+     * Eats a fruit the avatar collided with; it grows back once its regrowth time passed.
+     *
+     * @param fruit The fruit to eat.
+     */
+    private void eatFruit(Fruit fruit) {
+        if (!gameObjects.removeGameObject(fruit)) { // Remove the collided fruit.
+            return; // Already eaten in this frame.
+        }
+        fruit.eat(gameClock.now());
+        updateEnergy(+10); // Gain energy on fruit collision.
+        fruitRegrowth.add(fruit);
+    }
+
+    /**
+     * Updates the avatar's animation for a rendered frame. Input is not read here but per
+     * tick, in tick(), so every recorded tick's keys are seen exactly once, whatever the frame
+     * rate.
      *
      * @param deltaTime The time elapsed since the last update call.
      */
     @Override
     public void update(float deltaTime) {
         super.update(deltaTime);
-        float xVel = 0; // Reset horizontal velocity.
-        boolean isJumping = false; // Flag to track jumping state.
         AnimationRenderable newAnimation = this.idleAnimation; // Default to idle animation.
+        if (hasJumped) {
+            newAnimation = this.jumpingAnimation;
+            hasJumped = false; // The jump animation shows in the first frame after the jump.
+        } else if (movingKeys > 0) {
+            newAnimation = this.movingRightAnimation;
+        }
+        renderer().setIsFlippedHorizontally(isFacingLeft); // Flip animation for leftward movement.
+
+        // Update the avatar's animation if it has changed.
+        if (renderer().getRenderable() != newAnimation) {
+            renderer().setRenderable(newAnimation);
+        }
+    }
+
+    /**
+     * Applies the input and energy rules for a single fixed-length tick: the movement and jump
+     * keys set the avatar's velocity, moving consumes energy, and resting on the ground
+     * regenerates it, but not to exceed 100.
+     * Running these rules per tick rather than per frame keeps them independent of the frame
+     * rate, and lets a replay see exactly the key state of each recorded tick. Edits are made
+     * per tick too, so a replay digs the same blocks.
+     */
+    public void tick() {
+        applyInput();
+        if (movingKeys > 0) {
+            updateEnergy(-movingKeys); // Consume energy for moving.
+        } else if (isResting && energy < 100) {
+            updateEnergy(+1);
+        }
+        if (terrainEditor != null) {
+            editTerrain();
+        }
+    }
+
+    /**
+     * Sets the avatar's velocity from the movement keys, and jumps if the jump key is pressed
+     * while the avatar stands on the ground with enough energy.
+     */
+    private void applyInput() {
+        float xVel = 0; // Reset horizontal velocity.
+        movingKeys = 0;
 
         // Handle left movement.
         if (inputListener.isKeyPressed(KeyEvent.VK_LEFT) && energy >= 1) {
             xVel -= VELOCITY_X;
-            updateEnergy(-1); // Consume energy for moving.
-            newAnimation = this.movingRightAnimation;
-            renderer().setIsFlippedHorizontally(true); // Flip animation for leftward movement.
+            movingKeys++; // Energy for moving is consumed in this tick.
+            isFacingLeft = true;
         }
 
         // Handle right movement.
         if (inputListener.isKeyPressed(KeyEvent.VK_RIGHT) && energy >= 1) {
             xVel += VELOCITY_X;
-            updateEnergy(-1); // Consume energy for moving.
-            newAnimation = this.movingRightAnimation;
-            renderer().setIsFlippedHorizontally(false); // Normal orientation for rightward movement.
+            movingKeys++; // Energy for moving is consumed in this tick.
+            isFacingLeft = false;
         }
 
-        // Handle jumping.
+        // Handle jumping, and trigger the jump callbacks.
         if (inputListener.isKeyPressed(KeyEvent.VK_SPACE) &&
                 Math.abs(getVelocity().y()) < 0.01f && energy >= 10) {
             transform().setVelocityY(VELOCITY_Y); // Apply vertical velocity for the jump.
             updateEnergy(-10); // Consume energy for jumping.
-            isJumping = true;
-        }
-
-        // Apply jumping animation and trigger jump callbacks if jumping.
-        if (isJumping) {
-            newAnimation = this.jumpingAnimation;
+            hasJumped = true;
             triggerJumpReactions();
         }
 
-        // Update the avatar's animation if it has changed.
-        if (renderer().getRenderable() != newAnimation) {
-            renderer().setRenderable(newAnimation);
-        }
-
         // Apply horizontal velocity.
         transform().setVelocityX(xVel);
 
-        // Regenerate energy when idle or not actively moving, but not to exceed 100.
-        if (getVelocity().y() == 0 && xVel == 0 && energy < 100) {
-            updateEnergy(+1);
+        // Energy is regenerated in this tick when idle or not actively moving.
+        isResting = getVelocity().y() == 0 && xVel == 0;
+    }
+
+    /**
+     * Digs or places a block while an edit key is held, at most once per EDIT_COOLDOWN_TICKS.
+     * Digging takes the highest solid cell of the column in front of the avatar, at the height
+     * of its body, or else the cell below its feet. Placing fills the cell in front of its feet,
+     * or else the one above it, which builds steps.
+     */
+    private void editTerrain() {
+        if (editCooldown > 0) {
+            editCooldown--;
+            return;
+        }
+        boolean isDigging = inputListener.isKeyPressed(KeyEvent.VK_DOWN);
+        boolean isPlacing = inputListener.isKeyPressed(KeyEvent.VK_UP);
+        if (!isDigging && !isPlacing) {
+            return;
+        }
+        Vector2 topLeft = getTopLeftCorner();
+        // The column next to the ones the avatar overlaps, on the side it faces.
+        int frontColumn = isFacingLeft ? BlockStore.columnAt(topLeft.x()) - 1
+                : BlockStore.columnAt(topLeft.x() + SIZE - 1) + 1;
+        int headRow = BlockStore.rowAt(topLeft.y());
+        int feetRow = BlockStore.rowAt(topLeft.y() + SIZE - 1);
+        boolean isEdited = false;
+        if (isDigging) {
+            for (int row = headRow; row <= feetRow && !isEdited; row++) {
+                isEdited = terrainEditor.dig(frontColumn, row);
+            }
+            if (!isEdited) {
+                isEdited = terrainEditor.dig(BlockStore.columnAt(topLeft.x() + SIZE / 2), feetRow + 1);
+            }
+        } else {
+            isEdited = terrainEditor.place(frontColumn, feetRow)
+                    || terrainEditor.place(frontColumn, feetRow - 1);
+        }
+        if (isEdited) {
+            editCooldown = EDIT_COOLDOWN_TICKS;
         }
     }
 
     /**
      * Adds a callback to be triggered when the avatar jumps.
      *
+     * @param x The x-coordinate of the object reacting to the jump, which decides when the
+     *          jump's ripple reaches it.
      * @param callback The runnable to be executed on jump.
      */
-    public void addJumpCallback(Runnable callback) {
-        jumpCallbacks.add(callback);
+    public void addJumpCallback(float x, Runnable callback) {
+        jumpCallbacks.computeIfAbsent(BlockStore.chunkOf(BlockStore.columnAt(x)),
+                chunk -> new ArrayList<>()).add(callback);
+        jumpCallbackCount++;
     }
 
     /**
-     * Triggers all registered jump callbacks.
+     * Gets the number of registered jump callbacks.
+     *
+     * @return The number of callbacks.
+     */
+    public int getJumpCallbackCount() {
+        return jumpCallbackCount;
+    }
+
+    /**
+     * Frees the spare capacity of the jump callback lists.
+     * Must be called on the game thread.
+     */
+    public void compact() {
+        for (ArrayList<Runnable> callbacks : jumpCallbacks.values()) {
+            callbacks.trimToSize();
+        }
+    }
+
+    /**
+     * Triggers all registered jump callbacks. With a job scheduler, the reactions of each chunk
+     * run as one job, delayed by the chunk's distance from the avatar, so the reactions ripple
+     * outwards and their cost is spread over several frames.
      */
     private void triggerJumpReactions() {
-        for (Runnable reaction : jumpCallbacks) {
-            reaction.run();
+        GameEvents.JumpReactions event = new GameEvents.JumpReactions();
+        event.begin();
+        float avatarX = getCenter().x();
+        for (Map.Entry<Integer, ArrayList<Runnable>> entry : jumpCallbacks.entrySet()) {
+            int chunk = entry.getKey();
+            List<Runnable> reactions = entry.getValue();
+            Runnable job = () -> {
+                GameEvents.JumpReactionBatch batchEvent = new GameEvents.JumpReactionBatch();
+                batchEvent.begin();
+                for (Runnable reaction : reactions) {
+                    reaction.run();
+                }
+                if (batchEvent.shouldCommit()) {
+                    batchEvent.chunk = chunk;
+                    batchEvent.reactionCount = reactions.size();
+                    batchEvent.commit();
+                }
+            };
+            if (jobScheduler == null) {
+                job.run();
+                continue;
+            }
+            float chunkCenterX = (chunk + 0.5f) * Block.SIZE * BlockStore.CHUNK_COLUMNS;
+            float distance = Math.max(0,
+                    Math.abs(chunkCenterX - avatarX) - Block.SIZE * BlockStore.CHUNK_COLUMNS / 2f);
+            jobScheduler.schedule(JobScheduler.Priority.HIGH, distance / JUMP_RIPPLE_SPEED, job);
+        }
+        if (event.shouldCommit()) {
+            event.listenerCount = jumpCallbackCount;
+            event.chunkCount = jumpCallbacks.size();
+            event.isDeferred = jobScheduler != null;
+            event.commit();
         }
     }
 }
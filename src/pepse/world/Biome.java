@@ -0,0 +1,187 @@
+package pepse.world;
+
+import pepse.util.ColorSupplier;
+
+import java.awt.Color;
+
+/**
+ * The kinds of land the world is made of. Which biome a column belongs to is chosen by a
+ * low-frequency noise channel, so biomes span several chunks; the channel is mapped to a
+ * biome coordinate, from 0 for the first biome to the number of biomes - 1 for the last, and
+ * a column between two biomes blends their height amplitude, ground color and tree density,
+ * so the land changes smoothly at a border. Neighboring biomes are neighbors in this order.
+ */
+public enum Biome {
+    DESERT(0.5f, new Color(226, 196, 128), 0.1f),
+    PLAINS(0.7f, new Color(212, 123, 74), 0.6f),
+    FOREST(1f, new Color(170, 104, 64), 2.5f),
+    HILLS(1.6f, new Color(150, 136, 124), 0.8f);
+
+    /**
+     * constants that are used through the class
+     */
+    // Spreads the channel, which is mostly within +-0.4, so each biome covers about a quarter of the world.
+    private static final float NOISE_SPREAD = 7.5f;
+    // The share of the distance between two biomes' coordinates that blends them; the rest is pure.
+    private static final float BLEND_WIDTH = 0.4f;
+    private static final Biome[] BIOMES = values(); // The biomes, without copying values() each time.
+    private static final float MAX_COORDINATE = BIOMES.length - 1; // The last biome's coordinate.
+
+    private final float heightAmplitude; // Scales how far the ground rises and falls.
+    private final Color groundColor; // The base color of the ground blocks.
+    private final float treeDensity; // Scales the chance of a tree in each column.
+
+    /**
+     * Constructor for a Biome.
+     *
+     * @param heightAmplitude Scales how far the ground rises and falls, 1 for the terrain's
+     *                        full variation.
+     * @param groundColor The base color of the ground blocks.
+     * @param treeDensity Scales the chance of a tree in each column, 1 for the flora's density.
+     */
+    Biome(float heightAmplitude, Color groundColor, float treeDensity) {
+        this.heightAmplitude = heightAmplitude;
+        this.groundColor = groundColor;
+        this.treeDensity = treeDensity;
+    }
+
+    /**
+     * Gets how far the ground of the biome rises and falls.
+     *
+     * @return The height amplitude, 1 for the terrain's full variation.
+     */
+    public float getHeightAmplitude() {
+        return heightAmplitude;
+    }
+
+    /**
+     * Gets the base color of the biome's ground blocks.
+     *
+     * @return The color.
+     */
+    public Color getGroundColor() {
+        return groundColor;
+    }
+
+    /**
+     * Gets how much more or less likely trees are in the biome.
+     *
+     * @return The factor of the flora's tree density.
+     */
+    public float getTreeDensity() {
+        return treeDensity;
+    }
+
+    /**
+     * Gets the largest height amplitude of any biome, which bounds how deep the ground goes.
+     *
+     * @return The largest height amplitude.
+     */
+    public static float maxHeightAmplitude() {
+        float max = 0;
+        for (Biome biome : BIOMES) {
+            max = Math.max(max, biome.heightAmplitude);
+        }
+        return max;
+    }
+
+    /**
+     * Maps a value of the biome noise channel to a biome coordinate.
+     *
+     * @param noise The noise, as sampled with a factor of 1.
+     * @return The biome coordinate, from 0 to the number of biomes - 1.
+     */
+    static float coordinateOf(double noise) {
+        float coordinate = (float) noise * NOISE_SPREAD + MAX_COORDINATE / 2;
+        return Math.min(MAX_COORDINATE, Math.max(coordinate, 0));
+    }
+
+    /**
+     * Gets the biome a biome coordinate is mostly in.
+     *
+     * @param coordinate The biome coordinate.
+     * @return The nearest biome.
+     */
+    public static Biome at(float coordinate) {
+        return BIOMES[Math.round(coordinate)];
+    }
+
+    /**
+     * Gets the blended height amplitude at a biome coordinate.
+     *
+     * @param coordinate The biome coordinate.
+     * @return The height amplitude.
+     */
+    public static float heightAmplitudeAt(float coordinate) {
+        int lower = lowerOf(coordinate);
+        return lerp(BIOMES[lower].heightAmplitude, BIOMES[lower + 1].heightAmplitude,
+                blendOf(coordinate, lower));
+    }
+
+    /**
+     * Gets the blended tree density at a biome coordinate.
+     *
+     * @param coordinate The biome coordinate.
+     * @return The factor of the flora's tree density.
+     */
+    public static float treeDensityAt(float coordinate) {
+        int lower = lowerOf(coordinate);
+        return lerp(BIOMES[lower].treeDensity, BIOMES[lower + 1].treeDensity,
+                blendOf(coordinate, lower));
+    }
+
+    /**
+     * Gets the blended base ground color at a biome coordinate. Colors are shared through the
+     * color supplier's cache, so the columns of a biome, and of most of a border, share one.
+     *
+     * @param coordinate The biome coordinate.
+     * @return The color.
+     */
+    public static Color groundColorAt(float coordinate) {
+        int lower = lowerOf(coordinate);
+        float blend = blendOf(coordinate, lower);
+        Color from = BIOMES[lower].groundColor;
+        Color to = BIOMES[lower + 1].groundColor;
+        return ColorSupplier.colorOf(
+                Math.round(lerp(from.getRed(), to.getRed(), blend)),
+                Math.round(lerp(from.getGreen(), to.getGreen(), blend)),
+                Math.round(lerp(from.getBlue(), to.getBlue(), blend)));
+    }
+
+    /**
+     * Gets the lower of the two biomes a coordinate is between.
+     *
+     * @param coordinate The biome coordinate.
+     * @return The index of the lower biome; the one after it is the upper biome.
+     */
+    private static int lowerOf(float coordinate) {
+        return Math.min((int) coordinate, BIOMES.length - 2);
+    }
+
+    /**
+     * Gets how far a coordinate has blended from the lower biome into the upper one. Only the
+     * middle of the distance between them blends, along a smooth step, so most of each biome
+     * is pure.
+     *
+     * @param coordinate The biome coordinate.
+     * @param lower The index of the lower biome.
+     * @return The upper biome's weight, from 0 to 1.
+     */
+    private static float blendOf(float coordinate, int lower) {
+        float t = (coordinate - lower - 0.5f) / BLEND_WIDTH + 0.5f;
+        t = Math.min(1, Math.max(t, 0));
+        return t * t * (3 - 2 * t);
+    }
+
+    /**
+     * Interpolates linearly between two values.
+     *
+     * @param from The value at 0.
+     * @param to The value at 1.
+     * @param t The position between them.
+     * @return The interpolated value.
+     */
+    private static float lerp(float from, float to, float t) {
+        return from + (to - from) * t;
+    }
+}
@@ -14,6 +14,8 @@ public class Block extends GameObject {
      * constants that are used through the class
      */
     public static final int SIZE = 30;
+    // The dimensions of every block. Vector2 is immutable, so all blocks share one.
+    public static final Vector2 DIMENSIONS = Vector2.ONES.mult(SIZE);
 
     /**
      * Constructor for creating a Block object.
@@ -24,7 +26,7 @@ public class Block extends GameObject {
     public Block(Vector2 topLeftCorner, Renderable renderable) {
         // Initialize the GameObject with a position, size
         // (defined by the static SIZE constant), and a renderable.
-        super(topLeftCorner, Vector2.ONES.mult(SIZE), renderable);
+        super(topLeftCorner, DIMENSIONS, renderable);
 
         // Configure physics to prevent other objects from intersecting this block.
         physics().preventIntersectionsFromDirection(Vector2.ZERO);
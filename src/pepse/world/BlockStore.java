@@ -0,0 +1,228 @@
+package pepse.world;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the terrain's cells as block ids in primitive arrays, one byte per cell, in chunks of
+ * CHUNK_COLUMNS columns. Storing the cells themselves, rather than a Block GameObject per cell,
+ * lets only the cells that can actually be reached have GameObjects, while buried cells cost a
+ * byte each and are never updated.
+ * Cells are addressed by column and row on the Block.SIZE grid, or by world coordinates.
+ * The top solid row of each column is kept up to date as cells are set, so finding the surface
+ * does not scan the column.
+ * A chunk can hold cells before it is generated, such as the edge column a neighbor stores to
+ * find which of its own cells are exposed, so whether a chunk was generated is kept apart from
+ * whether it has cells.
+ */
+public class BlockStore {
+    /**
+     * constants that are used through the class
+     */
+    public static final byte AIR = 0; // Id of an empty cell.
+    public static final byte GROUND = 1; // Id of a cell of terrain.
+    public static final int CHUNK_COLUMNS = 16; // The number of columns in a chunk.
+
+    private final int rows; // The number of rows in a column, from the top of the world down.
+    private final Map<Integer, Chunk> chunks = new HashMap<>(); // Cells of each chunk that has any.
+    private final Set<Integer> generatedChunks = new HashSet<>(); // Chunks whose every column was stored.
+
+    /**
+     * The cells of a single chunk, and the surface of each of its columns.
+     */
+    private static class Chunk {
+        private final byte[] cells; // Block ids, column after column, from the top row down.
+        private final int[] surfaceRows; // The top solid row of each column, or rows if none.
+
+        Chunk(int rows) {
+            cells = new byte[CHUNK_COLUMNS * rows];
+            surfaceRows = new int[CHUNK_COLUMNS];
+            Arrays.fill(surfaceRows, rows);
+        }
+    }
+
+    /**
+     * Constructor for an empty BlockStore.
+     *
+     * @param rows The number of rows in a column, counted from y = 0 down.
+     */
+    public BlockStore(int rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Gets the number of rows in a column.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the column a world x-coordinate is in.
+     *
+     * @param x The x-coordinate.
+     * @return The column index.
+     */
+    public static int columnAt(float x) {
+        return (int) Math.floor(x / Block.SIZE);
+    }
+
+    /**
+     * Gets the row a world y-coordinate is in.
+     *
+     * @param y The y-coordinate.
+     * @return The row index.
+     */
+    public static int rowAt(float y) {
+        return (int) Math.floor(y / Block.SIZE);
+    }
+
+    /**
+     * Gets the chunk a column is in.
+     *
+     * @param column The column index.
+     * @return The chunk index.
+     */
+    public static int chunkOf(int column) {
+        return Math.floorDiv(column, CHUNK_COLUMNS);
+    }
+
+    /**
+     * Gets the block at a world position.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return The id of the block, AIR if nothing is stored there.
+     */
+    public byte get(float x, float y) {
+        return getCell(columnAt(x), rowAt(y));
+    }
+
+    /**
+     * Sets the block at a world position.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param block The id of the block.
+     */
+    public void set(float x, float y, byte block) {
+        setCell(columnAt(x), rowAt(y), block);
+    }
+
+    /**
+     * Gets the block in a cell.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The id of the block, AIR for cells outside the stored rows or chunks.
+     */
+    public byte getCell(int column, int row) {
+        Chunk chunk = chunks.get(chunkOf(column));
+        if (chunk == null || row < 0 || row >= rows) {
+            return AIR;
+        }
+        return chunk.cells[indexOf(column, row)];
+    }
+
+    /**
+     * Sets the block in a cell, allocating its chunk if needed, and updates the surface of the
+     * cell's column: a solid cell above the surface becomes the surface, and clearing the
+     * surface cell finds the next solid cell below it. Cells outside the stored rows are
+     * ignored, as getCell reads them as air.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell, between 0 and getRows() - 1.
+     * @param block The id of the block.
+     */
+    public void setCell(int column, int row, byte block) {
+        if (row < 0 || row >= rows) {
+            return;
+        }
+        Chunk chunk = chunks.computeIfAbsent(chunkOf(column), index -> new Chunk(rows));
+        int index = indexOf(column, row);
+        chunk.cells[index] = block;
+        int local = Math.floorMod(column, CHUNK_COLUMNS);
+        int surfaceRow = chunk.surfaceRows[local];
+        if (block != AIR && row < surfaceRow) {
+            chunk.surfaceRows[local] = row;
+        } else if (block == AIR && row == surfaceRow) {
+            int below = row + 1;
+            while (below < rows && chunk.cells[index + below - row] == AIR) {
+                below++;
+            }
+            chunk.surfaceRows[local] = below;
+        }
+    }
+
+    /**
+     * Checks whether a solid cell can be reached, that is, whether it has air above it or to
+     * its left or right. Nothing can reach the terrain from below, so the cell below is ignored.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return True if the cell is solid and exposed.
+     */
+    public boolean isExposed(int column, int row) {
+        return getCell(column, row) != AIR && (getCell(column, row - 1) == AIR
+                || getCell(column - 1, row) == AIR || getCell(column + 1, row) == AIR);
+    }
+
+    /**
+     * Gets the top solid cell of a column.
+     *
+     * @param column The column.
+     * @return The row of the top solid cell, or getRows() if the column is empty.
+     */
+    public int surfaceRow(int column) {
+        Chunk chunk = chunks.get(chunkOf(column));
+        return chunk == null ? rows : chunk.surfaceRows[Math.floorMod(column, CHUNK_COLUMNS)];
+    }
+
+    /**
+     * Checks whether every column of a chunk was generated and stored, so its cells are the
+     * terrain's and not just empty.
+     *
+     * @param chunk The chunk index.
+     * @return True if the chunk was generated and not unloaded since.
+     */
+    public boolean isGenerated(int chunk) {
+        return generatedChunks.contains(chunk);
+    }
+
+    /**
+     * Marks a chunk as generated, once every one of its columns was stored.
+     *
+     * @param chunk The chunk index.
+     */
+    public void markGenerated(int chunk) {
+        generatedChunks.add(chunk);
+    }
+
+    /**
+     * Frees the cells of a chunk.
+     *
+     * @param chunk The chunk index.
+     */
+    public void unload(int chunk) {
+        chunks.remove(chunk);
+        generatedChunks.remove(chunk);
+    }
+
+    /**
+     * Gets the memory used by the stored cells.
+     *
+     * @return The number of bytes in the loaded chunks' arrays.
+     */
+    public long memoryBytes() {
+        return (long) chunks.size() * CHUNK_COLUMNS * (rows + Integer.BYTES);
+    }
+
+    private int indexOf(int column, int row) {
+        return Math.floorMod(column, CHUNK_COLUMNS) * rows + row;
+    }
+}
@@ -0,0 +1,150 @@
+package pepse.world;
+
+import pepse.world.trees.Flora;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the data generated for recently used chunks, so a chunk that is created again, such
+ * as one the player walks back to, or one a server reloads, skips the noise and the random
+ * generators. The cache is bounded by an estimate of the bytes it holds rather than by a
+ * number of entries, since chunks with many trees are larger; when it is over its budget,
+ * the least recently used chunks are evicted until it is within it again.
+ * The cache is synchronized, so chunks may be created on any thread.
+ */
+public class ChunkCache {
+    /**
+     * constants that are used through the class
+     */
+    public static final long DEFAULT_BUDGET_BYTES = 1 << 20; // The budget when none is given.
+    private static final int ENTRY_BYTES = 56; // Estimated overhead of a map entry and its boxed key.
+
+    private final long budgetBytes; // The most bytes the cache holds.
+    private final Terrain terrain; // Samples the ground heights of chunks.
+    private final Flora flora; // Lays out the trees of chunks.
+    // The cached chunks, by index, from the least to the most recently used.
+    private final Map<Integer, ChunkData> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes; // The estimated bytes the cached chunks hold.
+    private long hitCount; // Requests answered from the cache.
+    private long missCount; // Requests that generated the chunk.
+    private long evictionCount; // Chunks evicted to stay within the budget.
+
+    /**
+     * Constructor for a ChunkCache.
+     *
+     * @param budgetBytes The most bytes the cache holds, estimated.
+     * @param terrain Samples the ground heights of chunks.
+     * @param flora Lays out the trees of chunks.
+     */
+    public ChunkCache(long budgetBytes, Terrain terrain, Flora flora) {
+        this.budgetBytes = budgetBytes;
+        this.terrain = terrain;
+        this.flora = flora;
+    }
+
+    /**
+     * Gets the data of a chunk, generating it if it is not cached.
+     *
+     * @param chunk The chunk index.
+     * @return The chunk's data.
+     */
+    public synchronized ChunkData get(int chunk) {
+        ChunkData data = entries.get(chunk);
+        if (data != null) {
+            hitCount++;
+            return data;
+        }
+        missCount++;
+        int minX = chunk * WorldStreamer.CHUNK_WIDTH;
+        // The biomes are sampled once, and the heights and trees looked up in them.
+        float[] biomes = terrain.sampleBiomes(chunk * BlockStore.CHUNK_COLUMNS,
+                BlockStore.CHUNK_COLUMNS);
+        data = new ChunkData(chunk, biomes, terrain.sampleChunk(chunk, biomes),
+                flora.layOut(minX, minX + WorldStreamer.CHUNK_WIDTH - 1, biomes));
+        long bytes = data.memoryBytes() + ENTRY_BYTES;
+        if (bytes <= budgetBytes) {
+            entries.put(chunk, data);
+            usedBytes += bytes;
+            evictOverBudget();
+        }
+        return data;
+    }
+
+    /**
+     * Gets the share of requests answered from the cache.
+     *
+     * @return The hit ratio, between 0 and 1, or 0 before any request.
+     */
+    public synchronized float getHitRatio() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (float) hitCount / requests;
+    }
+
+    /**
+     * Gets the number of requests answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of requests that generated their chunk.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of chunks evicted to stay within the budget.
+     *
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of cached chunks.
+     *
+     * @return The number of chunks.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the estimated bytes the cached chunks hold.
+     *
+     * @return The estimated size, in bytes.
+     */
+    public synchronized long memoryBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the most bytes the cache holds.
+     *
+     * @return The budget, in bytes.
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Evicts the least recently used chunks until the cache is within its budget.
+     */
+    private void evictOverBudget() {
+        Iterator<ChunkData> eldest = entries.values().iterator();
+        while (usedBytes > budgetBytes) {
+            usedBytes -= eldest.next().memoryBytes() + ENTRY_BYTES;
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+}
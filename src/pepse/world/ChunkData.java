@@ -0,0 +1,106 @@
+package pepse.world;
+
+import pepse.world.trees.TreeLayout;
+
+/**
+ * What generating a chunk from the seed gives: the biomes and ground heights of its columns
+ * and the layout of its trees and fruits. It is immutable, so it can be cached and shared, and the
+ * chunk created again from it without running the noise or the random generators again.
+ */
+public final class ChunkData {
+    /**
+     * constants that are used through the class
+     */
+    private static final int OBJECT_BYTES = 16; // Estimated header of an object.
+    private static final int ARRAY_BYTES = 16; // Estimated header of an array.
+    private static final int REFERENCE_BYTES = 4; // Estimated size of a reference.
+
+    private final int index; // The chunk index.
+    private final float[] biomes; // Biome coordinate of each column, and of one column on each side.
+    private final float[] groundHeights; // Ground height of each column, and of one column on each side.
+    private final TreeLayout trees; // Where the chunk's trees and fruits grow.
+
+    /**
+     * Constructor for ChunkData.
+     *
+     * @param index The chunk index.
+     * @param biomes The biome coordinates, as Terrain.sampleBiomes gives them.
+     * @param groundHeights The ground heights, as Terrain.sampleChunk gives them.
+     * @param trees The layout of the chunk's trees, as Flora.layOut gives it.
+     */
+    public ChunkData(int index, float[] biomes, float[] groundHeights, TreeLayout trees) {
+        this.index = index;
+        this.biomes = biomes;
+        this.groundHeights = groundHeights;
+        this.trees = trees;
+    }
+
+    /**
+     * Gets the chunk index.
+     *
+     * @return The index.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the ground height of a column of the chunk.
+     *
+     * @param column The column, in the chunk.
+     * @return The y-coordinate of the ground, before it is aligned to the block grid.
+     */
+    public float getGroundHeight(int column) {
+        return groundHeights[column - index * BlockStore.CHUNK_COLUMNS + 1];
+    }
+
+    /**
+     * Gets the biome a column of the chunk is mostly in.
+     *
+     * @param column The column, in the chunk.
+     * @return The biome.
+     */
+    public Biome getBiome(int column) {
+        return Biome.at(biomes[column - index * BlockStore.CHUNK_COLUMNS + 1]);
+    }
+
+    /**
+     * Gets the layout of the chunk's trees and fruits.
+     *
+     * @return The layout.
+     */
+    public TreeLayout getTrees() {
+        return trees;
+    }
+
+    /**
+     * Estimates the heap the data uses.
+     *
+     * @return The estimated size, in bytes.
+     */
+    public long memoryBytes() {
+        return OBJECT_BYTES + Integer.BYTES + 3 * REFERENCE_BYTES
+                + 2 * ARRAY_BYTES + (long) (biomes.length + groundHeights.length) * Float.BYTES
+                + trees.memoryBytes();
+    }
+
+    /**
+     * Gets the ground heights, from the column left of the chunk to the column right of it.
+     * The array is shared and must not be changed.
+     *
+     * @return The ground heights.
+     */
+    float[] groundHeights() {
+        return groundHeights;
+    }
+
+    /**
+     * Gets the biome coordinates, from the column left of the chunk to the column right of it.
+     * The array is shared and must not be changed.
+     *
+     * @return The biome coordinates.
+     */
+    float[] biomes() {
+        return biomes;
+    }
+}
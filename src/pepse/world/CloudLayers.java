@@ -0,0 +1,237 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Parallax cloud layers in front of the sky, and behind the night, which darkens them. Each
+ * layer scrolls at its own rate relative to the camera, and drifts with the wind. A layer's
+ * clouds are generated procedurally from 2D noise into a single tile image that wraps around
+ * horizontally and is as wide as the window, so a frame draws each layer with at most two
+ * blits. Tiles are generated once, on a background thread; until a layer's tile is ready, the
+ * layer draws nothing.
+ */
+public class CloudLayers {
+    /**
+     * constants that are used through the class
+     */
+    private static final float COVER = 0.45f; // The share of the sky covered by clouds.
+    private static final float WIND = 12; // The wind speed, in pixels per second.
+    private static final float[] PARALLAX = {0.1f, 0.25f, 0.45f}; // Scroll rate of each layer, far to near.
+    private static final float[] HEIGHTS = {0.12f, 0.16f, 0.2f}; // Each layer's height, of the window's.
+    private static final float[] TOPS = {0.05f, 0.12f, 0.2f}; // Each layer's top, of the window's height.
+    private static final float[] ALPHAS = {0.5f, 0.7f, 0.9f}; // The opacity of each layer's clouds.
+    private static final int BASE_CELLS = 6; // Noise cells across a tile at the coarsest octave.
+    private static final int OCTAVES = 4; // Noise octaves summed into a tile.
+    private static final float COVER_SPREAD = 0.6f; // How far the cover moves the noise threshold.
+    private static final float SOFTNESS = 0.15f; // How gradually the clouds' edges fade out.
+
+    private final List<Layer> layers = new ArrayList<>(); // The layers, far to near.
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cloud-generator");
+        thread.setDaemon(true); // Generating clouds does not keep the game from exiting.
+        return thread;
+    });
+    private final int seed; // The world seed, so the same clouds appear on every run.
+
+    /**
+     * A single cloud layer: a GameObject in camera coordinates whose renderable draws the
+     * layer's tile twice, wrapped around at the scroll offset.
+     */
+    private static class Layer extends GameObject {
+        private final int index; // The layer's index, far to near.
+        private volatile BufferedImage tile; // The layer's clouds, replaced as a whole.
+        private float drift; // How far the wind moved the tile, in pixels.
+        private float offset; // How far the tile is scrolled, in pixels.
+
+        Layer(int index, Vector2 topLeft, Vector2 dimensions) {
+            super(topLeft, dimensions, null);
+            this.index = index;
+            setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+            renderer().setRenderable(new Renderable() {
+                @Override
+                public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                                   double degreesCounterClockwise, boolean isFlippedHorizontally,
+                                   boolean isFlippedVertically, double opaqueness) {
+                    drawTile(g, topLeftCorner, opaqueness);
+                }
+            });
+        }
+
+        /**
+         * Draws the tile at the scroll offset, then again right after it to fill the window.
+         *
+         * @param g The graphics to draw on.
+         * @param topLeftCorner The top-left corner of the layer on the screen.
+         * @param opaqueness The opacity of the layer.
+         */
+        private void drawTile(Graphics2D g, Vector2 topLeftCorner, double opaqueness) {
+            BufferedImage image = tile;
+            if (image == null) {
+                return;
+            }
+            Composite composite = g.getComposite();
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opaqueness));
+            int width = image.getWidth();
+            int x = (int) topLeftCorner.x() - Math.floorMod((int) offset, width);
+            g.drawImage(image, x, (int) topLeftCorner.y(), null);
+            g.drawImage(image, x + width, (int) topLeftCorner.y(), null);
+            g.setComposite(composite);
+        }
+    }
+
+    /**
+     * Constructor for CloudLayers. The tiles start generating in the background right away.
+     *
+     * @param windowDimensions The dimensions of the game window.
+     * @param seed The world seed.
+     */
+    public CloudLayers(Vector2 windowDimensions, int seed) {
+        this.seed = seed;
+        for (int i = 0; i < PARALLAX.length; i++) {
+            layers.add(new Layer(i, new Vector2(0, windowDimensions.y() * TOPS[i]),
+                    new Vector2(windowDimensions.x(), windowDimensions.y() * HEIGHTS[i])));
+        }
+        generateTiles();
+    }
+
+    /**
+     * Gets the cloud layers, far to near, to add to the background in this order.
+     *
+     * @return The layers' GameObjects.
+     */
+    public List<GameObject> getLayers() {
+        return new ArrayList<>(layers);
+    }
+
+    /**
+     * Scrolls the layers with the camera and the wind. Called once a frame.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     * @param cameraX The x-coordinate of the camera's top-left corner in the world.
+     */
+    public void update(float deltaTime, float cameraX) {
+        for (Layer layer : layers) {
+            float parallax = PARALLAX[layer.index];
+            float width = layer.getDimensions().x();
+            // The drift is kept within a tile, so it never grows large enough to lose precision.
+            layer.drift = (layer.drift - WIND * parallax * deltaTime) % width;
+            layer.offset = (cameraX * parallax) % width + layer.drift;
+        }
+    }
+
+    /**
+     * Queues the generation of every layer's tile.
+     */
+    private void generateTiles() {
+        for (Layer layer : layers) {
+            int width = (int) layer.getDimensions().x();
+            int height = (int) layer.getDimensions().y();
+            generator.submit(() -> layer.tile = generateTile(width, height, layer.index, COVER));
+        }
+    }
+
+    /**
+     * Generates a layer's tile from fractal value noise that wraps around horizontally, so the
+     * tile's edges meet seamlessly. The clouds fade out towards the tile's top and bottom.
+     *
+     * @param width The width of the tile.
+     * @param height The height of the tile.
+     * @param layer The index of the layer, which selects its noise.
+     * @param cover The share of the sky covered by clouds.
+     * @return The tile.
+     */
+    private BufferedImage generateTile(int width, int height, int layer, float cover) {
+        BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // Summed octaves cluster around one half, so the cover shifts the threshold around it.
+        float threshold = 0.5f + (0.5f - cover) * COVER_SPREAD;
+        for (int py = 0; py < height; py++) {
+            float edge = (float) Math.sin(Math.PI * (py + 0.5) / height);
+            for (int px = 0; px < width; px++) {
+                float noise = 0;
+                float amplitude = 0.5f;
+                float totalAmplitude = 0;
+                int cells = BASE_CELLS;
+                for (int octave = 0; octave < OCTAVES; octave++) {
+                    float cellSize = (float) width / cells;
+                    noise += amplitude * valueNoise(px / cellSize, py / cellSize, cells, layer * OCTAVES + octave);
+                    totalAmplitude += amplitude;
+                    amplitude /= 2;
+                    cells *= 2;
+                }
+                noise /= totalAmplitude;
+                float density = edge * Math.max(0, Math.min(1, (noise - threshold) / SOFTNESS));
+                int alpha = (int) (255 * density * ALPHAS[layer]);
+                tile.setRGB(px, py, alpha << 24 | 0xFFFFFF);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Samples smooth value noise whose lattice repeats every `period` cells horizontally.
+     *
+     * @param x The horizontal position, in cells.
+     * @param y The vertical position, in cells.
+     * @param period The number of cells after which the noise repeats horizontally.
+     * @param octave Selects an independent noise for each layer and octave.
+     * @return The noise, from 0 to 1.
+     */
+    private float valueNoise(float x, float y, int period, int octave) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float tx = fade(x - x0);
+        float ty = fade(y - y0);
+        float top = lerp(lattice(x0, y0, period, octave), lattice(x0 + 1, y0, period, octave), tx);
+        float bottom = lerp(lattice(x0, y0 + 1, period, octave), lattice(x0 + 1, y0 + 1, period, octave), tx);
+        return lerp(top, bottom, ty);
+    }
+
+    /**
+     * Gets the random value of a lattice point, wrapping its column around the period.
+     *
+     * @param x The lattice column.
+     * @param y The lattice row.
+     * @param period The number of columns after which the lattice repeats.
+     * @param octave Selects an independent lattice.
+     * @return The value, from 0 to 1.
+     */
+    private float lattice(int x, int y, int period, int octave) {
+        int hash = Math.floorMod(x, period) * 73856093 ^ y * 19349663 ^ octave * 83492791 ^ seed;
+        hash ^= hash >>> 13;
+        hash *= 0x5BD1E995;
+        hash ^= hash >>> 15;
+        return (hash & 0xFFFF) / 65535f;
+    }
+
+    /**
+     * Smooths an interpolation weight, so the noise has no visible lattice edges.
+     *
+     * @param t The weight, from 0 to 1.
+     * @return The smoothed weight.
+     */
+    private static float fade(float t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    /**
+     * Interpolates linearly between two values.
+     *
+     * @param a The value at 0.
+     * @param b The value at 1.
+     * @param t The weight.
+     * @return The interpolated value.
+     */
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+}
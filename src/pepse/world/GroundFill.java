@@ -0,0 +1,120 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Draws the buried ground of the terrain. Terrain only creates a Block GameObject for the cells
+ * that are exposed, so without a fill the sky would show through every cell below the surface
+ * layer. Each chunk is drawn as one small texture, one pixel per cell, in the colors its blocks
+ * would have; the texture is drawn in the background, behind the blocks, and is only changed
+ * where a cell is dug or placed. The light map darkens it like the blocks in front of it.
+ */
+public class GroundFill {
+    private final Terrain terrain; // Colors the cells, like their blocks.
+    private final BlockStore blockStore; // The terrain's cells.
+    private final GameObjectCollection gameObjects; // Where the chunks' fill overlays are added.
+    private final Map<Integer, ChunkFill> chunks = new HashMap<>(); // The fill of each loaded chunk.
+
+    /**
+     * The texture and the overlay of a single chunk.
+     */
+    private static class ChunkFill {
+        private final Color[] groundColors; // The ground color of each column's biome.
+        private final BufferedImage texture; // One pixel per cell, transparent where there is air.
+        private final GameObject overlay; // Draws the texture behind the chunk's blocks.
+
+        ChunkFill(int chunk, int rows) {
+            groundColors = new Color[BlockStore.CHUNK_COLUMNS];
+            texture = new BufferedImage(BlockStore.CHUNK_COLUMNS, rows, BufferedImage.TYPE_INT_ARGB);
+            overlay = new GameObject(new Vector2(chunk * BlockStore.CHUNK_COLUMNS * Block.SIZE, 0),
+                    new Vector2(BlockStore.CHUNK_COLUMNS * Block.SIZE, rows * Block.SIZE),
+                    new ImageRenderable(texture));
+            overlay.setTag("ground fill");
+        }
+    }
+
+    /**
+     * Constructor for a GroundFill.
+     *
+     * @param terrain The terrain, whose block store holds the cells to draw.
+     * @param gameObjects The game's object collection, where the fill overlays are added.
+     */
+    public GroundFill(Terrain terrain, GameObjectCollection gameObjects) {
+        this.terrain = terrain;
+        this.blockStore = terrain.getBlockStore();
+        this.gameObjects = gameObjects;
+    }
+
+    /**
+     * Draws the ground of a chunk, which must already be in the block store. Chunks are loaded
+     * after the sky, the clouds and the sun were added to the background, so the fill is drawn
+     * in front of them.
+     *
+     * @param chunk The chunk index.
+     */
+    public void loadChunk(int chunk) {
+        if (chunks.containsKey(chunk)) {
+            return;
+        }
+        ChunkFill chunkFill = new ChunkFill(chunk, blockStore.getRows());
+        chunks.put(chunk, chunkFill);
+        int firstColumn = chunk * BlockStore.CHUNK_COLUMNS;
+        for (int local = 0; local < BlockStore.CHUNK_COLUMNS; local++) {
+            // The biome is sampled once per column, so redrawing a cell needs no noise.
+            chunkFill.groundColors[local] = Biome.groundColorAt(
+                    terrain.biomeAt((firstColumn + local) * Block.SIZE));
+            for (int row = 0; row < blockStore.getRows(); row++) {
+                drawCell(chunkFill, firstColumn + local, row);
+            }
+        }
+        gameObjects.addGameObject(chunkFill.overlay, Layer.BACKGROUND);
+    }
+
+    /**
+     * Removes a chunk's fill and its overlay, for example when the chunk is unloaded.
+     *
+     * @param chunk The chunk index.
+     */
+    public void unloadChunk(int chunk) {
+        ChunkFill chunkFill = chunks.remove(chunk);
+        if (chunkFill != null) {
+            gameObjects.removeGameObject(chunkFill.overlay, Layer.BACKGROUND);
+        }
+    }
+
+    /**
+     * Redraws a cell whose block changed.
+     *
+     * @param column The column of the changed cell.
+     * @param row The row of the changed cell.
+     */
+    public void onBlockChanged(int column, int row) {
+        ChunkFill chunkFill = chunks.get(BlockStore.chunkOf(column));
+        if (chunkFill != null && row >= 0 && row < blockStore.getRows()) {
+            drawCell(chunkFill, column, row);
+        }
+    }
+
+    /**
+     * Draws a cell's pixel: the color of its block if it is solid, and transparent if it is air.
+     */
+    private void drawCell(ChunkFill chunkFill, int column, int row) {
+        int[] pixels = ((DataBufferInt) chunkFill.texture.getRaster().getDataBuffer()).getData();
+        int local = Math.floorMod(column, BlockStore.CHUNK_COLUMNS);
+        int pixel = 0;
+        if (blockStore.getCell(column, row) != BlockStore.AIR) {
+            pixel = terrain.cellColor(column, row, chunkFill.groundColors[local]).getRGB();
+        }
+        pixels[row * BlockStore.CHUNK_COLUMNS + local] = pixel;
+    }
+}
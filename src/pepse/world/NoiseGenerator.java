@@ -7,11 +7,17 @@ import java.util.Random;
  * with noise function
  */
 public class NoiseGenerator {
-    private double seed;
+    // Class of the Vector API backend, loaded by name so the scalar code does not depend on it.
+    private static final String VECTOR_BACKEND = "pepse.world.VectorNoiseGenerator";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector"; // Module the backend needs.
+    private static final double EQUIVALENCE_EPSILON = 1e-9; // Allowed difference between backends.
+    private static final int EQUIVALENCE_SAMPLES = 257; // Points compared before using the backend.
+
+    double seed;
     private long default_size;
-    private int[] p;
+    int[] p;
     private int[] permutation;
-    private double startPoint;
+    double startPoint;
 
     /**
      * The constructor of the NoiseGenerator class.
@@ -31,6 +37,50 @@ public class NoiseGenerator {
         init();
     }
 
+    /**
+     * Creates the fastest noise generator available. When the jdk.incubator.vector module is
+     * present (run with --add-modules jdk.incubator.vector), a generator that samples many x
+     * positions per instruction is used, provided it matches the scalar generator on a set of
+     * sample points; otherwise the scalar generator is used.
+     *
+     * @param seed The seed of the noise, as in the constructor.
+     * @param startPoint The relative point the noise is generated from, as in the constructor.
+     * @return A noise generator.
+     */
+    public static NoiseGenerator create(double seed, int startPoint) {
+        NoiseGenerator scalar = new NoiseGenerator(seed, startPoint);
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return scalar;
+        }
+        try {
+            NoiseGenerator vector = (NoiseGenerator) Class.forName(VECTOR_BACKEND)
+                    .getConstructor(double.class, int.class).newInstance(seed, startPoint);
+            return vector.matches(scalar) ? vector : scalar;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return scalar;
+        }
+    }
+
+    /**
+     * Checks that this generator's batch sampling gives the same noise as another generator's.
+     *
+     * @param reference The generator to compare against.
+     * @return True if every sample is within EQUIVALENCE_EPSILON of the reference.
+     */
+    private boolean matches(NoiseGenerator reference) {
+        double[] samples = new double[EQUIVALENCE_SAMPLES];
+        double[] expected = new double[EQUIVALENCE_SAMPLES];
+        // Sample a wide, irregularly spaced range, covering negative x and the tail of a batch.
+        noiseRange(-startPoint * 3.7, startPoint / 13.0, EQUIVALENCE_SAMPLES, 1, samples);
+        reference.noiseRange(-startPoint * 3.7, startPoint / 13.0, EQUIVALENCE_SAMPLES, 1, expected);
+        for (int i = 0; i < EQUIVALENCE_SAMPLES; i++) {
+            if (Math.abs(samples[i] - expected[i]) > EQUIVALENCE_EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void init() {
         // Initialize the permutation array.
         this.p = new int[512];
@@ -92,6 +142,22 @@ public class NoiseGenerator {
         return value * factor / startPoint;
     }
 
+    /**
+     * Generates noise for a row of evenly spaced x positions at once, as when generating the
+     * terrain of a whole range. Gives the same values as calling noise for each position.
+     *
+     * @param minX The first x to receive noise for.
+     * @param step The distance between consecutive x positions.
+     * @param count The number of positions.
+     * @param factor describes how large the noise should be, as in noise.
+     * @param out Receives the noise of position i at index i.
+     */
+    public void noiseRange(double minX, double step, int count, double factor, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = noise(minX + i * step, factor);
+        }
+    }
+
 
     private double smoothNoise(double x, double y, double z) {
         // Offset each coordinate by the seed value
@@ -128,7 +194,7 @@ public class NoiseGenerator {
                                 grad(p[BB + 1], x - 1, y - 1, z - 1))));
     }
 
-    private double fade(double t) {
+    double fade(double t) {
         return t * t * t * (t * (t * 6 - 15) + 10);
     }
 
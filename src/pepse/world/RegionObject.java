@@ -0,0 +1,76 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+/**
+ * A game object whose update only affects itself, such as an animated leaf or a fruit.
+ * Once such an object is added to WorldRegions, it is no longer updated by the game's object
+ * collection; its region updates it instead, possibly on a worker thread, in parallel with
+ * the objects of other regions.
+ */
+public abstract class RegionObject extends GameObject {
+    private boolean updatedByRegion; // Whether a region, rather than the collection, updates this object.
+    private boolean isSleeping; // Whether the region skips this object, while it is not shown.
+
+    /**
+     * Constructor for a RegionObject.
+     *
+     * @param topLeftCorner The top-left corner position of the object in the game world.
+     * @param dimensions The size of the object.
+     * @param renderable The visual representation of the object.
+     */
+    public RegionObject(Vector2 topLeftCorner, Vector2 dimensions, Renderable renderable) {
+        super(topLeftCorner, dimensions, renderable);
+    }
+
+    /**
+     * Updates the object, unless its region is responsible for updating it.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    @Override
+    public void update(float deltaTime) {
+        if (!updatedByRegion) {
+            super.update(deltaTime);
+        }
+    }
+
+    /**
+     * Sets whether the object's region should skip updating it, for example while the object
+     * is replaced by a cheaper stand-in and is not in the game.
+     *
+     * @param isSleeping True to stop updating the object, false to resume.
+     */
+    public void setSleeping(boolean isSleeping) {
+        this.isSleeping = isSleeping;
+    }
+
+    /**
+     * Checks whether the object's region skips updating it.
+     *
+     * @return True if the object is sleeping.
+     */
+    public boolean isSleeping() {
+        return isSleeping;
+    }
+
+    /**
+     * Marks whether the object's region is responsible for updating it.
+     *
+     * @param updatedByRegion True to have the region update the object.
+     */
+    void setUpdatedByRegion(boolean updatedByRegion) {
+        this.updatedByRegion = updatedByRegion;
+    }
+
+    /**
+     * Updates the object on behalf of its region.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    void updateInRegion(float deltaTime) {
+        super.update(deltaTime);
+    }
+}
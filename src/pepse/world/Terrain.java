@@ -6,17 +6,35 @@ import danogl.util.Vector2;
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import danogl.gui.rendering.Renderable;
-import pepse.ColorSupplier;
+import pepse.util.ColorSupplier;
+import pepse.util.GameEvents;
 /**
  * Generates and manages terrain within the game world.
  * The terrain is created based on Perlin noise to ensure a natural-looking variation in height.
+ * A second, low-frequency noise channel chooses each column's biome, which scales the height
+ * variation and colors the ground.
+ * The terrain can be edited: edits are recorded, and applied whenever their columns are
+ * generated again.
  */
 public class Terrain {
-    private static final Color BASE_GROUND_COLOR = new Color(212, 123, 74); // Base color for the terrain.
     private static final int TERRAIN_DEPTH = 20; // The depth of the terrain, in blocks.
     private float groundHeightAtX0; // Initial ground height at the start (x=0) of the terrain.
     private NoiseGenerator noiseGenerator; // Utility for generating noise-based terrain heights.
+    private static final double NOISE_FACTOR = Block.SIZE * 7; // How large the height variation is.
+    private static final double SEA_LEVEL_DEPTH = NOISE_FACTOR * 0.4; // Sea level below the start height.
+    private static final int BIOME_SEED_OFFSET = 101; // Separates the biome channel from the heights.
+    // The largest feature of the biome channel, so a biome spans several chunks.
+    private static final int BIOME_SCALE = WorldStreamer.CHUNK_WIDTH * 8;
+    private final NoiseGenerator biomeNoise; // Chooses the biome of each column.
+    private final BlockStore blockStore; // The terrain's cells, including the buried ones.
+    private final TerrainEdits edits; // The blocks the player dug or placed.
+    private final ColorSupplier colorSupplier; // Colors each cell the same way on every run.
+    // Blocks of the same color share a renderable.
+    private final Map<Color, Renderable> renderables = new ConcurrentHashMap<>();
 
     /**
      * Constructor for creating a Terrain object.
@@ -28,43 +46,303 @@ public class Terrain {
         // Calculate the initial ground height as two-thirds the height of the game window.
         groundHeightAtX0 = windowDimensions.y() * 2 / 3;
         // Initialize the noise generator with the provided seed and a base ground height.
-        noiseGenerator = new NoiseGenerator(seed, (int) groundHeightAtX0);
+        noiseGenerator = NoiseGenerator.create(seed, (int) groundHeightAtX0);
+        biomeNoise = NoiseGenerator.create(seed + BIOME_SEED_OFFSET, BIOME_SCALE);
+        // The noise is at most twice its factor, scaled by the most varied biome, so the store
+        // needs room for the lowest ground height plus the terrain's depth.
+        int rows = (int) Math.ceil((groundHeightAtX0 + 2 * NOISE_FACTOR * Biome.maxHeightAmplitude())
+                / Block.SIZE) + TERRAIN_DEPTH;
+        blockStore = new BlockStore(rows);
+        edits = new TerrainEdits(rows);
+        colorSupplier = new ColorSupplier(seed);
+    }
+
+    /**
+     * Gets the store of the terrain's cells.
+     *
+     * @return The block store.
+     */
+    public BlockStore getBlockStore() {
+        return blockStore;
+    }
+
+    /**
+     * Gets the record of the terrain's edits.
+     *
+     * @return The edits.
+     */
+    public TerrainEdits getEdits() {
+        return edits;
+    }
+
+    /**
+     * Gets the height of the ground at an x-coordinate as it is now: the top of the column's
+     * highest block, after any edits. Columns that were not created yet have their generated
+     * height, aligned to the block grid.
+     *
+     * @param x The x-coordinate.
+     * @return The y-coordinate of the surface.
+     */
+    public float surfaceHeightAt(float x) {
+        int column = BlockStore.columnAt(x);
+        if (!blockStore.isGenerated(BlockStore.chunkOf(column))) {
+            return (float) Math.floor(groundHeightAt(x) / Block.SIZE) * Block.SIZE;
+        }
+        return blockStore.surfaceRow(column) * Block.SIZE;
+    }
+
+    /**
+     * Sets the block of a cell and records the edit, so it is kept when the cell's column is
+     * generated again. The cell's Block GameObjects are not changed; TerrainEditor does that.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell, between 0 and the block store's rows - 1.
+     * @param block The id of the block.
+     */
+    public void setBlock(int column, int row, byte block) {
+        blockStore.setCell(column, row, block);
+        edits.record(column, row, block);
+    }
+
+    /**
+     * Creates the Block GameObject of a cell, colored like the ground of the cell's biome, for
+     * a cell that became exposed.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The created block.
+     */
+    public Block createBlock(int column, int row) {
+        return createBlock(column, row, Biome.groundColorAt(biomeAt(column * Block.SIZE)));
+    }
+
+    /**
+     * Gets the color of a solid cell: an approximation of its biome's ground color, which is
+     * the same for the cell's Block and for the ground fill drawn behind the blocks.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param groundColor The base ground color of the column's biome.
+     * @return The color of the cell.
+     */
+    public Color cellColor(int column, int row, Color groundColor) {
+        // The color only depends on the cell, so chunks can be created in any order, on any thread.
+        return colorSupplier.approximateColor(groundColor, column, row);
+    }
+
+    /**
+     * Gets the height of the sea, below which the valleys fill with water. Only the deeper
+     * valleys, mostly of the more varied biomes, reach below it.
+     *
+     * @return The y-coordinate of the sea level.
+     */
+    public float getSeaLevel() {
+        return groundHeightAtX0 + (float) SEA_LEVEL_DEPTH;
+    }
+
+    /**
+     * Gets the lowest row a column's ground was generated with, which edits leave in place so
+     * nothing falls out of the world. It does not depend on the column's edits.
+     *
+     * @param column The column.
+     * @return The row of the column's generated bottom layer.
+     */
+    public int bottomRowAt(int column) {
+        int surfaceRow = BlockStore.rowAt(groundHeightAt(column * Block.SIZE));
+        return Math.min(surfaceRow + TERRAIN_DEPTH, blockStore.getRows()) - 1;
     }
 
     /**
      * Calculates the ground height at a given x-coordinate.
+     * This samples the biome channel too; code that already has the biome coordinate, or
+     * needs many columns, should use the overload or sample a whole range.
      *
      * @param x The x-coordinate at which to calculate the ground height.
      * @return The calculated ground height at the given x-coordinate.
      */
     public float groundHeightAt(float x) {
+        return groundHeightAt(x, biomeAt(x));
+    }
+
+    /**
+     * Calculates the ground height at a given x-coordinate, in a known biome.
+     *
+     * @param x The x-coordinate at which to calculate the ground height.
+     * @param biome The biome coordinate of the x-coordinate's column.
+     * @return The calculated ground height at the given x-coordinate.
+     */
+    public float groundHeightAt(float x, float biome) {
         // Adjust the base ground height based on the noise value at the given x-coordinate.
-        return groundHeightAtX0 + (float) this.noiseGenerator.noise(x, Block.SIZE * 7);
+        return groundHeightAtX0 + Biome.heightAmplitudeAt(biome)
+                * (float) this.noiseGenerator.noise(x, NOISE_FACTOR);
+    }
+
+    /**
+     * Calculates the biome coordinate of a column.
+     *
+     * @param x An x-coordinate in the column.
+     * @return The biome coordinate, as Biome defines it.
+     */
+    public float biomeAt(float x) {
+        return Biome.coordinateOf(biomeNoise.noise(BlockStore.columnAt(x) * Block.SIZE, 1));
+    }
+
+    /**
+     * Calculates the biome coordinates of a range of columns, and of the columns on both
+     * sides, in one pass over the biome channel. The result is what the ground heights, the
+     * ground colors and the trees of the range are looked up in.
+     *
+     * @param firstColumn The first column of the range.
+     * @param columns The number of columns in the range.
+     * @return The biome coordinates, from the column left of the range to the column right of it.
+     */
+    public float[] sampleBiomes(int firstColumn, int columns) {
+        double[] noise = new double[columns + 2];
+        biomeNoise.noiseRange((firstColumn - 1) * Block.SIZE, Block.SIZE, columns + 2, 1, noise);
+        float[] biomes = new float[columns + 2];
+        for (int i = 0; i < columns + 2; i++) {
+            biomes[i] = Biome.coordinateOf(noise[i]);
+        }
+        return biomes;
     }
 
     /**
-     * Creates a range of terrain blocks between two x-coordinates.
+     * Creates a range of terrain between two x-coordinates.
+     * Every cell of the range is stored in the block store, but a Block GameObject is only
+     * created for the cells that are exposed; buried cells cannot be reached and need none, and
+     * GroundFill draws them.
      *
-     * @param minX The minimum x-coordinate (inclusive).
+     * @param minX The minimum x-coordinate (inclusive), rounded down to the block grid.
      * @param maxX The maximum x-coordinate (inclusive).
-     * @return A list of Block objects representing the terrain between minX and maxX.
+     * @return A list of Block objects representing the exposed terrain between minX and maxX.
      */
     public List<Block> createInRange(int minX, int maxX) {
+        int firstColumn = BlockStore.columnAt(minX);
+        int columns = maxX < minX ? 0 : BlockStore.columnAt(maxX) - firstColumn + 1;
+        float[] biomes = sampleBiomes(firstColumn, columns);
+        return createColumns(firstColumn, columns, sampleColumns(firstColumn, columns, biomes), biomes);
+    }
+
+    /**
+     * Calculates the ground heights of a chunk's columns, and of the columns on both sides,
+     * which decide which of its side cells are exposed. This is the part of creating a chunk
+     * that runs the noise; ChunkData keeps the result.
+     *
+     * @param chunk The chunk index.
+     * @param biomes The biome coordinates of the chunk's columns, as sampleBiomes gives them.
+     * @return The ground heights, from the column left of the chunk to the column right of it.
+     */
+    public float[] sampleChunk(int chunk, float[] biomes) {
+        return sampleColumns(chunk * BlockStore.CHUNK_COLUMNS, BlockStore.CHUNK_COLUMNS, biomes);
+    }
+
+    /**
+     * Creates the terrain of a chunk from its ground heights, without running the noise.
+     *
+     * @param data The chunk's generated data.
+     * @return A list of Block objects representing the exposed terrain of the chunk.
+     */
+    public List<Block> createChunk(ChunkData data) {
+        return createColumns(data.getIndex() * BlockStore.CHUNK_COLUMNS, BlockStore.CHUNK_COLUMNS,
+                data.groundHeights(), data.biomes());
+    }
+
+    /**
+     * Calculates the ground heights of a range of columns, and of the columns on both sides.
+     *
+     * @param firstColumn The first column of the range.
+     * @param columns The number of columns in the range.
+     * @param biomes The biome coordinates of the columns, as sampleBiomes gives them.
+     * @return The ground heights, from the column left of the range to the column right of it.
+     */
+    private float[] sampleColumns(int firstColumn, int columns, float[] biomes) {
+        // Sample the noise of the whole range at once, which the vectorized generator does much faster.
+        double[] noise = new double[columns + 2];
+        noiseGenerator.noiseRange((firstColumn - 1) * Block.SIZE, Block.SIZE, columns + 2,
+                NOISE_FACTOR, noise);
+        float[] groundHeights = new float[columns + 2];
+        for (int i = 0; i < columns + 2; i++) {
+            groundHeights[i] = groundHeightAtX0 + Biome.heightAmplitudeAt(biomes[i]) * (float) noise[i];
+        }
+        return groundHeights;
+    }
+
+    /**
+     * Stores a range of columns from their ground heights, and creates the blocks of their
+     * exposed cells.
+     *
+     * @param firstColumn The first column of the range.
+     * @param columns The number of columns in the range.
+     * @param groundHeights The ground heights, from the column left of the range to the column
+     *                      right of it.
+     * @param biomes The biome coordinates, from the column left of the range to the column
+     *               right of it.
+     * @return A list of Block objects representing the exposed terrain of the range.
+     */
+    private List<Block> createColumns(int firstColumn, int columns, float[] groundHeights,
+                                      float[] biomes) {
+        GameEvents.TerrainGeneration event = new GameEvents.TerrainGeneration();
+        event.begin();
         List<Block> blocks = new ArrayList<>();
-        // Iterate over the range in steps equal to the block size, to create one block per step.
-        for (int x = minX; x <= maxX; x += Block.SIZE) {
-            // Calculate the ground height at this x-coordinate, rounding down to the nearest block size.
-            float groundHeight = (float) Math.floor(groundHeightAt(x) / Block.SIZE) * Block.SIZE;
-            // Create blocks from the ground height down to the terrain depth.
-            for (int y = 0; y < TERRAIN_DEPTH; y++) {
-                Vector2 blockPosition = new Vector2(x, groundHeight + y * Block.SIZE);
-                // Create a new block at the calculated position,
-                // coloring it with an approximation of the base ground color.
-                Block block = new Block(blockPosition,
-                        new RectangleRenderable(ColorSupplier.approximateColor(BASE_GROUND_COLOR)));
-                blocks.add(block);
+        // The columns on both sides are included, since they decide which side cells are exposed.
+        // The edits of each column are applied over its generated cells.
+        for (int i = 0; i < columns + 2; i++) {
+            fillColumn(firstColumn - 1 + i, groundHeights[i]);
+            edits.apply(firstColumn - 1 + i, blockStore);
+        }
+        // Only the chunks the range covers whole are generated; the columns on both sides, and
+        // the part of a chunk a range ends in, leave their chunks ungenerated.
+        int lastChunk = BlockStore.chunkOf(firstColumn + columns) - 1;
+        for (int chunk = BlockStore.chunkOf(firstColumn + BlockStore.CHUNK_COLUMNS - 1); chunk <= lastChunk; chunk++) {
+            blockStore.markGenerated(chunk);
+        }
+        // Create blocks only for the cells that are exposed; digging may expose any cell below
+        // the surface.
+        for (int column = firstColumn; column < firstColumn + columns; column++) {
+            int surfaceRow = blockStore.surfaceRow(column);
+            Color groundColor = Biome.groundColorAt(biomes[column - firstColumn + 1]);
+            for (int row = surfaceRow; row < blockStore.getRows(); row++) {
+                if (blockStore.isExposed(column, row)) {
+                    blocks.add(createBlock(column, row, groundColor));
+                }
             }
         }
+        if (event.shouldCommit()) {
+            event.firstColumn = firstColumn;
+            event.columns = columns;
+            event.blockCount = blocks.size();
+            event.commit();
+        }
         return blocks; // Return the list of created terrain blocks.
     }
-}
\ No newline at end of file
+
+    /**
+     * Stores a column of terrain, from its ground height down to the terrain depth.
+     *
+     * @param column The column to fill.
+     * @param groundHeight The ground height of the column.
+     */
+    private void fillColumn(int column, float groundHeight) {
+        // Round the ground height down to the nearest block size.
+        int surfaceRow = BlockStore.rowAt(groundHeight);
+        for (int row = 0; row < blockStore.getRows(); row++) {
+            boolean isGround = row >= surfaceRow && row < surfaceRow + TERRAIN_DEPTH;
+            blockStore.setCell(column, row, isGround ? BlockStore.GROUND : BlockStore.AIR);
+        }
+    }
+
+    /**
+     * Creates the Block GameObject of a cell, coloring it with an approximation of its
+     * biome's ground color.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param groundColor The base ground color of the column's biome.
+     * @return The created block.
+     */
+    private Block createBlock(int column, int row, Color groundColor) {
+        Vector2 blockPosition = new Vector2(column * Block.SIZE, row * Block.SIZE);
+        Color color = cellColor(column, row, groundColor);
+        return new Block(blockPosition, renderables.computeIfAbsent(color, RectangleRenderable::new));
+    }
+}
@@ -0,0 +1,163 @@
+package pepse.world;
+
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Digs and places terrain blocks, updating only what an edit affects instead of creating the
+ * chunk again. The edited cell and the three cells whose exposure it decides (below and on
+ * both sides) gain or lose their Block GameObject, which is both their collider and their
+ * visual; the block store updates the column's surface; and the listeners, such as the light
+ * map, the navigation graph and the water, update their own cached state around the cell.
+ * All of it happens when the edit is made, so the edit is visible in the same frame.
+ */
+public class TerrainEditor {
+    /**
+     * Updates state that depends on the terrain's cells when a cell changes.
+     */
+    public interface Listener {
+        /**
+         * Called after the block of a cell changed.
+         *
+         * @param column The column of the cell.
+         * @param row The row of the cell.
+         */
+        void onBlockChanged(int column, int row);
+    }
+
+    private final Terrain terrain; // The terrain edited, which records the edits.
+    private final BlockStore blockStore; // The terrain's cells.
+    private final GameObjectCollection gameObjects; // Where the blocks of exposed cells are.
+    private final Map<Long, Block> blocks = new HashMap<>(); // The Block of each exposed cell.
+    private final List<Listener> listeners = new ArrayList<>(); // Told of every changed cell.
+
+    /**
+     * Constructor for a TerrainEditor.
+     *
+     * @param terrain The terrain to edit.
+     * @param gameObjects The game's object collection, where the terrain's blocks are added.
+     */
+    public TerrainEditor(Terrain terrain, GameObjectCollection gameObjects) {
+        this.terrain = terrain;
+        this.blockStore = terrain.getBlockStore();
+        this.gameObjects = gameObjects;
+    }
+
+    /**
+     * Adds a listener that is told of every changed cell.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Adds the blocks the terrain created for a chunk to the game, and keeps them by cell so
+     * edits can remove them.
+     *
+     * @param created The blocks, as Terrain.createChunk gives them.
+     */
+    public void addBlocks(List<Block> created) {
+        for (Block block : created) {
+            blocks.put(cellKey(BlockStore.columnAt(block.getTopLeftCorner().x()),
+                    BlockStore.rowAt(block.getTopLeftCorner().y())), block);
+            gameObjects.addGameObject(block, Layer.STATIC_OBJECTS);
+        }
+    }
+
+    /**
+     * Digs out a cell. The generated bottom layer of the terrain, and anything below it, cannot
+     * be dug, so nothing falls out of the world.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return True if the cell was dug.
+     */
+    public boolean dig(int column, int row) {
+        if (blockStore.getCell(column, row) == BlockStore.AIR || row >= terrain.bottomRowAt(column)) {
+            return false;
+        }
+        setBlock(column, row, BlockStore.AIR);
+        return true;
+    }
+
+    /**
+     * Places a block of ground in an empty cell.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return True if the block was placed.
+     */
+    public boolean place(int column, int row) {
+        if (blockStore.getCell(column, row) != BlockStore.AIR) {
+            return false;
+        }
+        setBlock(column, row, BlockStore.GROUND);
+        return true;
+    }
+
+    /**
+     * Gets the number of cells that were edited.
+     *
+     * @return The number of cells.
+     */
+    public int getEditCount() {
+        return terrain.getEdits().getEditCount();
+    }
+
+    /**
+     * Sets the block of a cell in a generated chunk, and updates the blocks and listeners it
+     * affects.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param block The id of the block.
+     */
+    private void setBlock(int column, int row, byte block) {
+        if (row < 0 || row >= blockStore.getRows() || !blockStore.isGenerated(BlockStore.chunkOf(column))) {
+            return;
+        }
+        terrain.setBlock(column, row, block);
+        // A cell's exposure depends on the cells above it and beside it.
+        updateBlock(column, row);
+        updateBlock(column, row + 1);
+        updateBlock(column - 1, row);
+        updateBlock(column + 1, row);
+        for (Listener listener : listeners) {
+            listener.onBlockChanged(column, row);
+        }
+    }
+
+    /**
+     * Gives a cell a Block GameObject if it is exposed, and removes its Block if it is not.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     */
+    private void updateBlock(int column, int row) {
+        if (!blockStore.isGenerated(BlockStore.chunkOf(column))) {
+            return;
+        }
+        long key = cellKey(column, row);
+        Block block = blocks.get(key);
+        boolean isExposed = blockStore.isExposed(column, row);
+        if (isExposed && block == null) {
+            block = terrain.createBlock(column, row);
+            blocks.put(key, block);
+            gameObjects.addGameObject(block, Layer.STATIC_OBJECTS);
+        } else if (!isExposed && block != null) {
+            blocks.remove(key);
+            gameObjects.removeGameObject(block, Layer.STATIC_OBJECTS);
+        }
+    }
+
+    private static long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,163 @@
+package pepse.world;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The blocks the player dug or placed, kept apart from the block store so they outlive the
+ * cells of their chunk: when a chunk is created again from its generated data, its edits are
+ * applied on top. Edits are kept per chunk in a byte per cell, indexed like the block store's,
+ * holding the block the cell was set to or UNEDITED; a chunk only has an array once it is
+ * edited. To be saved, a chunk's edits are written as a log of LOG_ENTRY_BYTES bytes per edited
+ * cell: its column within the chunk, its row in two bytes, and its block.
+ */
+public class TerrainEdits {
+    /**
+     * constants that are used through the class
+     */
+    public static final byte UNEDITED = -1; // Marks a cell that keeps its generated block.
+    public static final int LOG_ENTRY_BYTES = 4; // Bytes of each edit in a chunk's log.
+
+    private final int rows; // The number of rows in a column.
+    private final Map<Integer, byte[]> chunks = new HashMap<>(); // Edits of each edited chunk.
+    private int editCount; // The number of edited cells.
+
+    /**
+     * Constructor for an empty TerrainEdits.
+     *
+     * @param rows The number of rows in a column, as in the block store.
+     */
+    public TerrainEdits(int rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Records the block a cell was set to, replacing an earlier edit of the cell. Cells outside
+     * the rows of a column are ignored, such as those of a log saved with more rows.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param block The id of the block.
+     */
+    public void record(int column, int row, byte block) {
+        if (row < 0 || row >= rows) {
+            return;
+        }
+        byte[] chunk = chunks.computeIfAbsent(BlockStore.chunkOf(column), index -> {
+            byte[] cells = new byte[BlockStore.CHUNK_COLUMNS * rows];
+            Arrays.fill(cells, UNEDITED);
+            return cells;
+        });
+        int index = indexOf(column, row);
+        if (chunk[index] == UNEDITED) {
+            editCount++;
+        }
+        chunk[index] = block;
+    }
+
+    /**
+     * Gets the block a cell was edited to.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The id of the block, or UNEDITED.
+     */
+    public byte get(int column, int row) {
+        byte[] chunk = chunks.get(BlockStore.chunkOf(column));
+        if (chunk == null || row < 0 || row >= rows) {
+            return UNEDITED;
+        }
+        return chunk[indexOf(column, row)];
+    }
+
+    /**
+     * Applies the edits of a column to a block store whose column was just generated.
+     *
+     * @param column The column.
+     * @param blockStore The block store.
+     */
+    public void apply(int column, BlockStore blockStore) {
+        byte[] chunk = chunks.get(BlockStore.chunkOf(column));
+        if (chunk == null) {
+            return;
+        }
+        int first = indexOf(column, 0);
+        for (int row = 0; row < rows; row++) {
+            if (chunk[first + row] != UNEDITED) {
+                blockStore.setCell(column, row, chunk[first + row]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of edited cells.
+     *
+     * @return The number of cells.
+     */
+    public int getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * Gets the chunks that have edits.
+     *
+     * @return The indices of the edited chunks, in ascending order.
+     */
+    public int[] getEditedChunks() {
+        return chunks.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Writes the edits of a chunk as a log, LOG_ENTRY_BYTES bytes per edited cell.
+     *
+     * @param chunk The chunk index.
+     * @return The chunk's log, empty if the chunk has no edits.
+     */
+    public byte[] toLog(int chunk) {
+        byte[] cells = chunks.get(chunk);
+        if (cells == null) {
+            return new byte[0];
+        }
+        ByteBuffer log = ByteBuffer.allocate(cells.length * LOG_ENTRY_BYTES);
+        for (int index = 0; index < cells.length; index++) {
+            if (cells[index] != UNEDITED) {
+                log.put((byte) (index / rows)).putShort((short) (index % rows)).put(cells[index]);
+            }
+        }
+        return Arrays.copyOf(log.array(), log.position());
+    }
+
+    /**
+     * Records the edits of a chunk's log, as toLog wrote it.
+     *
+     * @param chunk The chunk index.
+     * @param log The chunk's log.
+     * @throws IllegalArgumentException If the log is not a whole number of edits.
+     */
+    public void recordLog(int chunk, byte[] log) {
+        if (log.length % LOG_ENTRY_BYTES != 0) {
+            throw new IllegalArgumentException("Truncated edit log of chunk " + chunk);
+        }
+        ByteBuffer entries = ByteBuffer.wrap(log);
+        while (entries.hasRemaining()) {
+            int column = chunk * BlockStore.CHUNK_COLUMNS + Math.floorMod(entries.get(), BlockStore.CHUNK_COLUMNS);
+            int row = entries.getShort();
+            record(column, row, entries.get());
+        }
+    }
+
+    /**
+     * Gets the memory used by the edits.
+     *
+     * @return The number of bytes in the edited chunks' arrays.
+     */
+    public long memoryBytes() {
+        return (long) chunks.size() * BlockStore.CHUNK_COLUMNS * rows;
+    }
+
+    private int indexOf(int column, int row) {
+        return Math.floorMod(column, BlockStore.CHUNK_COLUMNS) * rows + row;
+    }
+}
@@ -0,0 +1,125 @@
+package pepse.world;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A noise generator that samples many x positions per instruction, using the Vector API.
+ * The terrain only ever samples the noise along x, with y and z fixed, so each lane evaluates
+ * the same corners of the unit cube. Hashing a corner is a table lookup done per lane; the
+ * selected gradient is expressed as coefficients of x and y, so evaluating the gradients, the
+ * fade curve and the interpolation all run on whole vectors.
+ * Only loaded by NoiseGenerator.create when the jdk.incubator.vector module is present.
+ */
+class VectorNoiseGenerator extends NoiseGenerator {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // The 12 gradient directions of grad, as coefficients of x and y (z is always 0 here).
+    private static final double[] GRADIENT_X = new double[16];
+    private static final double[] GRADIENT_Y = new double[16];
+
+    static {
+        for (int h = 0; h < 16; h++) {
+            // Same selection as grad: u is x or y, v is y, x or z, each possibly negated.
+            double u = (h & 1) == 0 ? 1 : -1;
+            double v = (h & 2) == 0 ? 1 : -1;
+            if (h < 8) {
+                GRADIENT_X[h] += u;
+            } else {
+                GRADIENT_Y[h] += u;
+            }
+            if (h < 4) {
+                GRADIENT_Y[h] += v;
+            } else if (h == 12 || h == 14) {
+                GRADIENT_X[h] += v;
+            }
+        }
+    }
+
+    private final int lanes = DOUBLES.length(); // The number of positions sampled at once.
+    // Per-lane scratch buffers: x relative to the unit cube, and the gradient coefficients of
+    // the four corners of the cube's z = 0 face.
+    private final double[] fractions = new double[lanes];
+    private final double[][] gradientsX = new double[4][lanes];
+    private final double[][] gradientsY = new double[4][lanes];
+
+    /**
+     * The constructor of the VectorNoiseGenerator class.
+     *
+     * @param seed The seed of the noise, as in NoiseGenerator.
+     * @param startPoint The relative point the noise is generated from, as in NoiseGenerator.
+     */
+    public VectorNoiseGenerator(double seed, int startPoint) {
+        super(seed, startPoint);
+    }
+
+    /**
+     * Generates noise for a row of evenly spaced x positions, a vector of positions at a time.
+     *
+     * @param minX The first x to receive noise for.
+     * @param step The distance between consecutive x positions.
+     * @param count The number of positions.
+     * @param factor describes how large the noise should be, as in noise.
+     * @param out Receives the noise of position i at index i.
+     */
+    @Override
+    public synchronized void noiseRange(double minX, double step, int count, double factor,
+                                        double[] out) {
+        // y is the same for every x (the seed), so its cube and fade curve are computed once.
+        double y = seed - Math.floor(seed);
+        int cubeY = (int) Math.floor(seed) & 255;
+        DoubleVector v = DoubleVector.broadcast(DOUBLES, fade(y));
+        DoubleVector yVector = DoubleVector.broadcast(DOUBLES, y);
+        DoubleVector yMinusOne = DoubleVector.broadcast(DOUBLES, y - 1);
+
+        int bound = DOUBLES.loopBound(count);
+        for (int i = 0; i < bound; i += lanes) {
+            DoubleVector value = DoubleVector.zero(DOUBLES);
+            for (double currentPoint = startPoint; currentPoint >= 1; currentPoint /= 2.0) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    // Offset by the seed as smoothNoise does, then find the unit cube.
+                    double x = (minX + (i + lane) * step) / currentPoint + seed + seed;
+                    double floor = Math.floor(x);
+                    int cubeX = (int) floor & 255;
+                    fractions[lane] = x - floor;
+                    int a = p[cubeX] + cubeY;
+                    int b = p[cubeX + 1] + cubeY;
+                    selectGradient(0, lane, p[p[a]]);
+                    selectGradient(1, lane, p[p[b]]);
+                    selectGradient(2, lane, p[p[a + 1]]);
+                    selectGradient(3, lane, p[p[b + 1]]);
+                }
+                DoubleVector x = DoubleVector.fromArray(DOUBLES, fractions, 0);
+                DoubleVector xMinusOne = x.sub(1);
+                DoubleVector u = fade(x);
+                // z is 0, so its fade curve is 0 and only the z = 0 face of the cube contributes.
+                DoubleVector noise = lerp(v,
+                        lerp(u, grad(0, x, yVector), grad(1, xMinusOne, yVector)),
+                        lerp(u, grad(2, x, yMinusOne), grad(3, xMinusOne, yMinusOne)));
+                value = value.add(noise.mul(currentPoint));
+            }
+            value.mul(factor).div(startPoint).intoArray(out, i);
+        }
+        // The positions that do not fill a whole vector are sampled one at a time.
+        for (int i = bound; i < count; i++) {
+            out[i] = noise(minX + i * step, factor);
+        }
+    }
+
+    private void selectGradient(int corner, int lane, int hash) {
+        gradientsX[corner][lane] = GRADIENT_X[hash & 15];
+        gradientsY[corner][lane] = GRADIENT_Y[hash & 15];
+    }
+
+    private DoubleVector grad(int corner, DoubleVector x, DoubleVector y) {
+        return x.mul(DoubleVector.fromArray(DOUBLES, gradientsX[corner], 0))
+                .add(y.mul(DoubleVector.fromArray(DOUBLES, gradientsY[corner], 0)));
+    }
+
+    private static DoubleVector fade(DoubleVector t) {
+        return t.mul(t).mul(t).mul(t.mul(t.mul(6).sub(15)).add(10));
+    }
+
+    private static DoubleVector lerp(DoubleVector t, DoubleVector a, DoubleVector b) {
+        return b.sub(a).mul(t).add(a);
+    }
+}
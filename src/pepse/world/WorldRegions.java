@@ -0,0 +1,204 @@
+package pepse.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the world into vertical regions and updates the self-contained objects of each region
+ * (leaf animations, fruits) in parallel on a fork-join pool.
+ * Interactions that cross regions, such as the avatar picking up a fruit, are not applied
+ * while regions update. They are posted to the region they happen in, and applied afterwards
+ * on the game thread in a merge phase, region by region from left to right, so their order
+ * does not depend on thread timing.
+ */
+public class WorldRegions {
+    /**
+     * constants that are used through the class
+     */
+    // The width of a region, in pixels: a region covers one chunk of the block store.
+    public static final int REGION_WIDTH = Block.SIZE * BlockStore.CHUNK_COLUMNS;
+    private static final int REGIONS_PER_TASK = 1; // Regions updated by a task without splitting it.
+
+    private final Map<Integer, Region> regionsByIndex = new TreeMap<>(); // Regions, left to right.
+    private Region[] regions = new Region[0]; // Snapshot of the regions, for splitting between tasks.
+    private ForkJoinPool pool; // The pool region updates run on.
+
+    /**
+     * The objects and pending interactions of a single region.
+     */
+    private static class Region {
+        private final ArrayList<RegionObject> objects = new ArrayList<>(); // Objects updated by the region.
+        private final ArrayList<Runnable> interactions = new ArrayList<>(); // Interactions for the merge phase.
+    }
+
+    /**
+     * A fork-join task that updates a range of regions, splitting it in half while it is large.
+     */
+    private static class RegionUpdateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // Tasks are never serialized.
+
+        private final Region[] regions; // All the regions.
+        private final int from; // The first region to update (inclusive).
+        private final int to; // The last region to update (exclusive).
+        private final float deltaTime; // The time elapsed since the last update call.
+
+        /**
+         * Constructor for a RegionUpdateTask.
+         *
+         * @param regions All the regions.
+         * @param from The first region to update (inclusive).
+         * @param to The last region to update (exclusive).
+         * @param deltaTime The time elapsed since the last update call.
+         */
+        RegionUpdateTask(Region[] regions, int from, int to, float deltaTime) {
+            this.regions = regions;
+            this.from = from;
+            this.to = to;
+            this.deltaTime = deltaTime;
+        }
+
+        /**
+         * Updates the awake objects of the task's regions, or splits the range in half and
+         * updates both halves in parallel while it has more than REGIONS_PER_TASK regions.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= REGIONS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    for (RegionObject object : regions[i].objects) {
+                        if (!object.isSleeping()) {
+                            object.updateInRegion(deltaTime);
+                        }
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RegionUpdateTask(regions, from, middle, deltaTime),
+                    new RegionUpdateTask(regions, middle, to, deltaTime));
+        }
+    }
+
+    /**
+     * Constructor for WorldRegions.
+     *
+     * @param parallelism The number of threads region updates run on.
+     */
+    public WorldRegions(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Adds an object to the region it is in. From now on, the region updates the object.
+     *
+     * @param object The object to add.
+     */
+    public void add(RegionObject object) {
+        regionAt(object.getTopLeftCorner().x()).objects.add(object);
+        object.setUpdatedByRegion(true);
+    }
+
+    /**
+     * Posts an interaction that happened at a position in the world, to be applied in the
+     * merge phase of the current update.
+     *
+     * @param x The x-coordinate the interaction happened at.
+     * @param interaction The interaction to apply.
+     */
+    public void post(float x, Runnable interaction) {
+        regionAt(x).interactions.add(interaction);
+    }
+
+    /**
+     * Updates all the regions in parallel, then applies the posted interactions in order.
+     * Must be called on the game thread.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    public void update(float deltaTime) {
+        pool.invoke(new RegionUpdateTask(regions, 0, regions.length, deltaTime));
+        // Merge phase: apply cross-region interactions on the game thread, left to right.
+        for (Region region : regions) {
+            for (Runnable interaction : region.interactions) {
+                interaction.run();
+            }
+            region.interactions.clear();
+        }
+    }
+
+    /**
+     * Frees the spare capacity of the regions' lists and forgets regions left without objects,
+     * so the regions hold no more memory than their objects need.
+     * Must be called on the game thread, between updates.
+     */
+    public void compact() {
+        regionsByIndex.values().removeIf(region -> region.objects.isEmpty() && region.interactions.isEmpty());
+        for (Region region : regionsByIndex.values()) {
+            region.objects.trimToSize();
+            region.interactions.trimToSize();
+        }
+        regions = regionsByIndex.values().toArray(new Region[0]);
+    }
+
+    /**
+     * Gets the number of regions.
+     *
+     * @return The number of regions.
+     */
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    /**
+     * Measures how region updates scale with the number of cores, updating every region a
+     * number of times with a pool of each size from 1 to the number of available processors.
+     * The measured updates use a zero time step, so they do not advance any animation.
+     *
+     * @param frames The number of updates to measure for each pool size.
+     * @return A human-readable report, one line per pool size.
+     */
+    public String reportScaling(int frames) {
+        ForkJoinPool original = pool;
+        StringBuilder report = new StringBuilder();
+        double singleCoreMillis = 0;
+        for (int cores = 1; cores <= Runtime.getRuntime().availableProcessors(); cores++) {
+            pool = new ForkJoinPool(cores);
+            update(0); // Warm up the pool's threads.
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                update(0);
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / frames;
+            pool.shutdown();
+            if (cores == 1) {
+                singleCoreMillis = millis;
+            }
+            report.append(String.format(Locale.ROOT, "%d cores: %.3f ms/update (%.2fx)%n",
+                    cores, millis, singleCoreMillis / millis));
+        }
+        pool = original;
+        return report.toString();
+    }
+
+    /**
+     * Gets the region containing an x-coordinate, creating it if needed.
+     *
+     * @param x The x-coordinate.
+     * @return The region the coordinate is in.
+     */
+    private Region regionAt(float x) {
+        int index = (int) Math.floor(x / REGION_WIDTH);
+        Region region = regionsByIndex.get(index);
+        if (region == null) {
+            region = new Region();
+            regionsByIndex.put(index, region);
+            regions = regionsByIndex.values().toArray(new Region[0]);
+        }
+        return region;
+    }
+}
@@ -0,0 +1,148 @@
+package pepse.world;
+
+import pepse.util.JobScheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Creates the world chunk by chunk over several frames, so the game can start drawing before
+ * the whole world exists. The chunks nearest to a focus point, usually the avatar's spawn
+ * point, are created first. Chunks are created by low-priority jobs of the game's job
+ * scheduler, which shares its per-frame budget between world creation and other deferred work.
+ */
+public class WorldStreamer {
+    /**
+     * constants that are used through the class
+     */
+    public static final int CHUNK_WIDTH = Block.SIZE * BlockStore.CHUNK_COLUMNS; // Width of a chunk, in pixels.
+
+    private final IntConsumer chunkFactory; // Creates the content of a chunk, given its index.
+    private final Deque<Integer> pending = new ArrayDeque<>(); // Chunks still to create, nearest first.
+    private final Set<Integer> created = new HashSet<>(); // Chunks that were already created.
+    private final JobScheduler jobScheduler; // Runs the jobs that create chunks.
+    private boolean isJobQueued; // Whether a job creating the next pending chunk is queued.
+
+    /**
+     * Constructor for a WorldStreamer.
+     *
+     * @param chunkFactory Creates the content of a chunk, given its index.
+     * @param jobScheduler Runs the jobs that create chunks.
+     */
+    public WorldStreamer(IntConsumer chunkFactory, JobScheduler jobScheduler) {
+        this.chunkFactory = chunkFactory;
+        this.jobScheduler = jobScheduler;
+    }
+
+    /**
+     * Gets the index of the chunk that covers an x-coordinate.
+     *
+     * @param x The x-coordinate.
+     * @return The chunk index.
+     */
+    public static int chunkAt(float x) {
+        return BlockStore.chunkOf(BlockStore.columnAt(x));
+    }
+
+    /**
+     * Queues the chunks covering a range of x-coordinates, ordered so the chunks nearest to a
+     * focus point are created first. Chunks that were already created or queued are skipped.
+     *
+     * @param minX The minimum x-coordinate (inclusive).
+     * @param maxX The maximum x-coordinate (inclusive).
+     * @param focusX The x-coordinate whose chunks are created first.
+     */
+    public void enqueueRange(float minX, float maxX, float focusX) {
+        int focusChunk = chunkAt(focusX);
+        List<Integer> chunks = new ArrayList<>();
+        for (int chunk = chunkAt(minX); chunk <= chunkAt(maxX); chunk++) {
+            if (!created.contains(chunk) && !pending.contains(chunk)) {
+                chunks.add(chunk);
+            }
+        }
+        chunks.addAll(pending);
+        chunks.sort(Comparator.comparingInt(chunk -> Math.abs(chunk - focusChunk)));
+        pending.clear();
+        pending.addAll(chunks);
+        queueJob();
+    }
+
+    /**
+     * Creates the chunks covering a range of x-coordinates immediately, regardless of the budget.
+     * Used for the region that must exist before the first frame, such as the ground under the
+     * avatar's spawn point.
+     *
+     * @param minX The minimum x-coordinate (inclusive).
+     * @param maxX The maximum x-coordinate (inclusive).
+     */
+    public void createRange(float minX, float maxX) {
+        for (int chunk = chunkAt(minX); chunk <= chunkAt(maxX); chunk++) {
+            pending.remove(chunk);
+            create(chunk);
+        }
+    }
+
+    /**
+     * Checks whether all queued chunks were created.
+     *
+     * @return True if no chunks are pending.
+     */
+    public boolean isDone() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Gets the number of chunks still to create.
+     *
+     * @return The number of pending chunks.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of chunks that were created.
+     *
+     * @return The number of created chunks.
+     */
+    public int getCreatedCount() {
+        return created.size();
+    }
+
+    /**
+     * Queues a job that creates the nearest pending chunk, unless one is queued already.
+     * Each job queues the next one, so chunks are created one job at a time, as many in a
+     * frame as the scheduler's budget allows.
+     */
+    private void queueJob() {
+        if (isJobQueued || pending.isEmpty()) {
+            return;
+        }
+        isJobQueued = true;
+        jobScheduler.submit(JobScheduler.Priority.LOW, () -> {
+            isJobQueued = false;
+            Integer chunk = pending.poll();
+            if (chunk != null) {
+                create(chunk);
+            }
+            queueJob();
+        });
+    }
+
+    /**
+     * Creates a chunk, unless it was already created.
+     *
+     * @param chunk The chunk index.
+     */
+    private void create(int chunk) {
+        if (created.add(chunk)) {
+            chunkFactory.accept(chunk);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package pepse.world.daynight;
+
+/**
+ * Keeps the time of day, as a phase of the day-night cycle. The sun and the night overlay read
+ * their state from the phase, so that the time of day can be saved and restored, which is not
+ * possible for a running Transition.
+ */
+public class DayNightCycle {
+    private final float cycleLength; // The length of a full day-night cycle, in seconds.
+    private float time; // The time since the start of the current cycle, in seconds.
+
+    /**
+     * Constructor for a DayNightCycle, starting at noon, when the sun is at its highest and
+     * the night overlay fully transparent.
+     *
+     * @param cycleLength The length of a full day-night cycle, in seconds.
+     */
+    public DayNightCycle(float cycleLength) {
+        this.cycleLength = cycleLength;
+    }
+
+    /**
+     * Advances the time of day.
+     *
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    public void advance(float deltaTime) {
+        time = (time + deltaTime) % cycleLength;
+    }
+
+    /**
+     * Gets how far the current cycle is.
+     *
+     * @return The phase, in [0, 1): 0 is noon and 0.5 is midnight.
+     */
+    public float getPhase() {
+        return time / cycleLength;
+    }
+
+    /**
+     * Sets how far the current cycle is, for example when restoring a saved game.
+     *
+     * @param phase The phase, in [0, 1).
+     */
+    public void setPhase(float phase) {
+        time = (phase - (float) Math.floor(phase)) * cycleLength;
+    }
+
+    /**
+     * Gets the length of a full cycle.
+     *
+     * @return The cycle length, in seconds.
+     */
+    public float getCycleLength() {
+        return cycleLength;
+    }
+}
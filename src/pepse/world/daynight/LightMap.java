@@ -0,0 +1,432 @@
+package pepse.world.daynight;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.BlockStore;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Lights the terrain at block resolution, so that at night glowing objects light up the ground
+ * around them and terrain gets darker the deeper it is underground.
+ * Light is kept per chunk of the block store in two channels: sky light, which fills the air
+ * above the ground and seeps into it, and block light, which spreads from light sources.
+ * Light spreads by flood fill, losing a level per cell and more through solid cells. It is only
+ * recomputed around a change, when a chunk is loaded, a light source changes or a block changes.
+ * Each chunk is drawn as a small darkness texture over the terrain, blended with how far into the
+ * night the day-night cycle is; a texture is only redrawn when its chunk's light changed or the
+ * night got noticeably darker or lighter.
+ */
+public class LightMap {
+    /**
+     * constants that are used through the class
+     */
+    public static final int MAX_LIGHT = 15; // The light level of the open sky and the brightest sources.
+    private static final int SOLID_COST = 4; // Light lost when spreading out of a solid cell.
+    private static final float SKY_DIMMING = 0.8f; // How much of the sky light is lost at midnight.
+    private static final float MAX_DARKNESS = 0.85f; // The opacity of an unlit cell.
+    private static final int NIGHT_LEVELS = 16; // Steps of the night the textures are redrawn at.
+    private static final int SKY = 0; // Index of the sky light channel.
+    private static final int BLOCK = 1; // Index of the block light channel.
+
+    private final BlockStore blockStore; // The terrain's cells, which block and carry light.
+    private final GameObjectCollection gameObjects; // Where the chunks' darkness overlays are added.
+    private final DoubleSupplier nightness; // How far into the night it is, from 0 (day) to 1.
+    private final Map<Integer, ChunkLight> chunks = new HashMap<>(); // Light of each loaded chunk.
+    private final Map<Long, Integer> sources = new HashMap<>(); // Emitted light of each source cell.
+    private final List<TrackedSource> trackedSources = new ArrayList<>(); // Objects that give light.
+    private final CellQueue removalQueue = new CellQueue(); // Cells whose light is being removed.
+    private final CellQueue lightQueue = new CellQueue(); // Cells whose light is spreading.
+    private int nightLevel = -1; // The night level the textures were last drawn at.
+
+    /**
+     * The light and the darkness overlay of a single chunk.
+     */
+    private static class ChunkLight {
+        private final byte[][] light; // Light per channel, indexed like the block store's chunks.
+        private final BufferedImage texture; // One pixel of darkness per cell.
+        private final GameObject overlay; // Draws the texture over the chunk.
+        private boolean isDirty = true; // Whether the texture needs to be redrawn.
+
+        ChunkLight(int chunk, int rows) {
+            light = new byte[2][BlockStore.CHUNK_COLUMNS * rows];
+            texture = new BufferedImage(BlockStore.CHUNK_COLUMNS, rows, BufferedImage.TYPE_INT_ARGB);
+            overlay = new GameObject(new Vector2(chunk * BlockStore.CHUNK_COLUMNS * Block.SIZE, 0),
+                    new Vector2(BlockStore.CHUNK_COLUMNS * Block.SIZE, rows * Block.SIZE),
+                    new ImageRenderable(texture));
+            overlay.setTag("light map");
+        }
+    }
+
+    /**
+     * An object that gives light while a condition holds, such as a fruit that was not eaten.
+     */
+    private static class TrackedSource {
+        private final long cell; // The cell the object is in.
+        private final int level; // The light the object gives.
+        private final BooleanSupplier isLit; // Whether the object currently gives light.
+        private boolean wasLit; // Whether the object gave light when last checked.
+
+        TrackedSource(long cell, int level, BooleanSupplier isLit) {
+            this.cell = cell;
+            this.level = level;
+            this.isLit = isLit;
+        }
+    }
+
+    /**
+     * A growable ring buffer of packed cells, so flood fills do not box every cell they visit.
+     * Each entry packs a column, a row and a light level.
+     */
+    private static class CellQueue {
+        private long[] entries = new long[1024];
+        private int head;
+        private int size;
+
+        void push(int column, int row, int level) {
+            if (size == entries.length) {
+                long[] grown = new long[entries.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = entries[(head + i) % entries.length];
+                }
+                entries = grown;
+                head = 0;
+            }
+            entries[(head + size++) % entries.length] = ((long) column << 32) | ((long) row << 8) | level;
+        }
+
+        long pop() {
+            long entry = entries[head];
+            head = (head + 1) % entries.length;
+            size--;
+            return entry;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        static int column(long entry) {
+            return (int) (entry >> 32);
+        }
+
+        static int row(long entry) {
+            return (int) (entry & 0xFFFFFFFFL) >>> 8;
+        }
+
+        static int level(long entry) {
+            return (int) (entry & 0xFF);
+        }
+    }
+
+    /**
+     * Constructor for a LightMap.
+     *
+     * @param blockStore The terrain's cells.
+     * @param gameObjects The game's object collection, where the darkness overlays are added.
+     * @param nightness Supplies how far into the night it is, from 0 (day) to 1 (midnight).
+     */
+    public LightMap(BlockStore blockStore, GameObjectCollection gameObjects, DoubleSupplier nightness) {
+        this.blockStore = blockStore;
+        this.gameObjects = gameObjects;
+        this.nightness = nightness;
+    }
+
+    /**
+     * Lights the chunks covering a range of x-coordinates, which must already be in the block store.
+     *
+     * @param minX The minimum x-coordinate (inclusive).
+     * @param maxX The maximum x-coordinate (inclusive).
+     */
+    public void loadRange(float minX, float maxX) {
+        int lastChunk = BlockStore.chunkOf(BlockStore.columnAt(maxX));
+        for (int chunk = BlockStore.chunkOf(BlockStore.columnAt(minX)); chunk <= lastChunk; chunk++) {
+            loadChunk(chunk);
+        }
+    }
+
+    /**
+     * Lights a chunk: fills its sky and block light, and lets light flow in from and out to the
+     * neighboring loaded chunks.
+     *
+     * @param chunk The chunk index.
+     */
+    public void loadChunk(int chunk) {
+        if (chunks.containsKey(chunk)) {
+            return;
+        }
+        ChunkLight chunkLight = new ChunkLight(chunk, blockStore.getRows());
+        chunks.put(chunk, chunkLight);
+        gameObjects.addGameObject(chunkLight.overlay, Layer.FOREGROUND);
+        int firstColumn = chunk * BlockStore.CHUNK_COLUMNS;
+        for (int column = firstColumn; column < firstColumn + BlockStore.CHUNK_COLUMNS; column++) {
+            for (int row = 0; row < blockStore.getRows(); row++) {
+                for (int channel = SKY; channel <= BLOCK; channel++) {
+                    int emitted = emission(channel, column, row);
+                    if (emitted > 0) {
+                        setLight(channel, column, row, emitted);
+                        lightQueue.push(column, row, channel);
+                    }
+                }
+            }
+            // Light of the neighboring chunks flows in across the edges.
+            if (column == firstColumn || column == firstColumn + BlockStore.CHUNK_COLUMNS - 1) {
+                int outside = column == firstColumn ? column - 1 : column + 1;
+                for (int row = 0; row < blockStore.getRows(); row++) {
+                    for (int channel = SKY; channel <= BLOCK; channel++) {
+                        if (getLight(channel, outside, row) > 0) {
+                            lightQueue.push(outside, row, channel);
+                        }
+                    }
+                }
+            }
+        }
+        spreadLight();
+    }
+
+    /**
+     * Removes a chunk's light and its overlay, for example when the chunk is unloaded.
+     *
+     * @param chunk The chunk index.
+     */
+    public void unloadChunk(int chunk) {
+        ChunkLight chunkLight = chunks.remove(chunk);
+        if (chunkLight != null) {
+            gameObjects.removeGameObject(chunkLight.overlay, Layer.FOREGROUND);
+        }
+    }
+
+    /**
+     * Adds an object that gives light while a condition holds. The condition is checked once a
+     * frame, and the light only recomputed when it changes.
+     *
+     * @param position The position of the object in the world.
+     * @param level The light the object gives, up to MAX_LIGHT.
+     * @param isLit Whether the object currently gives light.
+     */
+    public void addLightSource(Vector2 position, int level, BooleanSupplier isLit) {
+        trackedSources.add(new TrackedSource(cellKey(BlockStore.columnAt(position.x()),
+                BlockStore.rowAt(position.y())), Math.min(level, MAX_LIGHT), isLit));
+    }
+
+    /**
+     * Recomputes the light around a cell whose block changed. Light that spread through the
+     * cell is removed and spread again, and the sky light of the cell's column is updated.
+     *
+     * @param column The column of the changed cell.
+     * @param row The row of the changed cell.
+     */
+    public void onBlockChanged(int column, int row) {
+        // Every cell of the column may have gained or lost the open sky.
+        // Only the open sky gives a cell full sky light, so a mismatch means the cell changed.
+        for (int r = 0; r < blockStore.getRows(); r++) {
+            boolean isOpenSky = emission(SKY, column, r) == MAX_LIGHT;
+            if (r == row || isOpenSky != (getLight(SKY, column, r) == MAX_LIGHT)) {
+                relight(SKY, column, r);
+            }
+        }
+        relight(BLOCK, column, row);
+        spreadLight();
+    }
+
+    /**
+     * Estimates the memory held by the light of the loaded chunks: two light levels and one
+     * texture pixel per cell.
+     *
+     * @return The estimated size, in bytes.
+     */
+    public long memoryBytes() {
+        return (long) chunks.size() * BlockStore.CHUNK_COLUMNS * blockStore.getRows() * (2 + Integer.BYTES);
+    }
+
+    /**
+     * Updates the light sources that changed, and redraws the textures of the chunks whose
+     * light changed or, when the night got darker or lighter, of every chunk.
+     */
+    public void update() {
+        for (TrackedSource source : trackedSources) {
+            boolean isLit = source.isLit.getAsBoolean();
+            if (isLit != source.wasLit) {
+                source.wasLit = isLit;
+                setSource(source.cell, isLit ? source.level : 0);
+            }
+        }
+        int currentNightLevel = (int) Math.round(nightness.getAsDouble() * (NIGHT_LEVELS - 1));
+        boolean nightChanged = currentNightLevel != nightLevel;
+        nightLevel = currentNightLevel;
+        for (Map.Entry<Integer, ChunkLight> entry : chunks.entrySet()) {
+            if (nightChanged || entry.getValue().isDirty) {
+                drawTexture(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Changes the light emitted in a cell, spreading or removing light around it.
+     *
+     * @param cell The packed cell.
+     * @param level The new emitted light, 0 to stop emitting.
+     */
+    private void setSource(long cell, int level) {
+        if (level > 0) {
+            sources.merge(cell, level, Math::max);
+        } else {
+            sources.remove(cell);
+        }
+        relight(BLOCK, (int) (cell >> 32), (int) cell);
+        spreadLight();
+    }
+
+    /**
+     * Removes the light of a cell and of everything lit through it, then queues the light around
+     * the removed area to spread into it again. Call spreadLight afterwards.
+     *
+     * @param channel The light channel.
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     */
+    private void relight(int channel, int column, int row) {
+        if (!isLoaded(column, row)) {
+            return;
+        }
+        removalQueue.push(column, row, getLight(channel, column, row));
+        setLight(channel, column, row, 0);
+        queueEmission(channel, column, row);
+        while (!removalQueue.isEmpty()) {
+            long entry = removalQueue.pop();
+            int removedColumn = CellQueue.column(entry);
+            int removedRow = CellQueue.row(entry);
+            int removedLevel = CellQueue.level(entry);
+            for (int i = 0; i < 4; i++) {
+                int neighborColumn = removedColumn + (i == 0 ? -1 : i == 1 ? 1 : 0);
+                int neighborRow = removedRow + (i == 2 ? -1 : i == 3 ? 1 : 0);
+                int neighborLevel = getLight(channel, neighborColumn, neighborRow);
+                if (neighborLevel > 0 && neighborLevel < removedLevel) {
+                    // Lit through the removed cell: remove it too.
+                    setLight(channel, neighborColumn, neighborRow, 0);
+                    removalQueue.push(neighborColumn, neighborRow, neighborLevel);
+                    queueEmission(channel, neighborColumn, neighborRow);
+                } else if (neighborLevel > 0) {
+                    // Lit from elsewhere: spread its light back into the removed area.
+                    lightQueue.push(neighborColumn, neighborRow, channel);
+                }
+            }
+        }
+        // The cell itself may now be lit differently by its neighbors.
+        for (int i = 0; i < 4; i++) {
+            int neighborColumn = column + (i == 0 ? -1 : i == 1 ? 1 : 0);
+            int neighborRow = row + (i == 2 ? -1 : i == 3 ? 1 : 0);
+            if (getLight(channel, neighborColumn, neighborRow) > 0) {
+                lightQueue.push(neighborColumn, neighborRow, channel);
+            }
+        }
+    }
+
+    /**
+     * Restores the light a cell emits on its own, queueing it to spread.
+     */
+    private void queueEmission(int channel, int column, int row) {
+        int emitted = emission(channel, column, row);
+        if (emitted > 0) {
+            setLight(channel, column, row, emitted);
+            lightQueue.push(column, row, channel);
+        }
+    }
+
+    /**
+     * Spreads the light of the queued cells by flood fill, until no cell can get brighter.
+     * Entries of the light queue carry their channel in place of a level.
+     */
+    private void spreadLight() {
+        while (!lightQueue.isEmpty()) {
+            long entry = lightQueue.pop();
+            int column = CellQueue.column(entry);
+            int row = CellQueue.row(entry);
+            int channel = CellQueue.level(entry);
+            int spread = getLight(channel, column, row)
+                    - (blockStore.getCell(column, row) == BlockStore.AIR ? 1 : SOLID_COST);
+            if (spread <= 0) {
+                continue;
+            }
+            for (int i = 0; i < 4; i++) {
+                int neighborColumn = column + (i == 0 ? -1 : i == 1 ? 1 : 0);
+                int neighborRow = row + (i == 2 ? -1 : i == 3 ? 1 : 0);
+                if (isLoaded(neighborColumn, neighborRow)
+                        && getLight(channel, neighborColumn, neighborRow) < spread) {
+                    setLight(channel, neighborColumn, neighborRow, spread);
+                    lightQueue.push(neighborColumn, neighborRow, channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the light a cell emits on its own: the open sky above the ground, or a light source.
+     */
+    private int emission(int channel, int column, int row) {
+        if (channel == SKY) {
+            return row < blockStore.surfaceRow(column) ? MAX_LIGHT : 0;
+        }
+        return sources.getOrDefault(cellKey(column, row), 0);
+    }
+
+    /**
+     * Draws a chunk's darkness texture for the current night level. Open air above the ground is
+     * left transparent, since the sky has its own night overlay.
+     */
+    private void drawTexture(int chunk, ChunkLight chunkLight) {
+        int[] pixels = ((DataBufferInt) chunkLight.texture.getRaster().getDataBuffer()).getData();
+        float skyFactor = 1 - SKY_DIMMING * nightLevel / (NIGHT_LEVELS - 1);
+        int rows = blockStore.getRows();
+        for (int local = 0; local < BlockStore.CHUNK_COLUMNS; local++) {
+            int column = chunk * BlockStore.CHUNK_COLUMNS + local;
+            int surfaceRow = blockStore.surfaceRow(column);
+            for (int row = 0; row < rows; row++) {
+                int index = local * rows + row;
+                int alpha = 0;
+                if (row >= surfaceRow) {
+                    float light = Math.max(chunkLight.light[SKY][index] * skyFactor,
+                            chunkLight.light[BLOCK][index]);
+                    alpha = Math.round((1 - light / MAX_LIGHT) * MAX_DARKNESS * 255);
+                }
+                pixels[row * BlockStore.CHUNK_COLUMNS + local] = alpha << 24; // Black, with the darkness as alpha.
+            }
+        }
+        chunkLight.isDirty = false;
+    }
+
+    private boolean isLoaded(int column, int row) {
+        return row >= 0 && row < blockStore.getRows() && chunks.containsKey(BlockStore.chunkOf(column));
+    }
+
+    private int getLight(int channel, int column, int row) {
+        ChunkLight chunkLight = chunks.get(BlockStore.chunkOf(column));
+        if (chunkLight == null || row < 0 || row >= blockStore.getRows()) {
+            return 0;
+        }
+        return chunkLight.light[channel][Math.floorMod(column, BlockStore.CHUNK_COLUMNS)
+                * blockStore.getRows() + row];
+    }
+
+    private void setLight(int channel, int column, int row, int level) {
+        ChunkLight chunkLight = chunks.get(BlockStore.chunkOf(column));
+        chunkLight.light[channel][Math.floorMod(column, BlockStore.CHUNK_COLUMNS)
+                * blockStore.getRows() + row] = (byte) level;
+        chunkLight.isDirty = true;
+    }
+
+    private static long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
@@ -2,7 +2,7 @@ package pepse.world.daynight;
 
 import danogl.GameObject;
 import danogl.components.CoordinateSpace;
-import danogl.components.Transition;
+import danogl.components.Component;
 import danogl.gui.rendering.RectangleRenderable;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
@@ -17,19 +17,21 @@ import java.awt.*;
 public class Night {
     // The color of the night overlay.
     private static final Color NIGHT_COLOR = Color.decode("#000000");
-    // The maximum opacity for the night effect, representing midnight.
-    private static final Float MIDNIGHT_OPACITY = 0.5f;
+    /**
+     * The maximum opacity for the night effect, representing midnight.
+     */
+    public static final Float MIDNIGHT_OPACITY = 0.5f;
 
     /**
      * Creates and returns a GameObject representing the night effect.
-     * The GameObject's opacity transitions back and forth to simulate the changing night intensity.
+     * The GameObject's opacity goes back and forth with the day-night cycle to simulate the
+     * changing night intensity.
      *
      * @param windowDimensions The dimensions of the game window. Used to size the night overlay.
-     * @param cycleLength The length of a full day-night cycle in the game,
-     *                   influencing how quickly the night effect transitions.
+     * @param cycle The day-night cycle, whose phase decides how dark the night is.
      * @return A GameObject configured to represent the night effect over a day-night cycle.
      */
-    public static GameObject create(Vector2 windowDimensions, float cycleLength){
+    public static GameObject create(Vector2 windowDimensions, DayNightCycle cycle){
         // Create a new GameObject positioned at (0,0) with size equal to
         // the window dimensions and colored to represent night.
         GameObject night = new GameObject(Vector2.ZERO, windowDimensions,
@@ -39,19 +41,28 @@ public class Night {
         night.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
         // Tag the object for easy identification if needed.
         night.setTag("night");
-        // Initialize a Transition for the opacity of the night overlay.
-        new Transition<>(
-                night, // The GameObject being modified (the night overlay).
-                night.renderer()::setOpaqueness, // The method to adjust (setting the opacity).
-                0f, // Initial value: fully transparent at the beginning of the cycle.
-                MIDNIGHT_OPACITY, // Final value: semi-transparent at "midnight".
-                Transition.CUBIC_INTERPOLATOR_FLOAT, // Use a cubic interpolator for smooth transition.
-                cycleLength, // Duration of the transition for half the cycle length, then it reverses.
-                Transition.TransitionType.TRANSITION_BACK_AND_FORTH, // Transition type
-                // to oscillate between day and night.
-                null // No completion callback needed.
-        );
+        // Follow the cycle's phase with the opacity of the night overlay.
+        night.addComponent(new Component() {
+            @Override
+            public void update(float deltaTime) {
+                night.renderer().setOpaqueness(opacityAt(cycle.getPhase()));
+            }
+        });
 
         return night; // Return the configured GameObject.
     }
+
+    /**
+     * Calculates the opacity of the night overlay at a phase of the day-night cycle.
+     * It is fully transparent at the beginning of the cycle, semi-transparent at "midnight"
+     * halfway through, and eases in and out with a cubic curve in between.
+     *
+     * @param phase The phase of the cycle, in [0, 1).
+     * @return The opacity of the night overlay.
+     */
+    public static float opacityAt(float phase) {
+        // Progress from day to midnight in the first half of the cycle, and back in the second.
+        float t = phase < 0.5f ? phase * 2 : 2 - phase * 2;
+        return MIDNIGHT_OPACITY * t * t * (3 - 2 * t);
+    }
 }
@@ -2,9 +2,10 @@ package pepse.world.daynight;
 
 import danogl.GameObject;
 import danogl.components.CoordinateSpace;
-import danogl.components.Transition;
+import danogl.components.Component;
 import danogl.gui.rendering.OvalRenderable;
 import danogl.util.Vector2;
+import pepse.util.MutableVector2;
 
 import java.awt.*;
 
@@ -17,21 +18,22 @@ import java.awt.*;
 public class Sun {
 
     private static final Color SUN_COLOR = Color.YELLOW; // Color of the sun.
+    private static final float SIZE = 60; // The diameter of the sun.
 
     /**
      * Creates and returns a GameObject representing the sun, complete with its movement across the sky.
      *
      * @param windowDimensions The dimensions of the game window. Used to position and move the sun.
-     * @param cycleLength      The length of the day-night cycle, influencing how quickly the sun moves.
+     * @param cycle            The day-night cycle, whose phase decides where the sun is.
      * @return A GameObject configured to represent and animate the sun.
      */
-    public static GameObject create(Vector2 windowDimensions, float cycleLength) {
+    public static GameObject create(Vector2 windowDimensions, DayNightCycle cycle) {
         // Initial position of the sun at the start of the day.
         Vector2 initialSunCenter = new Vector2(windowDimensions.x() / 2, windowDimensions.y() * 1 / 4);
         // The center point of the sun's cycle, used to calculate its movement arc.
         Vector2 cycleCenter = new Vector2(windowDimensions.x() / 2, windowDimensions.y() * 2 / 3);
         // Create the sun GameObject with an oval shape and yellow color.
-        GameObject sun = new GameObject(initialSunCenter, new Vector2(60, 60),
+        GameObject sun = new GameObject(initialSunCenter, new Vector2(SIZE, SIZE),
                 new OvalRenderable(SUN_COLOR));
 
         // Ensure the sun remains in a fixed position relative to the camera's coordinates.
@@ -39,21 +41,26 @@ public class Sun {
         // Tag the object for easy identification.
         sun.setTag("sun");
 
-        // Initialize a Transition to animate the sun's movement in an arc across the sky.
-        new Transition<>(sun, // The GameObject being animated.
-                angle -> sun.setCenter(initialSunCenter.subtract(cycleCenter) // Calculate the new
-                        // position based on rotation angle.
-                        .rotated(angle).add(cycleCenter)), 0f, // Start the transition
-                // at 0 degrees rotation.
-                360f, // End the transition at 360 degrees rotation, completing a full circle.
-                Transition.LINEAR_INTERPOLATOR_FLOAT, // Use a linear interpolator
-                // for steady movement.
-                cycleLength, // The duration of the sun's movement, representing a
-                // full day-night cycle.
-                Transition.TransitionType.TRANSITION_LOOP, // Loop the transition to
-                // continuously simulate the sun's movement.
-                null // No completion callback.
-        );
+        // Move the sun in an arc across the sky, a full circle per day-night cycle.
+        // The arc is computed in a reused vector, so a frame allocates only the new position.
+        MutableVector2 topLeft = new MutableVector2();
+        sun.addComponent(new Component() {
+            private float lastPhase = -1; // The phase the sun was last placed at.
+
+            @Override
+            public void update(float deltaTime) {
+                float phase = cycle.getPhase();
+                if (phase == lastPhase) {
+                    return; // The sun has not moved.
+                }
+                lastPhase = phase;
+                // Calculate the new position based on the rotation angle of the current phase.
+                topLeft.set(initialSunCenter).subtract(cycleCenter.x(), cycleCenter.y())
+                        .rotate(phase * 360f).add(cycleCenter.x(), cycleCenter.y())
+                        .subtract(SIZE / 2, SIZE / 2);
+                sun.setTopLeftCorner(topLeft.toVector2());
+            }
+        });
         return sun; // Return the configured sun GameObject.
     }
 }
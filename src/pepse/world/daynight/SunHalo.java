@@ -1,10 +1,12 @@
 package pepse.world.daynight;
 
 import danogl.GameObject;
+import danogl.components.Component;
 import danogl.components.CoordinateSpace;
 import danogl.gui.rendering.OvalRenderable;
 import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
+import pepse.util.MutableVector2;
 
 import java.awt.*;
 
@@ -16,10 +18,12 @@ import java.awt.*;
 public class SunHalo {
     // The color of the halo, including alpha for transparency.
     private static final Color HALO_COLOR = new Color(255, 255, 0, 20);
+    private static final float SIZE = 120; // The diameter of the halo.
 
     /**
      * Creates and returns a GameObject representing the sun's halo.
-     * The halo is positioned and sized relative to the sun, creating a glowing effect around it.
+     * The halo is positioned and sized relative to the sun, creating a glowing effect around it,
+     * and follows the sun. It is only moved in the frames the sun moved in.
      *
      * @param sun The GameObject representing the sun around which the halo is created.
      * @return A GameObject configured to represent the sun's halo.
@@ -27,8 +31,24 @@ public class SunHalo {
     public static GameObject create(GameObject sun) {
         // Create the sunHalo GameObject with a position relative to the sun, increased size,
         // and an oval shape with the specified halo color.
-        GameObject sunHalo = new GameObject(sun.getTopLeftCorner(), new Vector2(120, 120),
+        GameObject sunHalo = new GameObject(sun.getTopLeftCorner(), new Vector2(SIZE, SIZE),
                 new OvalRenderable(HALO_COLOR));
+        // Keep the halo centered on the sun. The sun's position is immutable, so it moved
+        // exactly when its top-left corner is a different object.
+        sunHalo.addComponent(new Component() {
+            private Vector2 followedTopLeft; // The sun's position the halo was last centered on.
+
+            @Override
+            public void update(float deltaTime) {
+                Vector2 sunTopLeft = sun.getTopLeftCorner();
+                if (sunTopLeft == followedTopLeft) {
+                    return;
+                }
+                followedTopLeft = sunTopLeft;
+                sunHalo.setTopLeftCorner(new Vector2(MutableVector2.centerX(sun) - SIZE / 2,
+                        MutableVector2.centerY(sun) - SIZE / 2));
+            }
+        });
 
         // Ensure the halo remains in a fixed position relative to the camera's coordinates,
         // like the sun.
@@ -0,0 +1,435 @@
+package pepse.world.nav;
+
+import pepse.world.Avatar;
+import pepse.world.Block;
+import pepse.world.BlockStore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A navigation graph over the terrain, for agents that move like the avatar. Its nodes are the
+ * cells an agent can stand on: solid cells with room for the agent above them. Its edges are
+ * the moves between them, weighted by the time they take: walking to the next column, walking
+ * off a ledge and falling, and jumping up to MAX_JUMP_COLUMNS columns away, along the arc the
+ * avatar's jump speed and gravity give, if nothing solid is in its way. Tree trunks are
+ * obstacles: an agent can stand on top of one, or jump over it.
+ * <p>
+ * The graph is kept per chunk, in primitive arrays, and built when the chunk is first
+ * searched. A block change only invalidates the chunks whose moves it can affect, which are
+ * rebuilt on their next search.
+ */
+public class NavGraph {
+    /**
+     * constants that are used through the class
+     */
+    public static final long NO_NODE = Long.MIN_VALUE; // Stands for a missing node.
+    public static final int MAX_JUMP_COLUMNS = 4; // The farthest a jump edge reaches, in columns.
+    static final int AGENT_ROWS = (int) Math.ceil(Avatar.SIZE / Block.SIZE); // Rows an agent is tall.
+    private static final float JUMP_SPEED = -Avatar.VELOCITY_Y; // The speed a jump starts upwards at.
+    private static final int ARC_SAMPLES_PER_COLUMN = 4; // Points a jump arc is checked at, per column.
+
+    private final BlockStore blockStore; // The terrain's cells.
+    private final Map<Integer, ChunkGraph> chunks = new HashMap<>(); // The built graph of each chunk.
+    private final Map<Integer, Integer> obstacleTops = new HashMap<>(); // Top row of the obstacle per column.
+    private final ChunkBuilder builder = new ChunkBuilder(); // Reused to build chunks.
+    private int buildCount; // The number of chunk graphs built.
+
+    /**
+     * The nodes and edges of a chunk. Nodes are sorted by column, then row, and a node's edges
+     * are the range edgeStart[node] to edgeStart[node + 1]. An edge's target is a node key,
+     * which may be in another chunk.
+     */
+    static class ChunkGraph {
+        final int firstColumn; // The chunk's first column.
+        final int[] columnStart; // The first node of each column, and the node count at the end.
+        final int[] rows; // Each node's row.
+        final int[] edgeStart; // Each node's first edge, and the edge count at the end.
+        final long[] edgeTargets; // Each edge's target node key.
+        final float[] edgeCosts; // Each edge's cost, in seconds.
+        boolean isDirty; // Whether a block change invalidated the graph.
+
+        ChunkGraph(int firstColumn, int[] columnStart, int[] rows, int[] edgeStart,
+                   long[] edgeTargets, float[] edgeCosts) {
+            this.firstColumn = firstColumn;
+            this.columnStart = columnStart;
+            this.rows = rows;
+            this.edgeStart = edgeStart;
+            this.edgeTargets = edgeTargets;
+            this.edgeCosts = edgeCosts;
+        }
+
+        /**
+         * Finds the node of a cell.
+         *
+         * @param column The cell's column, in the chunk.
+         * @param row The cell's row.
+         * @return The node index, or -1 if the cell is not a node.
+         */
+        int nodeAt(int column, int row) {
+            int local = column - firstColumn;
+            for (int node = columnStart[local]; node < columnStart[local + 1]; node++) {
+                if (rows[node] == row) {
+                    return node;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Growable arrays a chunk graph is built in, reused between builds.
+     */
+    private static class ChunkBuilder {
+        int[] rows = new int[64];
+        int[] edgeStart = new int[65];
+        long[] edgeTargets = new long[256];
+        float[] edgeCosts = new float[256];
+        int nodeCount;
+        int edgeCount;
+
+        void addNode(int row) {
+            if (nodeCount + 1 >= edgeStart.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+                edgeStart = Arrays.copyOf(edgeStart, edgeStart.length * 2);
+            }
+            rows[nodeCount] = row;
+            nodeCount++;
+        }
+
+        void addEdge(long target, float cost) {
+            if (edgeCount == edgeTargets.length) {
+                edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+                edgeCosts = Arrays.copyOf(edgeCosts, edgeCount * 2);
+            }
+            edgeTargets[edgeCount] = target;
+            edgeCosts[edgeCount] = cost;
+            edgeCount++;
+        }
+    }
+
+    /**
+     * Constructor for a NavGraph.
+     *
+     * @param blockStore The terrain's cells.
+     */
+    public NavGraph(BlockStore blockStore) {
+        this.blockStore = blockStore;
+    }
+
+    /**
+     * Packs a cell into a node key.
+     *
+     * @param column The cell's column.
+     * @param row The cell's row.
+     * @return The key.
+     */
+    public static long keyOf(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the column of a node key.
+     *
+     * @param key The key.
+     * @return The column.
+     */
+    public static int columnOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Gets the row of a node key.
+     *
+     * @param key The key.
+     * @return The row.
+     */
+    public static int rowOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Adds an obstacle standing on the ground, such as a tree trunk. Its columns are solid from
+     * its top down.
+     *
+     * @param x The obstacle's left x-coordinate.
+     * @param topY The obstacle's top y-coordinate.
+     * @param width The obstacle's width.
+     */
+    public void addObstacle(float x, float topY, float width) {
+        int topRow = BlockStore.rowAt(topY);
+        int lastColumn = BlockStore.columnAt(x + width - 1);
+        for (int column = BlockStore.columnAt(x); column <= lastColumn; column++) {
+            obstacleTops.merge(column, topRow, Math::min);
+            invalidateAround(column);
+        }
+    }
+
+    /**
+     * Invalidates the graph around a cell whose block changed: the chunks with a column close
+     * enough for a move to pass through the cell. They are rebuilt when next searched.
+     *
+     * @param column The column of the changed cell.
+     * @param row The row of the changed cell.
+     */
+    public void onBlockChanged(int column, int row) {
+        invalidateAround(column);
+    }
+
+    /**
+     * Invalidates the chunks around a chunk whose cells were just generated, since moves from
+     * their edges may now lead into it.
+     *
+     * @param chunk The chunk index.
+     */
+    public void onChunkLoaded(int chunk) {
+        invalidateAround(chunk * BlockStore.CHUNK_COLUMNS);
+        invalidateAround((chunk + 1) * BlockStore.CHUNK_COLUMNS - 1);
+    }
+
+    /**
+     * Drops the graph of a chunk whose cells were freed, and the obstacles of its columns;
+     * they are added again when the chunk is created again.
+     *
+     * @param chunk The chunk index.
+     */
+    public void onChunkUnloaded(int chunk) {
+        chunks.remove(chunk);
+        int firstColumn = chunk * BlockStore.CHUNK_COLUMNS;
+        for (int column = firstColumn; column < firstColumn + BlockStore.CHUNK_COLUMNS; column++) {
+            obstacleTops.remove(column);
+        }
+    }
+
+    /**
+     * Finds the node an agent at a position stands on or falls to: the highest node of its
+     * column at or below it. Feet sunk into the cell they stand on still find its node.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate of the agent's feet.
+     * @return The node key, or NO_NODE if nothing is below.
+     */
+    public long nodeBelow(float x, float y) {
+        int column = BlockStore.columnAt(x);
+        ChunkGraph graph = graphOf(column);
+        if (graph == null) {
+            return NO_NODE;
+        }
+        int row = BlockStore.rowAt(y - 1);
+        int local = column - graph.firstColumn;
+        for (int node = graph.columnStart[local]; node < graph.columnStart[local + 1]; node++) {
+            if (graph.rows[node] >= row) {
+                return keyOf(column, graph.rows[node]);
+            }
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * Gets the number of chunk graphs built, including rebuilds after changes.
+     *
+     * @return The number of builds.
+     */
+    public int getBuildCount() {
+        return buildCount;
+    }
+
+    /**
+     * Gets the graph of the chunk a column is in, building it if it was not built yet or was
+     * invalidated.
+     *
+     * @param column The column.
+     * @return The chunk's graph, or null if its cells were not generated.
+     */
+    ChunkGraph graphOf(int column) {
+        int chunk = BlockStore.chunkOf(column);
+        ChunkGraph graph = chunks.get(chunk);
+        if (graph != null && !graph.isDirty) {
+            return graph;
+        }
+        if (!blockStore.isGenerated(chunk)) {
+            return null;
+        }
+        graph = build(chunk);
+        chunks.put(chunk, graph);
+        return graph;
+    }
+
+    /**
+     * Marks the chunks within a jump of a column as invalid.
+     *
+     * @param column The column.
+     */
+    private void invalidateAround(int column) {
+        int lastChunk = BlockStore.chunkOf(column + MAX_JUMP_COLUMNS);
+        for (int chunk = BlockStore.chunkOf(column - MAX_JUMP_COLUMNS); chunk <= lastChunk; chunk++) {
+            ChunkGraph graph = chunks.get(chunk);
+            if (graph != null) {
+                graph.isDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Builds the graph of a chunk from its cells and obstacles.
+     *
+     * @param chunk The chunk index.
+     * @return The chunk's graph.
+     */
+    private ChunkGraph build(int chunk) {
+        buildCount++;
+        int firstColumn = chunk * BlockStore.CHUNK_COLUMNS;
+        int[] columnStart = new int[BlockStore.CHUNK_COLUMNS + 1];
+        builder.nodeCount = 0;
+        builder.edgeCount = 0;
+        for (int local = 0; local < BlockStore.CHUNK_COLUMNS; local++) {
+            int column = firstColumn + local;
+            columnStart[local] = builder.nodeCount;
+            for (int row = 0; row < blockStore.getRows(); row++) {
+                if (!isStandable(column, row)) {
+                    continue;
+                }
+                builder.edgeStart[builder.nodeCount] = builder.edgeCount;
+                builder.addNode(row);
+                addEdges(column, row);
+            }
+        }
+        columnStart[BlockStore.CHUNK_COLUMNS] = builder.nodeCount;
+        builder.edgeStart[builder.nodeCount] = builder.edgeCount;
+        return new ChunkGraph(firstColumn, columnStart,
+                Arrays.copyOf(builder.rows, builder.nodeCount),
+                Arrays.copyOf(builder.edgeStart, builder.nodeCount + 1),
+                Arrays.copyOf(builder.edgeTargets, builder.edgeCount),
+                Arrays.copyOf(builder.edgeCosts, builder.edgeCount));
+    }
+
+    /**
+     * Adds the edges of a node: to each side, walking or falling to the next column, and
+     * jumping to the nodes a jump can land on.
+     *
+     * @param column The node's column.
+     * @param row The node's row.
+     */
+    private void addEdges(int column, int row) {
+        for (int direction = -1; direction <= 1; direction += 2) {
+            int next = column + direction;
+            int landing = fallRow(next, row);
+            if (landing >= 0) {
+                float fallHeight = (landing - row) * Block.SIZE;
+                builder.addEdge(keyOf(next, landing), Block.SIZE / Avatar.VELOCITY_X
+                        + (float) Math.sqrt(2 * fallHeight / Avatar.GRAVITY));
+            }
+            for (int distance = 1; distance <= MAX_JUMP_COLUMNS; distance++) {
+                int target = column + direction * distance;
+                for (int targetRow = 0; targetRow < blockStore.getRows(); targetRow++) {
+                    if ((distance == 1 && targetRow == landing) || !isStandable(target, targetRow)) {
+                        continue; // Walking or falling reaches it already.
+                    }
+                    float time = jumpTime(column, row, target, targetRow);
+                    if (time > 0) {
+                        builder.addEdge(keyOf(target, targetRow), time);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds where an agent walking off a node into the next column lands.
+     *
+     * @param column The next column.
+     * @param row The row of the node walked off.
+     * @return The row landed on, or -1 if the agent cannot walk there or there is no ground.
+     */
+    private int fallRow(int column, int row) {
+        for (int above = 1; above <= AGENT_ROWS; above++) {
+            if (isSolid(column, row - above)) {
+                return -1; // A wall: only a jump gets over it.
+            }
+        }
+        for (int r = row; r < blockStore.getRows(); r++) {
+            if (isSolid(column, r)) {
+                return isStandable(column, r) ? r : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a jump between two nodes is possible, and how long it takes. The jump
+     * starts at the avatar's jump speed, moves sideways at the speed that lands it on the
+     * target node, and must not be higher than the jump reaches, nor farther than the avatar's
+     * horizontal speed carries it. The agent's body is checked against solid cells along
+     * the arc.
+     *
+     * @param column The start node's column.
+     * @param row The start node's row.
+     * @param targetColumn The target node's column.
+     * @param targetRow The target node's row.
+     * @return The jump's time in the air, in seconds, or 0 if the jump is not possible.
+     */
+    private float jumpTime(int column, int row, int targetColumn, int targetRow) {
+        float rise = (row - targetRow) * Block.SIZE;
+        float discriminant = JUMP_SPEED * JUMP_SPEED - 2 * Avatar.GRAVITY * rise;
+        if (discriminant < 0) {
+            return 0; // Higher than a jump reaches.
+        }
+        // The time the descending arc reaches the target's height.
+        float time = (JUMP_SPEED + (float) Math.sqrt(discriminant)) / Avatar.GRAVITY;
+        float distance = (targetColumn - column) * Block.SIZE;
+        if (Math.abs(distance) > Avatar.VELOCITY_X * time) {
+            return 0; // Farther than the jump carries.
+        }
+        float startX = (column + 0.5f) * Block.SIZE;
+        float startY = row * Block.SIZE;
+        int samples = Math.abs(targetColumn - column) * ARC_SAMPLES_PER_COLUMN;
+        for (int i = 1; i < samples; i++) {
+            float t = time * i / samples;
+            float x = startX + distance * i / samples;
+            float feetY = startY - JUMP_SPEED * t + Avatar.GRAVITY * t * t / 2;
+            int sampleColumn = BlockStore.columnAt(x);
+            int lastRow = BlockStore.rowAt(feetY - 1);
+            for (int r = BlockStore.rowAt(feetY - AGENT_ROWS * Block.SIZE); r <= lastRow; r++) {
+                if (isSolid(sampleColumn, r)) {
+                    return 0;
+                }
+            }
+        }
+        return time;
+    }
+
+    /**
+     * Checks whether an agent can stand on a cell: it is solid, with room for the agent above.
+     *
+     * @param column The cell's column.
+     * @param row The cell's row.
+     * @return True if the cell is standable.
+     */
+    private boolean isStandable(int column, int row) {
+        if (!isSolid(column, row)) {
+            return false;
+        }
+        for (int above = 1; above <= AGENT_ROWS; above++) {
+            if (isSolid(column, row - above)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a cell blocks agents: it holds terrain or an obstacle.
+     *
+     * @param column The cell's column.
+     * @param row The cell's row.
+     * @return True if the cell is solid.
+     */
+    private boolean isSolid(int column, int row) {
+        if (blockStore.getCell(column, row) != BlockStore.AIR) {
+            return true;
+        }
+        Integer obstacleTop = obstacleTops.get(column);
+        return obstacleTop != null && row >= obstacleTop;
+    }
+}
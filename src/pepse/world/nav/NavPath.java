@@ -0,0 +1,109 @@
+package pepse.world.nav;
+
+import pepse.world.Block;
+
+import java.util.Arrays;
+
+/**
+ * A path found by a PathFinder: the nodes an agent stands on along the way, from the start
+ * to the goal. A path is meant to be reused for many searches, so following agents allocate
+ * nothing once its arrays grew large enough.
+ */
+public class NavPath {
+    private int[] columns = new int[32]; // The column of each node, from the start.
+    private int[] rows = new int[32]; // The row of each node.
+    private int length; // The number of nodes.
+    private float cost; // The time the path takes, in seconds.
+
+    /**
+     * Gets the number of nodes on the path.
+     *
+     * @return The number of nodes, 0 if no path was found.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the time the path takes, following its edges.
+     *
+     * @return The time, in seconds.
+     */
+    public float getCost() {
+        return cost;
+    }
+
+    /**
+     * Gets the column of a node on the path.
+     *
+     * @param i The index of the node, from the start.
+     * @return The column.
+     */
+    public int getColumn(int i) {
+        return columns[i];
+    }
+
+    /**
+     * Gets the row of a node on the path.
+     *
+     * @param i The index of the node, from the start.
+     * @return The row.
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * Gets where an agent stands on a node of the path: the middle of its cell's top.
+     *
+     * @param i The index of the node, from the start.
+     * @return The x-coordinate.
+     */
+    public float getX(int i) {
+        return (columns[i] + 0.5f) * Block.SIZE;
+    }
+
+    /**
+     * Gets the height of the ground an agent stands on at a node of the path.
+     *
+     * @param i The index of the node, from the start.
+     * @return The y-coordinate.
+     */
+    public float getY(int i) {
+        return rows[i] * Block.SIZE;
+    }
+
+    /**
+     * Empties the path before a search writes it.
+     */
+    void clear() {
+        length = 0;
+        cost = 0;
+    }
+
+    /**
+     * Sets the path's length and cost, growing its arrays for the nodes that will be set.
+     *
+     * @param length The number of nodes.
+     * @param cost The time the path takes, in seconds.
+     */
+    void reset(int length, float cost) {
+        if (length > columns.length) {
+            columns = Arrays.copyOf(columns, Math.max(length, columns.length * 2));
+            rows = Arrays.copyOf(rows, columns.length);
+        }
+        this.length = length;
+        this.cost = cost;
+    }
+
+    /**
+     * Sets a node of the path.
+     *
+     * @param i The index of the node, from the start.
+     * @param key The node key.
+     */
+    void set(int i, long key) {
+        columns[i] = NavGraph.columnOf(key);
+        rows[i] = NavGraph.rowOf(key);
+    }
+}
@@ -0,0 +1,283 @@
+package pepse.world.nav;
+
+import pepse.world.Avatar;
+import pepse.world.Block;
+import pepse.world.BlockStore;
+
+import java.util.Arrays;
+
+/**
+ * Finds the quickest paths over a NavGraph with A*. The open and closed sets are pooled: they
+ * are primitive arrays, kept between searches and invalidated in constant time by stamping
+ * each search with a new generation, so a search allocates nothing once the pools are large
+ * enough, and many searches can run in a tick. A search gives up after expanding a set number
+ * of nodes, which bounds its cost when the goal cannot be reached.
+ * A PathFinder is not thread-safe; each thread searching a graph needs its own.
+ */
+public class PathFinder {
+    /**
+     * constants that are used through the class
+     */
+    public static final int DEFAULT_MAX_EXPANDED = 4096; // Nodes a search expands before giving up.
+    private static final int SLOTS_PER_EXPANDED = 4; // Table slots per expanded node; the table stays sparse.
+    private static final int INITIAL_HEAP_CAPACITY = 256; // Initial entries of the open set's heap.
+
+    private final NavGraph graph; // The graph searched.
+    private final int maxExpanded; // Nodes a search expands before giving up.
+    private final int mask; // Table capacity - 1, for indexing.
+    // The nodes a search reached, in an open-addressing table of slots.
+    private final long[] keys; // Each slot's node key.
+    private final int[] stamps; // Each slot's search generation; older slots are empty.
+    private final float[] costs; // The cost of the best path found to each slot's node.
+    private final int[] parents; // The slot the best path came from, or -1 at the start.
+    private final boolean[] closed; // Whether each slot's node was expanded.
+    // The open set, a binary heap of slots by priority; a slot may appear more than once.
+    private int[] heapSlots = new int[INITIAL_HEAP_CAPACITY];
+    private float[] heapPriorities = new float[INITIAL_HEAP_CAPACITY];
+    private int heapSize;
+    private int generation; // The current search's generation.
+    private int size; // The number of slots the current search uses.
+    private int expandedCount; // The nodes the last search expanded.
+
+    /**
+     * Constructor for a PathFinder with the default search limit.
+     *
+     * @param graph The graph to search.
+     */
+    public PathFinder(NavGraph graph) {
+        this(graph, DEFAULT_MAX_EXPANDED);
+    }
+
+    /**
+     * Constructor for a PathFinder.
+     *
+     * @param graph The graph to search.
+     * @param maxExpanded The nodes a search expands before giving up.
+     */
+    public PathFinder(NavGraph graph, int maxExpanded) {
+        this.graph = graph;
+        this.maxExpanded = maxExpanded;
+        int capacity = Integer.highestOneBit(maxExpanded * SLOTS_PER_EXPANDED - 1) << 1;
+        mask = capacity - 1;
+        keys = new long[capacity];
+        stamps = new int[capacity];
+        costs = new float[capacity];
+        parents = new int[capacity];
+        closed = new boolean[capacity];
+    }
+
+    /**
+     * Finds the quickest path from a position to any node of a goal's column, such as the
+     * column of a tree an agent wants to reach.
+     *
+     * @param fromX The x-coordinate the agent is at.
+     * @param fromY The y-coordinate of the agent's feet.
+     * @param toX The x-coordinate of the goal.
+     * @param path Where the path is written; emptied if no path is found.
+     * @return True if a path was found.
+     */
+    public boolean findPath(float fromX, float fromY, float toX, NavPath path) {
+        path.clear();
+        long start = graph.nodeBelow(fromX, fromY);
+        if (start == NavGraph.NO_NODE) {
+            return false;
+        }
+        int goalColumn = BlockStore.columnAt(toX);
+        startSearch();
+        push(insert(start, 0, -1), heuristic(start, goalColumn));
+        while (heapSize > 0) {
+            int slot = pop();
+            if (closed[slot]) {
+                continue; // A stale entry for a node reached more cheaply since.
+            }
+            closed[slot] = true;
+            long key = keys[slot];
+            int column = NavGraph.columnOf(key);
+            if (column == goalColumn) {
+                writePath(slot, path);
+                return true;
+            }
+            if (++expandedCount > maxExpanded) {
+                return false;
+            }
+            NavGraph.ChunkGraph chunk = graph.graphOf(column);
+            int node = chunk == null ? -1 : chunk.nodeAt(column, NavGraph.rowOf(key));
+            if (node < 0) {
+                continue; // The node is gone, since a change rebuilt its chunk.
+            }
+            for (int edge = chunk.edgeStart[node]; edge < chunk.edgeStart[node + 1]; edge++) {
+                long target = chunk.edgeTargets[edge];
+                float cost = costs[slot] + chunk.edgeCosts[edge];
+                int targetSlot = find(target);
+                if (targetSlot < 0) {
+                    if (size > mask / 2) {
+                        return false; // The table is full enough to slow down; give up.
+                    }
+                    push(insert(target, cost, slot), cost + heuristic(target, goalColumn));
+                } else if (!closed[targetSlot] && cost < costs[targetSlot]) {
+                    costs[targetSlot] = cost;
+                    parents[targetSlot] = slot;
+                    push(targetSlot, cost + heuristic(target, goalColumn));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of nodes the last search expanded.
+     *
+     * @return The number of nodes.
+     */
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * Estimates the time left from a node to the goal's column: the time to cover the columns
+     * at the avatar's horizontal speed, which no move beats, so A* finds the quickest path.
+     *
+     * @param key The node key.
+     * @param goalColumn The goal's column.
+     * @return The estimate, in seconds.
+     */
+    private static float heuristic(long key, int goalColumn) {
+        return Math.abs(NavGraph.columnOf(key) - goalColumn) * Block.SIZE / Avatar.VELOCITY_X;
+    }
+
+    /**
+     * Empties the pools for a new search, by moving to a new generation.
+     */
+    private void startSearch() {
+        generation++;
+        if (generation == 0) {
+            // The stamps wrapped around; clear them once rather than mistake old slots for new.
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        size = 0;
+        heapSize = 0;
+        expandedCount = 0;
+    }
+
+    /**
+     * Finds the slot of a node the current search reached.
+     *
+     * @param key The node key.
+     * @return The slot, or -1 if the search did not reach the node.
+     */
+    private int find(long key) {
+        for (int slot = hash(key); stamps[slot] == generation; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a node the current search reached for the first time.
+     *
+     * @param key The node key.
+     * @param cost The cost of the path to it.
+     * @param parent The slot the path came from, or -1 at the start.
+     * @return The node's slot.
+     */
+    private int insert(long key, float cost, int parent) {
+        int slot = hash(key);
+        while (stamps[slot] == generation) {
+            slot = (slot + 1) & mask;
+        }
+        stamps[slot] = generation;
+        keys[slot] = key;
+        costs[slot] = cost;
+        parents[slot] = parent;
+        closed[slot] = false;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Hashes a node key to its first slot.
+     *
+     * @param key The node key.
+     * @return The slot.
+     */
+    private int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    /**
+     * Adds a slot to the open set.
+     *
+     * @param slot The slot.
+     * @param priority The slot's estimated total cost.
+     */
+    private void push(int slot, float priority) {
+        if (heapSize == heapSlots.length) {
+            heapSlots = Arrays.copyOf(heapSlots, heapSize * 2);
+            heapPriorities = Arrays.copyOf(heapPriorities, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapPriorities[parent] <= priority) {
+                break;
+            }
+            heapSlots[i] = heapSlots[parent];
+            heapPriorities[i] = heapPriorities[parent];
+            i = parent;
+        }
+        heapSlots[i] = slot;
+        heapPriorities[i] = priority;
+    }
+
+    /**
+     * Removes the slot with the lowest priority from the open set.
+     *
+     * @return The slot.
+     */
+    private int pop() {
+        int top = heapSlots[0];
+        int lastSlot = heapSlots[--heapSize];
+        float lastPriority = heapPriorities[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapPriorities[child + 1] < heapPriorities[child]) {
+                child++;
+            }
+            if (heapPriorities[child] >= lastPriority) {
+                break;
+            }
+            heapSlots[i] = heapSlots[child];
+            heapPriorities[i] = heapPriorities[child];
+            i = child;
+        }
+        heapSlots[i] = lastSlot;
+        heapPriorities[i] = lastPriority;
+        return top;
+    }
+
+    /**
+     * Writes the path that ends at a slot, from the start.
+     *
+     * @param goalSlot The goal's slot.
+     * @param path Where the path is written.
+     */
+    private void writePath(int goalSlot, NavPath path) {
+        int length = 0;
+        for (int slot = goalSlot; slot >= 0; slot = parents[slot]) {
+            length++;
+        }
+        path.reset(length, costs[goalSlot]);
+        int i = length;
+        for (int slot = goalSlot; slot >= 0; slot = parents[slot]) {
+            path.set(--i, keys[slot]);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package pepse.world.trees;
+
+import danogl.GameObject;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.Terrain;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Leaves that detach from the tree canopies, sway as they fall, land on the ground, fade out,
+ * and are then reused for new leaves. The particles are not GameObjects: they are kept in
+ * preallocated parallel arrays, updated in a single pass per tick, and drawn together by one
+ * renderable, so thousands of leaves cost no allocation once the system is created.
+ * Only the trees in view shed leaves.
+ */
+public class FallingLeaves extends GameObject {
+    /**
+     * constants that are used through the class
+     */
+    public static final int DEFAULT_CAPACITY = 10_000; // The most leaves falling at once.
+    private static final float SPAWN_RATE_PER_TREE = 0.5f; // Leaves a tree in view sheds per second.
+    private static final float MIN_FALL_SPEED = 30; // Slowest fall speed, in pixels per second.
+    private static final float MAX_FALL_SPEED = 70; // Fastest fall speed, in pixels per second.
+    private static final float SWAY_SPEED = 40; // Horizontal speed of the sway, in pixels per second.
+    private static final float MIN_SWAY_RATE = 1.5f; // Slowest sway, in radians per second.
+    private static final float MAX_SWAY_RATE = 3.5f; // Fastest sway, in radians per second.
+    private static final float MAX_LIFETIME = 20; // Time before a leaf that did not land fades out.
+    private static final float FADE_TIME = 2; // Time a landed leaf takes to fade out, in seconds.
+    private static final int LEAF_SIZE = 8; // Size of a falling leaf, in pixels.
+    private static final int OPACITY_LEVELS = 16; // Opacity steps, each with a precomputed color.
+    private static final int HEIGHT_CACHE_SIZE = 1024; // Columns whose ground height is cached.
+    private static final Color LEAF_COLOR = Leaf.LEAF_COLOR; // The color of a falling leaf.
+
+    private final Terrain terrain; // Decides where falling leaves land.
+    private final SplittableRandom random; // Chooses where leaves detach and how they fall.
+    // The particles, one entry per live leaf in the first `count` slots of each array.
+    private final float[] x;
+    private final float[] y;
+    private final float[] fallSpeed;
+    private final float[] swayPhase; // The angle of the sway, in radians.
+    private final float[] swayRate; // How fast the sway angle turns, in radians per second.
+    private final float[] lifetime; // Time left before the leaf fades out.
+    private final float[] opacity;
+    private final boolean[] landed;
+    private int count; // The number of live leaves.
+    // The canopies leaves fall from, and which of them are in view.
+    private float[] emitterX = new float[64];
+    private float[] emitterY = new float[64];
+    private float[] emitterWidth = new float[64];
+    private float[] emitterHeight = new float[64];
+    private int[] visibleEmitters = new int[64];
+    private int emitterCount;
+    private int visibleCount;
+    private float spawnDebt; // Leaves owed to the spawn rate, carried between ticks.
+    private float viewMinX; // The range of x-coordinates in view.
+    private float viewMaxX;
+    // Ground heights by column, direct-mapped, so landing checks rarely sample the noise.
+    private final int[] heightCacheColumns = new int[HEIGHT_CACHE_SIZE];
+    private final float[] heightCache = new float[HEIGHT_CACHE_SIZE];
+    private final Color[] colors = new Color[OPACITY_LEVELS]; // The leaf color at each opacity step.
+
+    /**
+     * Constructor for FallingLeaves.
+     *
+     * @param terrain The terrain leaves land on.
+     * @param capacity The most leaves falling at once.
+     * @param seed Seed of the leaves' randomness, so a replay sheds the same leaves.
+     */
+    public FallingLeaves(Terrain terrain, int capacity, long seed) {
+        super(Vector2.ZERO, Vector2.ONES, null);
+        renderer().setRenderable(new LeavesRenderable());
+        this.terrain = terrain;
+        this.random = new SplittableRandom(seed);
+        x = new float[capacity];
+        y = new float[capacity];
+        fallSpeed = new float[capacity];
+        swayPhase = new float[capacity];
+        swayRate = new float[capacity];
+        lifetime = new float[capacity];
+        opacity = new float[capacity];
+        landed = new boolean[capacity];
+        Arrays.fill(heightCacheColumns, Integer.MIN_VALUE);
+        for (int level = 0; level < OPACITY_LEVELS; level++) {
+            colors[level] = new Color(LEAF_COLOR.getRed(), LEAF_COLOR.getGreen(), LEAF_COLOR.getBlue(),
+                    255 * (level + 1) / OPACITY_LEVELS);
+        }
+    }
+
+    /**
+     * Adds a canopy that sheds leaves while it is in view.
+     *
+     * @param topLeft The top-left corner of the canopy.
+     * @param dimensions The size of the canopy.
+     */
+    public void addEmitter(Vector2 topLeft, Vector2 dimensions) {
+        if (emitterCount == emitterX.length) {
+            int capacity = emitterCount * 2;
+            emitterX = Arrays.copyOf(emitterX, capacity);
+            emitterY = Arrays.copyOf(emitterY, capacity);
+            emitterWidth = Arrays.copyOf(emitterWidth, capacity);
+            emitterHeight = Arrays.copyOf(emitterHeight, capacity);
+            visibleEmitters = Arrays.copyOf(visibleEmitters, capacity);
+        }
+        emitterX[emitterCount] = topLeft.x();
+        emitterY[emitterCount] = topLeft.y();
+        emitterWidth[emitterCount] = dimensions.x();
+        emitterHeight[emitterCount] = dimensions.y();
+        emitterCount++;
+    }
+
+    /**
+     * Sets the part of the world in view, where leaves are shed and drawn. Called once a frame.
+     *
+     * @param topLeft The top-left corner of the view, in world coordinates.
+     * @param dimensions The size of the view.
+     */
+    public void setView(Vector2 topLeft, Vector2 dimensions) {
+        setTopLeftCorner(topLeft);
+        setDimensions(dimensions);
+        viewMinX = topLeft.x();
+        viewMaxX = topLeft.x() + dimensions.x();
+    }
+
+    /**
+     * Gets the number of leaves falling or fading.
+     *
+     * @return The number of live leaves.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The falling leaves never collide with other objects.
+     *
+     * @param other The other object.
+     * @return False.
+     */
+    @Override
+    public boolean shouldCollideWith(GameObject other) {
+        return false;
+    }
+
+    /**
+     * Advances every leaf by a fixed-length tick in a single pass, then sheds new leaves from
+     * the canopies in view. Allocates nothing.
+     *
+     * @param deltaTime The length of the tick.
+     */
+    public void tick(float deltaTime) {
+        for (int i = 0; i < count; i++) {
+            lifetime[i] -= deltaTime;
+            if (landed[i] || lifetime[i] <= 0) {
+                opacity[i] -= deltaTime / FADE_TIME;
+                if (opacity[i] <= 0) {
+                    remove(i);
+                    i--; // The last leaf moved into this slot.
+                }
+                continue;
+            }
+            swayPhase[i] += swayRate[i] * deltaTime;
+            x[i] += (float) Math.sin(swayPhase[i]) * SWAY_SPEED * deltaTime;
+            y[i] += fallSpeed[i] * deltaTime;
+            float ground = groundAt(x[i]);
+            if (y[i] + LEAF_SIZE >= ground) {
+                y[i] = ground - LEAF_SIZE;
+                landed[i] = true;
+            }
+        }
+        spawn(deltaTime);
+    }
+
+    /**
+     * Sheds leaves from the canopies in view, at a steady rate per canopy.
+     *
+     * @param deltaTime The length of the tick.
+     */
+    private void spawn(float deltaTime) {
+        visibleCount = 0;
+        for (int emitter = 0; emitter < emitterCount; emitter++) {
+            if (emitterX[emitter] + emitterWidth[emitter] >= viewMinX && emitterX[emitter] <= viewMaxX) {
+                visibleEmitters[visibleCount++] = emitter;
+            }
+        }
+        if (visibleCount == 0) {
+            spawnDebt = 0;
+            return;
+        }
+        spawnDebt += visibleCount * SPAWN_RATE_PER_TREE * deltaTime;
+        while (spawnDebt >= 1 && count < x.length) {
+            spawnDebt--;
+            int emitter = visibleEmitters[random.nextInt(visibleCount)];
+            int i = count++;
+            x[i] = emitterX[emitter] + (float) random.nextDouble() * emitterWidth[emitter];
+            y[i] = emitterY[emitter] + (float) random.nextDouble() * emitterHeight[emitter];
+            fallSpeed[i] = MIN_FALL_SPEED + (float) random.nextDouble() * (MAX_FALL_SPEED - MIN_FALL_SPEED);
+            swayPhase[i] = (float) (random.nextDouble() * 2 * Math.PI);
+            swayRate[i] = MIN_SWAY_RATE + (float) random.nextDouble() * (MAX_SWAY_RATE - MIN_SWAY_RATE);
+            lifetime[i] = MAX_LIFETIME;
+            opacity[i] = 1;
+            landed[i] = false;
+        }
+        spawnDebt = Math.min(spawnDebt, 1); // Do not build up a burst while the pool is full.
+    }
+
+    /**
+     * Removes a leaf by moving the last leaf into its slot.
+     *
+     * @param i The slot of the leaf.
+     */
+    private void remove(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        fallSpeed[i] = fallSpeed[last];
+        swayPhase[i] = swayPhase[last];
+        swayRate[i] = swayRate[last];
+        lifetime[i] = lifetime[last];
+        opacity[i] = opacity[last];
+        landed[i] = landed[last];
+    }
+
+    /**
+     * Forgets the cached ground height of a column whose cells changed, such as one the player
+     * dug into.
+     *
+     * @param column The column of the changed cell.
+     * @param row The row of the changed cell.
+     */
+    public void onBlockChanged(int column, int row) {
+        int slot = Math.floorMod(column, HEIGHT_CACHE_SIZE);
+        if (heightCacheColumns[slot] == column) {
+            heightCacheColumns[slot] = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Gets the height of the ground a leaf lands on, the top of the column's surface block.
+     * Heights are cached by column, so the terrain is only looked up for new columns.
+     *
+     * @param x The x-coordinate.
+     * @return The ground height.
+     */
+    private float groundAt(float x) {
+        int column = (int) Math.floor(x / Block.SIZE);
+        int slot = Math.floorMod(column, HEIGHT_CACHE_SIZE);
+        if (heightCacheColumns[slot] != column) {
+            heightCacheColumns[slot] = column;
+            heightCache[slot] = terrain.surfaceHeightAt(column * Block.SIZE);
+        }
+        return heightCache[slot];
+    }
+
+    /**
+     * Draws every falling leaf in a single render call. A leaf's width follows the cosine of
+     * its sway, so it seems to turn as it falls.
+     */
+    private class LeavesRenderable implements Renderable {
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            // The object covers the view, so its corner maps world coordinates to the screen.
+            float offsetX = topLeftCorner.x() - getTopLeftCorner().x();
+            float offsetY = topLeftCorner.y() - getTopLeftCorner().y();
+            for (int i = 0; i < count; i++) {
+                int level = Math.min(OPACITY_LEVELS - 1, (int) (opacity[i] * OPACITY_LEVELS));
+                if (level < 0) {
+                    continue;
+                }
+                int width = Math.max(1, (int) (LEAF_SIZE * Math.abs(Math.cos(swayPhase[i]))));
+                g.setColor(colors[level]);
+                g.fillRect((int) (x[i] + offsetX) + (LEAF_SIZE - width) / 2, (int) (y[i] + offsetY),
+                        width, LEAF_SIZE);
+            }
+        }
+    }
+}
@@ -5,7 +5,11 @@ import danogl.collisions.GameObjectCollection;
 import danogl.collisions.Layer;
 import danogl.gui.WindowController;
 import danogl.util.Vector2;
+import pepse.util.ColorSupplier;
+import pepse.util.GameEvents;
+import pepse.world.Biome;
 import pepse.world.Block;
+import pepse.world.BlockStore;
 import pepse.world.Terrain;
 
 import java.util.ArrayList;
@@ -16,8 +20,20 @@ import java.util.Random;
  * Manages the generation and placement of flora (trees) within the game world, based on terrain.
  */
 public class Flora {
+    /**
+     * constants that are used through the class
+     */
+    public static final float DEFAULT_TREE_DENSITY = 0.1f; // The chance of a tree in each column.
+    static final float TREE_HEIGHT = 180; // The height of a tree's trunk.
+    private static final float TRUNK_WIDTH = 25; // The width of a tree's trunk.
+    private static final float LEAF_SIZE = 25; // The size of each leaf.
+    private static final int LEAVES_NUMBER = 4; // The intended number of leaves of a tree.
+
     private final WindowController windowController; // Controller for managing window-related operations.
-    private final Random random = new Random(); // Random number generator for determining flora placement.
+    private final int seed; // The world seed, so the same trees grow at the same places every run.
+    private final TreeTemplate[] templates; // The leaf layouts trees choose from.
+    private final ColorSupplier colorSupplier; // Gives each tree its own stream of colors.
+    private float treeDensity = DEFAULT_TREE_DENSITY; // The chance of a tree in each column.
     private Terrain terrain; // Reference to the terrain, used for placing flora based on ground height.
     GameObjectCollection gameObjects; // Collection of all game objects for adding new flora objects.
 
@@ -27,13 +43,29 @@ public class Flora {
      * @param windowController The controller for the game window.
      * @param terrain The terrain object, used for determining ground heights for tree placement.
      * @param gameObjects Collection where new flora objects will be added.
+     * @param seed The world seed, used to make tree placement reproducible.
      */
-    public Flora(WindowController windowController, Terrain terrain, GameObjectCollection gameObjects) {
+    public Flora(WindowController windowController, Terrain terrain, GameObjectCollection gameObjects,
+                 int seed) {
         this.windowController = windowController;
+        this.seed = seed;
+        this.templates = TreeTemplate.createTemplates(seed);
+        this.colorSupplier = new ColorSupplier(seed);
         this.terrain = terrain;
         this.gameObjects = gameObjects;
     }
 
+    /**
+     * Sets the chance of a tree growing in each column, before its biome scales it, for
+     * example to measure how the number of trees affects performance. A column draws the same
+     * random values at any density, so a denser forest keeps the trees of a sparser one.
+     *
+     * @param treeDensity The chance, between 0 and 1.
+     */
+    public void setTreeDensity(float treeDensity) {
+        this.treeDensity = treeDensity;
+    }
+
     /**
      * Generates trees within a specified range along the x-axis of the game world.
      * Trees are placed at random intervals based on a predefined chance.
@@ -43,25 +75,89 @@ public class Flora {
      * @return A list of GameObjects representing the created trees.
      */
     public List<GameObject> createInRange(int minX, int maxX) {
-        List<GameObject> trees = new ArrayList<>();
+        return createFromLayout(layOut(minX, maxX));
+    }
+
+    /**
+     * Lays out the trees within a range: where each grows, which leaf layout it has and where
+     * its fruits hang. This is where the noise and the random generators are used; building
+     * the trees from the layout uses neither.
+     *
+     * @param minX The minimum x-coordinate (inclusive) where trees can start being placed.
+     * @param maxX The maximum x-coordinate (inclusive) for tree placement.
+     * @return The layout of the range's trees.
+     */
+    public TreeLayout layOut(int minX, int maxX) {
+        int firstColumn = BlockStore.columnAt(minX);
+        int columns = maxX < minX ? 0 : BlockStore.columnAt(maxX) - firstColumn + 1;
+        return layOut(minX, maxX, terrain.sampleBiomes(firstColumn, columns));
+    }
+
+    /**
+     * Lays out the trees within a range whose biomes were already sampled, such as a chunk's.
+     * The chance of a tree in a column is the flora's density scaled by the column's biome.
+     *
+     * @param minX The minimum x-coordinate (inclusive) where trees can start being placed.
+     * @param maxX The maximum x-coordinate (inclusive) for tree placement.
+     * @param biomes The biome coordinates of the range, as Terrain.sampleBiomes gives them for
+     *               the columns from minX's to maxX's.
+     * @return The layout of the range's trees.
+     */
+    public TreeLayout layOut(int minX, int maxX, float[] biomes) {
+        TreeLayout.Builder layout = new TreeLayout.Builder();
+        int firstColumn = BlockStore.columnAt(minX);
         // Iterate through the range in increments of the block size to check for potential tree locations.
         for (int x = minX; x <= maxX; x += Block.SIZE) {
-            // There's a 10% chance to plant a tree at each step.
-            if (random.nextFloat() < 0.1) {
+            float biome = biomes[BlockStore.columnAt(x) - firstColumn + 1];
+            // Each column gets its own generator, so a column's tree does not depend on the range
+            // it was created in. Its seed is a mixed hash, so neighboring columns and worlds of
+            // neighboring seeds draw unrelated values.
+            Random random = new Random(ColorSupplier.hash(seed, x));
+            // There's a treeDensity chance (10% by default), scaled by the biome, to plant a tree
+            // at each step.
+            if (random.nextFloat() < treeDensity * Biome.treeDensityAt(biome)) {
                 // Calculate the ground height at this x-coordinate,
                 // aligning it to the grid defined by Block.SIZE.
                 float groundHeight = (float) Math.floor(
-                        terrain.groundHeightAt(x) / Block.SIZE) * Block.SIZE;
-                // Create a new Tree object at the calculated
-                // position with predefined dimensions and leaf size.
-                Tree tree = new Tree(new Vector2(x, groundHeight)
-                        , 180, 25, 25, 4,
-                        windowController, gameObjects);
-                // Add the created tree to the list of trees.
-                trees.add(tree);
+                        terrain.groundHeightAt(x, biome) / Block.SIZE) * Block.SIZE;
+                layout.addTree(x, groundHeight, random.nextInt(templates.length));
+                Fruits.layOut(random, layout);
             }
         }
+        return layout.build();
+    }
+
+    /**
+     * Creates the trees of a layout.
+     *
+     * @param layout The layout, made by layOut.
+     * @return A list of GameObjects representing the created trees.
+     */
+    public List<GameObject> createFromLayout(TreeLayout layout) {
+        GameEvents.FloraGeneration event = new GameEvents.FloraGeneration();
+        event.begin();
+        List<GameObject> trees = new ArrayList<>();
+        for (int i = 0; i < layout.getTreeCount(); i++) {
+            int x = layout.getTreeX(i);
+            // Create a new Tree object at its position with predefined dimensions and leaf size.
+            Tree tree = new Tree(new Vector2(x, layout.getTreeGroundY(i)),
+                    TREE_HEIGHT, TRUNK_WIDTH, LEAF_SIZE, LEAVES_NUMBER,
+                    windowController, gameObjects, layout, i,
+                    templates[layout.getTemplate(i)],
+                    colorSupplier.stream(Math.floorDiv(x, Block.SIZE)));
+            // Add the created tree to the list of trees.
+            trees.add(tree);
+        }
+        if (event.shouldCommit()) {
+            int treeCount = layout.getTreeCount();
+            event.minX = treeCount == 0 ? 0 : layout.getTreeX(0);
+            event.maxX = treeCount == 0 ? 0 : layout.getTreeX(treeCount - 1);
+            event.treeCount = treeCount;
+            for (int i = 0; i < treeCount; i++) {
+                event.fruitCount += layout.getFruitCount(i);
+            }
+            event.commit();
+        }
         return trees; // Return the list of trees placed in the range.
     }
 }
-
@@ -0,0 +1,130 @@
+package pepse.world.trees;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import pepse.util.MutableVector2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Chooses the level of detail of tree foliage by distance from the avatar.
+ * Trees near the avatar show their individual, animated leaves; trees further away show a
+ * single canopy sprite instead, so they cost one object rather than dozens.
+ * A tree switches to its leaves inside the near radius, but only switches back beyond the near
+ * radius plus a margin, so a tree at the edge does not flicker between the two.
+ * Leaves of a distant tree keep receiving jump reactions, so their state is up to date
+ * when they are shown again.
+ */
+public class FoliageLod {
+    /**
+     * constants that are used through the class
+     */
+    public static final float DEFAULT_NEAR_RADIUS = 600; // Distance within which leaves are shown.
+    private static final float HYSTERESIS = 120; // Extra distance before leaves are hidden again.
+
+    private final BiConsumer<GameObject, Integer> addObject; // Shows an object in a layer.
+    private final BiConsumer<GameObject, Integer> removeObject; // Hides an object from a layer.
+    private final List<Tree> trees = new ArrayList<>(); // Trees whose foliage is managed.
+    private float nearRadius = DEFAULT_NEAR_RADIUS; // Distance within which leaves are shown.
+
+    /**
+     * Constructor for FoliageLod.
+     *
+     * @param gameObjects The game's object collection, where leaves and canopies are added.
+     */
+    public FoliageLod(GameObjectCollection gameObjects) {
+        this(gameObjects::addGameObject, gameObjects::removeGameObject);
+    }
+
+    /**
+     * Constructor for a FoliageLod that shows and hides foliage through callbacks instead of a
+     * game's object collection, such as a headless check that runs without a game.
+     *
+     * @param addObject Adds an object to a layer.
+     * @param removeObject Removes an object from a layer.
+     */
+    public FoliageLod(BiConsumer<GameObject, Integer> addObject, BiConsumer<GameObject, Integer> removeObject) {
+        this.addObject = addObject;
+        this.removeObject = removeObject;
+    }
+
+    /**
+     * Starts managing a tree's foliage. The tree starts out showing its canopy sprite,
+     * until the next update finds it near the avatar.
+     *
+     * @param tree The tree to manage.
+     */
+    public void add(Tree tree) {
+        trees.add(tree);
+        showCanopy(tree);
+    }
+
+    /**
+     * Sets the distance within which trees show their individual leaves.
+     *
+     * @param nearRadius The distance, in pixels.
+     */
+    public void setNearRadius(float nearRadius) {
+        this.nearRadius = nearRadius;
+    }
+
+    /**
+     * Gets the distance within which trees show their individual leaves.
+     *
+     * @return The distance, in pixels.
+     */
+    public float getNearRadius() {
+        return nearRadius;
+    }
+
+    /**
+     * Switches trees between leaves and canopy according to their distance from the avatar.
+     *
+     * @param avatarX The x-coordinate of the avatar.
+     */
+    public void update(float avatarX) {
+        for (Tree tree : trees) {
+            float distance = Math.abs(MutableVector2.centerX(tree.getTrunk()) - avatarX);
+            if (!tree.isDetailed() && distance < nearRadius) {
+                showLeaves(tree);
+            } else if (tree.isDetailed() && distance > nearRadius + HYSTERESIS) {
+                showCanopy(tree);
+            }
+        }
+    }
+
+    /**
+     * Replaces a tree's canopy sprite with its individual leaves.
+     *
+     * @param tree The tree to show in detail.
+     */
+    private void showLeaves(Tree tree) {
+        removeObject.accept(tree.getCanopy(), Layer.STATIC_OBJECTS);
+        for (GameObject leaf : tree.getTreeLeaves()) {
+            ((Leaf) leaf).setSleeping(false);
+            addObject.accept(leaf, Layer.STATIC_OBJECTS);
+        }
+        tree.setDetailed(true);
+    }
+
+    /**
+     * Replaces a tree's individual leaves with its canopy sprite.
+     *
+     * @param tree The tree to show from afar.
+     */
+    private void showCanopy(Tree tree) {
+        if (tree.isDetailed()) {
+            for (GameObject leaf : tree.getTreeLeaves()) {
+                removeObject.accept(leaf, Layer.STATIC_OBJECTS);
+            }
+        }
+        for (GameObject leaf : tree.getTreeLeaves()) {
+            ((Leaf) leaf).setSleeping(true); // Hidden leaves are not animated.
+        }
+        addObject.accept(tree.getCanopy(), Layer.STATIC_OBJECTS);
+        tree.setDetailed(false);
+    }
+}
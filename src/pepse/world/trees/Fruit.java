@@ -9,14 +9,17 @@ import danogl.components.ScheduledTask;
 import danogl.gui.WindowController;
 import danogl.gui.rendering.OvalRenderable;
 import danogl.util.Vector2;
+import pepse.util.GameEvents;
+import pepse.util.MutableVector2;
 import pepse.world.Avatar;
+import pepse.world.RegionObject;
 
 import java.awt.*;
 /**
  * Represents a fruit object within the game world, which can interact with other game objects.
  * Fruits are designed to change color upon interaction, such as a jump action from the player's avatar.
  */
-public class Fruit extends GameObject {
+public class Fruit extends RegionObject {
     private static final int ENERGY_GAIN = 10; // The amount of
     // energy an avatar can gain from interacting with the fruit.
     private GameObjectCollection gameObjects; // Reference to the
@@ -24,6 +27,8 @@ public class Fruit extends GameObject {
     private Vector2 position; // The position of the fruit in the game world.
     private float size; // The size of the fruit.
     private Color color; // The current color of the fruit.
+    private boolean isEaten; // Whether the fruit was eaten and did not grow back yet.
+    private double eatenAt; // The game time the fruit was last eaten at.
 
     /**
      * Constructor for creating a new Fruit object.
@@ -60,6 +65,65 @@ public class Fruit extends GameObject {
         return size;
     }
 
+    /**
+     * Checks whether the fruit was eaten and did not grow back yet.
+     *
+     * @return True if the fruit is eaten.
+     */
+    public boolean isEaten() {
+        return isEaten;
+    }
+
+    /**
+     * Marks the fruit as eaten, until it respawns.
+     *
+     * @param time The game time the fruit is eaten at.
+     */
+    public void eat(double time) {
+        this.isEaten = true;
+        this.eatenAt = time;
+        GameEvents.FruitEaten event = new GameEvents.FruitEaten();
+        if (event.shouldCommit()) {
+            event.x = MutableVector2.centerX(this);
+            event.y = MutableVector2.centerY(this);
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the game time the fruit was last eaten at.
+     *
+     * @return The game time, in seconds.
+     */
+    public double getEatenAt() {
+        return eatenAt;
+    }
+
+    /**
+     * Checks whether a jump changed the fruit's color from the color it grew with.
+     *
+     * @return True if the fruit is recolored.
+     */
+    public boolean isRecolored() {
+        return color != Color.RED;
+    }
+
+    /**
+     * Restores the fruit to how it grew originally, before it is put back on its tree.
+     */
+    public void respawn() {
+        this.isEaten = false;
+        this.renderer().setRenderable(new OvalRenderable(Color.RED));
+        this.color = Color.RED;
+        GameEvents.FruitRespawned event = new GameEvents.FruitRespawned();
+        if (event.shouldCommit()) {
+            event.x = MutableVector2.centerX(this);
+            event.y = MutableVector2.centerY(this);
+            event.commit();
+        }
+    }
+
     /**
      * Reacts to a jump interaction by changing the color of the fruit.
      * If the fruit is red, it changes to yellow, and vice versa.
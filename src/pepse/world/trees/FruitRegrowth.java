@@ -0,0 +1,105 @@
+package pepse.world.trees;
+
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import pepse.util.GameClock;
+import pepse.world.BlockStore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Grows eaten fruits back without a timer per fruit. An eaten fruit only remembers the game
+ * time it was eaten at; whether it grew back is decided lazily, from the elapsed game time,
+ * when its chunk is in view. Fruits far from the avatar cost nothing until they are seen
+ * again, at which point every fruit whose time passed is back on its tree.
+ */
+public class FruitRegrowth {
+    /**
+     * constants that are used through the class
+     */
+    public static final float REGROWTH_TIME = 30; // The game time an eaten fruit takes to grow back.
+
+    private final GameObjectCollection gameObjects; // Where regrown fruits are put back.
+    private final GameClock gameClock; // The game time regrowth is measured on.
+    private final NavigableMap<Integer, List<Fruit>> eatenByChunk = new TreeMap<>(); // Eaten fruits, by chunk.
+    private int eatenCount; // The number of eaten fruits that did not grow back yet.
+
+    /**
+     * Constructor for FruitRegrowth.
+     *
+     * @param gameObjects The game's object collection, where regrown fruits are put back.
+     * @param gameClock The game time regrowth is measured on.
+     */
+    public FruitRegrowth(GameObjectCollection gameObjects, GameClock gameClock) {
+        this.gameObjects = gameObjects;
+        this.gameClock = gameClock;
+    }
+
+    /**
+     * Adds a fruit that was eaten and removed from the game. It grows back REGROWTH_TIME after
+     * the time it was eaten at, which may already have passed for a fruit of a restored game.
+     *
+     * @param fruit The eaten fruit.
+     */
+    public void add(Fruit fruit) {
+        fruit.setSleeping(true); // An eaten fruit is not animated.
+        eatenByChunk.computeIfAbsent(chunkOf(fruit), chunk -> new ArrayList<>()).add(fruit);
+        eatenCount++;
+    }
+
+    /**
+     * Grows back the eaten fruits of the chunks covering a range of x-coordinates whose time
+     * has come. Called every frame with the range in view; other chunks are not touched.
+     *
+     * @param minX The minimum x-coordinate (inclusive).
+     * @param maxX The maximum x-coordinate (inclusive).
+     */
+    public void update(float minX, float maxX) {
+        int firstChunk = BlockStore.chunkOf(BlockStore.columnAt(minX));
+        int lastChunk = BlockStore.chunkOf(BlockStore.columnAt(maxX));
+        for (List<Fruit> eaten : eatenByChunk.subMap(firstChunk, true, lastChunk, true).values()) {
+            for (Iterator<Fruit> iterator = eaten.iterator(); iterator.hasNext(); ) {
+                Fruit fruit = iterator.next();
+                if (gameClock.now() - fruit.getEatenAt() >= REGROWTH_TIME) {
+                    iterator.remove();
+                    eatenCount--;
+                    regrow(fruit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of eaten fruits that did not grow back yet, in view or not.
+     *
+     * @return The number of eaten fruits.
+     */
+    public int getEatenCount() {
+        return eatenCount;
+    }
+
+    /**
+     * Puts a fruit back on its tree, the same fruit object, so it keeps its jump reactions.
+     *
+     * @param fruit The fruit.
+     */
+    private void regrow(Fruit fruit) {
+        fruit.respawn();
+        fruit.setSleeping(false);
+        gameObjects.addGameObject(fruit, Layer.DEFAULT);
+    }
+
+    /**
+     * Gets the chunk a fruit grows in.
+     *
+     * @param fruit The fruit.
+     * @return The chunk index.
+     */
+    private static int chunkOf(Fruit fruit) {
+        return BlockStore.chunkOf(BlockStore.columnAt(fruit.getPosition().x()));
+    }
+}
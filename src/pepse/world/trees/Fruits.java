@@ -21,37 +21,46 @@ public class Fruits implements Iterable<GameObject> {
      */
     // Constant vector that is used to plant the fruits
     public static final Vector2 VECTOR_OF_40 = new Vector2(40, 40);
+    public static final float FRUIT_SIZE = 20; // The size of each fruit.
+    private static final int FRUIT_SPACING = 10; // Distance between possible fruit positions.
+    private static final float FRUIT_CHANCE = 0.1f; // Chance to place a fruit at each position.
     // A list to hold all the generated fruit objects.
     private List<GameObject> fruits;
-    private static final Random random = new Random(); // Random number
-    // generator for determining fruit placement.
+
+    /**
+     * Lays out the fruits of a tree: randomly places them within a defined area around the
+     * tree's leaves base position, and adds their offsets to the tree last added to a layout.
+     *
+     * @param random Random number generator for determining fruit placement.
+     * @param layout The layout the tree was added to.
+     */
+    static void layOut(Random random, TreeLayout.Builder layout) {
+        // Iterate over the area around the leaves base position, placing fruits based on a probability.
+        for (int i = -(int) VECTOR_OF_40.x(); i < (int) VECTOR_OF_40.x(); i += FRUIT_SPACING) {
+            for (int j = -(int) VECTOR_OF_40.y(); j < 0; j += FRUIT_SPACING) {
+                if (random.nextFloat() < FRUIT_CHANCE) { // 10% chance to place a fruit at each location.
+                    layout.addFruit(i, j);
+                }
+            }
+        }
+    }
 
     /**
      * Constructor for the Fruits collection.
-     * Randomly places fruit objects within a defined area around a central position.
+     * Places fruit objects at the positions a tree's layout gives them around a central position.
      *
-     * @param position The central position around which fruits will be generated.
+     * @param position The central position around which fruits are placed.
      * @param size The size of each fruit object.
-     * @param leavesNumber The number of leaves, indirectly influences the density of fruits.
+     * @param layout The layout of the tree's chunk.
+     * @param tree The index of the tree in the layout.
      * @param gameObjects A reference to the game object collection, for adding fruits to the game world.
      */
-    Fruits(Vector2 position, float size, int leavesNumber, GameObjectCollection gameObjects) {
+    Fruits(Vector2 position, float size, TreeLayout layout, int tree, GameObjectCollection gameObjects) {
         fruits = new ArrayList<>();
-
-        // Calculate offsets to define the area around the central position where fruits can be placed.
-        int leftXOffset = (int) position.subtract(VECTOR_OF_40).x();
-        int rightXOffset = (int) position.add(VECTOR_OF_40).x();
-        int yDownOffset = (int) position.subtract(VECTOR_OF_40).y();
-        int yUpOffset = (int) position.add(new Vector2(0, 0)).y();
-
-        // Iterate over the defined area, randomly placing fruits based on a probability.
-        for (int i = leftXOffset; i < rightXOffset; i += 10) {
-            for (int j = yDownOffset; j < yUpOffset; j += 10) {
-                if (random.nextFloat() < 0.1f) { // 10% chance to place a fruit at each location.
-                    Fruit fruit = new Fruit(new Vector2(i, j), size, gameObjects);
-                    fruits.add(fruit);
-                }
-            }
+        for (int i = 0; i < layout.getFruitCount(tree); i++) {
+            Vector2 fruitPosition = new Vector2(position.x() + layout.getFruitOffsetX(tree, i),
+                    position.y() + layout.getFruitOffsetY(tree, i));
+            fruits.add(new Fruit(fruitPosition, size, gameObjects));
         }
     }
 
@@ -5,6 +5,7 @@ import danogl.components.GameObjectPhysics;
 import danogl.components.Transition;
 import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
+import pepse.world.RegionObject;
 
 import java.awt.*;
 import java.util.function.Consumer;
@@ -12,7 +13,11 @@ import java.util.function.Consumer;
  * Represents a leaf object in the game, typically part of a tree.
  * Leaves have a simple visual representation and can react to interactions such as jumping.
  */
-public class Leaf extends GameObject {
+public class Leaf extends RegionObject {
+    /**
+     * constants that are used through the class
+     */
+    public static final Color LEAF_COLOR = new Color(50, 200, 30); // The color of a leaf at rest.
 
     /**
      * Constructor for creating a Leaf object.
@@ -24,7 +29,7 @@ public class Leaf extends GameObject {
         // Initialize the GameObject with the specified position, size,
         // and a green rectangle as its visual representation.
         super(position, new Vector2(size, size),
-                new RectangleRenderable(new Color(50, 200, 30)));
+                new RectangleRenderable(LEAF_COLOR));
     }
 
     /**
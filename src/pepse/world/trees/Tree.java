@@ -4,6 +4,8 @@ import danogl.GameObject;
 import danogl.collisions.GameObjectCollection;
 import danogl.gui.WindowController;
 import danogl.util.Vector2;
+
+import java.util.SplittableRandom;
 /**
  * Represents a tree within the game world, including its trunk, leaves, and fruits.
  * This class manages the composition of the tree and its visual representation.
@@ -13,6 +15,8 @@ public class Tree extends GameObject {
     private final TreeTrunk trunk; // The trunk part of the tree.
     private Fruits fruits; // The fruits associated with the tree.
     private GameObjectCollection gameObjects; // Collection of game objects for adding fruits.
+    private final GameObject canopy; // A single sprite standing in for the leaves when far away.
+    private boolean isDetailed; // Whether the individual leaves, rather than the canopy, are shown.
 
     /**
      * Constructs a Tree object with specified characteristics and components.
@@ -24,23 +28,33 @@ public class Tree extends GameObject {
      * @param leavesNumber The number of leaves to be generated for the tree.
      * @param windowController A controller for window-related functionalities.
      * @param gameObjects A collection of game objects for managing the tree's components.
+     * @param layout The layout of the tree's chunk, which places its fruits.
+     * @param index The index of the tree in the layout.
+     * @param template The leaf layout of the tree, shared with other trees.
+     * @param colorRandom The color stream of the tree, used to recolor its trunk.
      */
-    public Tree(Vector2 basePosition, float treeHeight, float treeWidth,
-                float leafSize, int leavesNumber, WindowController windowController,
-                GameObjectCollection gameObjects) {
+    Tree(Vector2 basePosition, float treeHeight, float treeWidth,
+         float leafSize, int leavesNumber, WindowController windowController,
+         GameObjectCollection gameObjects, TreeLayout layout, int index, TreeTemplate template,
+         SplittableRandom colorRandom) {
         super(basePosition, new Vector2(treeWidth, treeHeight), null); // Initialize
         // with base position. The tree itself has no direct renderable.
 
         // Trunk is positioned based on the base, with its height adjusted to start from the base upwards.
         Vector2 trunkPosition = new Vector2(basePosition.x(), basePosition.y() - treeHeight);
-        this.trunk = new TreeTrunk(trunkPosition, treeHeight, treeWidth, windowController);
+        this.trunk = new TreeTrunk(trunkPosition, treeHeight, treeWidth, windowController,
+                colorRandom);
 
         // Leaves are assumed to be placed at the top-center of the trunk.
         Vector2 leavesBasePosition = new Vector2(basePosition.x(), basePosition.y() - treeHeight);
-        this.treeLeaves = new TreeLeaves(leavesBasePosition, leafSize, leavesNumber, windowController);
+        this.treeLeaves = new TreeLeaves(leavesBasePosition, leafSize, leavesNumber, windowController,
+                template);
+        // The canopy shares its sprite with every tree of the same layout.
+        this.canopy = new GameObject(TreeTemplate.canopyPosition(leavesBasePosition),
+                TreeTemplate.canopyDimensions(leafSize), template.getCanopy(leafSize));
 
-        // Fruits are generated around the leaves base position.
-        this.fruits = new Fruits(leavesBasePosition, 20, 7, gameObjects);
+        // Fruits hang around the leaves base position, where the layout placed them.
+        this.fruits = new Fruits(leavesBasePosition, Fruits.FRUIT_SIZE, layout, index, gameObjects);
         this.gameObjects = gameObjects; // Store reference for
         // potentially adding more components in the future.
     }
@@ -63,6 +77,33 @@ public class Tree extends GameObject {
         return treeLeaves;
     }
 
+    /**
+     * Gets the sprite that stands in for the tree's leaves when the tree is far away.
+     *
+     * @return The canopy GameObject.
+     */
+    public GameObject getCanopy() {
+        return canopy;
+    }
+
+    /**
+     * Checks whether the tree shows its individual leaves rather than its canopy sprite.
+     *
+     * @return True if the leaves are shown.
+     */
+    boolean isDetailed() {
+        return isDetailed;
+    }
+
+    /**
+     * Sets whether the tree shows its individual leaves rather than its canopy sprite.
+     *
+     * @param isDetailed True if the leaves are shown.
+     */
+    void setDetailed(boolean isDetailed) {
+        this.isDetailed = isDetailed;
+    }
+
     /**
      * Gets the TreeTrunk component of the tree.
      *
@@ -0,0 +1,204 @@
+package pepse.world.trees;
+
+import java.util.Arrays;
+
+/**
+ * Where the trees of a range of the world grow, and where their fruits hang, as Flora lays
+ * them out from the seed. A layout is immutable and holds only primitive arrays, so it can be
+ * cached and the same trees built again without drawing from the random generators again.
+ */
+public final class TreeLayout {
+    /**
+     * constants that are used through the class
+     */
+    private static final int OBJECT_BYTES = 16; // Estimated header of an object.
+    private static final int ARRAY_BYTES = 16; // Estimated header of an array.
+    private static final int REFERENCE_BYTES = 4; // Estimated size of a reference.
+
+    private final int[] xs; // The left x-coordinate of each tree.
+    private final float[] groundYs; // The ground height each tree stands on.
+    private final byte[] templates; // The index of each tree's leaf layout.
+    private final int[] fruitStart; // Each tree's first fruit, and the fruit count at the end.
+    private final byte[] fruitOffsetsX; // Each fruit's offset from its tree's leaves base position.
+    private final byte[] fruitOffsetsY;
+
+    /**
+     * Constructor for a TreeLayout, taking over the builder's arrays.
+     *
+     * @param builder The builder the trees were added to.
+     */
+    private TreeLayout(Builder builder) {
+        xs = Arrays.copyOf(builder.xs, builder.treeCount);
+        groundYs = Arrays.copyOf(builder.groundYs, builder.treeCount);
+        templates = Arrays.copyOf(builder.templates, builder.treeCount);
+        fruitStart = Arrays.copyOf(builder.fruitStart, builder.treeCount + 1);
+        fruitStart[builder.treeCount] = builder.fruitCount;
+        fruitOffsetsX = Arrays.copyOf(builder.fruitOffsetsX, builder.fruitCount);
+        fruitOffsetsY = Arrays.copyOf(builder.fruitOffsetsY, builder.fruitCount);
+    }
+
+    /**
+     * Gets the number of trees in the layout.
+     *
+     * @return The number of trees.
+     */
+    public int getTreeCount() {
+        return xs.length;
+    }
+
+    /**
+     * Gets the left x-coordinate of a tree.
+     *
+     * @param tree The index of the tree.
+     * @return The x-coordinate.
+     */
+    public int getTreeX(int tree) {
+        return xs[tree];
+    }
+
+    /**
+     * Gets the ground height a tree stands on, aligned to the block grid.
+     *
+     * @param tree The index of the tree.
+     * @return The y-coordinate of the tree's base.
+     */
+    public float getTreeGroundY(int tree) {
+        return groundYs[tree];
+    }
+
+    /**
+     * Gets the number of fruits of a tree.
+     *
+     * @param tree The index of the tree.
+     * @return The number of fruits.
+     */
+    public int getFruitCount(int tree) {
+        return fruitStart[tree + 1] - fruitStart[tree];
+    }
+
+    /**
+     * Gets the left x-coordinate of a fruit.
+     *
+     * @param tree The index of the tree.
+     * @param fruit The index of the fruit on the tree.
+     * @return The x-coordinate.
+     */
+    public float getFruitX(int tree, int fruit) {
+        return xs[tree] + getFruitOffsetX(tree, fruit);
+    }
+
+    /**
+     * Gets the top y-coordinate of a fruit.
+     *
+     * @param tree The index of the tree.
+     * @param fruit The index of the fruit on the tree.
+     * @return The y-coordinate.
+     */
+    public float getFruitY(int tree, int fruit) {
+        return groundYs[tree] - Flora.TREE_HEIGHT + getFruitOffsetY(tree, fruit);
+    }
+
+    /**
+     * Estimates the heap the layout uses.
+     *
+     * @return The estimated size, in bytes.
+     */
+    public long memoryBytes() {
+        return OBJECT_BYTES + 6 * REFERENCE_BYTES + 6 * ARRAY_BYTES
+                + (long) xs.length * (Integer.BYTES + Float.BYTES + Byte.BYTES)
+                + (long) fruitStart.length * Integer.BYTES + 2L * fruitOffsetsX.length;
+    }
+
+    /**
+     * Gets the index of a tree's leaf layout.
+     *
+     * @param tree The index of the tree.
+     * @return The index into the world's templates.
+     */
+    int getTemplate(int tree) {
+        return templates[tree];
+    }
+
+    /**
+     * Gets the horizontal offset of a fruit from its tree's leaves base position.
+     *
+     * @param tree The index of the tree.
+     * @param fruit The index of the fruit on the tree.
+     * @return The offset, in pixels.
+     */
+    int getFruitOffsetX(int tree, int fruit) {
+        return fruitOffsetsX[fruitStart[tree] + fruit];
+    }
+
+    /**
+     * Gets the vertical offset of a fruit from its tree's leaves base position.
+     *
+     * @param tree The index of the tree.
+     * @param fruit The index of the fruit on the tree.
+     * @return The offset, in pixels.
+     */
+    int getFruitOffsetY(int tree, int fruit) {
+        return fruitOffsetsY[fruitStart[tree] + fruit];
+    }
+
+    /**
+     * Growable arrays a layout is built in, tree by tree. A tree's fruits are added right
+     * after the tree.
+     */
+    static class Builder {
+        private int[] xs = new int[8];
+        private float[] groundYs = new float[8];
+        private byte[] templates = new byte[8];
+        private int[] fruitStart = new int[9];
+        private byte[] fruitOffsetsX = new byte[32];
+        private byte[] fruitOffsetsY = new byte[32];
+        private int treeCount;
+        private int fruitCount;
+
+        /**
+         * Adds a tree.
+         *
+         * @param x The tree's left x-coordinate.
+         * @param groundY The ground height the tree stands on.
+         * @param template The index of the tree's leaf layout.
+         */
+        void addTree(int x, float groundY, int template) {
+            if (treeCount + 1 == fruitStart.length) {
+                xs = Arrays.copyOf(xs, treeCount * 2);
+                groundYs = Arrays.copyOf(groundYs, treeCount * 2);
+                templates = Arrays.copyOf(templates, treeCount * 2);
+                fruitStart = Arrays.copyOf(fruitStart, treeCount * 2 + 1);
+            }
+            xs[treeCount] = x;
+            groundYs[treeCount] = groundY;
+            templates[treeCount] = (byte) template;
+            fruitStart[treeCount] = fruitCount;
+            treeCount++;
+        }
+
+        /**
+         * Adds a fruit to the last tree added.
+         *
+         * @param offsetX The fruit's horizontal offset from the tree's leaves base position.
+         * @param offsetY The fruit's vertical offset from the tree's leaves base position.
+         */
+        void addFruit(int offsetX, int offsetY) {
+            if (fruitCount == fruitOffsetsX.length) {
+                fruitOffsetsX = Arrays.copyOf(fruitOffsetsX, fruitCount * 2);
+                fruitOffsetsY = Arrays.copyOf(fruitOffsetsY, fruitCount * 2);
+            }
+            fruitOffsetsX[fruitCount] = (byte) offsetX;
+            fruitOffsetsY[fruitCount] = (byte) offsetY;
+            fruitCount++;
+        }
+
+        /**
+         * Builds the layout of the trees added.
+         *
+         * @return The layout.
+         */
+        TreeLayout build() {
+            return new TreeLayout(this);
+        }
+    }
+}
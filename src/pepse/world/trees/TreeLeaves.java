@@ -11,7 +11,6 @@ import java.awt.*;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
 import java.util.function.Consumer;
 
 /**
@@ -20,39 +19,29 @@ import java.util.function.Consumer;
  */
 public class TreeLeaves implements Iterable<GameObject> {
     private List<GameObject> leaves; // Collection of leaf objects.
-    // Random number generator for leaf placement and animation delays.
-    private static final Random random = new Random();
 
     /**
      * Constructor for the TreeLeaves class.
-     * Generates leaves at random positions within a specified area around the given position.
+     * Generates leaves at the positions of a leaf layout around the given position.
      *
      * @param position The central position around which leaves will be generated.
      * @param size The size of each leaf.
      * @param leavesNumber The intended number of leaves (influences generation probability).
      * @param windowController Controller for window-related functionalities,
      *                        not used here but could be necessary for extensions.
+     * @param template The leaf layout of the tree, shared with other trees.
      */
-    TreeLeaves(Vector2 position, float size, int leavesNumber, WindowController windowController) {
+    TreeLeaves(Vector2 position, float size, int leavesNumber, WindowController windowController,
+               TreeTemplate template) {
         leaves = new ArrayList<>();
 
-        // Calculate bounds for leaf generation.
-        int leftXOffset = (int) position.subtract(new Vector2(60, 60)).x();
-        int rightXOffset = (int) position.add(new Vector2(70, 70)).x();
-        int yDownOffset = (int) position.subtract(new Vector2(70, 70)).y();
-        int yUpOffset = (int) position.add(new Vector2(70, 70)).y();
-
-        // Generate leaves within the specified bounds.
-        for (int i = leftXOffset; i < rightXOffset; i += 10) {
-            for (int j = yDownOffset; j < yUpOffset; j += 10) {
-                if (random.nextFloat() < 0.1f) { // 10% chance to place a leaf at each position.
-                    float delay = (float) (Math.random() * 3); // Random delay for starting leaf animation.
-                    Leaf leaf = new Leaf(new Vector2(i, j), size); // Create new leaf object.
-                    leaves.add(leaf); // Add leaf to collection.
-                    // Schedule a task to start leaf movement after a random delay.
-                    new ScheduledTask(leaf, delay, false, () -> startLeafMovement(leaf, size));
-                }
-            }
+        // Generate leaves at the positions of the layout.
+        for (int i = 0; i < template.getLeafCount(); i++) {
+            float delay = template.animationDelay(i); // Delay for starting leaf animation.
+            Leaf leaf = new Leaf(template.leafPosition(position, i), size); // Create new leaf object.
+            leaves.add(leaf); // Add leaf to collection.
+            // Schedule a task to start leaf movement after a random delay.
+            new ScheduledTask(leaf, delay, false, () -> startLeafMovement(leaf, size));
         }
     }
 
@@ -0,0 +1,151 @@
+package pepse.world.trees;
+
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A leaf layout shared by several trees. Sharing a small number of layouts lets a distant tree
+ * be drawn as a single canopy sprite, which is rendered once per template rather than per tree.
+ */
+class TreeTemplate {
+    /**
+     * constants that are used through the class
+     */
+    static final int TEMPLATE_COUNT = 8; // The number of different leaf layouts in a world.
+    // Bounds of the canopy, relative to the leaves base position at the top of the trunk.
+    static final int LEFT_OFFSET = -60;
+    static final int RIGHT_OFFSET = 70;
+    static final int TOP_OFFSET = -70;
+    static final int BOTTOM_OFFSET = 70;
+    private static final int LEAF_SPACING = 10; // Distance between possible leaf positions.
+    private static final float LEAF_CHANCE = 0.1f; // Chance to place a leaf at each position.
+
+    private final int[] leafOffsetsX; // Horizontal offset of each leaf from the leaves base position.
+    private final int[] leafOffsetsY; // Vertical offset of each leaf from the leaves base position.
+    private final float[] animationDelays; // Delay before each leaf starts moving, in seconds.
+    private ImageRenderable canopy; // The canopy sprite, rendered the first time it is needed.
+    private float canopyLeafSize; // The leaf size the canopy sprite was rendered with.
+
+    /**
+     * Constructor for a TreeTemplate, laying out leaves at random positions in the canopy bounds.
+     *
+     * @param random Random number generator for leaf placement and animation delays.
+     */
+    private TreeTemplate(Random random) {
+        int columns = (RIGHT_OFFSET - LEFT_OFFSET) / LEAF_SPACING;
+        int rows = (BOTTOM_OFFSET - TOP_OFFSET) / LEAF_SPACING;
+        int[] xs = new int[columns * rows];
+        int[] ys = new int[columns * rows];
+        float[] delays = new float[columns * rows];
+        int count = 0;
+        for (int i = LEFT_OFFSET; i < RIGHT_OFFSET; i += LEAF_SPACING) {
+            for (int j = TOP_OFFSET; j < BOTTOM_OFFSET; j += LEAF_SPACING) {
+                if (random.nextFloat() < LEAF_CHANCE) {
+                    xs[count] = i;
+                    ys[count] = j;
+                    delays[count] = random.nextFloat() * 3; // Random delay for starting leaf animation.
+                    count++;
+                }
+            }
+        }
+        leafOffsetsX = Arrays.copyOf(xs, count);
+        leafOffsetsY = Arrays.copyOf(ys, count);
+        animationDelays = Arrays.copyOf(delays, count);
+    }
+
+    /**
+     * Creates the leaf layouts of a world.
+     *
+     * @param seed The world seed, so the same layouts are created every run.
+     * @return TEMPLATE_COUNT templates.
+     */
+    static TreeTemplate[] createTemplates(int seed) {
+        Random random = new Random(seed);
+        TreeTemplate[] templates = new TreeTemplate[TEMPLATE_COUNT];
+        for (int i = 0; i < TEMPLATE_COUNT; i++) {
+            templates[i] = new TreeTemplate(random);
+        }
+        return templates;
+    }
+
+    /**
+     * Gets the number of leaves in the layout.
+     *
+     * @return The number of leaves.
+     */
+    int getLeafCount() {
+        return leafOffsetsX.length;
+    }
+
+    /**
+     * Gets the position of a leaf of a tree using this layout.
+     *
+     * @param leavesBasePosition The leaves base position of the tree.
+     * @param leaf The index of the leaf.
+     * @return The top-left corner of the leaf.
+     */
+    Vector2 leafPosition(Vector2 leavesBasePosition, int leaf) {
+        return new Vector2(leavesBasePosition.x() + leafOffsetsX[leaf],
+                leavesBasePosition.y() + leafOffsetsY[leaf]);
+    }
+
+    /**
+     * Gets the delay before a leaf starts moving.
+     *
+     * @param leaf The index of the leaf.
+     * @return The delay, in seconds.
+     */
+    float animationDelay(int leaf) {
+        return animationDelays[leaf];
+    }
+
+    /**
+     * Gets the top-left corner of the canopy sprite of a tree using this layout.
+     *
+     * @param leavesBasePosition The leaves base position of the tree.
+     * @return The top-left corner of the canopy.
+     */
+    static Vector2 canopyPosition(Vector2 leavesBasePosition) {
+        return new Vector2(leavesBasePosition.x() + LEFT_OFFSET, leavesBasePosition.y() + TOP_OFFSET);
+    }
+
+    /**
+     * Gets the size of the canopy sprite.
+     *
+     * @param leafSize The size of each leaf.
+     * @return The dimensions of the canopy.
+     */
+    static Vector2 canopyDimensions(float leafSize) {
+        return new Vector2(RIGHT_OFFSET - LEFT_OFFSET + leafSize, BOTTOM_OFFSET - TOP_OFFSET + leafSize);
+    }
+
+    /**
+     * Gets the canopy sprite, with every leaf of the layout drawn at rest into a single image.
+     * The sprite is rendered once and then shared by every tree using this layout.
+     *
+     * @param leafSize The size of each leaf.
+     * @return The canopy sprite.
+     */
+    ImageRenderable getCanopy(float leafSize) {
+        if (canopy == null || canopyLeafSize != leafSize) {
+            Vector2 dimensions = canopyDimensions(leafSize);
+            BufferedImage image = new BufferedImage((int) Math.ceil(dimensions.x()),
+                    (int) Math.ceil(dimensions.y()), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Leaf.LEAF_COLOR);
+            for (int leaf = 0; leaf < getLeafCount(); leaf++) {
+                graphics.fillRect(leafOffsetsX[leaf] - LEFT_OFFSET, leafOffsetsY[leaf] - TOP_OFFSET,
+                        Math.round(leafSize), Math.round(leafSize));
+            }
+            graphics.dispose();
+            canopy = new ImageRenderable(image);
+            canopyLeafSize = leafSize;
+        }
+        return canopy;
+    }
+}
@@ -7,8 +7,10 @@ import danogl.gui.WindowController;
 import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
 
+import pepse.util.ColorSupplier;
+
 import java.awt.*;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Represents the trunk part of a tree in the game environment.
@@ -16,7 +18,7 @@ import java.util.Random;
  * The trunk is immovable and can change color to simulate various effects or interactions.
  */
 public class TreeTrunk extends GameObject {
-    private static final Random random = new Random(); // Random object for generating color variations.
+    private final SplittableRandom random; // The tree's own stream of color variations.
     private Vector2 position; // The position of the trunk in the game world.
     private float height; // The height of the trunk.
     private float width; // The width of the trunk.
@@ -29,8 +31,10 @@ public class TreeTrunk extends GameObject {
      * @param width            The width of the trunk.
      * @param windowController Controller for window-related functionalities,
      *                        not directly used but available for extensions.
+     * @param random           The tree's stream of color variations, which only the trunk uses.
      */
-    public TreeTrunk(Vector2 position, float height, float width, WindowController windowController) {
+    public TreeTrunk(Vector2 position, float height, float width, WindowController windowController,
+                     SplittableRandom random) {
         super(position, new Vector2(width, height),
                 new RectangleRenderable(new Color(100, 50, 20))); // Initializes with a dark brown color.
         // Prevents other objects from intersecting with the trunk.
@@ -40,6 +44,7 @@ public class TreeTrunk extends GameObject {
         this.height = height;
         this.width = width;
         this.position = position;
+        this.random = random;
     }
 
     /**
@@ -51,7 +56,7 @@ public class TreeTrunk extends GameObject {
         int red = 100 + random.nextInt(30); // Ensures a brownish red.
         int green = 50 + random.nextInt(20); // Adds some green for a natural wood color.
         int blue = 0; // Minimal blue component.
-        Color newColor = new Color(red, green, blue);
+        Color newColor = ColorSupplier.colorOf(red, green, blue);
         // Apply the new color to the trunk.
         this.renderer().setRenderable(new RectangleRenderable(newColor));
     }
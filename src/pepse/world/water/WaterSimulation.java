@@ -0,0 +1,419 @@
+package pepse.world.water;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.BlockStore;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Water that fills the valleys of the terrain and flows when the terrain changes, simulated as
+ * a cellular automaton on the block grid. Each cell holds a volume of water, from empty to
+ * MAX_VOLUME, in primitive arrays per chunk indexed like the block store's. Water falls into
+ * the cell below and levels out with the cells beside it.
+ * Only active cells are simulated: a cell is woken when water moves into, out of or next to
+ * it, or when a block next to it changes, and goes back to sleep once a tick moves none of its
+ * water. A settled lake therefore costs nothing, and a tick's cost follows the moving water,
+ * not the size of the world. Each chunk's water is drawn as one texture, and only the columns
+ * whose water changed are redrawn.
+ * When a chunk is loaded, its air below the sea level is filled, which fills the valleys.
+ */
+public class WaterSimulation {
+    /**
+     * constants that are used through the class
+     */
+    // The water a full cell holds. Water settles with a difference of one unit between cells
+    // beside each other, so a fine unit keeps the surface of a lake flat.
+    public static final int MAX_VOLUME = 64;
+    private static final int PIXELS_PER_ROW = 8; // Texture pixels per row of cells.
+    private static final int WATER_ARGB = new Color(40, 100, 200, 150).getRGB(); // The color of water.
+    private static final int INITIAL_ACTIVE_CAPACITY = 256; // Initial entries of the active lists.
+
+    private final BlockStore blockStore; // The terrain's cells, which water cannot enter.
+    private final GameObjectCollection gameObjects; // Where the chunks' water overlays are added.
+    private final int seaLevelRow; // The first row filled with water when a chunk is loaded.
+    private final Map<Integer, ChunkWater> chunks = new HashMap<>(); // Water of each loaded chunk.
+    private int cachedChunkIndex; // The chunk last looked up, to skip the map in runs of one chunk.
+    private ChunkWater cachedChunk; // Its water, or null if it is not loaded.
+    // Cells simulated this tick, and cells woken for the next one, packed as in cellKey.
+    private long[] active = new long[INITIAL_ACTIVE_CAPACITY];
+    private long[] woken = new long[INITIAL_ACTIVE_CAPACITY];
+    private int wokenCount;
+    private int lastActiveCount; // Cells simulated in the last tick.
+    private boolean isLeftFirst; // Which side water levels out to first, alternated to avoid drift.
+
+    /**
+     * The water of a single chunk and its overlay.
+     */
+    private static class ChunkWater {
+        private final short[] volumes; // Water per cell, indexed like the block store's chunks.
+        private final boolean[] isWoken; // Whether each cell is in the next tick's active list.
+        private final boolean[] dirtyColumns; // Columns whose texture needs to be redrawn.
+        private final BufferedImage texture; // PIXELS_PER_ROW pixels per cell, filled from the bottom.
+        private final GameObject overlay; // Draws the texture over the chunk.
+        private boolean isDirty = true; // Whether any column needs to be redrawn.
+
+        ChunkWater(int chunk, int rows) {
+            volumes = new short[BlockStore.CHUNK_COLUMNS * rows];
+            isWoken = new boolean[BlockStore.CHUNK_COLUMNS * rows];
+            dirtyColumns = new boolean[BlockStore.CHUNK_COLUMNS];
+            Arrays.fill(dirtyColumns, true);
+            texture = new BufferedImage(BlockStore.CHUNK_COLUMNS, rows * PIXELS_PER_ROW,
+                    BufferedImage.TYPE_INT_ARGB);
+            overlay = new GameObject(new Vector2(chunk * BlockStore.CHUNK_COLUMNS * Block.SIZE, 0),
+                    new Vector2(BlockStore.CHUNK_COLUMNS * Block.SIZE, rows * Block.SIZE),
+                    new ImageRenderable(texture));
+            overlay.setTag("water");
+        }
+    }
+
+    /**
+     * Constructor for a WaterSimulation.
+     *
+     * @param blockStore The terrain's cells.
+     * @param gameObjects The game's object collection, where the water overlays are added.
+     * @param seaLevel The y-coordinate below which the air of a loaded chunk is filled with water.
+     */
+    public WaterSimulation(BlockStore blockStore, GameObjectCollection gameObjects, float seaLevel) {
+        this.blockStore = blockStore;
+        this.gameObjects = gameObjects;
+        this.seaLevelRow = BlockStore.rowAt(seaLevel);
+    }
+
+    /**
+     * Adds the water of a chunk, which must already be in the block store: fills its air from
+     * the sea level down to the ground, and wakes the water at its edges, which levels out with
+     * the neighboring loaded chunks.
+     *
+     * @param chunk The chunk index.
+     */
+    public void loadChunk(int chunk) {
+        if (chunks.containsKey(chunk)) {
+            return;
+        }
+        ChunkWater water = new ChunkWater(chunk, blockStore.getRows());
+        chunks.put(chunk, water);
+        cachedChunk = null;
+        gameObjects.addGameObject(water.overlay, Layer.FOREGROUND);
+        int firstColumn = chunk * BlockStore.CHUNK_COLUMNS;
+        for (int column = firstColumn; column < firstColumn + BlockStore.CHUNK_COLUMNS; column++) {
+            int surfaceRow = blockStore.surfaceRow(column);
+            for (int row = Math.max(seaLevelRow, 0); row < surfaceRow; row++) {
+                water.volumes[indexOf(column, row)] = MAX_VOLUME;
+            }
+        }
+        for (int row = 0; row < blockStore.getRows(); row++) {
+            wake(firstColumn - 1, row);
+            wake(firstColumn, row);
+            wake(firstColumn + BlockStore.CHUNK_COLUMNS - 1, row);
+            wake(firstColumn + BlockStore.CHUNK_COLUMNS, row);
+        }
+    }
+
+    /**
+     * Removes a chunk's water and its overlay, for example when the chunk is unloaded. Water at
+     * the edges of the neighboring chunks treats the chunk as a wall until it is loaded again.
+     *
+     * @param chunk The chunk index.
+     */
+    public void unloadChunk(int chunk) {
+        ChunkWater water = chunks.remove(chunk);
+        cachedChunk = null;
+        if (water != null) {
+            gameObjects.removeGameObject(water.overlay, Layer.FOREGROUND);
+        }
+    }
+
+    /**
+     * Wakes the water around a cell whose block changed. Water in a cell that became solid is
+     * pushed into the cell above, so no water is lost while there is room.
+     *
+     * @param column The column of the changed cell.
+     * @param row The row of the changed cell.
+     */
+    public void onBlockChanged(int column, int row) {
+        ChunkWater water = chunkOf(column);
+        if (water == null || row < 0 || row >= blockStore.getRows()) {
+            return;
+        }
+        int index = indexOf(column, row);
+        if (blockStore.getCell(column, row) != BlockStore.AIR && water.volumes[index] > 0) {
+            int displaced = water.volumes[index];
+            setVolume(column, row, 0);
+            if (canHold(column, row - 1)) {
+                setVolume(column, row - 1,
+                        Math.min(Short.MAX_VALUE, getVolume(column, row - 1) + displaced));
+            }
+        }
+        wakeAround(column, row);
+    }
+
+    /**
+     * Gets the water in the cell at a world position.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return The volume, from 0 to MAX_VOLUME.
+     */
+    public int volumeAt(float x, float y) {
+        return getVolume(BlockStore.columnAt(x), BlockStore.rowAt(y));
+    }
+
+    /**
+     * Gets the number of cells the last tick simulated, which is what a tick's cost follows.
+     *
+     * @return The number of active cells.
+     */
+    public int getActiveCount() {
+        return lastActiveCount;
+    }
+
+    /**
+     * Estimates the memory held by the water of the loaded chunks: a volume, a flag and
+     * PIXELS_PER_ROW texture pixels per cell.
+     *
+     * @return The estimated size, in bytes.
+     */
+    public long memoryBytes() {
+        return (long) chunks.size() * BlockStore.CHUNK_COLUMNS * blockStore.getRows()
+                * (Short.BYTES + 1 + PIXELS_PER_ROW * Integer.BYTES);
+    }
+
+    /**
+     * Moves the water of the active cells once. Cells whose water moved, and their neighbors,
+     * are woken for the next tick; the rest sleep. Called once per tick.
+     */
+    public void tick() {
+        long[] cells = woken;
+        int count = wokenCount;
+        woken = active;
+        active = cells;
+        wokenCount = 0;
+        lastActiveCount = count;
+        isLeftFirst = !isLeftFirst;
+        for (int i = 0; i < count; i++) {
+            int column = (int) (cells[i] >> 32);
+            int row = (int) cells[i];
+            ChunkWater water = chunkOf(column);
+            if (water == null) {
+                continue; // The chunk was unloaded since the cell was woken.
+            }
+            water.isWoken[indexOf(column, row)] = false;
+            flow(column, row);
+        }
+    }
+
+    /**
+     * Redraws the columns of the overlays whose water changed. Called once a frame.
+     */
+    public void update() {
+        for (ChunkWater water : chunks.values()) {
+            if (water.isDirty) {
+                drawTexture(water);
+            }
+        }
+    }
+
+    /**
+     * Moves a cell's water: down while the cell below has room, then toward the cells beside
+     * it that hold less. A cell that holds more than it can, because a block displaced water
+     * into it, first pushes the excess up.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     */
+    private void flow(int column, int row) {
+        int volume = getVolume(column, row);
+        if (volume == 0 || !canHold(column, row)) {
+            return;
+        }
+        if (volume > MAX_VOLUME && canHold(column, row - 1)) {
+            volume -= transfer(column, row, column, row - 1, volume - MAX_VOLUME);
+        }
+        if (canHold(column, row + 1)) {
+            volume -= transfer(column, row, column, row + 1,
+                    Math.min(volume, MAX_VOLUME - getVolume(column, row + 1)));
+        }
+        int side = isLeftFirst ? -1 : 1;
+        volume -= levelOut(column, row, column + side, volume);
+        levelOut(column, row, column - side, volume);
+    }
+
+    /**
+     * Moves half the difference of water from a cell to the cell beside it, if it holds less.
+     * A difference of one is left, so the water settles.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param sideColumn The column of the cell beside it.
+     * @param volume The water in the cell.
+     * @return The volume moved.
+     */
+    private int levelOut(int column, int row, int sideColumn, int volume) {
+        if (volume <= 1 || !canHold(sideColumn, row)) {
+            return 0;
+        }
+        return transfer(column, row, sideColumn, row, (volume - getVolume(sideColumn, row)) / 2);
+    }
+
+    /**
+     * Moves water from a cell to a neighbor, and wakes both and their neighbors.
+     *
+     * @param column The column of the cell the water leaves.
+     * @param row The row of the cell the water leaves.
+     * @param toColumn The column of the cell the water enters.
+     * @param toRow The row of the cell the water enters.
+     * @param amount The volume to move; nothing happens unless it is positive.
+     * @return The volume moved.
+     */
+    private int transfer(int column, int row, int toColumn, int toRow, int amount) {
+        if (amount <= 0) {
+            return 0;
+        }
+        setVolume(column, row, getVolume(column, row) - amount);
+        setVolume(toColumn, toRow, getVolume(toColumn, toRow) + amount);
+        wakeAround(column, row);
+        wakeAround(toColumn, toRow);
+        return amount;
+    }
+
+    /**
+     * Wakes a cell and the four cells next to it.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     */
+    private void wakeAround(int column, int row) {
+        wake(column, row);
+        wake(column - 1, row);
+        wake(column + 1, row);
+        wake(column, row - 1);
+        wake(column, row + 1);
+    }
+
+    /**
+     * Adds a cell to the next tick's active list, unless it holds no water, which could not
+     * move, or is already in it.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     */
+    private void wake(int column, int row) {
+        ChunkWater water = chunkOf(column);
+        if (water == null || row < 0 || row >= blockStore.getRows()) {
+            return;
+        }
+        int index = indexOf(column, row);
+        if (water.volumes[index] == 0 || water.isWoken[index]) {
+            return;
+        }
+        water.isWoken[index] = true;
+        if (wokenCount == woken.length) {
+            woken = Arrays.copyOf(woken, wokenCount * 2);
+        }
+        woken[wokenCount++] = cellKey(column, row);
+    }
+
+    /**
+     * Checks whether a cell can hold water: it is loaded and there is no block in it.
+     * Unloaded chunks are walls.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return True if water can move into the cell.
+     */
+    private boolean canHold(int column, int row) {
+        return row >= 0 && row < blockStore.getRows() && chunkOf(column) != null
+                && blockStore.getCell(column, row) == BlockStore.AIR;
+    }
+
+    /**
+     * Gets the water in a cell.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The volume, 0 for cells outside the loaded chunks.
+     */
+    private int getVolume(int column, int row) {
+        ChunkWater water = chunkOf(column);
+        if (water == null || row < 0 || row >= blockStore.getRows()) {
+            return 0;
+        }
+        return water.volumes[indexOf(column, row)];
+    }
+
+    /**
+     * Sets the water in a loaded cell, marking its column to be redrawn.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param volume The volume.
+     */
+    private void setVolume(int column, int row, int volume) {
+        ChunkWater water = chunkOf(column);
+        water.volumes[indexOf(column, row)] = (short) volume;
+        water.dirtyColumns[Math.floorMod(column, BlockStore.CHUNK_COLUMNS)] = true;
+        water.isDirty = true;
+    }
+
+    /**
+     * Gets the water of the chunk a column is in, remembering the last chunk looked up, since
+     * the automaton mostly works within one chunk.
+     *
+     * @param column The column.
+     * @return The chunk's water, or null if it is not loaded.
+     */
+    private ChunkWater chunkOf(int column) {
+        int chunk = BlockStore.chunkOf(column);
+        if (cachedChunk == null || chunk != cachedChunkIndex) {
+            ChunkWater water = chunks.get(chunk);
+            if (water == null) {
+                return null;
+            }
+            cachedChunkIndex = chunk;
+            cachedChunk = water;
+        }
+        return cachedChunk;
+    }
+
+    /**
+     * Redraws the dirty columns of a chunk's texture. A cell's water fills its pixels from the
+     * bottom, in proportion to its volume, rounded up so a little water still shows.
+     */
+    private void drawTexture(ChunkWater water) {
+        int[] pixels = ((DataBufferInt) water.texture.getRaster().getDataBuffer()).getData();
+        int rows = blockStore.getRows();
+        for (int local = 0; local < BlockStore.CHUNK_COLUMNS; local++) {
+            if (!water.dirtyColumns[local]) {
+                continue;
+            }
+            water.dirtyColumns[local] = false;
+            for (int row = 0; row < rows; row++) {
+                int volume = Math.min(water.volumes[local * rows + row], MAX_VOLUME);
+                int filled = (volume * PIXELS_PER_ROW + MAX_VOLUME - 1) / MAX_VOLUME;
+                for (int pixel = 0; pixel < PIXELS_PER_ROW; pixel++) {
+                    pixels[(row * PIXELS_PER_ROW + pixel) * BlockStore.CHUNK_COLUMNS + local] =
+                            pixel >= PIXELS_PER_ROW - filled ? WATER_ARGB : 0;
+                }
+            }
+        }
+        water.isDirty = false;
+    }
+
+    private int indexOf(int column, int row) {
+        return Math.floorMod(column, BlockStore.CHUNK_COLUMNS) * blockStore.getRows() + row;
+    }
+
+    private static long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}